@@ -16,16 +16,33 @@
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Result;
 import ddf.catalog.federation.FederationStrategy;
 import ddf.catalog.operation.Query;
@@ -40,10 +57,17 @@
 import ddf.catalog.plugin.PreFederatedQueryPlugin;
 import ddf.catalog.plugin.StopProcessingException;
 import ddf.catalog.source.Source;
+import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.util.impl.SubjectQualifier;
 
 /**
  * This class serves as a base implementation of the {@link FederationStrategy} interface. Other
  * classes can extend this class to create specific attributes to sort by.
+ * <p>
+ * When a {@link QueryRequest} carries the {@link Constants#FEDERATION_CURSOR} property, deep pages
+ * are requested with cursor based paging: each source is asked for a single page starting after
+ * the last of its results returned in a previous page, rather than for every result up to the
+ * requested offset. The response carries the token for the next page in the same property.
  * 
  */
 public abstract class AbstractFederationStrategy implements FederationStrategy {
@@ -53,12 +77,67 @@ public abstract class AbstractFederationStrategy implements FederationStrategy {
     // XLogger(LoggerFactory.getLogger(AbstractFederationStrategy.class));
     private static final String CLASS_NAME = AbstractFederationStrategy.class.getName();
 
+    private static final String SECURITY_SUBJECT = "ddf.security.subject";
+
     private ExecutorService queryExecutorService;
 
     private static final int DEFAULT_MAX_START_INDEX = 50000;
 
+    private static final int DEFAULT_SOURCE_QUEUE_DEPTH = 50;
+
+    private static final int DEFAULT_ADAPTIVE_TIMEOUT_PERCENTILE = 99;
+
+    private static final long DEFAULT_ADAPTIVE_TIMEOUT_MINIMUM_MILLIS = 1000;
+
+    private static final double HEDGE_PERCENTILE = 95;
+
+    private static final long DEFAULT_HEDGE_MINIMUM_DELAY_MILLIS = 100;
+
     private int maxStartIndex;
 
+    private final SourceBulkheads sourceBulkheads = new SourceBulkheads();
+
+    private int sourceMaxConcurrency = 0;
+
+    private int sourceQueueDepth = DEFAULT_SOURCE_QUEUE_DEPTH;
+
+    private String sourceRejectionPolicy = SourceBulkheads.ABORT_POLICY;
+
+    private final SourceLatencyTracker latencyTracker = new SourceLatencyTracker();
+
+    private boolean adaptiveTimeouts = false;
+
+    private int adaptiveTimeoutPercentile = DEFAULT_ADAPTIVE_TIMEOUT_PERCENTILE;
+
+    private long adaptiveTimeoutMinimumMillis = DEFAULT_ADAPTIVE_TIMEOUT_MINIMUM_MILLIS;
+
+    private boolean hedgeRequests = false;
+
+    private long hedgeMinimumDelayMillis = DEFAULT_HEDGE_MINIMUM_DELAY_MILLIS;
+
+    private final SourceCircuitBreaker circuitBreaker = new SourceCircuitBreaker();
+
+    private final QueryContinuations continuations = new QueryContinuations();
+
+    private boolean circuitBreakerEnabled = false;
+
+    /**
+     * The source queries whose outcome has not been reported to the circuit breaker yet, keyed
+     * weakly on their futures so that abandoned queries do not accumulate.
+     */
+    private final Map<Future<SourceResponse>, CallableSourceResponse> breakerQueries = Collections
+            .synchronizedMap(new WeakHashMap<Future<SourceResponse>, CallableSourceResponse>());
+
+    private final ScheduledExecutorService timerService = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "federation-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     /**
      * The {@link List} of pre-federated query plugins to execute on the query request before the
      * query is executed on the {@link Source}.
@@ -112,6 +191,30 @@ protected abstract Runnable createMonitor(ExecutorService queryExecutorService,
             Map<Source, Future<SourceResponse>> futures, QueryResponseImpl returnResults,
             Query query);
 
+    /**
+     * Creates the monitor for federated queries, additionally providing the
+     * {@link CompletionService} the source queries were submitted through so that monitors can
+     * consume the source responses in the order they complete. The default implementation ignores
+     * the {@link CompletionService} and delegates to
+     * {@link #createMonitor(ExecutorService, Map, QueryResponseImpl, Query)}.
+     * 
+     * @param queryExecutorService
+     * @param futures
+     * @param completionService
+     *            the {@link CompletionService} that receives each of the {@code futures} as it
+     *            completes
+     * @param returnResults
+     *            the query results
+     * @param query
+     * @return the {@link Runnable}
+     */
+    protected Runnable createMonitor(ExecutorService queryExecutorService,
+            Map<Source, Future<SourceResponse>> futures,
+            CompletionService<SourceResponse> completionService, QueryResponseImpl returnResults,
+            Query query) {
+        return createMonitor(queryExecutorService, futures, returnResults, query);
+    }
+
     @Override
     public QueryResponse federate(List<Source> sources, final QueryRequest queryRequest) {
         final String methodName = "federate";
@@ -124,6 +227,11 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
             }
         }
 
+        String continuation = getContinuation(queryRequest);
+        if (continuation != null) {
+            return processPostFederatedPlugins(resumeQuery(queryRequest, continuation));
+        }
+
         Query originalQuery = queryRequest.getQuery();
 
         int offset = originalQuery.getStartIndex();
@@ -134,10 +242,25 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
             offset = this.maxStartIndex;
         }
 
+        final FederationCursor cursor = getCursor(queryRequest);
+        if (cursor != null) {
+            // The cursor, not the start index, positions each source
+            offset = 1;
+        }
+
         final QueryResponseImpl queryResponseQueue = new QueryResponseImpl(queryRequest, null);
 
+        // The source each result came from, since not every source sets it on its metacards
+        Map<Result, String> resultSources = cursor == null ? null : Collections
+                .synchronizedMap(new IdentityHashMap<Result, String>());
+
         Map<Source, Future<SourceResponse>> futures = new HashMap<Source, Future<SourceResponse>>();
 
+        // Completed source queries are collected in a single queue, whichever executor ran them
+        BlockingQueue<Future<SourceResponse>> completionQueue = new LinkedBlockingQueue<Future<SourceResponse>>();
+        CompletionService<SourceResponse> completionService = new ExecutorCompletionService<SourceResponse>(
+                queryExecutorService, completionQueue);
+
         Query modifiedQuery = getModifiedQuery(originalQuery, sources.size(), offset, pageSize);
         QueryRequest modifiedQueryRequest = new QueryRequestImpl(modifiedQuery,
                 queryRequest.isEnterprise(), queryRequest.getSourceIds(),
@@ -164,9 +287,32 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
                         logger.warn("Plugin stopped processing: ", e);
                     }
 
-                    futures.put(source, queryExecutorService.submit(new CallableSourceResponse(
-                            source, modifiedQueryRequest.getQuery(), modifiedQueryRequest
-                                    .getProperties())));
+                    Query sourceQuery = modifiedQueryRequest.getQuery();
+                    if (cursor != null) {
+                        sourceQuery = new QueryImpl(sourceQuery,
+                                cursor.getConsumed(source.getId()) + 1, pageSize,
+                                sourceQuery.getSortBy(), sourceQuery.requestsTotalResultsCount(),
+                                sourceQuery.getTimeoutMillis());
+                    }
+
+                    if (circuitBreakerEnabled && !circuitBreaker.tryAcquire(source.getId())) {
+                        logger.debug("Circuit of source {} is open, query will not be executed.",
+                                source.getId());
+                        futures.put(source, createFailedFuture(new SourceUnavailableException(
+                                "Source \"" + source.getId()
+                                        + "\" is failing too often and is temporarily skipped"),
+                                completionQueue));
+                        continue;
+                    }
+
+                    CallableSourceResponse callable = new CallableSourceResponse(source,
+                            sourceQuery, modifiedQueryRequest.getProperties(), resultSources);
+                    Future<SourceResponse> future = submitSourceQuery(source, callable,
+                            completionService, completionQueue, sourceQuery.getTimeoutMillis());
+                    if (circuitBreakerEnabled && !future.isDone()) {
+                        breakerQueries.put(future, callable);
+                    }
+                    futures.put(source, future);
                 } else {
                     logger.warn("Duplicate source found with name " + source.getId()
                             + ". Ignoring second one.");
@@ -183,13 +329,17 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
             offsetResults = new QueryResponseImpl(queryRequest, null);
             queryExecutorService.submit(new OffsetResultHandler(queryResponseQueue, offsetResults,
                     pageSize, offset));
+        } else if (cursor != null) {
+            offsetResults = new QueryResponseImpl(queryRequest, null);
+            queryExecutorService.submit(new CursorResultHandler(queryResponseQueue, offsetResults,
+                    pageSize, cursor, resultSources));
         }
 
         queryExecutorService.submit(createMonitor(queryExecutorService, futures,
-                queryResponseQueue, modifiedQueryRequest.getQuery()));
+                completionService, queryResponseQueue, modifiedQueryRequest.getQuery()));
 
-        QueryResponse queryResponse = null;
-        if (offset > 1 && sources.size() > 1) {
+        QueryResponseImpl queryResponse = null;
+        if (offsetResults != null) {
             queryResponse = offsetResults;
             logger.debug("returning offsetResults");
         } else {
@@ -197,6 +347,19 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
             logger.debug("returning returnResults: {}", queryResponse);
         }
 
+        long progressiveDeadline = getProgressiveDeadline(queryRequest);
+        if (progressiveDeadline > 0) {
+            queryResponse = startProgressiveResults(queryRequest, queryResponse,
+                    progressiveDeadline);
+        }
+
+        logger.trace("EXITING: {}.federate", CLASS_NAME);
+
+        return processPostFederatedPlugins(queryResponse);
+    }
+
+    private QueryResponse processPostFederatedPlugins(QueryResponse response) {
+        QueryResponse queryResponse = response;
         try {
             for (PostFederatedQueryPlugin service : postQuery) {
                 try {
@@ -210,11 +373,278 @@ public QueryResponse federate(List<Source> sources, final QueryRequest queryRequ
         }
 
         logger.debug("returning Query Results: {}", queryResponse);
-        logger.trace("EXITING: {}.federate", CLASS_NAME);
 
         return queryResponse;
     }
 
+    /**
+     * Gets the results of a progressive query that had not arrived by its deadline.
+     */
+    private QueryResponseImpl resumeQuery(QueryRequest queryRequest, String continuation) {
+        QueryResponseImpl remainingResults = continuations.remove(continuation,
+                getContinuationOwner(queryRequest));
+        if (remainingResults == null) {
+            logger.debug("Query continuation is unknown, expired or of another subject");
+            return new QueryResponseImpl(queryRequest, new ArrayList<Result>(), true, 0);
+        }
+
+        long progressiveDeadline = getProgressiveDeadline(queryRequest);
+        if (progressiveDeadline > 0) {
+            return startProgressiveResults(queryRequest, remainingResults, progressiveDeadline);
+        }
+        return remainingResults;
+    }
+
+    /**
+     * Creates a response that receives the results that arrive within the deadline, after which
+     * the rest of the results are registered under a continuation handle.
+     */
+    private QueryResponseImpl startProgressiveResults(QueryRequest queryRequest,
+            QueryResponseImpl results, long deadline) {
+        QueryResponseImpl firstResults = new QueryResponseImpl(queryRequest, null);
+        queryExecutorService.submit(new ProgressiveResultHandler(results, firstResults, deadline,
+                getContinuationOwner(queryRequest)));
+        return firstResults;
+    }
+
+    private String getContinuation(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        Serializable continuation = properties == null ? null : properties
+                .get(Constants.QUERY_CONTINUATION);
+        return continuation == null || continuation.toString().trim().isEmpty() ? null
+                : continuation.toString().trim();
+    }
+
+    /**
+     * @return the qualifier of the subject of a request, empty if it has no subject, or
+     *         {@code null} if the subject's attributes cannot be determined
+     */
+    private String getContinuationOwner(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        Object subject = properties == null ? null : properties.get(SECURITY_SUBJECT);
+        return subject == null ? "" : SubjectQualifier.of(subject);
+    }
+
+    private long getProgressiveDeadline(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        Serializable deadline = properties == null ? null : properties
+                .get(Constants.PROGRESSIVE_DEADLINE);
+        if (deadline instanceof Number) {
+            return ((Number) deadline).longValue();
+        } else if (deadline != null) {
+            try {
+                return Long.parseLong(deadline.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid progressive deadline: {}", deadline);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Submits the query of a source, either to the shared pool or, when configured, to the
+     * source's own bounded executor. A query rejected by a saturated source executor completes
+     * immediately with a {@link SourceUnavailableException}.
+     */
+    private Future<SourceResponse> submitSourceQuery(Source source,
+            CallableSourceResponse sourceQuery, CompletionService<SourceResponse> completionService,
+            BlockingQueue<Future<SourceResponse>> completionQueue, long timeoutMillis) {
+        if (adaptiveTimeouts || hedgeRequests) {
+            return submitAdaptiveSourceQuery(source, sourceQuery, completionQueue, timeoutMillis);
+        }
+
+        if (!sourceBulkheads.isEnabled()) {
+            return completionService.submit(sourceQuery);
+        }
+
+        try {
+            return new ExecutorCompletionService<SourceResponse>(
+                    sourceBulkheads.getExecutor(source.getId()), completionQueue)
+                    .submit(sourceQuery);
+        } catch (RejectedExecutionException e) {
+            return createFailedFuture(createSaturatedException(source), completionQueue);
+        }
+    }
+
+    /**
+     * Creates a source query that has already failed, and adds it to the completed queries.
+     */
+    private Future<SourceResponse> createFailedFuture(final Exception failure,
+            BlockingQueue<Future<SourceResponse>> completionQueue) {
+        FutureTask<SourceResponse> failed = new FutureTask<SourceResponse>(
+                new Callable<SourceResponse>() {
+                    @Override
+                    public SourceResponse call() throws Exception {
+                        throw failure;
+                    }
+                });
+        failed.run();
+        completionQueue.add(failed);
+        return failed;
+    }
+
+    /**
+     * Submits the query of a source with a deadline derived from the source's observed latency
+     * and, if hedging is enabled, schedules a second attempt for when the first one is slower than
+     * most previous queries to the source.
+     */
+    private Future<SourceResponse> submitAdaptiveSourceQuery(final Source source,
+            final CallableSourceResponse sourceQuery,
+            BlockingQueue<Future<SourceResponse>> completionQueue, long timeoutMillis) {
+        final String sourceId = source.getId();
+        final AdaptiveSourceFuture future = new AdaptiveSourceFuture(completionQueue);
+
+        if (!startAttempt(source, sourceQuery, future, false)) {
+            return future;
+        }
+
+        final long deadline = adaptiveTimeouts ? getAdaptiveTimeout(sourceId, timeoutMillis) : -1;
+        if (deadline > 0) {
+            future.addTimer(timerService.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    logger.debug("Source {} did not respond within its adaptive deadline of {} ms",
+                            sourceId, deadline);
+                    future.expire(new TimeoutException("Source \"" + sourceId
+                            + "\" did not respond within " + deadline + " ms"));
+                    sourceQuery.timedOut();
+                }
+            }, deadline, TimeUnit.MILLISECONDS));
+        }
+
+        long hedgeDelay = hedgeRequests ? getHedgeDelay(sourceId) : -1;
+        if (hedgeDelay >= 0 && (deadline <= 0 || hedgeDelay < deadline)) {
+            future.addTimer(timerService.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!future.isDone()) {
+                        logger.debug("Hedging slow query to source {}", sourceId);
+                        startAttempt(source, sourceQuery, future, true);
+                    }
+                }
+            }, hedgeDelay, TimeUnit.MILLISECONDS));
+        }
+
+        return future;
+    }
+
+    /**
+     * Runs an attempt of a source query on the source's executor, completing the future with its
+     * outcome. Hedged attempts are started from the timer thread, so they are skipped rather than
+     * run on the submitting thread when the source's executor is saturated.
+     * 
+     * @return false if the source's executor rejected the attempt
+     */
+    private boolean startAttempt(Source source, final CallableSourceResponse sourceQuery,
+            final AdaptiveSourceFuture future, boolean hedge) {
+        Executor executor = sourceBulkheads.isEnabled() ? sourceBulkheads.getExecutor(source
+                .getId()) : queryExecutorService;
+
+        Runnable attempt = new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    future.attemptFailed(new IllegalStateException("Query already completed"));
+                    return;
+                }
+                try {
+                    future.attemptSucceeded(sourceQuery.call());
+                } catch (Exception e) {
+                    future.attemptFailed(e);
+                }
+            }
+        };
+
+        future.attemptStarted();
+        try {
+            executor.execute(hedge ? SourceBulkheads.rejectWhenSaturated(attempt) : attempt);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (hedge) {
+                logger.debug("Source {} is saturated, skipping hedged query.", source.getId());
+                future.attemptFailed(new SourceUnavailableException("Source \""
+                        + source.getId() + "\" has too many queries in progress"));
+            } else {
+                future.attemptFailed(createSaturatedException(source));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the delay after which a second attempt of a source query is started, from the 95th
+     * percentile of the source's observed latency, bounded below by the configured minimum.
+     * 
+     * @return the delay in milliseconds, or -1 if not enough queries have been observed
+     */
+    private long getHedgeDelay(String sourceId) {
+        long percentile = latencyTracker.getPercentile(sourceId, HEDGE_PERCENTILE);
+        if (percentile < 0) {
+            return -1;
+        }
+        return Math.max(percentile, hedgeMinimumDelayMillis);
+    }
+
+    /**
+     * Gets the deadline of a source query from the configured percentile of the source's observed
+     * latency, bounded below by the configured minimum and above by the query's own timeout.
+     * 
+     * @return the deadline in milliseconds, or -1 if there is none
+     */
+    private long getAdaptiveTimeout(String sourceId, long timeoutMillis) {
+        long percentile = latencyTracker.getPercentile(sourceId, adaptiveTimeoutPercentile);
+        if (percentile < 0) {
+            return -1;
+        }
+
+        long deadline = Math.max(percentile, adaptiveTimeoutMinimumMillis);
+        if (timeoutMillis > 0) {
+            deadline = Math.min(deadline, timeoutMillis);
+        }
+        return deadline;
+    }
+
+    /**
+     * Reports that a source query did not respond in time, which counts as a failure of the
+     * source for its circuit breaker. Monitors call this for each source they stop waiting for.
+     * 
+     * @param future
+     *            the {@link Future} of the source query, as passed to the monitor
+     */
+    protected void sourceTimedOut(Future<SourceResponse> future) {
+        CallableSourceResponse sourceQuery = breakerQueries.remove(future);
+        if (sourceQuery != null) {
+            sourceQuery.timedOut();
+        }
+    }
+
+    private SourceUnavailableException createSaturatedException(Source source) {
+        logger.warn("Source {} is saturated, query will not be executed.", source.getId());
+        return new SourceUnavailableException("Source \"" + source.getId()
+                + "\" has too many queries in progress");
+    }
+
+    /**
+     * Gets the {@link FederationCursor} requested by the {@link QueryRequest}, if any.
+     * 
+     * @return the {@link FederationCursor}, or {@code null} if cursor based paging was not
+     *         requested or the continuation token is invalid
+     */
+    private FederationCursor getCursor(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        if (properties == null || !properties.containsKey(Constants.FEDERATION_CURSOR)) {
+            return null;
+        }
+
+        Serializable token = properties.get(Constants.FEDERATION_CURSOR);
+        try {
+            return FederationCursor.parse(token == null ? null : token.toString());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring invalid federation cursor, falling back to offset paging.", e);
+            return null;
+        }
+    }
+
     private Query getModifiedQuery(Query originalQuery, int numberOfSources, int offset,
             int pageSize) {
 
@@ -265,17 +695,68 @@ private class CallableSourceResponse implements Callable<SourceResponse> {
 
         private Map<String, Serializable> properties = null;
 
+        private Map<Result, String> resultSources = null;
+
+        private final long submitted = System.currentTimeMillis();
+
+        private final AtomicBoolean outcomeRecorded = new AtomicBoolean(false);
+
+        /**
+         * @param resultSources
+         *            map in which each result of the source is recorded, may be {@code null}
+         */
         public CallableSourceResponse(Source source, Query query,
-                Map<String, Serializable> properties) {
+                Map<String, Serializable> properties, Map<Result, String> resultSources) {
             this.source = source;
             this.query = query;
             this.properties = properties;
+            this.resultSources = resultSources;
         }
 
         @Override
         public SourceResponse call() throws Exception {
-            return source.query(new QueryRequestImpl(query, properties));
+            long start = System.currentTimeMillis();
+            SourceResponse response;
+            try {
+                response = source.query(new QueryRequestImpl(query, properties));
+            } catch (Exception e) {
+                recordOutcome(true, System.currentTimeMillis() - start);
+                throw e;
+            }
+
+            long elapsed = System.currentTimeMillis() - start;
+            latencyTracker.record(source.getId(), elapsed);
+            recordOutcome(false, elapsed);
+            if (resultSources != null && response != null && response.getResults() != null) {
+                for (Result result : response.getResults()) {
+                    resultSources.put(result, source.getId());
+                }
+            }
+            return response;
         };
+
+        /**
+         * Records a failure for the source when the query was abandoned because it did not
+         * respond in time.
+         */
+        void timedOut() {
+            recordOutcome(true, System.currentTimeMillis() - submitted);
+        }
+
+        /**
+         * Reports the outcome of the query to the circuit breaker, once per query regardless of
+         * hedged attempts or timeouts.
+         */
+        private void recordOutcome(boolean failed, long durationMillis) {
+            if (!circuitBreakerEnabled || !outcomeRecorded.compareAndSet(false, true)) {
+                return;
+            }
+            if (failed) {
+                circuitBreaker.onFailure(source.getId(), durationMillis);
+            } else {
+                circuitBreaker.onSuccess(source.getId(), durationMillis);
+            }
+        }
     }
 
     private class OffsetResultHandler implements Runnable {
@@ -299,17 +780,9 @@ private OffsetResultHandler(QueryResponseImpl originalResults,
 
         @Override
         public void run() {
-            int queryResultIndex = 1;
-            int resultsSent = 0;
-            Result result;
-
-            while (resultsSent < pageSize && originalResults.hasMoreResults()
-                    && (result = originalResults.take()) != null) {
-                if (queryResultIndex >= offset) {
-                    offsetResultQueue.addResult(result, false);
-                    resultsSent++;
-                }
-                queryResultIndex++;
+            List<Result> results = originalResults.take((long) offset - 1 + pageSize);
+            if (results.size() >= offset) {
+                offsetResultQueue.addResults(results.subList(offset - 1, results.size()), false);
             }
 
             logger.debug("Closing Queue and setting the total count");
@@ -318,6 +791,336 @@ public void run() {
         }
     }
 
+    private class ProgressiveResultHandler implements Runnable {
+
+        private QueryResponseImpl originalResults = null;
+
+        private QueryResponseImpl firstResults = null;
+
+        private long deadline = 0;
+
+        private String owner = null;
+
+        private ProgressiveResultHandler(QueryResponseImpl originalResults,
+                QueryResponseImpl firstResults, long deadline, String owner) {
+            this.originalResults = originalResults;
+            this.firstResults = firstResults;
+            this.deadline = deadline;
+            this.owner = owner;
+        }
+
+        @Override
+        public void run() {
+            long end = System.currentTimeMillis() + deadline;
+            long remaining = deadline;
+
+            while (remaining > 0 && originalResults.hasMoreResults()) {
+                Result result = originalResults.poll(remaining);
+                if (result != null) {
+                    List<Result> results = new ArrayList<Result>();
+                    results.add(result);
+                    // Forward whatever else has already arrived in one batch
+                    while ((result = originalResults.poll()) != null) {
+                        results.add(result);
+                    }
+                    firstResults.addResults(results, false);
+                }
+                remaining = end - System.currentTimeMillis();
+            }
+
+            firstResults.setHits(originalResults.getHits());
+            if (originalResults.hasMoreResults()) {
+                String continuation = continuations.register(originalResults, owner);
+                logger.debug("Deadline of {} ms reached, holding the remaining results", deadline);
+                firstResults.getProperties().put(Constants.QUERY_CONTINUATION, continuation);
+            } else {
+                firstResults.getProcessingDetails().addAll(originalResults.getProcessingDetails());
+            }
+            firstResults.closeResultQueue();
+        }
+    }
+
+    private class CursorResultHandler implements Runnable {
+
+        private QueryResponseImpl originalResults = null;
+
+        private QueryResponseImpl cursorResultQueue = null;
+
+        private int pageSize = 0;
+
+        private FederationCursor cursor = null;
+
+        private Map<Result, String> resultSources = null;
+
+        private CursorResultHandler(QueryResponseImpl originalResults,
+                QueryResponseImpl cursorResultQueue, int pageSize, FederationCursor cursor,
+                Map<Result, String> resultSources) {
+            this.originalResults = originalResults;
+            this.cursorResultQueue = cursorResultQueue;
+            this.pageSize = pageSize > 0 ? pageSize : Integer.MAX_VALUE;
+            this.cursor = cursor;
+            this.resultSources = resultSources;
+        }
+
+        @Override
+        public void run() {
+            Map<String, Integer> returned = new HashMap<String, Integer>();
+            List<Result> results = originalResults.take(pageSize);
+            cursorResultQueue.addResults(results, false);
+
+            for (Result result : results) {
+                String sourceId = resultSources.get(result);
+                if (sourceId != null) {
+                    Integer count = returned.get(sourceId);
+                    returned.put(sourceId, count == null ? 1 : count + 1);
+                } else {
+                    logger.debug("Unable to attribute result to a queried source");
+                }
+            }
+
+            logger.debug("Closing Queue and setting the total count and next cursor");
+            cursorResultQueue.setHits(originalResults.getHits());
+            cursorResultQueue.getProcessingDetails().addAll(originalResults.getProcessingDetails());
+            cursorResultQueue.getProperties().putAll(originalResults.getProperties());
+            cursorResultQueue.getProperties().put(Constants.FEDERATION_CURSOR,
+                    cursor.advance(returned).toString());
+            cursorResultQueue.closeResultQueue();
+        }
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param sourceMaxConcurrency
+     *            the maximum number of concurrent queries against each source, 0 to run all source
+     *            queries on the shared federation pool
+     */
+    public void setSourceMaxConcurrency(int sourceMaxConcurrency) {
+        logger.debug("New source max concurrency: " + sourceMaxConcurrency);
+        this.sourceMaxConcurrency = sourceMaxConcurrency;
+        configureSourceBulkheads();
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param sourceQueueDepth
+     *            the maximum number of queries waiting for a thread of each source
+     */
+    public void setSourceQueueDepth(int sourceQueueDepth) {
+        logger.debug("New source queue depth: " + sourceQueueDepth);
+        this.sourceQueueDepth = sourceQueueDepth;
+        configureSourceBulkheads();
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param sourceRejectionPolicy
+     *            what to do with a query when its source is saturated, either
+     *            {@link SourceBulkheads#ABORT_POLICY} to fail it immediately or
+     *            {@link SourceBulkheads#CALLER_RUNS_POLICY} to run it on the requesting thread
+     */
+    public void setSourceRejectionPolicy(String sourceRejectionPolicy) {
+        logger.debug("New source rejection policy: " + sourceRejectionPolicy);
+        this.sourceRejectionPolicy = sourceRejectionPolicy;
+        configureSourceBulkheads();
+    }
+
+    /**
+     * Records the per source executor settings, which take effect as each source is next queried,
+     * so a configuration update setting them one at a time replaces each executor only once.
+     */
+    private void configureSourceBulkheads() {
+        sourceBulkheads.configure(sourceMaxConcurrency, sourceQueueDepth, sourceRejectionPolicy);
+    }
+
+    /**
+     * Shuts down the per source executors, letting queued queries complete, and the timers of
+     * adaptive source queries. To be called via
+     * Spring/Blueprint when this strategy is destroyed.
+     */
+    public void destroy() {
+        sourceBulkheads.shutdown();
+        timerService.shutdownNow();
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param adaptiveTimeouts
+     *            {@code true} to give each source query a deadline derived from the source's
+     *            observed latency, rather than only the query's timeout
+     */
+    public void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+        logger.debug("New adaptive timeouts: " + adaptiveTimeouts);
+        this.adaptiveTimeouts = adaptiveTimeouts;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param adaptiveTimeoutPercentile
+     *            the percentile of a source's observed latency used as its deadline
+     */
+    public void setAdaptiveTimeoutPercentile(int adaptiveTimeoutPercentile) {
+        logger.debug("New adaptive timeout percentile: " + adaptiveTimeoutPercentile);
+        if (adaptiveTimeoutPercentile > 0 && adaptiveTimeoutPercentile <= 100) {
+            this.adaptiveTimeoutPercentile = adaptiveTimeoutPercentile;
+        } else {
+            this.adaptiveTimeoutPercentile = DEFAULT_ADAPTIVE_TIMEOUT_PERCENTILE;
+        }
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param adaptiveTimeoutMinimumMillis
+     *            the shortest deadline given to a source query when using adaptive timeouts
+     */
+    public void setAdaptiveTimeoutMinimumMillis(long adaptiveTimeoutMinimumMillis) {
+        logger.debug("New adaptive timeout minimum: " + adaptiveTimeoutMinimumMillis);
+        this.adaptiveTimeoutMinimumMillis = Math.max(0, adaptiveTimeoutMinimumMillis);
+    }
+
+    /**
+     * @return the {@link SourceCircuitBreaker} tracking the queries of this strategy
+     */
+    public SourceCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @return {@code true} if sources whose circuit is open are skipped
+     */
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitBreakerEnabled
+     *            {@code true} to stop querying sources that fail or are slow too often
+     */
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        logger.debug("New circuit breaker enabled: " + circuitBreakerEnabled);
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitFailureRateThreshold
+     *            percentage of failed recent queries at which a source's circuit opens
+     */
+    public void setCircuitFailureRateThreshold(int circuitFailureRateThreshold) {
+        logger.debug("New circuit failure rate threshold: " + circuitFailureRateThreshold);
+        circuitBreaker.setFailureRateThreshold(circuitFailureRateThreshold);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitSlowCallRateThreshold
+     *            percentage of slow recent queries at which a source's circuit opens
+     */
+    public void setCircuitSlowCallRateThreshold(int circuitSlowCallRateThreshold) {
+        logger.debug("New circuit slow call rate threshold: " + circuitSlowCallRateThreshold);
+        circuitBreaker.setSlowCallRateThreshold(circuitSlowCallRateThreshold);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitSlowCallDurationMillis
+     *            duration from which a source query counts as slow
+     */
+    public void setCircuitSlowCallDurationMillis(long circuitSlowCallDurationMillis) {
+        logger.debug("New circuit slow call duration: " + circuitSlowCallDurationMillis);
+        circuitBreaker.setSlowCallDurationMillis(circuitSlowCallDurationMillis);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitWindowSize
+     *            number of recent queries to a source over which the rates are computed
+     */
+    public void setCircuitWindowSize(int circuitWindowSize) {
+        logger.debug("New circuit window size: " + circuitWindowSize);
+        circuitBreaker.setWindowSize(circuitWindowSize);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitMinimumCalls
+     *            number of queries to a source before its circuit may open
+     */
+    public void setCircuitMinimumCalls(int circuitMinimumCalls) {
+        logger.debug("New circuit minimum calls: " + circuitMinimumCalls);
+        circuitBreaker.setMinimumCalls(circuitMinimumCalls);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitOpenDurationMillis
+     *            time a source is skipped after its circuit opens, before probe queries are sent
+     */
+    public void setCircuitOpenDurationMillis(long circuitOpenDurationMillis) {
+        logger.debug("New circuit open duration: " + circuitOpenDurationMillis);
+        circuitBreaker.setOpenDurationMillis(circuitOpenDurationMillis);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitHalfOpenCalls
+     *            number of probe queries deciding whether a source's circuit closes again
+     */
+    public void setCircuitHalfOpenCalls(int circuitHalfOpenCalls) {
+        logger.debug("New circuit half open calls: " + circuitHalfOpenCalls);
+        circuitBreaker.setHalfOpenCalls(circuitHalfOpenCalls);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param continuationTtlMillis
+     *            the time after which the remaining results of a progressive query are discarded
+     *            if they have not been fetched
+     */
+    public void setContinuationTtlMillis(long continuationTtlMillis) {
+        logger.debug("New continuation time-to-live: " + continuationTtlMillis);
+        continuations.setTtlMillis(continuationTtlMillis);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param hedgeRequests
+     *            {@code true} to send a second query to a source when the first one is slower
+     *            than 95% of recent queries to the source, using whichever response comes first
+     */
+    public void setHedgeRequests(boolean hedgeRequests) {
+        logger.debug("New hedge requests: " + hedgeRequests);
+        this.hedgeRequests = hedgeRequests;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param hedgeMinimumDelayMillis
+     *            the shortest time to wait for a source query before sending a second one, so that
+     *            sources that usually respond instantly are not queried twice
+     */
+    public void setHedgeMinimumDelayMillis(long hedgeMinimumDelayMillis) {
+        logger.debug("New hedge minimum delay: " + hedgeMinimumDelayMillis);
+        this.hedgeMinimumDelayMillis = Math.max(0, hedgeMinimumDelayMillis);
+    }
+
     /**
      * To be set via Spring/Blueprint
      * 
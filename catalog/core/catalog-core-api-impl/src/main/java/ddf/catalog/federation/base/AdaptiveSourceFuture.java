@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ddf.catalog.operation.SourceResponse;
+
+/**
+ * The {@link Future} of a source query that may be attempted more than once (hedged) and may be
+ * failed by a deadline before any attempt completes. The first attempt to succeed completes the
+ * future; it fails when every attempt has failed or when its deadline fires. Once done, the future
+ * adds itself to its completion queue, like a task submitted through a
+ * {@link java.util.concurrent.CompletionService}.
+ */
+class AdaptiveSourceFuture extends FutureTask<SourceResponse> {
+
+    private static final Callable<SourceResponse> NOT_RUNNABLE = new Callable<SourceResponse>() {
+        @Override
+        public SourceResponse call() throws Exception {
+            throw new IllegalStateException("Adaptive source queries are completed by attempts");
+        }
+    };
+
+    private final Queue<Future<SourceResponse>> completionQueue;
+
+    private final AtomicInteger pendingAttempts = new AtomicInteger();
+
+    private final List<Future<?>> timers = new CopyOnWriteArrayList<Future<?>>();
+
+    AdaptiveSourceFuture(Queue<Future<SourceResponse>> completionQueue) {
+        super(NOT_RUNNABLE);
+        this.completionQueue = completionQueue;
+    }
+
+    /**
+     * Registers a new attempt, which must later call {@link #attemptSucceeded(SourceResponse)} or
+     * {@link #attemptFailed(Throwable)}.
+     */
+    void attemptStarted() {
+        pendingAttempts.incrementAndGet();
+    }
+
+    void attemptSucceeded(SourceResponse response) {
+        pendingAttempts.decrementAndGet();
+        set(response);
+    }
+
+    void attemptFailed(Throwable failure) {
+        if (pendingAttempts.decrementAndGet() <= 0) {
+            setException(failure);
+        }
+    }
+
+    /**
+     * Fails the query regardless of pending attempts, for instance when its deadline has passed.
+     */
+    void expire(Throwable failure) {
+        setException(failure);
+    }
+
+    /**
+     * Registers a scheduled task to be cancelled once this future is done.
+     */
+    void addTimer(Future<?> timer) {
+        timers.add(timer);
+        if (isDone()) {
+            timer.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        // completed by attempts only
+    }
+
+    @Override
+    protected void done() {
+        for (Future<?> timer : timers) {
+            timer.cancel(false);
+        }
+        completionQueue.add(this);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Continuation state for cursor based paging of federated queries. The cursor records, for each
+ * source, how many of its results have already been returned in previous pages, so the next page
+ * only needs to request one page of results from each source, starting right after the last one
+ * it contributed.
+ * <p>
+ * The cursor is carried between requests as an opaque token (see
+ * {@link ddf.catalog.Constants#FEDERATION_CURSOR}).
+ */
+public class FederationCursor {
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String ENTRY_SEPARATOR = "&";
+
+    private static final String VALUE_SEPARATOR = "=";
+
+    private final Map<String, Integer> consumed = new TreeMap<String, Integer>();
+
+    /**
+     * Parses a continuation token. A {@code null} or blank token yields a cursor positioned at the
+     * beginning of every source.
+     * 
+     * @param token
+     *            the continuation token
+     * @return the {@link FederationCursor}
+     * @throws IllegalArgumentException
+     *             if the token is malformed
+     */
+    public static FederationCursor parse(String token) {
+        FederationCursor cursor = new FederationCursor();
+        if (StringUtils.isBlank(token)) {
+            return cursor;
+        }
+
+        try {
+            for (String entry : token.split(ENTRY_SEPARATOR)) {
+                String[] pair = entry.split(VALUE_SEPARATOR);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Malformed federation cursor: " + token);
+                }
+                int offset = Integer.parseInt(pair[1]);
+                if (offset < 0) {
+                    throw new IllegalArgumentException("Malformed federation cursor: " + token);
+                }
+                cursor.consumed.put(URLDecoder.decode(pair[0], ENCODING), offset);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed federation cursor: " + token, e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return cursor;
+    }
+
+    /**
+     * @param sourceId
+     *            the id of the source
+     * @return the number of results from the source that were returned in previous pages
+     */
+    public int getConsumed(String sourceId) {
+        Integer offset = consumed.get(sourceId);
+        return offset == null ? 0 : offset;
+    }
+
+    /**
+     * Creates the cursor for the next page, advancing each source by the number of its results
+     * returned in the current page.
+     * 
+     * @param returned
+     *            the number of results returned in the current page, by source id
+     * @return the {@link FederationCursor} for the next page
+     */
+    public FederationCursor advance(Map<String, Integer> returned) {
+        FederationCursor next = new FederationCursor();
+        next.consumed.putAll(consumed);
+        for (Entry<String, Integer> entry : returned.entrySet()) {
+            next.consumed.put(entry.getKey(), getConsumed(entry.getKey()) + entry.getValue());
+        }
+        return next;
+    }
+
+    /**
+     * @return the continuation token for this cursor
+     */
+    @Override
+    public String toString() {
+        StringBuilder token = new StringBuilder();
+        try {
+            for (Entry<String, Integer> entry : consumed.entrySet()) {
+                if (token.length() > 0) {
+                    token.append(ENTRY_SEPARATOR);
+                }
+                token.append(URLEncoder.encode(entry.getKey(), ENCODING)).append(VALUE_SEPARATOR)
+                        .append(entry.getValue());
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return token.toString();
+    }
+}
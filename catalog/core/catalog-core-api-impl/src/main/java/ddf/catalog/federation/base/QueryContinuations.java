@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+/**
+ * Holds the results of progressive queries that had not arrived by the query's deadline, so that
+ * they can be fetched later with the continuation handle returned alongside the first results.
+ * Only the subject that ran a query can fetch its continuation. Continuations that are not fetched
+ * within their time-to-live are discarded.
+ */
+public class QueryContinuations {
+
+    private static final long DEFAULT_TTL_MILLIS = 300000;
+
+    private final ConcurrentMap<String, Continuation> continuations = new ConcurrentHashMap<String, Continuation>();
+
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    /**
+     * Registers the remaining results of a query.
+     * 
+     * @param remainingResults
+     *            the response still receiving the query's results
+     * @param owner
+     *            the qualifier of the subject that ran the query, {@code null} if it cannot be
+     *            determined, in which case the results cannot be fetched
+     * @return the handle with which the results can be fetched
+     */
+    public String register(QueryResponseImpl remainingResults, String owner) {
+        purgeExpired();
+        String handle = UUID.randomUUID().toString();
+        continuations.put(handle, new Continuation(remainingResults, owner,
+                System.currentTimeMillis() + ttlMillis));
+        return handle;
+    }
+
+    /**
+     * Removes the remaining results registered under a handle.
+     * 
+     * @param handle
+     *            the continuation handle
+     * @param owner
+     *            the qualifier of the subject fetching the results
+     * @return the response receiving the remaining results, or null if the handle is unknown, has
+     *         expired or was registered by another subject
+     */
+    public QueryResponseImpl remove(String handle, String owner) {
+        Continuation continuation = handle == null ? null : continuations.get(handle);
+        // another subject's continuation is left in place for its owner
+        if (continuation == null || continuation.owner == null
+                || !continuation.owner.equals(owner) || !continuations.remove(handle, continuation)
+                || continuation.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return continuation.remainingResults;
+    }
+
+    /**
+     * @param ttlMillis
+     *            the time after which an unfetched continuation is discarded
+     */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis > 0 ? ttlMillis : DEFAULT_TTL_MILLIS;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Continuation>> entries = continuations.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue().isExpired(now)) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static class Continuation {
+
+        private final QueryResponseImpl remainingResults;
+
+        private final String owner;
+
+        private final long expiration;
+
+        Continuation(QueryResponseImpl remainingResults, String owner, long expiration) {
+            this.remainingResults = remainingResults;
+            this.owner = owner;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired(long now) {
+            return now > expiration;
+        }
+    }
+}
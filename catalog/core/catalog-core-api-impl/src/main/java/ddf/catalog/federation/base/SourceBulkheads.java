@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains a bounded executor per source so that a slow or unresponsive source can only tie up
+ * its own threads, instead of growing the shared federation pool without limit. Each executor runs
+ * at most the configured number of concurrent queries against its source and queues at most the
+ * configured number of pending ones; further queries are handled by the configured rejection
+ * policy.
+ * <p>
+ * A new configuration only takes effect as each source is next queried, when its executor is
+ * replaced by one with the new settings. Queries handed to an executor that was replaced meanwhile
+ * go to its replacement, so they are neither rejected as saturated nor dropped.
+ */
+public class SourceBulkheads {
+
+    /**
+     * Rejection policy that fails a query immediately when its source is saturated.
+     */
+    public static final String ABORT_POLICY = "abort";
+
+    /**
+     * Rejection policy that runs a query on the submitting thread when its source is saturated.
+     */
+    public static final String CALLER_RUNS_POLICY = "callerRuns";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceBulkheads.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ConcurrentMap<String, SourceExecutor> executors = new ConcurrentHashMap<String, SourceExecutor>();
+
+    private volatile Settings settings = new Settings(0, 0, ABORT_POLICY);
+
+    private volatile boolean shutDown = false;
+
+    /**
+     * @return true if per source executors are configured, false if queries should use the shared
+     *         federation pool
+     */
+    public boolean isEnabled() {
+        return settings.maxConcurrency > 0;
+    }
+
+    /**
+     * Gets the executor dedicated to a source.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @return the {@link Executor} for the source
+     */
+    public Executor getExecutor(final String sourceId) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable query) {
+                SourceBulkheads.this.execute(sourceId, query);
+            }
+        };
+    }
+
+    /**
+     * Runs a query on the executor of its source, creating or replacing the executor if needed.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @param query
+     *            the query to run
+     * @throws RejectedExecutionException
+     *             if the source is saturated and the query is not to be run on the calling thread
+     */
+    public void execute(String sourceId, Runnable query) {
+        while (true) {
+            if (shutDown) {
+                // nothing is left to run the query, so it is run here unless it must not be
+                if (query instanceof OptionalQuery) {
+                    throw new RejectedExecutionException("Source executors are shut down");
+                }
+                query.run();
+                return;
+            }
+
+            try {
+                getCurrentExecutor(sourceId).execute(query);
+                return;
+            } catch (ExecutorShutDownException e) {
+                LOGGER.debug("Executor for source {} was replaced, resubmitting query", sourceId);
+            }
+        }
+    }
+
+    private SourceExecutor getCurrentExecutor(String sourceId) {
+        Settings current = settings;
+        SourceExecutor executor = executors.get(sourceId);
+        while (executor == null || executor.settings != current) {
+            SourceExecutor newExecutor = createExecutor(sourceId, current);
+            boolean swapped = (executor == null) ? executors.putIfAbsent(sourceId,
+                    newExecutor) == null : executors.replace(sourceId, executor, newExecutor);
+            if (swapped) {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+                executor = newExecutor;
+            } else {
+                // another thread swapped it first
+                newExecutor.shutdown();
+                executor = executors.get(sourceId);
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Wraps a query so that it is rejected with a {@link RejectedExecutionException} when its
+     * source is saturated, regardless of the rejection policy. This is for queries submitted from
+     * threads that must not run them, such as timer threads.
+     * 
+     * @param query
+     *            the query to run
+     * @return the query, to be submitted to an executor of this class
+     */
+    public static Runnable rejectWhenSaturated(Runnable query) {
+        return new OptionalQuery(query);
+    }
+
+    /**
+     * Reconfigures the executors. Existing executors are replaced when their source is next
+     * queried, and shut down once their queued queries complete, so the settings may be changed
+     * one at a time without restarting the executors for each.
+     * 
+     * @param maxConcurrency
+     *            the maximum number of concurrent queries per source, 0 to disable per source
+     *            executors
+     * @param queueDepth
+     *            the maximum number of queued queries per source
+     * @param rejectionPolicy
+     *            {@link #ABORT_POLICY} or {@link #CALLER_RUNS_POLICY}
+     */
+    public void configure(int maxConcurrency, int queueDepth, String rejectionPolicy) {
+        settings = new Settings(Math.max(0, maxConcurrency), Math.max(0, queueDepth),
+                CALLER_RUNS_POLICY.equals(rejectionPolicy) ? CALLER_RUNS_POLICY : ABORT_POLICY);
+    }
+
+    /**
+     * Shuts down all executors, letting queued queries complete. Queries submitted afterwards are
+     * run on the calling thread.
+     */
+    public void shutdown() {
+        shutDown = true;
+        for (String sourceId : executors.keySet()) {
+            ThreadPoolExecutor executor = executors.remove(sourceId);
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private SourceExecutor createExecutor(final String sourceId, Settings settings) {
+        LOGGER.debug("Creating executor for source {} with {} threads and queue depth {}",
+                new Object[] {sourceId, settings.maxConcurrency, settings.queueDepth});
+
+        RejectedExecutionHandler handler = new SourceRejectionHandler(
+                CALLER_RUNS_POLICY.equals(settings.rejectionPolicy)
+                        ? new ThreadPoolExecutor.CallerRunsPolicy()
+                        : new ThreadPoolExecutor.AbortPolicy());
+
+        SourceExecutor executor = new SourceExecutor(sourceId, settings, handler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The settings executors are created with, compared by identity to tell whether an executor
+     * is current.
+     */
+    private static class Settings {
+
+        private final int maxConcurrency;
+
+        private final int queueDepth;
+
+        private final String rejectionPolicy;
+
+        Settings(int maxConcurrency, int queueDepth, String rejectionPolicy) {
+            this.maxConcurrency = maxConcurrency;
+            this.queueDepth = queueDepth;
+            this.rejectionPolicy = rejectionPolicy;
+        }
+    }
+
+    private static class SourceExecutor extends ThreadPoolExecutor {
+
+        private final Settings settings;
+
+        SourceExecutor(String sourceId, Settings settings, RejectedExecutionHandler handler) {
+            // A zero capacity queue is not allowed, so a queue depth of 0 still admits one
+            // pending query
+            super(settings.maxConcurrency, settings.maxConcurrency, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(Math.max(1,
+                            settings.queueDepth)), new SourceThreadFactory(sourceId), handler);
+            this.settings = settings;
+        }
+    }
+
+    private static class SourceThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private final String sourceId;
+
+        SourceThreadFactory(String sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = delegate.newThread(runnable);
+            thread.setName("federation-" + sourceId + "-" + threadNumber.getAndIncrement());
+            return thread;
+        }
+    }
+
+    private static class OptionalQuery implements Runnable {
+
+        private final Runnable query;
+
+        OptionalQuery(Runnable query) {
+            this.query = query;
+        }
+
+        @Override
+        public void run() {
+            query.run();
+        }
+    }
+
+    private static class SourceRejectionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler policy;
+
+        SourceRejectionHandler(RejectedExecutionHandler policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                // neither policy would run it, the caller resubmits it to the replacement
+                throw new ExecutorShutDownException();
+            }
+            if (runnable instanceof OptionalQuery) {
+                throw new RejectedExecutionException("Source executor is saturated");
+            }
+            policy.rejectedExecution(runnable, executor);
+        }
+    }
+
+    private static class ExecutorShutDownException extends RejectedExecutionException {
+
+        private static final long serialVersionUID = 1L;
+
+        ExecutorShutDownException() {
+            super("Source executor is shut down");
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the outcome of recent queries to each source and stops sending queries to a source once
+ * too many of them fail or are slow. A source's circuit is {@link State#CLOSED} while it behaves,
+ * {@link State#OPEN} for a while after it trips, during which its queries fail immediately, and
+ * then {@link State#HALF_OPEN}, where a few probe queries decide whether it closes again or trips
+ * anew.
+ */
+public class SourceCircuitBreaker {
+
+    /**
+     * The state of the circuit of a source.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceCircuitBreaker.class);
+
+    private final ConcurrentMap<String, SourceCircuit> circuits = new ConcurrentHashMap<String, SourceCircuit>();
+
+    private volatile int failureRateThreshold = 50;
+
+    private volatile int slowCallRateThreshold = 100;
+
+    private volatile long slowCallDurationMillis = 60000;
+
+    private volatile int windowSize = 20;
+
+    private volatile int minimumCalls = 10;
+
+    private volatile long openDurationMillis = 30000;
+
+    private volatile int halfOpenCalls = 3;
+
+    /**
+     * Checks whether a source's circuit would let a query through, without changing its state.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @return false if the source's circuit is open
+     */
+    public boolean isAvailable(String sourceId) {
+        SourceCircuit circuit = sourceId == null ? null : circuits.get(sourceId);
+        return circuit == null || circuit.isAvailable(System.currentTimeMillis());
+    }
+
+    /**
+     * Requests permission to send a query to a source. Every permitted query must later be
+     * reported with {@link #onSuccess(String, long)} or {@link #onFailure(String, long)}.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @return false if the query should not be sent
+     */
+    public boolean tryAcquire(String sourceId) {
+        return sourceId == null || getCircuit(sourceId).tryAcquire(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a successful query.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @param durationMillis
+     *            the time the source took to respond
+     */
+    public void onSuccess(String sourceId, long durationMillis) {
+        if (sourceId != null) {
+            getCircuit(sourceId).record(false, durationMillis >= slowCallDurationMillis,
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records a failed query.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @param durationMillis
+     *            the time until the query failed
+     */
+    public void onFailure(String sourceId, long durationMillis) {
+        if (sourceId != null) {
+            getCircuit(sourceId).record(true, durationMillis >= slowCallDurationMillis,
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param sourceId
+     *            the id of the source
+     * @return the current {@link State} of the source's circuit
+     */
+    public State getState(String sourceId) {
+        SourceCircuit circuit = sourceId == null ? null : circuits.get(sourceId);
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    /**
+     * Closes the circuit of a source and forgets its recorded queries.
+     * 
+     * @param sourceId
+     *            the id of the source
+     */
+    public void reset(String sourceId) {
+        circuits.remove(sourceId);
+    }
+
+    /**
+     * @param failureRateThreshold
+     *            percentage of failed queries in the window at which a circuit opens
+     */
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * @param slowCallRateThreshold
+     *            percentage of slow queries in the window at which a circuit opens
+     */
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * @param slowCallDurationMillis
+     *            duration from which a query counts as slow
+     */
+    public void setSlowCallDurationMillis(long slowCallDurationMillis) {
+        this.slowCallDurationMillis = slowCallDurationMillis;
+    }
+
+    /**
+     * @param windowSize
+     *            number of most recent queries over which the rates are computed
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize > 0) {
+            this.windowSize = windowSize;
+            circuits.clear();
+        }
+    }
+
+    /**
+     * @param minimumCalls
+     *            number of queries to record before a circuit may open
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = Math.max(1, minimumCalls);
+    }
+
+    /**
+     * @param openDurationMillis
+     *            time a circuit stays open before letting probe queries through
+     */
+    public void setOpenDurationMillis(long openDurationMillis) {
+        this.openDurationMillis = Math.max(0, openDurationMillis);
+    }
+
+    /**
+     * @param halfOpenCalls
+     *            number of probe queries that decide whether a half open circuit closes
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    private SourceCircuit getCircuit(String sourceId) {
+        SourceCircuit circuit = circuits.get(sourceId);
+        if (circuit == null) {
+            SourceCircuit newCircuit = new SourceCircuit(sourceId, windowSize);
+            circuit = circuits.putIfAbsent(sourceId, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+        return circuit;
+    }
+
+    private class SourceCircuit {
+
+        private final String sourceId;
+
+        private final boolean[] failures;
+
+        private final boolean[] slowCalls;
+
+        private int count = 0;
+
+        private int next = 0;
+
+        private State state = State.CLOSED;
+
+        private long stateChanged = 0;
+
+        private int probesStarted = 0;
+
+        SourceCircuit(String sourceId, int size) {
+            this.sourceId = sourceId;
+            this.failures = new boolean[size];
+            this.slowCalls = new boolean[size];
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return state != State.OPEN || now - stateChanged >= openDurationMillis;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            switch (state) {
+            case OPEN:
+                if (now - stateChanged < openDurationMillis) {
+                    return false;
+                }
+                transition(State.HALF_OPEN, now);
+                break;
+            case HALF_OPEN:
+                // Probes whose outcome never came back must not keep the circuit half open forever
+                if (probesStarted >= halfOpenCalls && now - stateChanged >= openDurationMillis) {
+                    transition(State.HALF_OPEN, now);
+                }
+                break;
+            default:
+                return true;
+            }
+
+            if (probesStarted >= halfOpenCalls) {
+                return false;
+            }
+            probesStarted++;
+            return true;
+        }
+
+        synchronized void record(boolean failed, boolean slow, long now) {
+            if (state == State.OPEN) {
+                return;
+            }
+
+            failures[next] = failed;
+            slowCalls[next] = slow;
+            next = (next + 1) % failures.length;
+            if (count < failures.length) {
+                count++;
+            }
+
+            int callsNeeded = state == State.HALF_OPEN ? Math.min(halfOpenCalls, failures.length)
+                    : minimumCalls;
+            if (count < callsNeeded) {
+                return;
+            }
+
+            int failedCalls = 0;
+            int slowCallCount = 0;
+            for (int i = 1; i <= count; i++) {
+                int index = (next - i + failures.length) % failures.length;
+                if (failures[index]) {
+                    failedCalls++;
+                }
+                if (slowCalls[index]) {
+                    slowCallCount++;
+                }
+            }
+
+            if (failedCalls * 100 >= failureRateThreshold * count
+                    || slowCallCount * 100 >= slowCallRateThreshold * count) {
+                LOGGER.warn("Opening circuit of source {} after {} failed and {} slow of {} "
+                        + "queries", sourceId, failedCalls, slowCallCount, count);
+                transition(State.OPEN, now);
+            } else if (state == State.HALF_OPEN) {
+                LOGGER.info("Closing circuit of source {}", sourceId);
+                transition(State.CLOSED, now);
+            }
+        }
+
+        private void transition(State newState, long now) {
+            LOGGER.debug("Circuit of source {} is now {}", sourceId, newState);
+            state = newState;
+            stateChanged = now;
+            probesStarted = 0;
+            count = 0;
+            next = 0;
+        }
+    }
+}
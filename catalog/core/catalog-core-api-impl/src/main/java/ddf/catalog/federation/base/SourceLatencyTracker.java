@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the latency distribution of recent queries to each source, from which per source
+ * deadlines and hedging delays are derived.
+ */
+public class SourceLatencyTracker {
+
+    private static final int SAMPLE_SIZE = 256;
+
+    /**
+     * Percentiles are not reported until a source has answered this many queries.
+     */
+    private static final int MINIMUM_SAMPLES = 20;
+
+    private final ConcurrentMap<String, LatencySamples> samples = new ConcurrentHashMap<String, LatencySamples>();
+
+    /**
+     * Records the latency of a successful query.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @param latencyMillis
+     *            the time the source took to respond
+     */
+    public void record(String sourceId, long latencyMillis) {
+        if (sourceId == null) {
+            return;
+        }
+        LatencySamples sourceSamples = samples.get(sourceId);
+        if (sourceSamples == null) {
+            LatencySamples newSamples = new LatencySamples();
+            sourceSamples = samples.putIfAbsent(sourceId, newSamples);
+            if (sourceSamples == null) {
+                sourceSamples = newSamples;
+            }
+        }
+        sourceSamples.add(latencyMillis);
+    }
+
+    /**
+     * Gets a percentile of the recent latencies of a source.
+     * 
+     * @param sourceId
+     *            the id of the source
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the latency in milliseconds, or -1 if not enough queries have been observed
+     */
+    public long getPercentile(String sourceId, double percentile) {
+        LatencySamples sourceSamples = sourceId == null ? null : samples.get(sourceId);
+        return sourceSamples == null ? -1 : sourceSamples.getPercentile(percentile);
+    }
+
+    /**
+     * Forgets the latencies observed for a source.
+     * 
+     * @param sourceId
+     *            the id of the source
+     */
+    public void reset(String sourceId) {
+        samples.remove(sourceId);
+    }
+
+    private static class LatencySamples {
+
+        private final long[] latencies = new long[SAMPLE_SIZE];
+
+        private int count = 0;
+
+        private int next = 0;
+
+        synchronized void add(long latencyMillis) {
+            latencies[next] = latencyMillis;
+            next = (next + 1) % SAMPLE_SIZE;
+            if (count < SAMPLE_SIZE) {
+                count++;
+            }
+        }
+
+        long getPercentile(double percentile) {
+            long[] sorted;
+            synchronized (this) {
+                if (count < MINIMUM_SAMPLES) {
+                    return -1;
+                }
+                sorted = Arrays.copyOf(latencies, count);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.filter.visitor.DefaultFilterVisitor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNil;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.identity.Identifier;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.Beyond;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Contains;
+import org.opengis.filter.spatial.Crosses;
+import org.opengis.filter.spatial.DWithin;
+import org.opengis.filter.spatial.Disjoint;
+import org.opengis.filter.spatial.DistanceBufferOperator;
+import org.opengis.filter.spatial.Equals;
+import org.opengis.filter.spatial.Intersects;
+import org.opengis.filter.spatial.Overlaps;
+import org.opengis.filter.spatial.Touches;
+import org.opengis.filter.spatial.Within;
+import org.opengis.filter.temporal.After;
+import org.opengis.filter.temporal.AnyInteracts;
+import org.opengis.filter.temporal.Before;
+import org.opengis.filter.temporal.Begins;
+import org.opengis.filter.temporal.BegunBy;
+import org.opengis.filter.temporal.BinaryTemporalOperator;
+import org.opengis.filter.temporal.During;
+import org.opengis.filter.temporal.EndedBy;
+import org.opengis.filter.temporal.Ends;
+import org.opengis.filter.temporal.Meets;
+import org.opengis.filter.temporal.MetBy;
+import org.opengis.filter.temporal.OverlappedBy;
+import org.opengis.filter.temporal.TContains;
+import org.opengis.filter.temporal.TEquals;
+import org.opengis.filter.temporal.TOverlaps;
+
+/**
+ * Renders a {@link Filter} in a canonical form for {@link CanonicalQueryKey}. Unlike
+ * {@code toString()}, the form includes every parameter that changes the results of a filter,
+ * such as whether comparisons match case, and does not depend on the order of the operands of
+ * {@link And} and {@link Or}.
+ */
+final class CanonicalFilterVisitor extends DefaultFilterVisitor {
+
+    private static final CanonicalFilterVisitor INSTANCE = new CanonicalFilterVisitor();
+
+    private CanonicalFilterVisitor() {
+    }
+
+    /**
+     * @param filter
+     *            the {@link Filter} to render, may be {@code null}
+     * @return the canonical form of the filter
+     */
+    static String canonicalize(Filter filter) {
+        StringBuilder builder = new StringBuilder();
+        if (filter == null) {
+            INSTANCE.visitNullFilter(builder);
+        } else {
+            filter.accept(INSTANCE, builder);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Object visitNullFilter(Object data) {
+        return builder(data).append("NULL");
+    }
+
+    @Override
+    public Object visit(ExcludeFilter filter, Object data) {
+        return builder(data).append("EXCLUDE");
+    }
+
+    @Override
+    public Object visit(IncludeFilter filter, Object data) {
+        return builder(data).append("INCLUDE");
+    }
+
+    @Override
+    public Object visit(And filter, Object data) {
+        return children("AND", filter.getChildren(), data);
+    }
+
+    @Override
+    public Object visit(Or filter, Object data) {
+        return children("OR", filter.getChildren(), data);
+    }
+
+    @Override
+    public Object visit(Not filter, Object data) {
+        StringBuilder builder = builder(data).append("NOT(");
+        filter.getFilter().accept(this, builder);
+        return builder.append(')');
+    }
+
+    @Override
+    public Object visit(Id filter, Object data) {
+        List<String> ids = new ArrayList<String>();
+        for (Identifier identifier : filter.getIdentifiers()) {
+            ids.add(String.valueOf(identifier.getID()));
+        }
+        Collections.sort(ids);
+        return builder(data).append("ID").append(ids);
+    }
+
+    @Override
+    public Object visit(PropertyIsBetween filter, Object data) {
+        StringBuilder builder = builder(data).append("BETWEEN(");
+        expression(filter.getExpression(), builder).append(',');
+        expression(filter.getLowerBoundary(), builder).append(',');
+        return expression(filter.getUpperBoundary(), builder).append(')');
+    }
+
+    @Override
+    public Object visit(PropertyIsEqualTo filter, Object data) {
+        return comparison("EQ", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsNotEqualTo filter, Object data) {
+        return comparison("NEQ", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsGreaterThan filter, Object data) {
+        return comparison("GT", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsGreaterThanOrEqualTo filter, Object data) {
+        return comparison("GTE", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsLessThan filter, Object data) {
+        return comparison("LT", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsLessThanOrEqualTo filter, Object data) {
+        return comparison("LTE", filter, data);
+    }
+
+    @Override
+    public Object visit(PropertyIsLike filter, Object data) {
+        StringBuilder builder = builder(data).append("LIKE(");
+        expression(filter.getExpression(), builder).append(',').append(filter.getLiteral())
+                .append(',').append(filter.getWildCard()).append(',')
+                .append(filter.getSingleChar()).append(',').append(filter.getEscape())
+                .append(",matchCase=").append(filter.isMatchingCase());
+        return builder.append(')');
+    }
+
+    @Override
+    public Object visit(PropertyIsNull filter, Object data) {
+        StringBuilder builder = builder(data).append("NULL(");
+        return expression(filter.getExpression(), builder).append(')');
+    }
+
+    @Override
+    public Object visit(PropertyIsNil filter, Object data) {
+        StringBuilder builder = builder(data).append("NIL(");
+        expression(filter.getExpression(), builder).append(',').append(filter.getNilReason());
+        return builder.append(')');
+    }
+
+    @Override
+    public Object visit(BBOX filter, Object data) {
+        return spatial("BBOX", filter, data);
+    }
+
+    @Override
+    public Object visit(Beyond filter, Object data) {
+        return distance("BEYOND", filter, data);
+    }
+
+    @Override
+    public Object visit(Contains filter, Object data) {
+        return spatial("CONTAINS", filter, data);
+    }
+
+    @Override
+    public Object visit(Crosses filter, Object data) {
+        return spatial("CROSSES", filter, data);
+    }
+
+    @Override
+    public Object visit(Disjoint filter, Object data) {
+        return spatial("DISJOINT", filter, data);
+    }
+
+    @Override
+    public Object visit(DWithin filter, Object data) {
+        return distance("DWITHIN", filter, data);
+    }
+
+    @Override
+    public Object visit(Equals filter, Object data) {
+        return spatial("EQUALS", filter, data);
+    }
+
+    @Override
+    public Object visit(Intersects filter, Object data) {
+        return spatial("INTERSECTS", filter, data);
+    }
+
+    @Override
+    public Object visit(Overlaps filter, Object data) {
+        return spatial("OVERLAPS", filter, data);
+    }
+
+    @Override
+    public Object visit(Touches filter, Object data) {
+        return spatial("TOUCHES", filter, data);
+    }
+
+    @Override
+    public Object visit(Within filter, Object data) {
+        return spatial("WITHIN", filter, data);
+    }
+
+    @Override
+    public Object visit(After filter, Object data) {
+        return temporal("AFTER", filter, data);
+    }
+
+    @Override
+    public Object visit(AnyInteracts filter, Object data) {
+        return temporal("ANYINTERACTS", filter, data);
+    }
+
+    @Override
+    public Object visit(Before filter, Object data) {
+        return temporal("BEFORE", filter, data);
+    }
+
+    @Override
+    public Object visit(Begins filter, Object data) {
+        return temporal("BEGINS", filter, data);
+    }
+
+    @Override
+    public Object visit(BegunBy filter, Object data) {
+        return temporal("BEGUNBY", filter, data);
+    }
+
+    @Override
+    public Object visit(During filter, Object data) {
+        return temporal("DURING", filter, data);
+    }
+
+    @Override
+    public Object visit(EndedBy filter, Object data) {
+        return temporal("ENDEDBY", filter, data);
+    }
+
+    @Override
+    public Object visit(Ends filter, Object data) {
+        return temporal("ENDS", filter, data);
+    }
+
+    @Override
+    public Object visit(Meets filter, Object data) {
+        return temporal("MEETS", filter, data);
+    }
+
+    @Override
+    public Object visit(MetBy filter, Object data) {
+        return temporal("METBY", filter, data);
+    }
+
+    @Override
+    public Object visit(OverlappedBy filter, Object data) {
+        return temporal("OVERLAPPEDBY", filter, data);
+    }
+
+    @Override
+    public Object visit(TContains filter, Object data) {
+        return temporal("TCONTAINS", filter, data);
+    }
+
+    @Override
+    public Object visit(TEquals filter, Object data) {
+        return temporal("TEQUALS", filter, data);
+    }
+
+    @Override
+    public Object visit(TOverlaps filter, Object data) {
+        return temporal("TOVERLAPS", filter, data);
+    }
+
+    private StringBuilder children(String operator, List<Filter> children, Object data) {
+        List<String> operands = new ArrayList<String>();
+        if (children != null) {
+            for (Filter child : children) {
+                operands.add(canonicalize(child));
+            }
+        }
+        // the operands of AND and OR can be given in any order
+        Collections.sort(operands);
+        return builder(data).append(operator).append(operands);
+    }
+
+    private StringBuilder comparison(String operator, BinaryComparisonOperator filter,
+            Object data) {
+        StringBuilder builder = builder(data).append(operator).append('(');
+        expression(filter.getExpression1(), builder).append(',');
+        expression(filter.getExpression2(), builder).append(",matchCase=")
+                .append(filter.isMatchingCase());
+        return builder.append(')');
+    }
+
+    private StringBuilder spatial(String operator, BinarySpatialOperator filter, Object data) {
+        StringBuilder builder = builder(data).append(operator).append('(');
+        expression(filter.getExpression1(), builder).append(',');
+        return expression(filter.getExpression2(), builder).append(')');
+    }
+
+    private StringBuilder distance(String operator, DistanceBufferOperator filter, Object data) {
+        StringBuilder builder = builder(data).append(operator).append('(');
+        expression(filter.getExpression1(), builder).append(',');
+        expression(filter.getExpression2(), builder).append(',').append(filter.getDistance())
+                .append(filter.getDistanceUnits());
+        return builder.append(')');
+    }
+
+    private StringBuilder temporal(String operator, BinaryTemporalOperator filter, Object data) {
+        StringBuilder builder = builder(data).append(operator).append('(');
+        expression(filter.getExpression1(), builder).append(',');
+        return expression(filter.getExpression2(), builder).append(')');
+    }
+
+    private StringBuilder expression(Expression expression, StringBuilder builder) {
+        if (expression instanceof PropertyName) {
+            return builder.append('[').append(((PropertyName) expression).getPropertyName())
+                    .append(']');
+        }
+        if (expression instanceof Literal) {
+            Object value = ((Literal) expression).getValue();
+            if (value instanceof Date) {
+                // Date.toString() drops the milliseconds
+                return builder.append("date:").append(((Date) value).getTime());
+            }
+            return builder.append('\'').append(value).append('\'');
+        }
+        if (expression instanceof Function) {
+            Function function = (Function) expression;
+            builder.append(function.getName()).append('(');
+            List<Expression> parameters = function.getParameters();
+            if (parameters != null) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    expression(parameters.get(i), builder);
+                }
+            }
+            return builder.append(')');
+        }
+        return builder.append(expression);
+    }
+
+    private StringBuilder builder(Object data) {
+        return (StringBuilder) data;
+    }
+}
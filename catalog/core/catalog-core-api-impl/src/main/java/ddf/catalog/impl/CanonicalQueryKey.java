@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+import ddf.catalog.Constants;
+import ddf.catalog.federation.FederationStrategy;
+import ddf.catalog.operation.Query;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.QueryImpl;
+
+/**
+ * Identifies a {@link QueryRequest} by a canonical form of its filter, the sources it targets, its
+ * sort policy, its paging, including any {@link Constants#FEDERATION_CURSOR}, the attributes it
+ * projects and the {@link FederationStrategy} used to execute it. Two requests with equal keys are
+ * expected to produce the same results.
+ */
+public class CanonicalQueryKey {
+
+    private static final String SEPARATOR = "|";
+
+    private final String canonicalForm;
+
+    private final Set<String> sourceIds;
+
+    private final boolean includesLocalProvider;
+
+    /**
+     * Instantiates a {@code CanonicalQueryKey}.
+     * 
+     * @param queryRequest
+     *            the {@link QueryRequest} to identify
+     * @param strategy
+     *            the {@link FederationStrategy} the request is executed with
+     * @param sourceIds
+     *            the IDs of the sources the request targets
+     * @param includesLocalProvider
+     *            whether the request targets the local catalog provider
+     */
+    public CanonicalQueryKey(QueryRequest queryRequest, FederationStrategy strategy,
+            Set<String> sourceIds, boolean includesLocalProvider) {
+        this(queryRequest, strategy, sourceIds, includesLocalProvider, null);
+    }
+
+    /**
+     * Instantiates a {@code CanonicalQueryKey} that is further qualified by the given attributes,
+     * for instance the security attributes of the requesting subject.
+     * 
+     * @param queryRequest
+     *            the {@link QueryRequest} to identify
+     * @param strategy
+     *            the {@link FederationStrategy} the request is executed with
+     * @param sourceIds
+     *            the IDs of the sources the request targets
+     * @param includesLocalProvider
+     *            whether the request targets the local catalog provider
+     * @param qualifier
+     *            additional attributes that must match for two keys to be equal, may be
+     *            {@code null}
+     */
+    public CanonicalQueryKey(QueryRequest queryRequest, FederationStrategy strategy,
+            Set<String> sourceIds, boolean includesLocalProvider, String qualifier) {
+        this.sourceIds = sourceIds == null ? Collections.<String> emptySet() : Collections
+                .unmodifiableSet(new TreeSet<String>(sourceIds));
+        this.includesLocalProvider = includesLocalProvider;
+
+        Query query = queryRequest.getQuery();
+        Filter filter = query instanceof QueryImpl ? ((QueryImpl) query).getFilter() : query;
+        SortBy sortBy = query.getSortBy();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(CanonicalFilterVisitor.canonicalize(filter)).append(SEPARATOR);
+        if (sortBy != null) {
+            builder.append(sortBy.getPropertyName()).append(' ').append(sortBy.getSortOrder());
+        }
+        builder.append(SEPARATOR).append(query.getStartIndex()).append(SEPARATOR)
+                .append(query.getPageSize()).append(SEPARATOR)
+                .append(query.requestsTotalResultsCount()).append(SEPARATOR)
+                .append(queryRequest.isEnterprise()).append(SEPARATOR).append(this.sourceIds)
+                .append(SEPARATOR).append(includesLocalProvider).append(SEPARATOR)
+                .append(strategy == null ? null : strategy.getClass().getName())
+                .append(SEPARATOR)
+                .append(queryRequest.getPropertyValue(Constants.FEDERATION_CURSOR))
+                .append(SEPARATOR).append(getProjection(queryRequest));
+        if (qualifier != null) {
+            builder.append(SEPARATOR).append(qualifier);
+        }
+        this.canonicalForm = builder.toString();
+    }
+
+    /**
+     * @return the sorted names of the attributes projected by the request, or {@code null} if it
+     *         does not project its results
+     */
+    static Set<String> getProjection(QueryRequest queryRequest) {
+        Serializable value = queryRequest.getPropertyValue(Constants.PROJECTED_ATTRIBUTES);
+
+        Collection<?> names;
+        if (value instanceof Collection) {
+            names = (Collection<?>) value;
+        } else if (value instanceof Object[]) {
+            names = Arrays.asList((Object[]) value);
+        } else if (value != null) {
+            names = Arrays.asList(value.toString().split(","));
+        } else {
+            return null;
+        }
+
+        Set<String> projection = new TreeSet<String>();
+        for (Object name : names) {
+            if (name != null && !name.toString().trim().isEmpty()) {
+                projection.add(name.toString().trim());
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * @return the IDs of the sources the request targets
+     */
+    public Set<String> getSourceIds() {
+        return sourceIds;
+    }
+
+    /**
+     * @return true if the request targets the local catalog provider
+     */
+    public boolean includesLocalProvider() {
+        return includesLocalProvider;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CanonicalQueryKey)) {
+            return false;
+        }
+        return canonicalForm.equals(((CanonicalQueryKey) obj).canonicalForm);
+    }
+
+    @Override
+    public int hashCode() {
+        return canonicalForm.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return canonicalForm;
+    }
+}
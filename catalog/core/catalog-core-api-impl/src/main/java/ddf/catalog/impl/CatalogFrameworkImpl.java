@@ -51,6 +51,9 @@
 import ddf.catalog.data.Result;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.federation.FederationStrategy;
+import ddf.catalog.federation.base.AbstractFederationStrategy;
+import ddf.catalog.federation.base.SourceCircuitBreaker;
+import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.filter.impl.LiteralImpl;
 import ddf.catalog.filter.impl.PropertyIsEqualToLiteral;
 import ddf.catalog.filter.impl.PropertyNameImpl;
@@ -74,6 +77,7 @@
 import ddf.catalog.operation.impl.ProcessingDetailsImpl;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.operation.impl.ResourceResponseImpl;
 import ddf.catalog.operation.impl.SourceInfoResponseImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
@@ -106,6 +110,7 @@
 import ddf.catalog.util.impl.Masker;
 import ddf.catalog.util.impl.SourceDescriptorComparator;
 import ddf.catalog.util.impl.SourcePoller;
+import ddf.catalog.util.impl.SubjectQualifier;
 
 /**
  * 
@@ -124,6 +129,16 @@ public class CatalogFrameworkImpl extends DescribableImpl implements Configurati
 
     private static final String DEFAULT_RESOURCE_NOT_FOUND_MESSAGE = "Unknown resource request";
 
+    /**
+     * Request property holding the requesting subject, as defined by the security API.
+     */
+    private static final String SECURITY_SUBJECT = "ddf.security.subject";
+
+    /**
+     * The security qualifier of queries without a subject.
+     */
+    protected static final String NO_SUBJECT = "";
+
     // TODO make this final
     private static XLogger logger = new XLogger(LoggerFactory.getLogger(CatalogFrameworkImpl.class));
 
@@ -222,6 +237,18 @@ public class CatalogFrameworkImpl extends DescribableImpl implements Configurati
 
     private SourcePoller poller;
 
+    private QueryResultCache queryResultCache;
+
+    private QueryCoalescer queryCoalescer;
+
+    private boolean coalesceQueries = false;
+
+    private volatile FilterAdapter filterAdapter;
+
+    private boolean pruneSourcesByContentType = false;
+
+    private SourceCircuitBreaker circuitBreaker;
+
     /**
      * Instantiates a new CatalogFrameworkImpl
      * 
@@ -681,6 +708,9 @@ public CreateResponse create(CreateRequest createRequest) throws IngestException
 
         try {
             createResponse = validateFixCreateResponse(createResponse, createReq);
+            if (queryResultCache != null) {
+                queryResultCache.process(createResponse);
+            }
             for (final PostIngestPlugin plugin : postIngest) {
                 try {
                     createResponse = plugin.process(createResponse);
@@ -738,6 +768,9 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
 
             // Handle the posting of messages to pubsub
             updateResponse = validateFixUpdateResponse(updateResponse, updateReq);
+            if (queryResultCache != null) {
+                queryResultCache.process(updateResponse);
+            }
             for (final PostIngestPlugin plugin : postIngest) {
                 try {
                     updateResponse = plugin.process(updateResponse);
@@ -785,6 +818,13 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
             }
             validateDeleteRequest(deleteRequest);
 
+            // post-ingest plugins, such as the subscription event processor, get full metacards
+            if (postIngest != null && !postIngest.isEmpty()
+                    && deleteRequest.getPropertyValue(Constants.BULK_DELETE) != null) {
+                logger.debug("Post-ingest plugins are registered, performing a full delete.");
+                deleteRequest.getProperties().remove(Constants.BULK_DELETE);
+            }
+
             // Call the Provider delete method
             logger.debug("Calling catalog.delete() with "
                     + deleteRequest.getAttributeValues().size() + " entries.");
@@ -792,6 +832,9 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
 
             // Post results to be available for pubsub
             deleteResponse = validateFixDeleteResponse(deleteResponse, deleteRequest);
+            if (queryResultCache != null) {
+                queryResultCache.process(deleteResponse);
+            }
             for (final PostIngestPlugin plugin : postIngest) {
                 try {
                     deleteResponse = plugin.process(deleteResponse);
@@ -887,9 +930,45 @@ public QueryResponse query(QueryRequest queryRequest, FederationStrategy strateg
                 }
             }
 
-            queryResponse = doQuery(queryReq, fedStrategy);
+            // Progressive queries and their continuations return partial results
+            boolean shareable = !isProgressive(queryReq);
+
+            // Responses are only shared between subjects entitled to the same results
+            CanonicalQueryKey queryKey = null;
+            CanonicalQueryKey cacheKey = null;
+            boolean caching = queryResultCache != null && queryResultCache.isEnabled();
+            boolean coalescing = queryCoalescer != null && coalesceQueries;
+            if (shareable && (caching || coalescing)) {
+                String qualifier = getSecurityQualifier(queryReq);
+                if (qualifier == null) {
+                    shareable = false;
+                } else {
+                    queryKey = createQueryKey(queryReq, fedStrategy, qualifier);
+                }
+            }
+            if (shareable && caching) {
+                cacheKey = queryKey;
+                queryResponse = queryResultCache.get(cacheKey, queryReq);
+            }
 
-            validateFixQueryResponse(queryResponse, queryReq);
+            if (queryResponse == null) {
+                if (coalescing && shareable) {
+                    final QueryRequest coalescedRequest = queryReq;
+                    final FederationStrategy coalescedStrategy = fedStrategy;
+                    final CanonicalQueryKey coalescedCacheKey = cacheKey;
+                    queryResponse = queryCoalescer.execute(queryKey, queryReq,
+                            new QueryCoalescer.Execution() {
+                                @Override
+                                public QueryResponse execute() throws UnsupportedQueryException,
+                                    FederationException {
+                                    return executeQuery(coalescedRequest, coalescedStrategy,
+                                            coalescedCacheKey);
+                                }
+                            });
+                } else {
+                    queryResponse = executeQuery(queryReq, fedStrategy, cacheKey);
+                }
+            }
 
             for (PostQueryPlugin service : postQuery) {
                 try {
@@ -913,6 +992,97 @@ public QueryResponse query(QueryRequest queryRequest, FederationStrategy strateg
 
     }
 
+    /**
+     * Federates a query that could not be served from the cache, caching its response if the
+     * cache is enabled.
+     */
+    private QueryResponse executeQuery(QueryRequest queryRequest, FederationStrategy strategy,
+            CanonicalQueryKey cacheKey) throws UnsupportedQueryException, FederationException {
+        QueryResponse queryResponse = doQuery(queryRequest, strategy);
+
+        validateFixQueryResponse(queryResponse, queryRequest);
+
+        if (cacheKey != null) {
+            queryResponse = queryResultCache.put(cacheKey, queryRequest, queryResponse);
+        }
+        return queryResponse;
+    }
+
+    private boolean isProgressive(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        return properties != null
+                && (properties.containsKey(Constants.PROGRESSIVE_DEADLINE) || properties
+                        .containsKey(Constants.QUERY_CONTINUATION));
+    }
+
+    /**
+     * Gets the principal and security attributes of the subject of a {@link QueryRequest}, so that
+     * cached and coalesced responses are only shared between subjects entitled to the same
+     * results, across sessions.
+     * 
+     * @param queryRequest
+     *            the {@link QueryRequest}
+     * @return the security attributes, {@link #NO_SUBJECT} if the request has no subject, or
+     *         {@code null} if the attributes of the subject cannot be determined, in which case
+     *         the response must not be shared
+     */
+    protected String getSecurityQualifier(QueryRequest queryRequest) {
+        Map<String, Serializable> properties = queryRequest.getProperties();
+        Object subject = properties == null ? null : properties.get(SECURITY_SUBJECT);
+        return subject == null ? NO_SUBJECT : SubjectQualifier.of(subject);
+    }
+
+    /**
+     * Creates the {@link CanonicalQueryKey} identifying a {@link QueryRequest} executed with the
+     * specified {@link FederationStrategy}, resolving the sources the request targets.
+     * 
+     * @param queryRequest
+     *            the {@link QueryRequest}
+     * @param strategy
+     *            the {@link FederationStrategy}
+     * @param qualifier
+     *            additional attributes the key must match on, may be {@code null}
+     * @return the {@link CanonicalQueryKey}
+     */
+    protected CanonicalQueryKey createQueryKey(QueryRequest queryRequest,
+            FederationStrategy strategy, String qualifier) {
+        Set<String> sourceIds = new HashSet<String>();
+        boolean includesLocalProvider;
+
+        if (queryRequest.isEnterprise()) {
+            includesLocalProvider = hasCatalogProvider();
+            for (FederatedSource source : federatedSources) {
+                addSourceId(sourceIds, source.getId());
+            }
+        } else if (!isFederated(queryRequest)) {
+            includesLocalProvider = hasCatalogProvider();
+        } else {
+            includesLocalProvider = hasCatalogProvider()
+                    && includesLocalSources(queryRequest.getSourceIds());
+            for (String id : queryRequest.getSourceIds()) {
+                addSourceId(sourceIds, id);
+            }
+        }
+
+        if (includesLocalProvider) {
+            addSourceId(sourceIds, getId());
+            if (connectedSourcesExist()) {
+                for (ConnectedSource source : connectedSources) {
+                    addSourceId(sourceIds, source.getId());
+                }
+            }
+        }
+
+        return new CanonicalQueryKey(queryRequest, strategy, sourceIds, includesLocalProvider,
+                qualifier);
+    }
+
+    private void addSourceId(Set<String> sourceIds, String sourceId) {
+        if (StringUtils.isNotBlank(sourceId)) {
+            sourceIds.add(sourceId);
+        }
+    }
+
     /**
      * Executes a query using the specified {@link QueryRequest} and {@link FederationStrategy}.
      * Based on the isEnterprise and sourceIds list in the query request, the federated query may
@@ -1023,6 +1193,15 @@ private QueryResponse doQuery(QueryRequest queryRequest, FederationStrategy stra
             }
         }
 
+        FilterAdapter adapter = pruneSourcesByContentType ? filterAdapter : null;
+        if (adapter != null && !sourcesToQuery.isEmpty()
+                && pruneSourcesByContentType(adapter, queryRequest, sourcesToQuery, exceptions)
+                && sourcesToQuery.isEmpty()) {
+            logger.debug("No source can hold the requested content types");
+            return addProcessingDetails(exceptions, new QueryResponseImpl(queryRequest,
+                    new ArrayList<Result>(), true, 0));
+        }
+
         if (sourcesToQuery.isEmpty()) {
             // We have nothing to query at all.
             logger.debug("sourcesToQuery is empty - throwing exception");
@@ -1037,6 +1216,73 @@ private QueryResponse doQuery(QueryRequest queryRequest, FederationStrategy stra
         return addProcessingDetails(exceptions, response);
     }
 
+    /**
+     * Removes the federated sources whose cached content types cannot satisfy the content type
+     * constraints of the query's filter, recording each removal as a warning.
+     * 
+     * @param adapter
+     *            the {@link FilterAdapter} extracting the content types of the query
+     * @param queryRequest
+     *            the {@link QueryRequest} being planned
+     * @param sourcesToQuery
+     *            the sources to query, from which sources are removed
+     * @param details
+     *            the {@link ProcessingDetails} to which the removals are added
+     * @return true if any source was removed
+     */
+    private boolean pruneSourcesByContentType(FilterAdapter adapter, QueryRequest queryRequest,
+            List<Source> sourcesToQuery, Set<ProcessingDetails> details) {
+        Set<String> requiredContentTypes;
+        try {
+            requiredContentTypes = adapter.adapt(queryRequest.getQuery(),
+                    new ContentTypeFilterDelegate());
+        } catch (UnsupportedQueryException e) {
+            logger.debug("Unable to determine content types of query, querying all sources", e);
+            return false;
+        }
+        if (requiredContentTypes == null) {
+            return false;
+        }
+
+        boolean pruned = false;
+        Iterator<Source> sources = sourcesToQuery.iterator();
+        while (sources.hasNext()) {
+            Source source = sources.next();
+            if (source instanceof FederatedSource
+                    && !hasContentType(source, requiredContentTypes)) {
+                logger.debug("Source \"" + source.getId()
+                        + "\" has none of the requested content types and will not be queried");
+                sources.remove();
+                details.add(new ProcessingDetailsImpl(source.getId(), null, "Source \""
+                        + source.getId() + "\" has none of the requested content types "
+                        + requiredContentTypes + " and was not queried"));
+                pruned = true;
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Checks a source's cached content types. Sources whose content types are not known yet are
+     * assumed to hold any content type.
+     */
+    private boolean hasContentType(Source source, Set<String> contentTypes) {
+        Source cachedSource = poller.getCachedSource(source);
+        Set<ContentType> sourceContentTypes = cachedSource == null ? null : cachedSource
+                .getContentTypes();
+        if (sourceContentTypes == null || sourceContentTypes.isEmpty()) {
+            return true;
+        }
+
+        for (ContentType contentType : sourceContentTypes) {
+            if (contentType != null && contentType.getName() != null
+                    && contentTypes.contains(contentType.getName().toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Adds any exceptions to the query response's processing details.
      * 
@@ -1355,6 +1601,112 @@ public synchronized void setPoolSize(int poolSize) {
         }
     }
 
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param queryResultCache
+     *            the {@link QueryResultCache} used to serve repeated queries, {@code null} to
+     *            disable caching
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param queryCoalescer
+     *            the {@link QueryCoalescer} sharing the execution of identical concurrent queries,
+     *            {@code null} to execute every query separately
+     */
+    public void setQueryCoalescer(QueryCoalescer queryCoalescer) {
+        this.queryCoalescer = queryCoalescer;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param coalesceQueries
+     *            {@code true} to share the execution of identical concurrent queries through the
+     *            {@link QueryCoalescer}
+     */
+    public void setCoalesceQueries(boolean coalesceQueries) {
+        logger.debug("Setting coalesceQueries = " + coalesceQueries);
+        this.coalesceQueries = coalesceQueries;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param filterAdapter
+     *            the {@link FilterAdapter} used to skip federated sources that cannot hold the
+     *            content types a query asks for, {@code null} to query every source
+     */
+    public void setFilterAdapter(FilterAdapter filterAdapter) {
+        this.filterAdapter = filterAdapter;
+    }
+
+    /**
+     * Invoked by blueprint when a {@link FilterAdapter} service becomes available.
+     * 
+     * @param filterAdapter
+     *            the {@link FilterAdapter} being bound to this CatalogFramework instance
+     */
+    public void bindFilterAdapter(FilterAdapter filterAdapter) {
+        logger.debug("Binding filter adapter " + filterAdapter);
+        this.filterAdapter = filterAdapter;
+    }
+
+    /**
+     * Invoked by blueprint when a {@link FilterAdapter} service goes away.
+     * 
+     * @param filterAdapter
+     *            the {@link FilterAdapter} being unbound from this CatalogFramework instance
+     */
+    public void unbindFilterAdapter(FilterAdapter filterAdapter) {
+        logger.debug("Unbinding filter adapter " + filterAdapter);
+        if (this.filterAdapter == filterAdapter) {
+            this.filterAdapter = null;
+        }
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param pruneSourcesByContentType
+     *            {@code true} to skip federated sources that cannot hold the content types a query
+     *            asks for, when a {@link FilterAdapter} is available
+     */
+    public void setPruneSourcesByContentType(boolean pruneSourcesByContentType) {
+        logger.debug("Setting pruneSourcesByContentType = " + pruneSourcesByContentType);
+        this.pruneSourcesByContentType = pruneSourcesByContentType;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param circuitBreaker
+     *            the {@link SourceCircuitBreaker} consulted before querying a source. When not
+     *            set, the breaker of the default federation strategy is used if it has one
+     *            enabled.
+     */
+    public void setCircuitBreaker(SourceCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    private SourceCircuitBreaker getCircuitBreaker() {
+        if (circuitBreaker != null) {
+            return circuitBreaker;
+        }
+        if (defaultFederationStrategy instanceof AbstractFederationStrategy) {
+            AbstractFederationStrategy strategy = (AbstractFederationStrategy) defaultFederationStrategy;
+            if (strategy.isCircuitBreakerEnabled()) {
+                return strategy.getCircuitBreaker();
+            }
+        }
+        return null;
+    }
+
     /**
      * String representation of this {@code CatalogFrameworkImpl}.
      */
@@ -1572,9 +1924,15 @@ protected boolean sourceIsAvailable(Source source) {
 
             // source is considered available unless we have checked and seen otherwise
             boolean available = true;
-            Source cachedSource = poller.getCachedSource(source);
-            if(cachedSource != null) {
-                available = cachedSource.isAvailable();
+            SourceCircuitBreaker breaker = getCircuitBreaker();
+            if (breaker != null && !breaker.isAvailable(source.getId())) {
+                logger.debug("circuit of source \"" + source.getId() + "\" is open");
+                available = false;
+            } else {
+                Source cachedSource = poller.getCachedSource(source);
+                if (cachedSource != null) {
+                    available = cachedSource.isAvailable();
+                }
             }
             
             if (!available) {
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.filter.FilterDelegate;
+
+/**
+ * Filter delegate that determines which content types a query can match. The result of a filter
+ * is the set of content type names a metacard must have to match it, or {@code null} when the
+ * filter does not constrain the content type. The result is conservative: a filter whose content
+ * type constraints cannot be determined, for instance because they are negated or use wildcards,
+ * is considered unconstrained.
+ */
+public class ContentTypeFilterDelegate extends FilterDelegate<Set<String>> {
+
+    @Override
+    public Set<String> and(List<Set<String>> operands) {
+        Set<String> contentTypes = null;
+        for (Set<String> operand : operands) {
+            if (operand != null) {
+                if (contentTypes == null) {
+                    contentTypes = new HashSet<String>(operand);
+                } else {
+                    contentTypes.retainAll(operand);
+                }
+            }
+        }
+        return contentTypes;
+    }
+
+    @Override
+    public Set<String> or(List<Set<String>> operands) {
+        Set<String> contentTypes = new HashSet<String>();
+        for (Set<String> operand : operands) {
+            if (operand == null) {
+                return null;
+            }
+            contentTypes.addAll(operand);
+        }
+        return contentTypes;
+    }
+
+    @Override
+    public Set<String> not(Set<String> operand) {
+        return null;
+    }
+
+    @Override
+    public Set<String> include() {
+        return null;
+    }
+
+    @Override
+    public Set<String> exclude() {
+        return null;
+    }
+
+    @Override
+    public Set<String> propertyIsEqualTo(String propertyName, String literal,
+            boolean isCaseSensitive) {
+        if (!Metacard.CONTENT_TYPE.equals(propertyName) || literal == null) {
+            return null;
+        }
+        Set<String> contentTypes = new HashSet<String>();
+        contentTypes.add(literal.toLowerCase());
+        return contentTypes;
+    }
+
+    @Override
+    public Set<String> propertyIsLike(String propertyName, String pattern, boolean isCaseSensitive) {
+        if (pattern == null || pattern.contains(WILDCARD_CHAR) || pattern.contains(SINGLE_CHAR)
+                || pattern.contains(ESCAPE_CHAR)) {
+            return null;
+        }
+        return propertyIsEqualTo(propertyName, pattern, isCaseSensitive);
+    }
+
+    @Override
+    public Set<String> propertyIsFuzzy(String propertyName, String literal) {
+        return null;
+    }
+
+    @Override
+    public Set<String> propertyIsNull(String propertyName) {
+        return null;
+    }
+
+    @Override
+    public Set<String> xpathExists(String xpath) {
+        return null;
+    }
+
+    @Override
+    public Set<String> xpathIsLike(String xpath, String pattern, boolean isCaseSensitive) {
+        return null;
+    }
+
+    @Override
+    public Set<String> xpathIsFuzzy(String xpath, String literal) {
+        return null;
+    }
+
+    @Override
+    public Set<String> nearestNeighbor(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> beyond(String propertyName, String wkt, double distance) {
+        return null;
+    }
+
+    @Override
+    public Set<String> contains(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> crosses(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> disjoint(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> dwithin(String propertyName, String wkt, double distance) {
+        return null;
+    }
+
+    @Override
+    public Set<String> intersects(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> overlaps(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> touches(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> within(String propertyName, String wkt) {
+        return null;
+    }
+
+    @Override
+    public Set<String> after(String propertyName, Date date) {
+        return null;
+    }
+
+    @Override
+    public Set<String> before(String propertyName, Date date) {
+        return null;
+    }
+
+    @Override
+    public Set<String> during(String propertyName, Date startDate, Date endDate) {
+        return null;
+    }
+
+    @Override
+    public Set<String> relative(String propertyName, long duration) {
+        return null;
+    }
+}
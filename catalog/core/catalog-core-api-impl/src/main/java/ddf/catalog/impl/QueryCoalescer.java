@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.federation.FederationException;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.source.UnsupportedQueryException;
+
+/**
+ * Coalesces identical queries that are executed concurrently. The first request for a
+ * {@link CanonicalQueryKey} executes the query; requests with an equal key arriving while it is in
+ * flight wait for it to complete instead of executing it again. Every request, including the one
+ * that executed the query, receives its own copy of the {@link QueryResponse}.
+ */
+public class QueryCoalescer {
+
+    /**
+     * A query execution that may be shared between coalesced requests.
+     */
+    public interface Execution {
+
+        QueryResponse execute() throws UnsupportedQueryException, FederationException;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryCoalescer.class);
+
+    private final ConcurrentMap<CanonicalQueryKey, InFlightQuery> inFlight = new ConcurrentHashMap<CanonicalQueryKey, InFlightQuery>();
+
+    /**
+     * Executes a query, or joins the identical query already in flight.
+     * 
+     * @param key
+     *            the {@link CanonicalQueryKey} of the request
+     * @param request
+     *            the {@link QueryRequest} the returned response will refer to
+     * @param execution
+     *            executes the query if none with an equal key is in flight
+     * @return a {@link QueryResponse} owned by the caller
+     * @throws UnsupportedQueryException
+     *             if the shared execution failed with this exception
+     * @throws FederationException
+     *             if the shared execution failed with this exception, or the wait for it was
+     *             interrupted
+     */
+    public QueryResponse execute(CanonicalQueryKey key, QueryRequest request, Execution execution)
+        throws UnsupportedQueryException, FederationException {
+        InFlightQuery query = new InFlightQuery();
+        InFlightQuery existing = inFlight.putIfAbsent(key, query);
+        if (existing != null) {
+            LOGGER.debug("Joining query in flight for {}", key);
+            return existing.await(request);
+        }
+
+        try {
+            QueryResponseSnapshot snapshot = new QueryResponseSnapshot(execution.execute());
+            query.complete(snapshot, null);
+            return snapshot.copy(request);
+        } catch (UnsupportedQueryException e) {
+            query.complete(null, e);
+            throw e;
+        } catch (FederationException e) {
+            query.complete(null, e);
+            throw e;
+        } catch (RuntimeException e) {
+            query.complete(null, e);
+            throw e;
+        } finally {
+            inFlight.remove(key, query);
+            // Never leave joined requests waiting, whatever the execution threw
+            query.complete(null, new FederationException("Identical query did not complete"));
+        }
+    }
+
+    /**
+     * @return the number of distinct queries currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static class InFlightQuery {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile QueryResponseSnapshot snapshot;
+
+        private volatile Exception failure;
+
+        synchronized void complete(QueryResponseSnapshot snapshot, Exception failure) {
+            if (done.getCount() > 0) {
+                this.snapshot = snapshot;
+                this.failure = failure;
+                done.countDown();
+            }
+        }
+
+        QueryResponse await(QueryRequest request) throws UnsupportedQueryException,
+            FederationException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                throw new FederationException("Interrupted while waiting for identical query", e);
+            }
+
+            if (failure instanceof UnsupportedQueryException) {
+                throw new UnsupportedQueryException(failure.getMessage(), failure);
+            } else if (failure instanceof FederationException) {
+                throw new FederationException(failure.getMessage(), failure);
+            } else if (failure != null) {
+                throw new FederationException("Identical query failed", failure);
+            }
+            return snapshot.copy(request);
+        }
+    }
+}
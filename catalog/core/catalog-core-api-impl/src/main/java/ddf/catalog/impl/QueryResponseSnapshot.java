@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.BasicTypes;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.ProcessingDetails;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+/**
+ * A fully retrieved {@link QueryResponse} from which independent copies can be handed out to
+ * several requests. The snapshot holds its own copies of the results and their metacards, and
+ * every copy it hands out has new copies again, so that callers, and the plugins processing their
+ * responses, cannot change what other callers receive. Metacards of a response to a request that
+ * projects its attributes are copied without reading their other attributes, which a provider may
+ * only load when they are first read.
+ */
+class QueryResponseSnapshot {
+
+    private final List<Result> results;
+
+    private final Set<String> projection;
+
+    private final long hits;
+
+    private final Set<ProcessingDetails> processingDetails;
+
+    private final Map<String, Serializable> properties;
+
+    /**
+     * Retrieves every result of a response, so this call blocks until every source has responded.
+     */
+    QueryResponseSnapshot(QueryResponse response) {
+        this(response.getResults(), response, response.getRequest() == null ? null
+                : CanonicalQueryKey.getProjection(response.getRequest()));
+    }
+
+    /**
+     * Creates a snapshot of a response whose results have already been retrieved.
+     * 
+     * @param results
+     *            the results of the response, which are copied
+     * @param response
+     *            the response, for its hits, processing details and properties
+     * @param projection
+     *            the attributes projected by the request of the response, or {@code null} if it
+     *            does not project its results
+     */
+    QueryResponseSnapshot(List<Result> results, QueryResponse response, Set<String> projection) {
+        this.projection = projection;
+        this.results = copyResults(results, projection);
+        this.hits = response.getHits();
+        this.processingDetails = response.getProcessingDetails();
+        this.properties = response.getProperties() == null ? new HashMap<String, Serializable>()
+                : new HashMap<String, Serializable>(response.getProperties());
+    }
+
+    /**
+     * @return true if any source reported a failure
+     */
+    boolean hasFailures() {
+        if (processingDetails != null) {
+            for (ProcessingDetails details : processingDetails) {
+                if (details != null && details.getException() != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a new {@link QueryResponseImpl} with the snapshot's content, referring to the given
+     *         request
+     */
+    QueryResponseImpl copy(QueryRequest request) {
+        QueryResponseImpl response = new QueryResponseImpl(request, copyResults(results, projection),
+                true, hits, new HashMap<String, Serializable>(properties));
+        if (processingDetails != null) {
+            response.getProcessingDetails().addAll(processingDetails);
+        }
+        return response;
+    }
+
+    static List<Result> copyResults(List<Result> results, Set<String> projection) {
+        List<Result> copies = new ArrayList<Result>(results.size());
+        for (Result result : results) {
+            copies.add(copyResult(result, projection));
+        }
+        return copies;
+    }
+
+    /**
+     * @param result
+     *            the {@link Result} to copy
+     * @param projection
+     *            the attributes projected by the request of the result, or {@code null} if it
+     *            does not project its results
+     * @return the copy
+     */
+    static Result copyResult(Result result, Set<String> projection) {
+        if (result == null) {
+            return null;
+        }
+        ResultImpl copy = new ResultImpl(projection == null ? copyMetacard(result.getMetacard())
+                : copyProjectedMetacard(result.getMetacard(), projection));
+        copy.setRelevanceScore(result.getRelevanceScore());
+        copy.setDistanceInMeters(result.getDistanceInMeters());
+        return copy;
+    }
+
+    private static Metacard copyMetacard(Metacard metacard) {
+        if (metacard == null) {
+            return null;
+        }
+
+        MetacardType type = metacard.getMetacardType();
+        MetacardImpl copy = type == null ? new MetacardImpl() : new MetacardImpl(type);
+        if (copy.getMetacardType().getAttributeDescriptors() != null) {
+            for (AttributeDescriptor descriptor : copy.getMetacardType().getAttributeDescriptors()) {
+                Attribute attribute = metacard.getAttribute(descriptor.getName());
+                if (attribute != null) {
+                    copy.setAttribute(copyAttribute(attribute));
+                }
+            }
+        }
+        copy.setSourceId(metacard.getSourceId());
+        return copy;
+    }
+
+    private static Metacard copyProjectedMetacard(Metacard metacard, Set<String> projection) {
+        if (metacard == null) {
+            return null;
+        }
+
+        ProjectedMetacardCopy copy = new ProjectedMetacardCopy(metacard);
+        copy.getAttribute(Metacard.ID);
+        for (String name : projection) {
+            copy.getAttribute(name);
+        }
+        copy.setSourceId(metacard.getSourceId());
+        return copy;
+    }
+
+    private static Attribute copyAttribute(Attribute attribute) {
+        List<Serializable> values = attribute.getValues();
+        if (values == null || values.isEmpty()) {
+            return new AttributeImpl(attribute.getName(), attribute.getValue());
+        }
+        AttributeImpl copy = new AttributeImpl(attribute.getName(), values.get(0));
+        for (int i = 1; i < values.size(); i++) {
+            copy.addValue(values.get(i));
+        }
+        return copy;
+    }
+
+    /**
+     * Copy of a metacard of a projected response. An attribute is copied from the original when it
+     * is first read, so copying the metacard does not make the original load the attributes that
+     * were not projected.
+     */
+    private static class ProjectedMetacardCopy extends MetacardImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Metacard original;
+
+        private final Set<String> resolved = new HashSet<String>();
+
+        ProjectedMetacardCopy(Metacard original) {
+            super(original.getMetacardType() == null ? BasicTypes.BASIC_METACARD : original
+                    .getMetacardType());
+            this.original = original;
+        }
+
+        @Override
+        public Attribute getAttribute(String name) {
+            Attribute attribute = super.getAttribute(name);
+            if (attribute != null || original == null) {
+                return attribute;
+            }
+
+            synchronized (resolved) {
+                if (resolved.add(name)) {
+                    Attribute originalAttribute = original.getAttribute(name);
+                    if (originalAttribute != null) {
+                        super.setAttribute(copyAttribute(originalAttribute));
+                    }
+                }
+            }
+            return super.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            if (attribute != null && resolved != null) {
+                // a value set on the copy replaces that of the original, even if it is null
+                synchronized (resolved) {
+                    resolved.add(attribute.getName());
+                }
+            }
+            super.setAttribute(attribute);
+        }
+
+        /**
+         * Serializes a complete copy, since the original is not serialized.
+         */
+        private Object writeReplace() throws ObjectStreamException {
+            MetacardImpl metacard = new MetacardImpl(getMetacardType());
+
+            for (AttributeDescriptor descriptor : getMetacardType().getAttributeDescriptors()) {
+                Attribute attribute = getAttribute(descriptor.getName());
+                if (attribute != null) {
+                    metacard.setAttribute(attribute);
+                }
+            }
+            metacard.setSourceId(getSourceId());
+
+            return metacard;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Result;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+import ddf.catalog.plugin.PostIngestPlugin;
+
+/**
+ * A size bounded, least recently used cache of federated {@link QueryResponse}s, keyed on
+ * {@link CanonicalQueryKey}s. Each entry expires after the smallest time-to-live configured for
+ * the sources it was retrieved from. Entries that include results from the local catalog provider
+ * are invalidated whenever metacards are created, updated or deleted.
+ * <p>
+ * Responses are cached once all of their results have been streamed to the first caller, so
+ * caching does not delay the first results. Responses that report a failure from any source are
+ * never cached. Every hit is returned as an independent copy of the cached response, and is marked
+ * with the {@link Constants#QUERY_CACHE_HIT} property.
+ * <p>
+ * Keys are expected to be qualified by the security attributes of the requesting subject, so that
+ * responses are only shared between subjects entitled to the same results.
+ */
+public class QueryResultCache implements PostIngestPlugin {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCache.class);
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final long DEFAULT_TTL_MILLIS = 30000;
+
+    private static final String SOURCE_TTL_SEPARATOR = "=";
+
+    private final Executor executor;
+
+    private volatile boolean enabled = false;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private long defaultTtlMillis = DEFAULT_TTL_MILLIS;
+
+    private Map<String, Long> sourceTtls = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Incremented, while holding the lock on {@link #entries}, whenever entries are invalidated,
+     * so that responses recorded meanwhile are not cached.
+     */
+    private long localGeneration = 0;
+
+    private long generation = 0;
+
+    private final Map<CanonicalQueryKey, CachedResponse> entries = new LinkedHashMap<CanonicalQueryKey, CachedResponse>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CanonicalQueryKey, CachedResponse> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Instantiates a {@code QueryResultCache}.
+     * 
+     * @param executor
+     *            the {@link Executor} on which responses are streamed to their first caller while
+     *            being recorded for the cache
+     */
+    public QueryResultCache(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gets a copy of the cached response for a request.
+     * 
+     * @param key
+     *            the {@link CanonicalQueryKey} of the request
+     * @param request
+     *            the {@link QueryRequest} the returned response will refer to
+     * @return a copy of the cached {@link QueryResponse}, or {@code null} if there is no live entry
+     *         or the cache is disabled
+     */
+    public QueryResponse get(CanonicalQueryKey key, QueryRequest request) {
+        if (!enabled) {
+            return null;
+        }
+
+        CachedResponse cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && cached.isExpired()) {
+                entries.remove(key);
+                cached = null;
+            }
+        }
+
+        if (cached == null) {
+            return null;
+        }
+        LOGGER.debug("Query result cache hit for {}", key);
+        return cached.copy(request);
+    }
+
+    /**
+     * Caches a response once all of its results have been retrieved. The results are forwarded to
+     * the returned response as they arrive, so this call does not block.
+     * 
+     * @param key
+     *            the {@link CanonicalQueryKey} of the request
+     * @param request
+     *            the {@link QueryRequest} the response was retrieved for
+     * @param response
+     *            the {@link QueryResponse} to cache
+     * @return a {@link QueryResponse} equivalent to the given one, to be used in its place, or the
+     *         given one if the cache is disabled
+     */
+    public QueryResponse put(CanonicalQueryKey key, QueryRequest request, QueryResponse response) {
+        if (!enabled) {
+            return response;
+        }
+
+        Map<String, Serializable> properties = response.getProperties();
+        if (properties == null) {
+            properties = new HashMap<String, Serializable>();
+        }
+        properties.put(Constants.QUERY_CACHE_HIT, false);
+
+        QueryResponseImpl forwarded = new QueryResponseImpl(request, properties);
+        if (response.getProcessingDetails() != null) {
+            forwarded.setProcessingDetails(response.getProcessingDetails());
+        }
+        forwarded.setHits(response.getHits());
+
+        ResponseRecorder recorder;
+        synchronized (entries) {
+            recorder = new ResponseRecorder(key, response, forwarded,
+                    CanonicalQueryKey.getProjection(request), localGeneration, generation);
+        }
+
+        try {
+            executor.execute(recorder);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Unable to record response for {}, it will not be cached", key);
+            return response;
+        }
+        return forwarded;
+    }
+
+    /**
+     * Removes every entry that includes results from the local catalog provider.
+     */
+    public void invalidateLocalProvider() {
+        synchronized (entries) {
+            localGeneration++;
+            Iterator<CanonicalQueryKey> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().includesLocalProvider()) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    @Override
+    public CreateResponse process(CreateResponse input) {
+        invalidateLocalProvider();
+        return input;
+    }
+
+    @Override
+    public UpdateResponse process(UpdateResponse input) {
+        invalidateLocalProvider();
+        return input;
+    }
+
+    @Override
+    public DeleteResponse process(DeleteResponse input) {
+        invalidateLocalProvider();
+        return input;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param enabled
+     *            whether query responses are cached, disabling the cache removes every entry
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param maxEntries
+     *            the maximum number of cached responses
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+        synchronized (entries) {
+            Iterator<CanonicalQueryKey> keys = entries.keySet().iterator();
+            while (entries.size() > this.maxEntries && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param defaultTtlMillis
+     *            the time-to-live of responses from sources without a specific time-to-live
+     */
+    public void setDefaultTtlMillis(long defaultTtlMillis) {
+        this.defaultTtlMillis = defaultTtlMillis >= 0 ? defaultTtlMillis : DEFAULT_TTL_MILLIS;
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param sourceTtls
+     *            the time-to-live of responses per source, each in the form
+     *            {@code sourceId=milliseconds}
+     */
+    public void setSourceTtls(List<String> sourceTtls) {
+        Map<String, Long> ttls = new ConcurrentHashMap<String, Long>();
+        if (sourceTtls != null) {
+            for (String sourceTtl : sourceTtls) {
+                String sourceId = StringUtils.substringBeforeLast(sourceTtl, SOURCE_TTL_SEPARATOR);
+                String ttl = StringUtils.substringAfterLast(sourceTtl, SOURCE_TTL_SEPARATOR);
+                try {
+                    ttls.put(sourceId.trim(), Long.valueOf(ttl.trim()));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Ignoring invalid source time-to-live: {}", sourceTtl);
+                }
+            }
+        }
+        this.sourceTtls = ttls;
+    }
+
+    private long getTtlMillis(Set<String> sourceIds) {
+        long ttl = defaultTtlMillis;
+        for (String sourceId : sourceIds) {
+            Long sourceTtl = sourceTtls.get(sourceId);
+            if (sourceTtl != null && sourceTtl < ttl) {
+                ttl = sourceTtl;
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * Forwards the results of a response to the response returned to its first caller, recording
+     * copies of them, and caches the recorded response once every result has arrived.
+     */
+    private class ResponseRecorder implements Runnable {
+
+        private final CanonicalQueryKey key;
+
+        private final QueryResponse response;
+
+        private final QueryResponseImpl forwarded;
+
+        private final Set<String> projection;
+
+        private final long startLocalGeneration;
+
+        private final long startGeneration;
+
+        ResponseRecorder(CanonicalQueryKey key, QueryResponse response,
+                QueryResponseImpl forwarded, Set<String> projection, long startLocalGeneration,
+                long startGeneration) {
+            this.key = key;
+            this.response = response;
+            this.forwarded = forwarded;
+            this.projection = projection;
+            this.startLocalGeneration = startLocalGeneration;
+            this.startGeneration = startGeneration;
+        }
+
+        /**
+         * @return true if entries this response would belong to were invalidated since it started
+         *         being recorded, its results may then be stale
+         */
+        private boolean isInvalidated() {
+            return generation != startGeneration
+                    || (key.includesLocalProvider() && localGeneration != startLocalGeneration);
+        }
+
+        @Override
+        public void run() {
+            List<Result> recorded = new ArrayList<Result>();
+            try {
+                while (response.hasMoreResults()) {
+                    Result result = response.take();
+                    if (result == null) {
+                        break;
+                    }
+                    List<Result> batch = new ArrayList<Result>();
+                    batch.add(result);
+                    // Forward whatever else has already arrived in one batch
+                    while ((result = response.poll()) != null) {
+                        batch.add(result);
+                    }
+                    // Recorded before the caller receives, and possibly modifies, the results
+                    for (Result received : batch) {
+                        recorded.add(QueryResponseSnapshot.copyResult(received, projection));
+                    }
+                    forwarded.setHits(response.getHits());
+                    forwarded.addResults(batch, false);
+                }
+
+                forwarded.setHits(response.getHits());
+                if (response.hasMoreResults()) {
+                    LOGGER.debug("Response for {} was interrupted, it will not be cached", key);
+                } else {
+                    CachedResponse cached = new CachedResponse(new QueryResponseSnapshot(recorded,
+                            response, projection), System.currentTimeMillis()
+                            + getTtlMillis(key.getSourceIds()));
+                    if (cached.isCacheable()) {
+                        synchronized (entries) {
+                            if (isInvalidated()) {
+                                LOGGER.debug("Not caching invalidated response for {}", key);
+                            } else {
+                                entries.put(key, cached);
+                            }
+                        }
+                    } else {
+                        LOGGER.debug("Not caching response with source failures for {}", key);
+                    }
+                }
+            } finally {
+                forwarded.closeResultQueue();
+            }
+        }
+    }
+
+    private static class CachedResponse {
+
+        private final QueryResponseSnapshot snapshot;
+
+        private final long expiration;
+
+        CachedResponse(QueryResponseSnapshot snapshot, long expiration) {
+            this.snapshot = snapshot;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiration;
+        }
+
+        boolean isCacheable() {
+            return !snapshot.hasFailures();
+        }
+
+        QueryResponse copy(QueryRequest request) {
+            QueryResponse response = snapshot.copy(request);
+            response.getProperties().put(Constants.QUERY_CACHE_HIT, true);
+            return response;
+        }
+    }
+}
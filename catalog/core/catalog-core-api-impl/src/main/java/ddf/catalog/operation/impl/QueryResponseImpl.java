@@ -16,18 +16,16 @@
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.ext.XLogger;
 
-import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.operation.QueryRequest;
@@ -39,15 +37,13 @@ public class QueryResponseImpl extends ResponseImpl<QueryRequest> implements Que
 
     private static XLogger logger = new XLogger(LoggerFactory.getLogger(QueryResponseImpl.class));
 
-    protected static Result POISON_PILL_RESULT = new POISON_PILL_RESULT();
-
     protected long hits;
 
     protected Set<ProcessingDetails> details = new HashSet<ProcessingDetails>();
 
     protected boolean isQueueClosed = false;
 
-    LinkedBlockingQueue<Result> queue = null;
+    ResultChannel queue = null;
 
     List<Result> resultList = null;
 
@@ -120,8 +116,10 @@ public QueryResponseImpl(QueryRequest request, List<Result> results, boolean clo
             long hits, Map<String, Serializable> properties) {
         super(request, properties);
         this.hits = hits;
-        queue = results == null ? new LinkedBlockingQueue<Result>()
-                : new LinkedBlockingQueue<Result>(results);
+        queue = new ResultChannel();
+        if (results != null) {
+            queue.add(results, false);
+        }
         resultList = new ArrayList<Result>();
         if (closeResultQueue) {
             closeResultQueue();
@@ -185,10 +183,12 @@ public void setProcessingDetails(Set<ProcessingDetails> set) {
 
     @Override
     public List<Result> getResults() {
-        Result result = null;
-
-        while (hasMoreResults() && (result = take()) != null) {
-            resultList.add(result);
+        try {
+            while (hasMoreResults() && queue.drainTo(resultList, Integer.MAX_VALUE) > 0) {
+                // keep draining whole batches until the queue is closed
+            }
+        } catch (InterruptedException e) {
+            logger.warn("QueryResponseImpl queue thread was interrputed.  Returning results received so far");
         }
 
         return resultList;
@@ -208,13 +208,9 @@ public void addResult(Result result, boolean closeQueue) {
                 throw new IllegalStateException(
                         "Cannot add new Results after the Queue has been closed");
             } else {
+                queue.add(Collections.singletonList(result), closeQueue);
                 if (closeQueue) {
-                    synchronized (queue) {
-                        queue.add(result);
-                        closeResultQueue();
-                    }
-                } else {
-                    queue.add(result);
+                    isQueueClosed = true;
                 }
             }
         } else {
@@ -237,13 +233,9 @@ public void addResults(List<Result> results, boolean closeQueue) {
                 throw new IllegalStateException(
                         "Cannot add new Results after the Queue has been closed");
             } else {
+                queue.add(results, closeQueue);
                 if (closeQueue) {
-                    synchronized (queue) {
-                        queue.addAll(results);
-                        closeResultQueue();
-                    }
-                } else {
-                    queue.addAll(results);
+                    isQueueClosed = true;
                 }
             }
         }
@@ -251,12 +243,12 @@ public void addResults(List<Result> results, boolean closeQueue) {
 
     @Override
     public boolean hasMoreResults() {
-        return !queue.isEmpty() || !isQueueClosed;
+        return !queue.isEmpty() || !queue.isClosed();
     }
 
     public void closeResultQueue() {
         isQueueClosed = true;
-        queue.add(POISON_PILL_RESULT);
+        queue.close();
     }
 
     @Override
@@ -269,7 +261,7 @@ public Result poll(long timeout) {
         Result result = null;
         if (hasMoreResults()) {
             try {
-                result = queue.poll(timeout, TimeUnit.MILLISECONDS);
+                result = queue.poll(timeout);
             } catch (InterruptedException e) {
                 logger.warn("QueryResponseImpl queue thread was interrputed.  Returning null for last result");
             }
@@ -286,9 +278,14 @@ public Result take() {
     public List<Result> take(long size) {
         List<Result> results = new ArrayList<Result>();
         if (hasMoreResults()) {
-            Result result = null;
-            for (int i = 0; i < size && (result = handleTake()) != null; i++) {
-                results.add(result);
+            try {
+                while (results.size() < size
+                        && queue.drainTo(results,
+                                (int) Math.min(size - results.size(), Integer.MAX_VALUE)) > 0) {
+                    // whole batches are moved until enough results are taken or the queue closes
+                }
+            } catch (InterruptedException e) {
+                logger.warn("QueryResponseImpl queue thread was interrputed.  Returning results taken so far");
             }
         }
         return results;
@@ -303,32 +300,10 @@ private Result handleTake() {
         Result result = null;
         try {
             result = queue.take();
-            if (result == POISON_PILL_RESULT) {
-                result = null;
-            }
         } catch (InterruptedException e) {
             logger.warn("QueryResponseImpl queue thread was interrputed.  Returning null for last result");
         }
         return result;
     }
 
-    protected static class POISON_PILL_RESULT implements Result {
-
-        @Override
-        public Double getRelevanceScore() {
-            return null;
-        }
-
-        @Override
-        public Double getDistanceInMeters() {
-            return null;
-        }
-
-        @Override
-        public Metacard getMetacard() {
-            return null;
-        }
-
-    }
-
 }
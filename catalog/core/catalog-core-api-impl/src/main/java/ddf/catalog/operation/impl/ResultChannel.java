@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.operation.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ddf.catalog.data.Result;
+
+/**
+ * Hands {@link Result}s from the threads producing them to the threads consuming them in batches.
+ * Each added collection is kept as a single array, and consumers drain as many results as they
+ * need under one lock acquisition, instead of paying a lock handoff and a node allocation for
+ * every result.
+ */
+class ResultChannel {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final ArrayDeque<Result[]> batches = new ArrayDeque<Result[]>();
+
+    /**
+     * Position of the next result to consume in the first batch.
+     */
+    private int position = 0;
+
+    private volatile int size = 0;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Adds results to the channel, optionally closing it in the same step.
+     * 
+     * @throws IllegalStateException
+     *             if the channel is closed
+     */
+    void add(Collection<Result> results, boolean close) {
+        Result[] batch = results.toArray(new Result[results.size()]);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException(
+                        "Cannot add new Results after the Queue has been closed");
+            }
+            if (batch.length > 0) {
+                batches.add(batch);
+                size += batch.length;
+            }
+            if (close) {
+                closed = true;
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the channel. Results already added can still be consumed.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the next result, or null if none is available
+     */
+    Result poll() {
+        lock.lock();
+        try {
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given time for a result.
+     * 
+     * @return the next result, or null if none became available or the channel is closed and
+     *         drained
+     */
+    Result poll(long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0 && !closed && nanos > 0) {
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a result.
+     * 
+     * @return the next result, or null if the channel is closed and drained
+     */
+    Result take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            awaitResults();
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for results to be available and moves up to {@code max} of them to {@code target}.
+     * 
+     * @return the number of results moved, 0 only if the channel is closed and drained
+     */
+    int drainTo(List<Result> target, int max) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            awaitResults();
+            int drained = 0;
+            while (drained < max && !batches.isEmpty()) {
+                Result[] batch = batches.peek();
+                int count = Math.min(batch.length - position, max - drained);
+                target.addAll(Arrays.asList(batch).subList(position, position + count));
+                drained += count;
+                position += count;
+                if (position == batch.length) {
+                    batches.poll();
+                    position = 0;
+                }
+            }
+            size -= drained;
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitResults() throws InterruptedException {
+        while (size == 0 && !closed) {
+            notEmpty.await();
+        }
+    }
+
+    private Result removeFirst() {
+        Result[] batch = batches.peek();
+        if (batch == null) {
+            return null;
+        }
+        Result result = batch[position++];
+        if (position == batch.length) {
+            batches.poll();
+            position = 0;
+        }
+        size--;
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.util.impl;
+
+import java.security.Principal;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.opensaml.saml2.core.Attribute;
+import org.opensaml.saml2.core.AttributeStatement;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.schema.XSString;
+
+import ddf.security.assertion.SecurityAssertion;
+
+/**
+ * Renders the principal and security attributes of a {@link Subject} as a string, so that
+ * subjects of different sessions entitled to the same results produce the same qualifier. Only
+ * loaded when a query carries a subject.
+ */
+public final class SubjectQualifier {
+
+    private SubjectQualifier() {
+    }
+
+    /**
+     * @param subject
+     *            the subject of a query
+     * @return the principal and security attributes of the subject, or {@code null} if they cannot
+     *         be determined
+     */
+    public static String of(Object subject) {
+        if (!(subject instanceof Subject)) {
+            return null;
+        }
+
+        PrincipalCollection principals = ((Subject) subject).getPrincipals();
+        if (principals == null || principals.isEmpty()) {
+            return null;
+        }
+
+        SecurityAssertion assertion = principals.oneByType(SecurityAssertion.class);
+        if (assertion == null) {
+            return "principal=" + principals.getPrimaryPrincipal();
+        }
+
+        Principal principal = assertion.getPrincipal();
+        SortedMap<String, SortedSet<String>> attributes = new TreeMap<String, SortedSet<String>>();
+        if (assertion.getAttibuteStatements() != null) {
+            for (AttributeStatement statement : assertion.getAttibuteStatements()) {
+                for (Attribute attribute : statement.getAttributes()) {
+                    SortedSet<String> values = attributes.get(attribute.getName());
+                    if (values == null) {
+                        values = new TreeSet<String>();
+                        attributes.put(attribute.getName(), values);
+                    }
+                    for (XMLObject value : attribute.getAttributeValues()) {
+                        String text = getText(value);
+                        if (text == null) {
+                            return null;
+                        }
+                        values.add(text);
+                    }
+                }
+            }
+        }
+
+        return "principal=" + (principal == null ? null : principal.getName()) + ", attributes="
+                + attributes;
+    }
+
+    private static String getText(XMLObject value) {
+        if (value instanceof XSString) {
+            return ((XSString) value).getValue();
+        }
+        return value != null && value.getDOM() != null ? value.getDOM().getTextContent() : null;
+    }
+}
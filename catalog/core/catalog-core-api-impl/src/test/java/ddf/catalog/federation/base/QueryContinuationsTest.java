@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+public class QueryContinuationsTest {
+
+    private static final String OWNER = "principal=user, attributes={}";
+
+    private QueryContinuations continuations = new QueryContinuations();
+
+    @Test
+    public void testOwnerFetchesContinuationOnce() {
+        QueryResponseImpl remainingResults = new QueryResponseImpl(null);
+        String handle = continuations.register(remainingResults, OWNER);
+
+        assertSame(remainingResults, continuations.remove(handle, OWNER));
+        assertNull(continuations.remove(handle, OWNER));
+    }
+
+    @Test
+    public void testOtherSubjectCannotFetchOrDiscardContinuation() {
+        QueryResponseImpl remainingResults = new QueryResponseImpl(null);
+        String handle = continuations.register(remainingResults, OWNER);
+
+        assertNull(continuations.remove(handle, "principal=other, attributes={}"));
+        assertNull(continuations.remove(handle, ""));
+        assertSame(remainingResults, continuations.remove(handle, OWNER));
+    }
+
+    @Test
+    public void testContinuationOfUnknownOwnerCannotBeFetched() {
+        String handle = continuations.register(new QueryResponseImpl(null), null);
+
+        assertNull(continuations.remove(handle, null));
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceBulkheadsTest {
+
+    private static final String SOURCE_ID = "source";
+
+    private SourceBulkheads bulkheads;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        bulkheads = new SourceBulkheads();
+        bulkheads.configure(1, 1, SourceBulkheads.CALLER_RUNS_POLICY);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bulkheads.shutdown();
+    }
+
+    @Test
+    public void testCallerRunsWhenSaturated() throws Exception {
+        Executor executor = saturate();
+        final AtomicInteger callerRuns = new AtomicInteger();
+        final Thread caller = Thread.currentThread();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (Thread.currentThread() == caller) {
+                    callerRuns.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(1, callerRuns.get());
+    }
+
+    @Test
+    public void testRejectWhenSaturatedDoesNotRunOnCaller() throws Exception {
+        Executor executor = saturate();
+        final AtomicInteger runs = new AtomicInteger();
+
+        try {
+            executor.execute(SourceBulkheads.rejectWhenSaturated(new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            }));
+            fail("Expected the saturated executor to reject the query");
+        } catch (RejectedExecutionException e) {
+            assertEquals(0, runs.get());
+        }
+    }
+
+    @Test
+    public void testRejectWhenSaturatedRunsWhenAvailable() throws Exception {
+        Executor executor = bulkheads.getExecutor(SOURCE_ID);
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        executor.execute(SourceBulkheads.rejectWhenSaturated(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }));
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReconfigurationReplacesExecutorOnNextQuery() throws Exception {
+        Executor executor = saturate();
+        bulkheads.configure(2, 1, SourceBulkheads.ABORT_POLICY);
+        bulkheads.configure(2, 2, SourceBulkheads.ABORT_POLICY);
+        final CountDownLatch ran = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (Thread.currentThread() != caller) {
+                    ran.countDown();
+                }
+            }
+        });
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testQueryAfterShutdownRunsOnCaller() throws Exception {
+        Executor executor = bulkheads.getExecutor(SOURCE_ID);
+        bulkheads.shutdown();
+        final AtomicInteger runs = new AtomicInteger();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, runs.get());
+    }
+
+    /**
+     * Occupies the single thread and queue slot of the source's executor.
+     */
+    private Executor saturate() throws InterruptedException {
+        Executor executor = bulkheads.getExecutor(SOURCE_ID);
+        final CountDownLatch started = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(blocking);
+        return executor;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.federation.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ddf.catalog.federation.base.SourceCircuitBreaker.State;
+
+public class SourceCircuitBreakerTest {
+
+    private static final String SOURCE_ID = "source";
+
+    private SourceCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        breaker = new SourceCircuitBreaker();
+        breaker.setWindowSize(10);
+        breaker.setMinimumCalls(4);
+        breaker.setFailureRateThreshold(50);
+        breaker.setSlowCallDurationMillis(1000);
+        breaker.setHalfOpenCalls(2);
+    }
+
+    @Test
+    public void testStaysClosedBelowThreshold() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire(SOURCE_ID));
+            if (i % 4 == 3) {
+                breaker.onFailure(SOURCE_ID, 10);
+            } else {
+                breaker.onSuccess(SOURCE_ID, 10);
+            }
+        }
+
+        assertEquals(State.CLOSED, breaker.getState(SOURCE_ID));
+        assertTrue(breaker.isAvailable(SOURCE_ID));
+    }
+
+    @Test
+    public void testOpensOnFailures() {
+        breaker.setOpenDurationMillis(60000);
+        recordFailures(4);
+
+        assertEquals(State.OPEN, breaker.getState(SOURCE_ID));
+        assertFalse(breaker.isAvailable(SOURCE_ID));
+        assertFalse(breaker.tryAcquire(SOURCE_ID));
+        assertTrue(breaker.isAvailable("other"));
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        breaker.setOpenDurationMillis(60000);
+        breaker.setSlowCallRateThreshold(75);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(SOURCE_ID, 5000);
+        }
+
+        assertEquals(State.OPEN, breaker.getState(SOURCE_ID));
+    }
+
+    @Test
+    public void testHalfOpenProbesCloseCircuit() {
+        breaker.setOpenDurationMillis(0);
+        recordFailures(4);
+        assertEquals(State.OPEN, breaker.getState(SOURCE_ID));
+
+        // Only the configured number of probes are let through
+        assertTrue(breaker.tryAcquire(SOURCE_ID));
+        assertTrue(breaker.tryAcquire(SOURCE_ID));
+        assertEquals(State.HALF_OPEN, breaker.getState(SOURCE_ID));
+
+        breaker.onSuccess(SOURCE_ID, 10);
+        breaker.onSuccess(SOURCE_ID, 10);
+
+        assertEquals(State.CLOSED, breaker.getState(SOURCE_ID));
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopensCircuit() {
+        breaker.setOpenDurationMillis(0);
+        recordFailures(4);
+
+        assertTrue(breaker.tryAcquire(SOURCE_ID));
+        assertTrue(breaker.tryAcquire(SOURCE_ID));
+        breaker.onFailure(SOURCE_ID, 10);
+        breaker.onSuccess(SOURCE_ID, 10);
+
+        assertEquals(State.OPEN, breaker.getState(SOURCE_ID));
+    }
+
+    private void recordFailures(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.onFailure(SOURCE_ID, 10);
+        }
+    }
+}
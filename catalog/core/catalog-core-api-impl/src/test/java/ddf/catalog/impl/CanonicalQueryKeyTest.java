@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+
+import org.geotools.filter.FilterFactoryImpl;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+
+import ddf.catalog.Constants;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+
+public class CanonicalQueryKeyTest {
+
+    private static final FilterFactory FILTER_FACTORY = new FilterFactoryImpl();
+
+    @Test
+    public void testEqualRequestsHaveEqualKeys() {
+        assertEquals(key(new QueryRequestImpl(new QueryImpl(like("title", true)))),
+                key(new QueryRequestImpl(new QueryImpl(like("title", true)))));
+    }
+
+    @Test
+    public void testMatchCaseIsPartOfKey() {
+        assertFalse(key(new QueryRequestImpl(new QueryImpl(like("title", true)))).equals(
+                key(new QueryRequestImpl(new QueryImpl(like("title", false))))));
+    }
+
+    @Test
+    public void testOperandOrderIsNotPartOfKey() {
+        Filter first = FILTER_FACTORY.and(like("title", true), like("description", true));
+        Filter second = FILTER_FACTORY.and(like("description", true), like("title", true));
+
+        assertEquals(key(new QueryRequestImpl(new QueryImpl(first))),
+                key(new QueryRequestImpl(new QueryImpl(second))));
+    }
+
+    @Test
+    public void testCursorIsPartOfKey() {
+        QueryRequest firstPage = new QueryRequestImpl(new QueryImpl(like("title", true)));
+        QueryRequest nextPage = new QueryRequestImpl(new QueryImpl(like("title", true)));
+        nextPage.getProperties().put(Constants.FEDERATION_CURSOR, "cursor");
+
+        assertFalse(key(firstPage).equals(key(nextPage)));
+    }
+
+    @Test
+    public void testProjectionIsPartOfKey() {
+        QueryRequest full = new QueryRequestImpl(new QueryImpl(like("title", true)));
+        QueryRequest projected = new QueryRequestImpl(new QueryImpl(like("title", true)));
+        projected.getProperties().put(Constants.PROJECTED_ATTRIBUTES, "title,modified");
+        QueryRequest reordered = new QueryRequestImpl(new QueryImpl(like("title", true)));
+        reordered.getProperties().put(Constants.PROJECTED_ATTRIBUTES, "modified, title");
+
+        assertFalse(key(full).equals(key(projected)));
+        assertEquals(key(projected), key(reordered));
+    }
+
+    private Filter like(String attribute, boolean matchCase) {
+        return FILTER_FACTORY.like(FILTER_FACTORY.property(attribute), "value*", "*", "?", "\\",
+                matchCase);
+    }
+
+    private CanonicalQueryKey key(QueryRequest request) {
+        return new CanonicalQueryKey(request, null, Collections.singleton("local"), true);
+    }
+}
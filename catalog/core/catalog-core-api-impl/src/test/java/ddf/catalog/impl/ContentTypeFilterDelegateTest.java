@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ddf.catalog.data.Metacard;
+
+public class ContentTypeFilterDelegateTest {
+
+    private ContentTypeFilterDelegate delegate = new ContentTypeFilterDelegate();
+
+    @Test
+    public void testContentTypeEquality() {
+        assertEquals(Collections.singleton("nitf"),
+                delegate.propertyIsEqualTo(Metacard.CONTENT_TYPE, "NITF", false));
+        assertNull(delegate.propertyIsEqualTo(Metacard.TITLE, "NITF", false));
+    }
+
+    @Test
+    public void testWildcardIsUnconstrained() {
+        assertNull(delegate.propertyIsLike(Metacard.CONTENT_TYPE, "ni*", false));
+        assertEquals(Collections.singleton("nitf"),
+                delegate.propertyIsLike(Metacard.CONTENT_TYPE, "nitf", false));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testAndIntersectsConstraints() {
+        Set<String> contextual = delegate.propertyIsLike(Metacard.ANY_TEXT, "foo", false);
+        Set<String> contentTypes = delegate.and(Arrays.asList(contextual,
+                set("nitf", "video"), set("nitf")));
+
+        assertEquals(set("nitf"), contentTypes);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testAndOfDifferentContentTypesMatchesNothing() {
+        assertTrue(delegate.and(Arrays.asList(set("nitf"), set("video"))).isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOrUnitesConstraints() {
+        assertEquals(set("nitf", "video"), delegate.or(Arrays.asList(set("nitf"), set("video"))));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOrWithUnconstrainedOperandIsUnconstrained() {
+        Set<String> contextual = delegate.propertyIsLike(Metacard.ANY_TEXT, "foo", false);
+
+        assertNull(delegate.or(Arrays.asList(set("nitf"), contextual)));
+    }
+
+    @Test
+    public void testNotIsUnconstrained() {
+        assertNull(delegate.not(set("nitf")));
+    }
+
+    private Set<String> set(String... contentTypes) {
+        return new HashSet<String>(Arrays.asList(contentTypes));
+    }
+}
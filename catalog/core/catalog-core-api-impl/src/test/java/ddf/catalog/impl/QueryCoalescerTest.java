@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.filter.FilterFactoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.federation.FederationException;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+public class QueryCoalescerTest {
+
+    private static final FilterFactory FILTER_FACTORY = new FilterFactoryImpl();
+
+    private QueryCoalescer coalescer;
+
+    private QueryRequest request;
+
+    private CanonicalQueryKey key;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        coalescer = new QueryCoalescer();
+        request = new QueryRequestImpl(new QueryImpl(FILTER_FACTORY.like(
+                FILTER_FACTORY.property("title"), "foo")));
+        key = new CanonicalQueryKey(request, null, Collections.singleton("local"), true);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentQueriesShareExecution() throws Exception {
+        final List<Result> results = Arrays.asList(mock(Result.class), mock(Result.class));
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Future<QueryResponse> first = executor.submit(new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return coalescer.execute(key, request, new QueryCoalescer.Execution() {
+                    @Override
+                    public QueryResponse execute() {
+                        executions.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new QueryResponseImpl(request, results, 2);
+                    }
+                });
+            }
+        });
+
+        started.await(5, TimeUnit.SECONDS);
+        Future<QueryResponse> second = executor.submit(new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return coalescer.execute(key, request, new QueryCoalescer.Execution() {
+                    @Override
+                    public QueryResponse execute() {
+                        executions.incrementAndGet();
+                        return new QueryResponseImpl(request, results, 2);
+                    }
+                });
+            }
+        });
+
+        // Let the second request join the first before it completes
+        Thread.sleep(100);
+        release.countDown();
+
+        QueryResponse firstResponse = first.get(5, TimeUnit.SECONDS);
+        QueryResponse secondResponse = second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, executions.get());
+        assertEquals(results, firstResponse.getResults());
+        assertEquals(results, secondResponse.getResults());
+        assertNotSame(firstResponse, secondResponse);
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testFailureIsSharedWithJoinedQueries() throws Exception {
+        final FederationException failure = new FederationException("failed");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Future<QueryResponse> first = executor.submit(new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return coalescer.execute(key, request, new QueryCoalescer.Execution() {
+                    @Override
+                    public QueryResponse execute() throws FederationException {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw failure;
+                    }
+                });
+            }
+        });
+
+        started.await(5, TimeUnit.SECONDS);
+        Future<QueryResponse> second = executor.submit(new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return coalescer.execute(key, request, new QueryCoalescer.Execution() {
+                    @Override
+                    public QueryResponse execute() {
+                        return new QueryResponseImpl(request, null, 0);
+                    }
+                });
+            }
+        });
+
+        Thread.sleep(100);
+        release.countDown();
+
+        assertSame(failure, getFailure(first));
+        assertSame(failure, getFailure(second).getCause());
+    }
+
+    private Throwable getFailure(Future<QueryResponse> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            return e.getCause();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.geotools.filter.FilterFactoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.ProcessingDetailsImpl;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+
+public class QueryResultCacheTest {
+
+    private static final FilterFactory FILTER_FACTORY = new FilterFactoryImpl();
+
+    private QueryResultCache cache;
+
+    private QueryRequest request;
+
+    @Before
+    public void setUp() {
+        cache = new QueryResultCache(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        cache.setEnabled(true);
+        request = createRequest("title");
+    }
+
+    @Test
+    public void testHitAfterPut() {
+        CanonicalQueryKey key = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        QueryResponse response = cache.put(key, request, createResponse(request));
+
+        assertEquals(2, response.getResults().size());
+        assertEquals(false, response.getProperties().get(Constants.QUERY_CACHE_HIT));
+
+        QueryRequest sameRequest = createRequest("title");
+        QueryResponse cached = cache.get(new CanonicalQueryKey(sameRequest, null,
+                Collections.singleton("local"), true), sameRequest);
+
+        assertNotNull(cached);
+        assertEquals(2, cached.getResults().size());
+        assertEquals(2, cached.getHits());
+        assertEquals(true, cached.getProperties().get(Constants.QUERY_CACHE_HIT));
+    }
+
+    @Test
+    public void testDifferentFilterMisses() {
+        cache.put(new CanonicalQueryKey(request, null, Collections.singleton("local"), true),
+                request, createResponse(request));
+
+        QueryRequest otherRequest = createRequest("description");
+        assertNull(cache.get(new CanonicalQueryKey(otherRequest, null,
+                Collections.singleton("local"), true), otherRequest));
+    }
+
+    @Test
+    public void testSourceTtlExpiresEntry() {
+        cache.setSourceTtls(Arrays.asList("remote=0"));
+        CanonicalQueryKey key = new CanonicalQueryKey(request, null, new HashSet<String>(
+                Arrays.asList("local", "remote")), true);
+        cache.put(key, request, createResponse(request));
+
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        assertNull(cache.get(key, request));
+    }
+
+    @Test
+    public void testIngestInvalidatesLocalEntriesOnly() {
+        CanonicalQueryKey localKey = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        CanonicalQueryKey remoteKey = new CanonicalQueryKey(request, null,
+                Collections.singleton("remote"), false);
+        cache.put(localKey, request, createResponse(request));
+        cache.put(remoteKey, request, createResponse(request));
+
+        cache.process(mock(CreateResponse.class));
+
+        assertNull(cache.get(localKey, request));
+        assertNotNull(cache.get(remoteKey, request));
+    }
+
+    @Test
+    public void testIngestWhileRecordingPreventsCaching() {
+        final List<Runnable> recorders = new ArrayList<Runnable>();
+        cache = new QueryResultCache(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                recorders.add(command);
+            }
+        });
+        cache.setEnabled(true);
+        CanonicalQueryKey localKey = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        CanonicalQueryKey remoteKey = new CanonicalQueryKey(request, null,
+                Collections.singleton("remote"), false);
+        cache.put(localKey, request, createResponse(request));
+        cache.put(remoteKey, request, createResponse(request));
+
+        cache.process(mock(CreateResponse.class));
+        for (Runnable recorder : recorders) {
+            recorder.run();
+        }
+
+        assertNull(cache.get(localKey, request));
+        assertNotNull(cache.get(remoteKey, request));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        cache.setMaxEntries(1);
+        CanonicalQueryKey firstKey = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        QueryRequest otherRequest = createRequest("description");
+        CanonicalQueryKey secondKey = new CanonicalQueryKey(otherRequest, null,
+                Collections.singleton("local"), true);
+
+        cache.put(firstKey, request, createResponse(request));
+        cache.put(secondKey, otherRequest, createResponse(otherRequest));
+
+        assertNull(cache.get(firstKey, request));
+        assertNotNull(cache.get(secondKey, otherRequest));
+    }
+
+    @Test
+    public void testFailedResponseNotCached() {
+        CanonicalQueryKey key = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        QueryResponseImpl response = createResponse(request);
+        response.getProcessingDetails().add(new ProcessingDetailsImpl("remote", new Exception()));
+
+        cache.put(key, request, response);
+
+        assertNull(cache.get(key, request));
+    }
+
+    @Test
+    public void testPutStreamsResultsBeforeCaching() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            cache = new QueryResultCache(executor);
+            cache.setEnabled(true);
+            CanonicalQueryKey key = new CanonicalQueryKey(request, null,
+                    Collections.singleton("local"), true);
+            QueryResponseImpl streaming = new QueryResponseImpl(request, null);
+
+            QueryResponse response = cache.put(key, request, streaming);
+            streaming.addResult(mock(Result.class), false);
+
+            assertNotNull(response.poll(5000));
+            assertNull(cache.get(key, request));
+
+            streaming.setHits(1);
+            streaming.closeResultQueue();
+
+            // returns once every result has been forwarded and the response recorded
+            response.getResults();
+            QueryResponse cached = cache.get(key, request);
+            assertEquals(1, cached.getResults().size());
+            assertEquals(1, cached.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallersCannotModifyCachedMetacards() {
+        CanonicalQueryKey key = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setTitle("original");
+        QueryResponse response = cache.put(key, request, new QueryResponseImpl(request,
+                Arrays.<Result> asList(new ResultImpl(metacard)), 1));
+
+        ((MetacardImpl) response.getResults().get(0).getMetacard()).setTitle("first caller");
+        Metacard firstHit = cache.get(key, request).getResults().get(0).getMetacard();
+        ((MetacardImpl) firstHit).setTitle("second caller");
+
+        assertEquals("original", cache.get(key, request).getResults().get(0).getMetacard()
+                .getTitle());
+    }
+
+    @Test
+    public void testProjectedMetacardsAreCopiedLazily() {
+        QueryRequest projected = createRequest("title");
+        projected.getProperties().put(Constants.PROJECTED_ATTRIBUTES, "title");
+        CanonicalQueryKey key = new CanonicalQueryKey(projected, null,
+                Collections.singleton("local"), true);
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setTitle("title");
+        metacard.setMetadata("<metadata/>");
+        MetacardImpl original = spy(metacard);
+
+        cache.put(key, projected, new QueryResponseImpl(projected,
+                Arrays.<Result> asList(new ResultImpl(original)), 1)).getResults();
+        Metacard cached = cache.get(key, projected).getResults().get(0).getMetacard();
+
+        assertEquals("title", cached.getTitle());
+        verify(original, never()).getAttribute(Metacard.METADATA);
+        assertEquals("<metadata/>", cached.getMetadata());
+    }
+
+    @Test
+    public void testDisabledCacheIsBypassed() {
+        cache.setEnabled(false);
+        CanonicalQueryKey key = new CanonicalQueryKey(request, null,
+                Collections.singleton("local"), true);
+        QueryResponseImpl response = createResponse(request);
+
+        assertEquals(response, cache.put(key, request, response));
+        assertNull(cache.get(key, request));
+    }
+
+    private QueryRequest createRequest(String attribute) {
+        return new QueryRequestImpl(new QueryImpl(FILTER_FACTORY.like(
+                FILTER_FACTORY.property(attribute), "foo")));
+    }
+
+    private QueryResponseImpl createResponse(QueryRequest queryRequest) {
+        List<Result> results = Arrays.asList(mock(Result.class), mock(Result.class));
+        return new QueryResponseImpl(queryRequest, results, 2);
+    }
+}
@@ -15,11 +15,17 @@
 package ddf.catalog.operation;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.junit.Test;
 
+import ddf.catalog.data.Result;
 import ddf.catalog.operation.impl.QueryResponseImpl;
 
 /**
@@ -41,4 +47,58 @@ public void queryNullSourceResponse() throws ParserConfigurationException {
         assertNotNull(response);
     }
 
+    /**
+     * Test that batches are taken across their boundaries and in order
+     */
+    @Test
+    public void takeAcrossBatches() {
+        List<Result> results = createResults(5);
+        QueryResponseImpl response = new QueryResponseImpl(null);
+        response.addResults(results.subList(0, 2), false);
+        response.addResult(results.get(2), false);
+        response.addResults(results.subList(3, 5), true);
+
+        assertEquals(results.subList(0, 3), response.take(3));
+        assertSame(results.get(3), response.take());
+        assertEquals(results.subList(4, 5), response.take(10));
+        assertFalse(response.hasMoreResults());
+        assertNull(response.take());
+    }
+
+    /**
+     * Test that getResults waits for results added by another thread until the queue is closed
+     */
+    @Test
+    public void getResultsFromProducer() {
+        final List<Result> results = createResults(1000);
+        final QueryResponseImpl response = new QueryResponseImpl(null);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < results.size(); i += 100) {
+                    response.addResults(results.subList(i, i + 100), false);
+                }
+                response.closeResultQueue();
+            }
+        }).start();
+
+        assertEquals(results, response.getResults());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addResultAfterClose() {
+        QueryResponseImpl response = new QueryResponseImpl(null);
+        response.closeResultQueue();
+        response.addResult(mock(Result.class), false);
+    }
+
+    private List<Result> createResults(int count) {
+        List<Result> results = new ArrayList<Result>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(mock(Result.class));
+        }
+        return results;
+    }
+
 }
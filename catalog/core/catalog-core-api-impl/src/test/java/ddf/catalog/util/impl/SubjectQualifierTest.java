@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.util.impl;
+
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.junit.Test;
+import org.opensaml.saml2.core.Attribute;
+import org.opensaml.saml2.core.AttributeStatement;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.schema.XSString;
+
+import ddf.security.Subject;
+import ddf.security.assertion.SecurityAssertion;
+
+public class SubjectQualifierTest {
+
+    @Test
+    public void testSessionsWithSameAttributesMatch() {
+        String first = SubjectQualifier.of(createSubject("user", "role", "admin", "guest"));
+        String second = SubjectQualifier.of(createSubject("user", "role", "guest", "admin"));
+
+        assertNotNull(first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testDifferentAttributesDoNotMatch() {
+        String admin = SubjectQualifier.of(createSubject("user", "role", "admin"));
+        String guest = SubjectQualifier.of(createSubject("user", "role", "guest"));
+
+        assertThat(admin, not(guest));
+    }
+
+    @Test
+    public void testDifferentPrincipalsDoNotMatch() {
+        String first = SubjectQualifier.of(createSubject("first", "role", "guest"));
+        String second = SubjectQualifier.of(createSubject("second", "role", "guest"));
+
+        assertThat(first, not(second));
+    }
+
+    @Test
+    public void testUnknownSubjectIsNotQualified() {
+        assertNull(SubjectQualifier.of("subject"));
+        assertNull(SubjectQualifier.of(mock(Subject.class)));
+    }
+
+    @Test
+    public void testUnreadableAttributeIsNotQualified() {
+        Subject subject = createSubject("user", "role", "guest");
+        SecurityAssertion assertion = subject.getPrincipals().oneByType(SecurityAssertion.class);
+        Attribute attribute = assertion.getAttibuteStatements().get(0).getAttributes().get(0);
+        List<XMLObject> values = new ArrayList<XMLObject>(attribute.getAttributeValues());
+        values.add(mock(XMLObject.class));
+        when(attribute.getAttributeValues()).thenReturn(values);
+
+        assertNull(SubjectQualifier.of(subject));
+    }
+
+    private Subject createSubject(String principalName, String attributeName, String... values) {
+        List<XMLObject> attributeValues = new ArrayList<XMLObject>();
+        for (String value : values) {
+            XSString attributeValue = mock(XSString.class);
+            when(attributeValue.getValue()).thenReturn(value);
+            attributeValues.add(attributeValue);
+        }
+
+        Attribute attribute = mock(Attribute.class);
+        when(attribute.getName()).thenReturn(attributeName);
+        when(attribute.getAttributeValues()).thenReturn(attributeValues);
+
+        AttributeStatement statement = mock(AttributeStatement.class);
+        when(statement.getAttributes()).thenReturn(Arrays.asList(attribute));
+
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn(principalName);
+
+        SecurityAssertion assertion = mock(SecurityAssertion.class);
+        when(assertion.getPrincipal()).thenReturn(principal);
+        when(assertion.getAttibuteStatements()).thenReturn(Arrays.asList(statement));
+
+        PrincipalCollection principals = mock(PrincipalCollection.class);
+        when(principals.isEmpty()).thenReturn(false);
+        when(principals.oneByType(SecurityAssertion.class)).thenReturn(assertion);
+
+        Subject subject = mock(Subject.class);
+        when(subject.getPrincipals()).thenReturn(principals);
+        return subject;
+    }
+}
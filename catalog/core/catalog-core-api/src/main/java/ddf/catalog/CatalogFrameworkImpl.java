@@ -783,6 +783,13 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
             }
             validateDeleteRequest(deleteRequest);
 
+            // post-ingest plugins, such as the subscription event processor, get full metacards
+            if (postIngest != null && !postIngest.isEmpty()
+                    && deleteRequest.getPropertyValue(Constants.BULK_DELETE) != null) {
+                logger.debug("Post-ingest plugins are registered, performing a full delete.");
+                deleteRequest.getProperties().remove(Constants.BULK_DELETE);
+            }
+
             // Call the Provider delete method
             logger.debug("Calling catalog.delete() with "
                     + deleteRequest.getAttributeValues().size() + " entries.");
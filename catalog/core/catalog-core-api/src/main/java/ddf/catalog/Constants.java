@@ -137,4 +137,56 @@ public final class Constants {
 
     public static final String OAUTH_RESOURCE_OWNER_USERNAME = "resource.owner.username";
 
+    /**
+     * Request/response property holding the continuation token used for cursor based paging of
+     * federated queries. A request carrying this property with an empty value starts a new cursor;
+     * the response carries the token to send with the request for the next page.
+     */
+    public static final String FEDERATION_CURSOR = "federation-cursor";
+
+    /**
+     * Response property set by the catalog framework's query result cache, holding a
+     * {@link Boolean} that indicates whether the response was served from the cache.
+     */
+    public static final String QUERY_CACHE_HIT = "query-cache-hit";
+
+    /**
+     * Request property holding the number of milliseconds a federated query waits for results
+     * before responding with those that have arrived. When results are still outstanding at the
+     * deadline, the response carries a {@link #QUERY_CONTINUATION} handle to fetch them.
+     */
+    public static final String PROGRESSIVE_DEADLINE = "progressive-deadline";
+
+    /**
+     * Request/response property holding the handle of the results of a progressive query that had
+     * not arrived by its deadline. A request carrying this property fetches those results.
+     */
+    public static final String QUERY_CONTINUATION = "query-continuation";
+
+    /**
+     * Request/response property holding a {@link Boolean} that asks a provider to stream the
+     * results of the query, starting at the start index, instead of returning them all at once.
+     * A positive page size bounds the stream to that many results; a page size of zero or less
+     * explicitly asks for every hit. A response carrying this property is a
+     * {@link ddf.catalog.operation.QueryResponse} whose results should be consumed incrementally
+     * with {@code take} or {@code poll}.
+     */
+    public static final String STREAMING_QUERY = "streaming-query";
+
+    /**
+     * Request property holding a {@link Boolean} that allows a provider to delete records without
+     * making the deletion visible immediately and without rebuilding the deleted metacards. The
+     * response then lists metacards that carry only their id. The catalog framework clears this
+     * property when post-ingest plugins are registered, since they may need the full metacards.
+     */
+    public static final String BULK_DELETE = "bulk-delete";
+
+    /**
+     * Request property naming the attributes a query needs from each result, as a
+     * {@link java.util.Collection} of {@link String}s or a comma separated {@link String}. A
+     * provider may return metacards holding only those attributes and load the others when they
+     * are first read.
+     */
+    public static final String PROJECTED_ATTRIBUTES = "projected-attributes";
+
 }
\ No newline at end of file
@@ -39,8 +39,10 @@
 import ddf.catalog.data.MetacardImpl;
 import ddf.catalog.data.Result;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.operation.QueryImpl;
 import ddf.catalog.operation.QueryRequestImpl;
+import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.source.CatalogProvider;
 import ddf.catalog.transform.CatalogTransformerException;
@@ -53,6 +55,8 @@ public class DumpCommand extends OsgiCommandSupport {
 
     private static final String DEFAULT_TRANSFORMER_ID = "ser";
 
+    private static final int DEFAULT_STREAMING_BATCH_SIZE = 1000;
+
     private PrintStream console = System.out;
 
     private static List<MetacardTransformer> transformers = null;
@@ -103,27 +107,47 @@ protected Object doExecute() throws Exception {
 
         long resultCount = 0;
         long start = System.currentTimeMillis();
+        int batchSize = pageSize > 0 ? pageSize : DEFAULT_STREAMING_BATCH_SIZE;
+
+        /*
+         * Every page asks to be streamed. Once the provider has streamed a page, the rest is asked
+         * for in one streaming query, so providers that do not stream are never sent a query for
+         * every hit unless the page size asks for it.
+         */
+        while (true) {
+            QueryRequestImpl request = new QueryRequestImpl(query);
+            request.getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+            SourceResponse response = catalog.query(request);
+
+            boolean streaming = response instanceof QueryResponse
+                    && Boolean.TRUE.equals(response.getPropertyValue(Constants.STREAMING_QUERY));
+
+            long returned = 0;
+            if (streaming) {
+                QueryResponse stream = (QueryResponse) response;
+                while (stream.hasMoreResults()) {
+                    returned += export(dumpDir, stream.take(batchSize), resultCount + returned,
+                            batchSize);
+                }
 
-        SourceResponse response = catalog.query(new QueryRequestImpl(query));
-
-        while (response.getResults().size() > 0) {
-            response = catalog.query(new QueryRequestImpl(query));
-
-            for (Result result : response.getResults()) {
-                Metacard metacard = result.getMetacard();
-                exportMetacard(dumpDir, metacard);
-                resultCount++;
-                if (resultCount % pageSize == 0) {
-                    console.print(".");
+                for (ProcessingDetails details : stream.getProcessingDetails()) {
+                    if (details.hasException()) {
+                        printRed("Export ended early: " + details.getException().getMessage());
+                    }
                 }
+            } else {
+                returned = export(dumpDir, response.getResults(), resultCount, batchSize);
             }
+            resultCount += returned;
 
-            if (response.getResults().size() < pageSize || pageSize == -1) {
+            if (returned == 0 || returned < query.getPageSize() || query.getPageSize() <= 0) {
                 break;
             }
 
-            if (pageSize > 0) {
-                query.setStartIndex(query.getStartIndex() + pageSize);
+            query.setStartIndex(query.getStartIndex() + query.getPageSize());
+            if (streaming) {
+                // a page size of zero streams every remaining hit
+                query.setPageSize(0);
             }
         }
 
@@ -138,6 +162,22 @@ protected Object doExecute() throws Exception {
         return null;
     }
 
+    /**
+     * @return the number of metacards exported
+     */
+    private int export(File dumpDir, List<Result> results, long exported, int batchSize)
+        throws IOException, CatalogTransformerException {
+
+        for (Result result : results) {
+            exportMetacard(dumpDir, result.getMetacard());
+            exported++;
+            if (exported % batchSize == 0) {
+                console.print(".");
+            }
+        }
+        return results.size();
+    }
+
     private void exportMetacard(File dumpLocation, Metacard metacard) throws IOException,
         CatalogTransformerException {
 
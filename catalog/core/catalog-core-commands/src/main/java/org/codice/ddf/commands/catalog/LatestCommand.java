@@ -29,6 +29,7 @@
 
 import org.codice.ddf.commands.catalog.facade.CatalogFacade;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.filter.SortByImpl;
@@ -75,6 +76,9 @@ protected Object doExecute() throws Exception {
         query.setSortBy(new SortByImpl(Metacard.MODIFIED, SortOrder.DESCENDING.name()));
 
         QueryRequest queryRequest = new QueryRequestImpl(query);
+        // only these attributes are listed, so providers need not return whole records
+        queryRequest.getProperties().put(Constants.PROJECTED_ATTRIBUTES,
+                Metacard.TITLE + "," + Metacard.MODIFIED);
 
         SourceResponse response = catalogProvider.query(queryRequest);
 
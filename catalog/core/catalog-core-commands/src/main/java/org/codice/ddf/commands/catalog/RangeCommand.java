@@ -29,6 +29,7 @@
 
 import org.codice.ddf.commands.catalog.facade.CatalogFacade;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
@@ -119,6 +120,9 @@ protected Object doExecute() throws Exception {
         query.setSortBy(new SortByImpl(attributeName, SortOrder.DESCENDING.name()));
 
         QueryRequest queryRequest = new QueryRequestImpl(query);
+        // only these attributes are listed, so providers need not return whole records
+        queryRequest.getProperties().put(Constants.PROJECTED_ATTRIBUTES,
+                Metacard.TITLE + "," + attributeName);
 
         SourceResponse response = catalogProvider.query(queryRequest);
 
@@ -33,6 +33,7 @@
 
 import org.codice.ddf.commands.catalog.facade.CatalogFacade;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.filter.FilterBuilder;
@@ -42,6 +43,7 @@
 import ddf.catalog.operation.QueryImpl;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryRequestImpl;
+import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceProcessingDetails;
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.source.UnsupportedQueryException;
@@ -77,6 +79,10 @@ public class RemoveAllCommand extends CatalogCommands {
             + "Expired records are based on the Metacard EXPIRATION field.")
     boolean expired = false;
 
+    @Option(name = "-b", required = false, aliases = {"--bulk"}, multiValued = false, description = "Remove records without waiting for each batch to be committed. "
+            + "Only takes effect with the provider (-p) option and a Catalog Provider that supports streaming queries; otherwise records are removed batch by batch as usual.")
+    boolean bulk = false;
+
     @Option(name = "-f", required = false, aliases = {"--force"}, multiValued = false, description = "Force the removal without a confirmation message.")
     boolean force = false;
 
@@ -100,6 +106,24 @@ protected Object doExecute() throws Exception {
 
         FilterBuilder filterBuilder = getFilterBuilder();
 
+        if (bulk) {
+            long start = System.currentTimeMillis();
+            long totalAmountDeleted = removeInBulk(catalog, filterBuilder, console);
+
+            if (totalAmountDeleted != UNKNOWN_AMOUNT) {
+                long end = System.currentTimeMillis();
+
+                console.println();
+
+                console.printf(" %d file(s) removed in %3.3f seconds%n", totalAmountDeleted,
+                        (end - start) / MILLISECONDS_PER_SECOND);
+
+                return null;
+            }
+
+            console.println("Catalog does not support streaming queries, removing in batches.");
+        }
+
         QueryRequest firstQuery = getIntendedQuery(filterBuilder, batchSize, expired, true);
         QueryRequest subsequentQuery = getIntendedQuery(filterBuilder, batchSize, expired, false);
 
@@ -174,6 +198,70 @@ protected Object doExecute() throws Exception {
 
     }
 
+    /**
+     * Streams the ids of the records to remove and deletes them a batch at a time without waiting
+     * for each deletion to be committed. The stream continues after the last id it returned, so
+     * it is not affected by deletions becoming visible while it runs.
+     * 
+     * Only a provider is asked to stream, since the framework would run the streaming query
+     * through its federation and plugins as a regular one.
+     * 
+     * @return number of records removed, or {@link #UNKNOWN_AMOUNT} if the command does not use
+     *         the provider or the Catalog did not stream the query
+     */
+    private long removeInBulk(CatalogFacade catalog, FilterBuilder filterBuilder,
+            PrintStream console) throws Exception {
+
+        if (!isProvider) {
+            return UNKNOWN_AMOUNT;
+        }
+
+        // a page size of zero streams every hit rather than a single batch
+        QueryRequest streamingQuery = getIntendedQuery(filterBuilder, 0, expired, true);
+        streamingQuery.getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+
+        SourceResponse response;
+        try {
+            response = catalog.query(streamingQuery);
+        } catch (UnsupportedQueryException e) {
+            return UNKNOWN_AMOUNT;
+        }
+
+        if (!(response instanceof QueryResponse)
+                || !Boolean.TRUE.equals(response.getPropertyValue(Constants.STREAMING_QUERY))) {
+            return UNKNOWN_AMOUNT;
+        }
+
+        QueryResponse stream = (QueryResponse) response;
+        String totalAmount = getTotalAmount(stream.getHits());
+        long totalAmountDeleted = 0;
+
+        while (stream.hasMoreResults()) {
+            List<String> ids = new ArrayList<String>();
+
+            for (Result result : stream.take(batchSize)) {
+                if (result != null && result.getMetacard() != null) {
+                    ids.add(result.getMetacard().getId());
+                }
+            }
+
+            if (ids.isEmpty()) {
+                continue;
+            }
+
+            DeleteRequestImpl request = new DeleteRequestImpl(ids.toArray(new String[ids.size()]));
+            request.getProperties().put(Constants.BULK_DELETE, Boolean.TRUE);
+
+            DeleteResponse deleteResponse = catalog.delete(request);
+
+            totalAmountDeleted += deleteResponse.getDeletedMetacards().size();
+            console.print(String.format(PROGRESS_FORMAT, totalAmountDeleted, totalAmount));
+            console.flush();
+        }
+
+        return totalAmountDeleted;
+    }
+
     private boolean needsAlternateQueryAndResponse(SourceResponse response) {
 
         Set<ProcessingDetails> processingDetails = (Set<ProcessingDetails>) response
@@ -14,8 +14,11 @@
  **/
 package org.codice.ddf.commands.catalog;
 
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
@@ -29,13 +32,16 @@
 
 import org.fusesource.jansi.Ansi;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 import org.codice.ddf.commands.catalog.facade.CatalogFacade;
 import org.codice.ddf.commands.catalog.facade.Framework;
+import org.codice.ddf.commands.catalog.facade.Provider;
 
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardImpl;
 import ddf.catalog.data.Result;
@@ -46,6 +52,7 @@
 import ddf.catalog.operation.DeleteResponse;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.source.CatalogProvider;
 
 /**
  * Tests the {@link RemoveAllCommand} output.
@@ -138,6 +145,120 @@ protected FilterBuilder getFilterBuilder() throws InterruptedException {
 
     }
 
+    /**
+     * Checks that the bulk (-b) option falls back to batch removal, without asking for a
+     * streaming query, when the command goes through the framework.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testBulkFallsBackWithoutStreaming() throws Exception {
+        final CatalogFramework catalogFramework = mock(CatalogFramework.class);
+
+        QueryResponse queryResponse = mock(QueryResponse.class);
+
+        when(queryResponse.getResults()).thenReturn(getResultList(10));
+
+        when(catalogFramework.query(isA(QueryRequest.class))).thenReturn(queryResponse);
+
+        DeleteResponse deleteResponse = mock(DeleteResponse.class);
+
+        when(deleteResponse.getDeletedMetacards()).thenReturn(getMetacardList(10));
+
+        when(catalogFramework.delete(isA(DeleteRequest.class))).thenReturn(deleteResponse);
+
+        RemoveAllCommand removeAllCommand = new RemoveAllCommand() {
+            @Override
+            protected CatalogFacade getCatalog() throws InterruptedException {
+                return new Framework(catalogFramework);
+            }
+
+            @Override
+            protected FilterBuilder getFilterBuilder() throws InterruptedException {
+                return new GeotoolsFilterBuilder();
+            }
+        };
+
+        removeAllCommand.batchSize = 11;
+
+        removeAllCommand.force = true;
+
+        removeAllCommand.bulk = true;
+
+        removeAllCommand.doExecute();
+
+        verify(catalogFramework, times(1)).delete(isA(DeleteRequest.class));
+
+        ArgumentCaptor<QueryRequest> queries = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(catalogFramework).query(queries.capture());
+        assertThat(queries.getValue().getPropertyValue(Constants.STREAMING_QUERY), nullValue());
+
+    }
+
+    /**
+     * Checks that the bulk (-b) option streams every hit from the provider and deletes them in
+     * batches marked for bulk deletion.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testBulkStreamsThroughProvider() throws Exception {
+        final CatalogProvider catalogProvider = mock(CatalogProvider.class);
+
+        QueryResponse stream = mock(QueryResponse.class);
+
+        when(stream.getPropertyValue(Constants.STREAMING_QUERY)).thenReturn(Boolean.TRUE);
+
+        when(stream.getHits()).thenReturn(10L);
+
+        when(stream.hasMoreResults()).thenReturn(true, false);
+
+        when(stream.take(anyInt())).thenReturn(getResultList(10));
+
+        when(catalogProvider.query(isA(QueryRequest.class))).thenReturn(stream);
+
+        DeleteResponse deleteResponse = mock(DeleteResponse.class);
+
+        when(deleteResponse.getDeletedMetacards()).thenReturn(getMetacardList(10));
+
+        when(catalogProvider.delete(isA(DeleteRequest.class))).thenReturn(deleteResponse);
+
+        RemoveAllCommand removeAllCommand = new RemoveAllCommand() {
+            @Override
+            protected CatalogFacade getCatalog() throws InterruptedException {
+                return new Provider(catalogProvider);
+            }
+
+            @Override
+            protected FilterBuilder getFilterBuilder() throws InterruptedException {
+                return new GeotoolsFilterBuilder();
+            }
+        };
+
+        removeAllCommand.batchSize = 11;
+
+        removeAllCommand.force = true;
+
+        removeAllCommand.bulk = true;
+
+        removeAllCommand.isProvider = true;
+
+        removeAllCommand.doExecute();
+
+        ArgumentCaptor<QueryRequest> query = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(catalogProvider, times(1)).query(query.capture());
+        assertThat(query.getValue().getPropertyValue(Constants.STREAMING_QUERY),
+                is((Object) Boolean.TRUE));
+        assertThat(query.getValue().getQuery().getPageSize(), is(0));
+
+        ArgumentCaptor<DeleteRequest> delete = ArgumentCaptor.forClass(DeleteRequest.class);
+        verify(catalogProvider, times(1)).delete(delete.capture());
+        assertThat(delete.getValue().getPropertyValue(Constants.BULK_DELETE),
+                is((Object) Boolean.TRUE));
+        assertThat(delete.getValue().getAttributeValues().size(), is(10));
+
+    }
+
     private java.util.List<Result> getResultList(int amount) {
 
         java.util.List<Result> results = new ArrayList<Result>();
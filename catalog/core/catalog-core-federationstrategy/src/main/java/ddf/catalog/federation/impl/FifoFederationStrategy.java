@@ -37,6 +37,10 @@
  * received. This means that the first results received by this strategy are the
  * first results sent back to the client. </br><b>WARNING - This class does not
  * support the timeout parameter from the {@code Query}<b/>
+ * <p>
+ * Since results are forwarded as soon as each source responds, this strategy is well suited to
+ * progressive queries, which carry a {@link ddf.catalog.Constants#PROGRESSIVE_DEADLINE} and
+ * respond with the results of the sources that answered within it.
  * 
  * @deprecated This strategy is not recommended, not used, and not maintained.
  *             Use ddf.catalog.federation.impl.SortedFederationStrategy instead.
@@ -19,10 +19,13 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -58,6 +61,10 @@
  * {@link Result.RELEVANCE} . The supported ordering includes {@link SortOrder.DESCENDING} and
  * {@link SortOrder.ASCENDING}. For this class to function properly a sort value and sort order must
  * be provided.
+ * <p>
+ * When streaming merge is enabled (see {@link #setStreamingMerge(boolean)}), source responses are
+ * consumed in the order they complete and only the best {@link Query#getPageSize()} results are
+ * retained in a bounded heap, instead of collecting and sorting every result from every source.
  * 
  * @see Metacard
  * @see Query
@@ -74,6 +81,10 @@ public class SortedFederationStrategy extends AbstractFederationStrategy {
     private static XLogger logger = new XLogger(
             LoggerFactory.getLogger(SortedFederationStrategy.class));
 
+    private static final int DEFAULT_HEAP_CAPACITY = 1024;
+
+    private boolean streamingMerge = false;
+
     /**
      * Instantiates a {@code SortedFederationStrategy} with the provided {@link ExecutorService}.
      * 
@@ -93,6 +104,67 @@ protected Runnable createMonitor(final ExecutorService pool,
         return new SortedQueryMonitor(pool, futures, returnResults, query);
     }
 
+    @Override
+    protected Runnable createMonitor(final ExecutorService pool,
+            final Map<Source, Future<SourceResponse>> futures,
+            final CompletionService<SourceResponse> completionService,
+            final QueryResponseImpl returnResults, final Query query) {
+
+        if (streamingMerge) {
+            return new StreamingSortedQueryMonitor(futures, completionService, returnResults,
+                    query);
+        }
+        return createMonitor(pool, futures, returnResults, query);
+    }
+
+    /**
+     * To be set via Spring/Blueprint
+     * 
+     * @param streamingMerge
+     *            {@code true} to merge source responses as they complete into a bounded top-K
+     *            heap, {@code false} to collect and sort all results once every source has
+     *            responded
+     */
+    public void setStreamingMerge(boolean streamingMerge) {
+        logger.debug("Setting streaming merge to: " + streamingMerge);
+        this.streamingMerge = streamingMerge;
+    }
+
+    private Comparator<Result> getComparator(Query query) {
+        SortBy sortBy = query.getSortBy();
+        // Prepare the Comparators that we will use
+        Comparator<Result> coreComparator = DEFAULT_COMPARATOR;
+
+        if (sortBy != null && sortBy.getPropertyName() != null) {
+            PropertyName sortingProp = sortBy.getPropertyName();
+            String sortType = sortingProp.getPropertyName();
+            SortOrder sortOrder = (sortBy.getSortOrder() == null) ? SortOrder.DESCENDING : sortBy
+                    .getSortOrder();
+            logger.debug("Sorting by type: " + sortType);
+            logger.debug("Sorting by Order: " + sortBy.getSortOrder());
+
+            // Temporal searches are currently sorted by the effective time
+            if (Metacard.EFFECTIVE.equals(sortType) || Result.TEMPORAL.equals(sortType)) {
+                coreComparator = new TemporalResultComparator(sortOrder);
+            } else if (Result.DISTANCE.equals(sortType)) {
+                coreComparator = new DistanceResultComparator(sortOrder);
+            } else if (Result.RELEVANCE.equals(sortType)) {
+                coreComparator = new RelevanceResultComparator(sortOrder);
+            }
+        }
+        return coreComparator;
+    }
+
+    private static long getTimeRemaining(long deadline) {
+        long timeleft;
+        if (System.currentTimeMillis() > deadline) {
+            timeleft = 0;
+        } else {
+            timeleft = deadline - System.currentTimeMillis();
+        }
+        return timeleft;
+    }
+
     private class SortedQueryMonitor implements Runnable {
 
         private QueryResponseImpl returnResults;
@@ -115,27 +187,7 @@ public void run() {
             String methodName = "run";
             logger.entry(methodName);
 
-            SortBy sortBy = query.getSortBy();
-            // Prepare the Comparators that we will use
-            Comparator<Result> coreComparator = DEFAULT_COMPARATOR;
-
-            if (sortBy != null && sortBy.getPropertyName() != null) {
-                PropertyName sortingProp = sortBy.getPropertyName();
-                String sortType = sortingProp.getPropertyName();
-                SortOrder sortOrder = (sortBy.getSortOrder() == null) ? SortOrder.DESCENDING
-                        : sortBy.getSortOrder();
-                logger.debug("Sorting by type: " + sortType);
-                logger.debug("Sorting by Order: " + sortBy.getSortOrder());
-
-                // Temporal searches are currently sorted by the effective time
-                if (Metacard.EFFECTIVE.equals(sortType) || Result.TEMPORAL.equals(sortType)) {
-                    coreComparator = new TemporalResultComparator(sortOrder);
-                } else if (Result.DISTANCE.equals(sortType)) {
-                    coreComparator = new DistanceResultComparator(sortOrder);
-                } else if (Result.RELEVANCE.equals(sortType)) {
-                    coreComparator = new RelevanceResultComparator(sortOrder);
-                }
-            }
+            Comparator<Result> coreComparator = getComparator(query);
 
             List<Result> resultList = new ArrayList<Result>();
             long totalHits = 0;
@@ -179,6 +231,7 @@ public void run() {
                 } catch (TimeoutException e) {
                     logger.warn("search timed out: " + new Date() + " on site " + site.getId());
                     processingDetails.add(new ProcessingDetailsImpl(site.getId(), e));
+                    sourceTimedOut(entry.getValue());
                 }
             }
             logger.debug("all sites finished returning results: " + resultList.size());
@@ -193,15 +246,123 @@ public void run() {
                             : resultList, true);
         }
 
-        private long getTimeRemaining(long deadline) {
-            long timeleft;
-            if (System.currentTimeMillis() > deadline) {
-                timeleft = 0;
-            } else {
-                timeleft = deadline - System.currentTimeMillis();
-            }
-            return timeleft;
+    }
+
+    /**
+     * Merges source responses in the order they complete, keeping only the best
+     * {@link Query#getPageSize()} results in a bounded heap. The merged page cannot change once
+     * every source has either responded or timed out, at which point it is published to the
+     * {@link QueryResponseImpl}.
+     */
+    private class StreamingSortedQueryMonitor implements Runnable {
+
+        private QueryResponseImpl returnResults;
+
+        private Map<Source, Future<SourceResponse>> futures;
+
+        private CompletionService<SourceResponse> completionService;
+
+        private Query query;
+
+        public StreamingSortedQueryMonitor(Map<Source, Future<SourceResponse>> futures,
+                CompletionService<SourceResponse> completionService,
+                QueryResponseImpl returnResults, Query query) {
+
+            this.returnResults = returnResults;
+            this.query = query;
+            this.futures = futures;
+            this.completionService = completionService;
         }
 
+        @Override
+        public void run() {
+            String methodName = "run";
+            logger.entry(methodName);
+
+            Comparator<Result> coreComparator = getComparator(query);
+            int maxResults = query.getPageSize() > 0 ? query.getPageSize() : Integer.MAX_VALUE;
+
+            // The head of this heap is the worst result retained so far
+            PriorityQueue<Result> topResults = new PriorityQueue<Result>(Math.min(maxResults,
+                    DEFAULT_HEAP_CAPACITY), Collections.reverseOrder(coreComparator));
+
+            long totalHits = 0;
+            Set<ProcessingDetails> processingDetails = returnResults.getProcessingDetails();
+            Map<String, Serializable> returnProperties = returnResults.getProperties();
+
+            Map<Future<SourceResponse>, Source> pending = new IdentityHashMap<Future<SourceResponse>, Source>();
+            for (Entry<Source, Future<SourceResponse>> entry : futures.entrySet()) {
+                pending.put(entry.getValue(), entry.getKey());
+            }
+
+            long deadline = System.currentTimeMillis() + query.getTimeoutMillis();
+
+            while (!pending.isEmpty()) {
+                Future<SourceResponse> future;
+                try {
+                    future = query.getTimeoutMillis() < 1 ? completionService.take()
+                            : completionService.poll(getTimeRemaining(deadline),
+                                    TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    logger.warn("Interrupted while waiting for federated query results", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (future == null) {
+                    break;
+                }
+
+                Source site = pending.remove(future);
+                if (site == null) {
+                    continue;
+                }
+
+                try {
+                    SourceResponse sourceResponse = future.get();
+                    totalHits += sourceResponse.getHits();
+
+                    for (Result result : sourceResponse.getResults()) {
+                        if (topResults.size() < maxResults) {
+                            topResults.add(result);
+                        } else if (coreComparator.compare(result, topResults.peek()) < 0) {
+                            topResults.poll();
+                            topResults.add(result);
+                        }
+                    }
+
+                    // TODO: see DDF-1183, properties from all sources are kept even if their
+                    // results are eliminated from the merged page.
+                    returnProperties.putAll(sourceResponse.getProperties());
+                } catch (InterruptedException e) {
+                    logger.warn(
+                            "Couldn't get results from completed federated query on site with ShortName "
+                                    + site.getId(), e);
+                    processingDetails.add(new ProcessingDetailsImpl(site.getId(), e));
+                } catch (ExecutionException e) {
+                    logger.warn("Couldn't get results from completed federated query on site "
+                            + site.getId(), e);
+                    processingDetails.add(new ProcessingDetailsImpl(site.getId(), e));
+                }
+            }
+
+            for (Entry<Future<SourceResponse>, Source> entry : pending.entrySet()) {
+                Source site = entry.getValue();
+                logger.warn("search timed out: " + new Date() + " on site " + site.getId());
+                processingDetails.add(new ProcessingDetailsImpl(site.getId(),
+                        new TimeoutException()));
+                sourceTimedOut(entry.getKey());
+            }
+
+            List<Result> resultList = new ArrayList<Result>(topResults.size());
+            while (!topResults.isEmpty()) {
+                resultList.add(topResults.poll());
+            }
+            Collections.reverse(resultList);
+            logger.debug("all sites finished returning results: " + resultList.size());
+
+            returnResults.setHits(totalHits);
+            returnResults.addResults(resultList, true);
+        }
     }
 }
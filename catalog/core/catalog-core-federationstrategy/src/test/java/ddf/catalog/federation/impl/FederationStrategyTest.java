@@ -15,6 +15,7 @@
 package ddf.catalog.federation.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -29,17 +30,21 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.geotools.filter.FilterFactoryImpl;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.sort.SortOrder;
 import org.powermock.api.mockito.PowerMockito;
@@ -48,11 +53,13 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.ContentType;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.federation.base.AbstractFederationStrategy;
+import ddf.catalog.federation.base.SourceCircuitBreaker;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.impl.CatalogFrameworkImpl;
 import ddf.catalog.impl.MockDelayProvider;
@@ -575,4 +582,385 @@ public void testFederateOneSourceOffsetOnePageSizeTwo() throws Exception {
         }
     }
 
+    /**
+     * Verify that the streaming merge keeps only the best page size results from all sources, in
+     * sorted order.
+     */
+    @Test
+    public void testStreamingMergeTwoSourcesPageSizeThree() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(1);
+        when(mockQuery.getPageSize()).thenReturn(3);
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+
+        Result mockSource1Result1 = mock(Result.class);
+        Mockito.when(mockSource1Result1.getRelevanceScore()).thenReturn(0.3);
+        Result mockSource1Result2 = mock(Result.class);
+        Mockito.when(mockSource1Result2.getRelevanceScore()).thenReturn(0.7);
+        Result mockSource1Result3 = mock(Result.class);
+        Mockito.when(mockSource1Result3.getRelevanceScore()).thenReturn(0.1);
+
+        SourceResponse mockSource1Response = mock(SourceResponse.class);
+        when(mockSource1Response.getHits()).thenReturn(3L);
+        when(mockSource1Response.getResults()).thenReturn(
+                Arrays.asList(mockSource1Result1, mockSource1Result2, mockSource1Result3));
+
+        Source mockSource1 = mock(Source.class);
+        when(mockSource1.query(any(QueryRequest.class))).thenReturn(mockSource1Response);
+        when(mockSource1.getId()).thenReturn("####### MOCK SOURCE 1.5 #######");
+
+        Result mockSource2Result1 = mock(Result.class);
+        Mockito.when(mockSource2Result1.getRelevanceScore()).thenReturn(0.8);
+        Result mockSource2Result2 = mock(Result.class);
+        Mockito.when(mockSource2Result2.getRelevanceScore()).thenReturn(0.2);
+        Result mockSource2Result3 = mock(Result.class);
+        Mockito.when(mockSource2Result3.getRelevanceScore()).thenReturn(0.5);
+
+        SourceResponse mockSource2Response = mock(SourceResponse.class);
+        when(mockSource2Response.getHits()).thenReturn(3L);
+        when(mockSource2Response.getResults()).thenReturn(
+                Arrays.asList(mockSource2Result1, mockSource2Result2, mockSource2Result3));
+
+        Source mockSource2 = mock(Source.class);
+        when(mockSource2.query(any(QueryRequest.class))).thenReturn(mockSource2Response);
+        when(mockSource2.getId()).thenReturn("####### MOCK SOURCE 2.5 #######");
+
+        List<Source> sources = new ArrayList<Source>(2);
+        sources.add(mockSource1);
+        sources.add(mockSource2);
+
+        SortedFederationStrategy strategy = new SortedFederationStrategy(EXECUTOR,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+        strategy.setStreamingMerge(true);
+
+        QueryResponse federatedResponse = strategy.federate(sources, queryRequest);
+
+        assertNotNull(federatedResponse);
+        assertEquals(3, federatedResponse.getResults().size());
+        assertEquals(mockSource2Result1, federatedResponse.getResults().get(0));
+        assertEquals(mockSource1Result2, federatedResponse.getResults().get(1));
+        assertEquals(mockSource2Result3, federatedResponse.getResults().get(2));
+        assertEquals(6, federatedResponse.getHits());
+    }
+
+    /**
+     * Verify that cursor based paging requests one page from each source, positioned by the
+     * cursor, and returns the advanced cursor with the results.
+     */
+    @Test
+    public void testFederateTwoSourcesWithCursor() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(5);
+        when(mockQuery.getPageSize()).thenReturn(2);
+
+        Map<String, Serializable> properties = new HashMap<String, Serializable>();
+        properties.put(Constants.FEDERATION_CURSOR, "source1=3&source2=1");
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+        when(queryRequest.getProperties()).thenReturn(properties);
+        ArgumentCaptor<QueryRequest> argument1 = ArgumentCaptor.forClass(QueryRequest.class);
+        ArgumentCaptor<QueryRequest> argument2 = ArgumentCaptor.forClass(QueryRequest.class);
+
+        Result mockSource1Result1 = mockResult("source1", 0.9);
+        Result mockSource1Result2 = mockResult("source1", 0.8);
+        SourceResponse mockSource1Response = mock(SourceResponse.class);
+        when(mockSource1Response.getResults()).thenReturn(
+                Arrays.asList(mockSource1Result1, mockSource1Result2));
+
+        Source mockSource1 = mock(Source.class);
+        when(mockSource1.query(any(QueryRequest.class))).thenReturn(mockSource1Response);
+        when(mockSource1.getId()).thenReturn("source1");
+
+        Result mockSource2Result1 = mockResult("source2", 0.7);
+        Result mockSource2Result2 = mockResult("source2", 0.6);
+        SourceResponse mockSource2Response = mock(SourceResponse.class);
+        when(mockSource2Response.getResults()).thenReturn(
+                Arrays.asList(mockSource2Result1, mockSource2Result2));
+
+        Source mockSource2 = mock(Source.class);
+        when(mockSource2.query(any(QueryRequest.class))).thenReturn(mockSource2Response);
+        when(mockSource2.getId()).thenReturn("source2");
+
+        List<Source> sources = new ArrayList<Source>(2);
+        sources.add(mockSource1);
+        sources.add(mockSource2);
+
+        SortedFederationStrategy strategy = new SortedFederationStrategy(EXECUTOR,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+
+        QueryResponse federatedResponse = strategy.federate(sources, queryRequest);
+
+        assertEquals(2, federatedResponse.getResults().size());
+        assertEquals(mockSource1Result1, federatedResponse.getResults().get(0));
+        assertEquals(mockSource1Result2, federatedResponse.getResults().get(1));
+        assertEquals("source1=5&source2=1",
+                federatedResponse.getProperties().get(Constants.FEDERATION_CURSOR));
+
+        verify(mockSource1).query(argument1.capture());
+        assertEquals(4, argument1.getValue().getQuery().getStartIndex());
+        assertEquals(2, argument1.getValue().getQuery().getPageSize());
+
+        verify(mockSource2).query(argument2.capture());
+        assertEquals(2, argument2.getValue().getQuery().getStartIndex());
+        assertEquals(2, argument2.getValue().getQuery().getPageSize());
+    }
+
+    /**
+     * Verify that a query against a source whose executor is saturated fails immediately with a
+     * processing detail instead of waiting for a thread.
+     */
+    @Test
+    public void testSaturatedSourceFailsFast() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(1);
+        when(mockQuery.getPageSize()).thenReturn(10);
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+
+        final SourceResponse mockSourceResponse = mock(SourceResponse.class);
+        when(mockSourceResponse.getResults()).thenReturn(Arrays.asList(mock(Result.class)));
+
+        Source mockSource = mock(Source.class);
+        when(mockSource.query(any(QueryRequest.class))).thenAnswer(new Answer<SourceResponse>() {
+            @Override
+            public SourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(LONG_TIMEOUT);
+                return mockSourceResponse;
+            }
+        });
+        when(mockSource.getId()).thenReturn("####### MOCK SLOW SOURCE #######");
+
+        List<Source> sources = new ArrayList<Source>(1);
+        sources.add(mockSource);
+
+        SortedFederationStrategy strategy = new SortedFederationStrategy(EXECUTOR,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+        strategy.setSourceMaxConcurrency(1);
+        strategy.setSourceQueueDepth(1);
+
+        // One query runs, one is queued and the third is rejected
+        QueryResponse runningResponse = strategy.federate(sources, queryRequest);
+        QueryResponse queuedResponse = strategy.federate(sources, queryRequest);
+        QueryResponse rejectedResponse = strategy.federate(sources, queryRequest);
+
+        assertEquals(0, rejectedResponse.getResults().size());
+        assertEquals(1, rejectedResponse.getProcessingDetails().size());
+        assertEquals(1, runningResponse.getResults().size());
+        assertEquals(1, queuedResponse.getResults().size());
+
+        strategy.destroy();
+    }
+
+    /**
+     * Verify that a source query abandoned because it did not respond in time counts as a failure
+     * of the source for the circuit breaker.
+     */
+    @Test
+    public void testTimedOutQueryOpensCircuit() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(1);
+        when(mockQuery.getPageSize()).thenReturn(10);
+        when(mockQuery.getTimeoutMillis()).thenReturn(SHORT_TIMEOUT);
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+
+        final SourceResponse mockSourceResponse = mock(SourceResponse.class);
+        when(mockSourceResponse.getResults()).thenReturn(Arrays.asList(mock(Result.class)));
+
+        String sourceId = "####### MOCK HANGING SOURCE #######";
+        Source mockSource = mock(Source.class);
+        when(mockSource.query(any(QueryRequest.class))).thenAnswer(new Answer<SourceResponse>() {
+            @Override
+            public SourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(LONG_TIMEOUT * 10);
+                return mockSourceResponse;
+            }
+        });
+        when(mockSource.getId()).thenReturn(sourceId);
+
+        List<Source> sources = new ArrayList<Source>(1);
+        sources.add(mockSource);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        SortedFederationStrategy strategy = new SortedFederationStrategy(executor,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+        strategy.setCircuitBreakerEnabled(true);
+        strategy.setCircuitMinimumCalls(1);
+        strategy.setCircuitOpenDurationMillis(60000);
+
+        QueryResponse timedOutResponse = strategy.federate(sources, queryRequest);
+
+        assertEquals(0, timedOutResponse.getResults().size());
+        assertEquals(1, timedOutResponse.getProcessingDetails().size());
+        assertEquals(SourceCircuitBreaker.State.OPEN, strategy.getCircuitBreaker().getState(
+                sourceId));
+
+        strategy.destroy();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHedgedQueryToSlowSource() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(1);
+        when(mockQuery.getPageSize()).thenReturn(10);
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+
+        final SourceResponse mockSourceResponse = mock(SourceResponse.class);
+        when(mockSourceResponse.getResults()).thenReturn(Arrays.asList(mock(Result.class)));
+
+        final int warmUpQueries = 25;
+        final AtomicInteger queryCount = new AtomicInteger();
+        Source mockSource = mock(Source.class);
+        when(mockSource.query(any(QueryRequest.class))).thenAnswer(new Answer<SourceResponse>() {
+            @Override
+            public SourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                // The first query after warming up stalls, any other answers right away
+                if (queryCount.incrementAndGet() == warmUpQueries + 1) {
+                    Thread.sleep(LONG_TIMEOUT * 100);
+                }
+                return mockSourceResponse;
+            }
+        });
+        when(mockSource.getId()).thenReturn("####### MOCK STALLING SOURCE #######");
+
+        List<Source> sources = new ArrayList<Source>(1);
+        sources.add(mockSource);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        SortedFederationStrategy strategy = new SortedFederationStrategy(executor,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+        strategy.setHedgeRequests(true);
+
+        for (int i = 0; i < warmUpQueries; i++) {
+            assertEquals(1, strategy.federate(sources, queryRequest).getResults().size());
+        }
+
+        long start = System.currentTimeMillis();
+        QueryResponse hedgedResponse = strategy.federate(sources, queryRequest);
+
+        assertEquals(1, hedgedResponse.getResults().size());
+        assertThat(System.currentTimeMillis() - start < LONG_TIMEOUT * 50, is(true));
+        assertEquals(warmUpQueries + 2, queryCount.get());
+
+        strategy.destroy();
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testProgressiveQueryWithContinuation() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getStartIndex()).thenReturn(1);
+        when(mockQuery.getPageSize()).thenReturn(10);
+
+        Map<String, Serializable> properties = new HashMap<String, Serializable>();
+        properties.put(Constants.PROGRESSIVE_DEADLINE, LONG_TIMEOUT);
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+        when(queryRequest.getProperties()).thenReturn(properties);
+
+        final Result fastResult = mockResult("fast", 0.5);
+        final SourceResponse fastResponse = mock(SourceResponse.class);
+        when(fastResponse.getResults()).thenReturn(Arrays.asList(fastResult));
+        Source fastSource = mock(Source.class);
+        when(fastSource.getId()).thenReturn("fast");
+        when(fastSource.query(any(QueryRequest.class))).thenReturn(fastResponse);
+
+        final Result slowResult = mockResult("slow", 0.5);
+        final SourceResponse slowResponse = mock(SourceResponse.class);
+        when(slowResponse.getResults()).thenReturn(Arrays.asList(slowResult));
+        Source slowSource = mock(Source.class);
+        when(slowSource.getId()).thenReturn("slow");
+        when(slowSource.query(any(QueryRequest.class))).thenAnswer(new Answer<SourceResponse>() {
+            @Override
+            public SourceResponse answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(LONG_TIMEOUT * 5);
+                return slowResponse;
+            }
+        });
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FifoFederationStrategy strategy = new FifoFederationStrategy(executor,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+
+        QueryResponse firstResponse = strategy.federate(Arrays.asList(fastSource, slowSource),
+                queryRequest);
+
+        assertEquals(Arrays.asList(fastResult), firstResponse.getResults());
+        Serializable continuation = firstResponse.getProperties().get(
+                Constants.QUERY_CONTINUATION);
+        assertNotNull(continuation);
+
+        Map<String, Serializable> continuationProperties = new HashMap<String, Serializable>();
+        continuationProperties.put(Constants.QUERY_CONTINUATION, continuation);
+        QueryRequest continuationRequest = mock(QueryRequest.class);
+        when(continuationRequest.getQuery()).thenReturn(mockQuery);
+        when(continuationRequest.getProperties()).thenReturn(continuationProperties);
+
+        QueryResponse remainingResponse = strategy.federate(
+                Arrays.asList(fastSource, slowSource), continuationRequest);
+
+        assertEquals(Arrays.asList(slowResult), remainingResponse.getResults());
+
+        strategy.destroy();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verify that the cursor is advanced for sources whose metacards do not carry their source id.
+     */
+    @Test
+    public void testCursorAdvancesSourcesWithoutSourceIds() throws Exception {
+        Query mockQuery = mock(QueryImpl.class);
+        when(mockQuery.getPageSize()).thenReturn(3);
+
+        Map<String, Serializable> properties = new HashMap<String, Serializable>();
+        properties.put(Constants.FEDERATION_CURSOR, "");
+
+        QueryRequest queryRequest = mock(QueryRequest.class);
+        when(queryRequest.getQuery()).thenReturn(mockQuery);
+        when(queryRequest.getProperties()).thenReturn(properties);
+
+        SourceResponse mockSource1Response = mock(SourceResponse.class);
+        when(mockSource1Response.getResults()).thenReturn(
+                Arrays.asList(mockResult(null, 0.9), mockResult(null, 0.7)));
+        Source mockSource1 = mock(Source.class);
+        when(mockSource1.query(any(QueryRequest.class))).thenReturn(mockSource1Response);
+        when(mockSource1.getId()).thenReturn("source1");
+
+        SourceResponse mockSource2Response = mock(SourceResponse.class);
+        when(mockSource2Response.getResults()).thenReturn(
+                Arrays.asList(mockResult(null, 0.8), mockResult(null, 0.6)));
+        Source mockSource2 = mock(Source.class);
+        when(mockSource2.query(any(QueryRequest.class))).thenReturn(mockSource2Response);
+        when(mockSource2.getId()).thenReturn("source2");
+
+        SortedFederationStrategy strategy = new SortedFederationStrategy(EXECUTOR,
+                new ArrayList<PreFederatedQueryPlugin>(), new ArrayList<PostFederatedQueryPlugin>());
+
+        QueryResponse federatedResponse = strategy.federate(
+                Arrays.asList(mockSource1, mockSource2), queryRequest);
+
+        assertEquals(3, federatedResponse.getResults().size());
+        assertEquals("source1=2&source2=1",
+                federatedResponse.getProperties().get(Constants.FEDERATION_CURSOR));
+    }
+
+    private Result mockResult(String sourceId, double relevance) {
+        Metacard metacard = mock(Metacard.class);
+        when(metacard.getSourceId()).thenReturn(sourceId);
+        Result result = mock(Result.class);
+        when(result.getMetacard()).thenReturn(metacard);
+        when(result.getRelevanceScore()).thenReturn(relevance);
+        return result;
+    }
+
 }
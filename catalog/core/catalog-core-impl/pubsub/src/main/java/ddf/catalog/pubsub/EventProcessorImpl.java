@@ -70,7 +70,9 @@ public static enum DateType {
 
     protected CatalogFramework catalog;
 
-    private Map<String, ServiceRegistration> existingSubscriptions;
+    private SubscriptionDispatcher dispatcher;
+
+    private ServiceRegistration dispatcherRegistration;
 
     private static Logger logger = Logger.getLogger(EventProcessorImpl.class);
 
@@ -88,7 +90,7 @@ public EventProcessorImpl(BundleContext bundleContext, EventAdmin eventAdmin,
         this.preSubscription = preSubscription;
         this.preDelivery = preDelivery;
         this.catalog = catalog;
-        this.existingSubscriptions = new HashMap<String, ServiceRegistration>();
+        this.dispatcher = new SubscriptionDispatcher(catalog);
 
         if (logger.isDebugEnabled()) {
             if (this.preSubscription == null) {
@@ -119,9 +121,33 @@ public void destroy() {
         String methodName = "destroy";
         logger.debug("ENTERING: " + methodName);
 
+        synchronized (this) {
+            if (dispatcherRegistration != null) {
+                dispatcherRegistration.unregister();
+                dispatcherRegistration = null;
+            }
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+
         logger.debug("EXITING: " + methodName);
     }
 
+    /**
+     * Registers the {@link SubscriptionDispatcher} as the one handler of published events, the
+     * first time a subscription is created.
+     */
+    private synchronized void registerDispatcher() {
+        if (dispatcherRegistration == null) {
+            Dictionary<String, String[]> props = new Hashtable<String, String[]>();
+            props.put(EventConstants.EVENT_TOPIC,
+                    new String[] {PubSubConstants.PUBLISHED_EVENT_TOPIC_NAME});
+            dispatcherRegistration = bundleContext.registerService(EventHandler.class.getName(),
+                    dispatcher, props);
+        }
+    }
+
     /**
      * By default the Felix EventAdmin implementation has a timeout of 5000 ms. Your event handler
      * has to return from the handle event method in this time frame. If it does not, it gets
@@ -134,7 +160,7 @@ public void handleEvent(Event event) {
 
         logger.debug("Received event: " + event.getTopic());
 
-        if (!existingSubscriptions.isEmpty()) {
+        if (dispatcher != null && dispatcher.hasSubscriptions()) {
             String topic = event.getTopic();
             Metacard entry = (Metacard) event.getProperty(EventProcessor.EVENT_METACARD);
             logger.debug("metacard ID = " + entry.getId());
@@ -180,15 +206,9 @@ public void createSubscription(Subscription subscription, String subscriptionId)
             Predicate finalPredicate = (Predicate) subscription.accept(visitor, null);
             logger.debug("predicate from filter visitor: " + finalPredicate);
 
-            String[] topics = new String[] {PubSubConstants.PUBLISHED_EVENT_TOPIC_NAME};
-
-            Dictionary<String, String[]> props = new Hashtable<String, String[]>();
-            props.put(EventConstants.EVENT_TOPIC, topics);
-            ServiceRegistration serviceRegistration = bundleContext.registerService(
-                    EventHandler.class.getName(), new PublishedEventHandler(finalPredicate,
-                            subscription, preDelivery, catalog), props);
-
-            existingSubscriptions.put(subscriptionId, serviceRegistration);
+            registerDispatcher();
+            dispatcher.addSubscription(subscriptionId, subscription, finalPredicate,
+                    new PublishedEventHandler(finalPredicate, subscription, preDelivery, catalog));
 
             logger.debug("Subscription " + subscriptionId + " created.");
         } catch (Exception e) {
@@ -226,12 +246,8 @@ public void deleteSubscription(String subscriptionId) throws SubscriptionNotFoun
 
         try {
             logger.info("Removing subscription: " + subscriptionId);
-            ServiceRegistration sr = (ServiceRegistration) existingSubscriptions
-                    .get(subscriptionId);
-            if (sr != null) {
-                sr.unregister();
+            if (dispatcher.removeSubscription(subscriptionId)) {
                 logger.debug("Removal complete");
-                existingSubscriptions.remove(subscriptionId);
             } else {
                 logger.info("Unable to find existing subscription: " + subscriptionId
                         + ".  May already be deleted.");
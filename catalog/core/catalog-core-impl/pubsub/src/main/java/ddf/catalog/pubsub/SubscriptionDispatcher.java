@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+
+package ddf.catalog.pubsub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.geotools.geometry.jts.WKTReader2;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.event.Subscription;
+import ddf.catalog.pubsub.internal.PubSubConstants;
+import ddf.catalog.pubsub.internal.SubscriptionIndex;
+import ddf.catalog.pubsub.predicate.Predicate;
+
+/**
+ * The single {@link EventHandler} for published events. Instead of every subscription being
+ * registered with the EventAdmin and handling every event, subscriptions are kept in a
+ * {@link SubscriptionIndex} and each event is handed only to the subscriptions that listen to its
+ * source and content type, and whose geospatial criteria, if any, could contain or be near its
+ * location. The location is parsed once and passed on to the subscriptions with the event.
+ * <p>
+ * Candidates are evaluated and delivered on a set of worker threads rather than on the EventAdmin
+ * thread, so that the EventAdmin does not blacklist this handler when there are many subscriptions
+ * to evaluate. Each subscription is always evaluated on the same worker, so it still sees events in
+ * the order they were published, while a slow delivery only holds up the subscriptions sharing its
+ * worker.
+ */
+public class SubscriptionDispatcher implements EventHandler {
+
+    private static Logger logger = Logger.getLogger(SubscriptionDispatcher.class);
+
+    private final SubscriptionIndex<PublishedEventHandler> index = new SubscriptionIndex<PublishedEventHandler>();
+
+    private final CatalogFramework catalog;
+
+    private final ExecutorService[] workers;
+
+    public SubscriptionDispatcher(CatalogFramework catalog) {
+        this.catalog = catalog;
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SubscriptionDispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        workers = new ExecutorService[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    public void addSubscription(String subscriptionId, Subscription subscription,
+            Predicate predicate, PublishedEventHandler handler) {
+        index.add(subscriptionId, subscription, predicate, handler);
+    }
+
+    /**
+     * @return true if the subscription existed
+     */
+    public boolean removeSubscription(String subscriptionId) {
+        return index.remove(subscriptionId);
+    }
+
+    public boolean hasSubscriptions() {
+        return !index.isEmpty();
+    }
+
+    public void handleEvent(Event publishedEvent) {
+        Metacard metacard = (Metacard) publishedEvent.getProperty(PubSubConstants.HEADER_ENTRY_KEY);
+        if (metacard == null) {
+            logger.debug("Published event has no metacard, ignoring it.");
+            return;
+        }
+
+        String contentType = null;
+        Geometry location = null;
+        if (!isUnfilteredDelete(publishedEvent)) {
+            Object contentTypeProperty = publishedEvent
+                    .getProperty(PubSubConstants.HEADER_CONTENT_TYPE_KEY);
+            if (contentTypeProperty != null) {
+                contentType = contentTypeProperty.toString().split(",")[0];
+            }
+            location = parseLocation(metacard);
+        }
+
+        Collection<PublishedEventHandler> candidates = index.getCandidates(
+                metacard.getSourceId(), catalog.getId(), contentType, location);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Evaluating " + candidates.size() + " of " + index.size()
+                    + " subscriptions for metacard " + metacard.getId());
+        }
+
+        if (candidates.isEmpty()) {
+            return;
+        }
+        final Event event = (location == null) ? publishedEvent : withLocation(publishedEvent,
+                location);
+
+        List<List<PublishedEventHandler>> assignments = new ArrayList<List<PublishedEventHandler>>(
+                workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            assignments.add(new ArrayList<PublishedEventHandler>());
+        }
+        for (PublishedEventHandler candidate : candidates) {
+            assignments.get((candidate.hashCode() & Integer.MAX_VALUE) % workers.length).add(
+                    candidate);
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            final List<PublishedEventHandler> assigned = assignments.get(i);
+            if (!assigned.isEmpty()) {
+                workers[i].execute(new Runnable() {
+                    public void run() {
+                        for (PublishedEventHandler candidate : assigned) {
+                            try {
+                                candidate.handleEvent(event);
+                            } catch (RuntimeException e) {
+                                logger.warn("Could not evaluate event against subscription.", e);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private Geometry parseLocation(Metacard metacard) {
+        String wkt = metacard.getLocation();
+        if (wkt == null || wkt.isEmpty()) {
+            return null;
+        }
+        try {
+            return new WKTReader2().read(wkt);
+        } catch (ParseException e) {
+            logger.debug("Could not parse location of metacard " + metacard.getId()
+                    + ", not filtering subscriptions by location.", e);
+            return null;
+        }
+    }
+
+    private Event withLocation(Event event, Geometry location) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        for (String name : event.getPropertyNames()) {
+            properties.put(name, event.getProperty(name));
+        }
+        properties.put(PubSubConstants.HEADER_LOCATION_KEY, location);
+        return new Event(event.getTopic(), properties);
+    }
+
+    /**
+     * Deletes sent without metadata are delivered regardless of content type and location, see
+     * {@link ddf.catalog.pubsub.predicate.ContentTypePredicate} and
+     * {@link ddf.catalog.pubsub.predicate.GeospatialPredicate}.
+     */
+    private boolean isUnfilteredDelete(Event event) {
+        if (!PubSubConstants.DELETE.equals(event.getProperty(PubSubConstants.HEADER_OPERATION_KEY))) {
+            return false;
+        }
+        Object contextualMap = event.getProperty(PubSubConstants.HEADER_CONTEXTUAL_KEY);
+        return contextualMap instanceof Map
+                && PubSubConstants.METADATA_DELETED.equals(((Map<?, ?>) contextualMap)
+                        .get("METADATA"));
+    }
+
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+}
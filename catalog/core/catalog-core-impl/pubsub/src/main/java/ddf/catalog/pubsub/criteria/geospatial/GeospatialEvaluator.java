@@ -18,6 +18,7 @@
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -31,6 +32,8 @@
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.operation.distance.DistanceOp;
 
 import ddf.catalog.pubsub.criteria.geospatial.SpatialOperator;
@@ -84,6 +87,68 @@ private static boolean overlapsWithGeometryCollection(Geometry criteria, Geometr
         return false;
     }
 
+    /**
+     * Prepares each component of a criteria geometry, so that it can be evaluated against many
+     * inputs by {@link #evaluate(GeospatialEvaluationCriteria, List)} without recomputing its
+     * indexes.
+     */
+    public static List<PreparedGeometry> prepare(Geometry criteria) {
+        List<PreparedGeometry> prepared = new ArrayList<PreparedGeometry>(
+                criteria.getNumGeometries());
+        PreparedGeometryFactory factory = new PreparedGeometryFactory();
+        for (int i = 0; i < criteria.getNumGeometries(); ++i) {
+            prepared.add(factory.create(criteria.getGeometryN(i)));
+        }
+        return prepared;
+    }
+
+    /**
+     * Same as {@link #evaluate(GeospatialEvaluationCriteria)}, using the criteria's prepared
+     * components for CONTAINS and OVERLAPS. Prepared geometries build their indexes lazily, so
+     * callers sharing them between threads must synchronize.
+     * 
+     * @param preparedCriteria
+     *            the components of the criteria geometry, from {@link #prepare(Geometry)}
+     */
+    public static boolean evaluate(GeospatialEvaluationCriteria gec,
+            List<PreparedGeometry> preparedCriteria) {
+        String operation = gec.getOperation();
+        if (gec.getDistance() != 0.0 || operation == null) {
+            return evaluate(gec);
+        }
+
+        Geometry input = gec.getInput();
+        switch (SpatialOperator.valueOf(operation.toUpperCase())) {
+        case CONTAINS:
+            for (int whichInput = 0; whichInput < input.getNumGeometries(); ++whichInput) {
+                boolean thisInputOk = false;
+                for (PreparedGeometry criteria : preparedCriteria) {
+                    if (criteria.contains(input.getGeometryN(whichInput))) {
+                        thisInputOk = true;
+                        break;
+                    }
+                }
+                if (!thisInputOk) {
+                    return false;
+                }
+            }
+            return true;
+
+        case OVERLAPS:
+            for (PreparedGeometry criteria : preparedCriteria) {
+                for (int j = 0; j < input.getNumGeometries(); ++j) {
+                    if (criteria.intersects(input.getGeometryN(j))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+
+        default:
+            return evaluate(gec);
+        }
+    }
+
     public static boolean evaluate(GeospatialEvaluationCriteria gec) {
         String methodName = "evaluate";
         logger.debug("ENTERING: " + methodName);
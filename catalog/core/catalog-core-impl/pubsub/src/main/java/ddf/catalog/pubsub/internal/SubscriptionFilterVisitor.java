@@ -51,10 +51,12 @@
 import ddf.catalog.impl.filter.FuzzyFunction;
 import ddf.catalog.pubsub.EventProcessorImpl.DateType;
 import ddf.catalog.pubsub.criteria.geospatial.SpatialOperator;
+import ddf.catalog.pubsub.predicate.AndPredicate;
 import ddf.catalog.pubsub.predicate.ContentTypePredicate;
 import ddf.catalog.pubsub.predicate.ContextualPredicate;
 import ddf.catalog.pubsub.predicate.EntryPredicate;
 import ddf.catalog.pubsub.predicate.GeospatialPredicate;
+import ddf.catalog.pubsub.predicate.OrPredicate;
 import ddf.catalog.pubsub.predicate.Predicate;
 import ddf.catalog.pubsub.predicate.TemporalPredicate;
 
@@ -471,16 +473,7 @@ public static Predicate and(final Predicate left, final Predicate right) {
         notNull(left, "left");
         notNull(right, "right");
 
-        return new Predicate() {
-            public boolean matches(Event properties) {
-                return left.matches(properties) && right.matches(properties);
-            }
-
-            @Override
-            public String toString() {
-                return "(" + left + ") AND (" + right + ")";
-            }
-        };
+        return new AndPredicate(left, right);
     }
 
     /**
@@ -490,16 +483,7 @@ public static Predicate or(final Predicate left, final Predicate right) {
         notNull(left, "left");
         notNull(right, "right");
 
-        return new Predicate() {
-            public boolean matches(Event properties) {
-                return left.matches(properties) || right.matches(properties);
-            }
-
-            @Override
-            public String toString() {
-                return "(" + left + ") OR (" + right + ")";
-            }
-        };
+        return new OrPredicate(left, right);
     }
 
     /**
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.pubsub.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import ddf.catalog.event.Subscription;
+import ddf.catalog.pubsub.predicate.AndPredicate;
+import ddf.catalog.pubsub.predicate.ContentTypePredicate;
+import ddf.catalog.pubsub.predicate.GeospatialPredicate;
+import ddf.catalog.pubsub.predicate.OrPredicate;
+import ddf.catalog.pubsub.predicate.Predicate;
+
+/**
+ * Stores subscriptions so that the ones that could match an event are found without looking at
+ * every subscription. Subscriptions are partitioned first by the sources they listen to
+ * (enterprise, local or a list of source ids), then by the content types their predicate requires.
+ * Subscriptions whose predicate requires a location are also kept in an STR-tree of their
+ * envelopes, so that an event's location is only checked against the subscriptions whose
+ * envelopes it intersects. Candidates still have to be checked against their predicate.
+ * 
+ * @param <T>
+ *            what is stored for each subscription
+ */
+public class SubscriptionIndex<T> {
+
+    /**
+     * Content types containing any of these are patterns rather than names.
+     */
+    private static final Pattern PATTERN_CHARACTERS = Pattern.compile("[\\\\.\\[\\]{}()*+?^$|]");
+
+    private final Partition<T> enterprise = new Partition<T>();
+
+    private final Partition<T> local = new Partition<T>();
+
+    private final Map<String, Partition<T>> bySourceId = new HashMap<String, Partition<T>>();
+
+    /**
+     * Maps that each subscription was added to, so that it can be removed from them.
+     */
+    private final Map<String, List<Map<String, T>>> locations = new HashMap<String, List<Map<String, T>>>();
+
+    /**
+     * Envelopes of the subscriptions whose predicate requires a location.
+     */
+    private final Map<String, Envelope> envelopes = new HashMap<String, Envelope>();
+
+    /**
+     * Built from {@link #envelopes} when first needed, since an STR-tree cannot be changed once
+     * built. Null when subscriptions have changed since it was built.
+     */
+    private STRtree spatialIndex;
+
+    /**
+     * Adds or replaces a subscription.
+     * 
+     * @param subscriptionId
+     *            id of the subscription
+     * @param subscription
+     *            the subscription, used for its source ids
+     * @param predicate
+     *            the subscription's predicate, used for its content types and location, or null
+     *            if it matches all events
+     * @param value
+     *            what is returned for the subscription by
+     *            {@link #getCandidates(String, String, String, Geometry)}
+     */
+    public synchronized void add(String subscriptionId, Subscription subscription,
+            Predicate predicate, T value) {
+        remove(subscriptionId);
+
+        List<Partition<T>> partitions = new ArrayList<Partition<T>>();
+        Set<String> sourceIds = subscription.getSourceIds();
+        if (subscription.isEnterprise()) {
+            partitions.add(enterprise);
+        } else if (sourceIds == null || sourceIds.isEmpty()) {
+            partitions.add(local);
+        } else {
+            for (String sourceId : sourceIds) {
+                Partition<T> partition = bySourceId.get(sourceId);
+                if (partition == null) {
+                    partition = new Partition<T>();
+                    bySourceId.put(sourceId, partition);
+                }
+                partitions.add(partition);
+            }
+        }
+
+        Set<String> contentTypes = getContentTypes(predicate);
+        List<Map<String, T>> subscriptionLocations = new ArrayList<Map<String, T>>();
+
+        for (Partition<T> partition : partitions) {
+            if (contentTypes == null) {
+                subscriptionLocations.add(partition.anyContentType);
+            } else {
+                for (String contentType : contentTypes) {
+                    Map<String, T> subscriptions = partition.byContentType.get(contentType);
+                    if (subscriptions == null) {
+                        subscriptions = new HashMap<String, T>();
+                        partition.byContentType.put(contentType, subscriptions);
+                    }
+                    subscriptionLocations.add(subscriptions);
+                }
+            }
+        }
+
+        for (Map<String, T> subscriptions : subscriptionLocations) {
+            subscriptions.put(subscriptionId, value);
+        }
+        locations.put(subscriptionId, subscriptionLocations);
+
+        Envelope envelope = getEnvelope(predicate);
+        if (envelope != null) {
+            envelopes.put(subscriptionId, envelope);
+            spatialIndex = null;
+        }
+    }
+
+    /**
+     * @param subscriptionId
+     *            id of the subscription
+     * @return true if the subscription was found and removed
+     */
+    public synchronized boolean remove(String subscriptionId) {
+        List<Map<String, T>> subscriptionLocations = locations.remove(subscriptionId);
+        if (subscriptionLocations == null) {
+            return false;
+        }
+        for (Map<String, T> subscriptions : subscriptionLocations) {
+            subscriptions.remove(subscriptionId);
+        }
+        if (envelopes.remove(subscriptionId) != null) {
+            spatialIndex = null;
+        }
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return locations.isEmpty();
+    }
+
+    public synchronized int size() {
+        return locations.size();
+    }
+
+    /**
+     * Finds the subscriptions that may match an event, regardless of their locations.
+     * 
+     * @see #getCandidates(String, String, String, Geometry)
+     */
+    public Collection<T> getCandidates(String sourceId, String localSourceId, String contentType) {
+        return getCandidates(sourceId, localSourceId, contentType, null);
+    }
+
+    /**
+     * Finds the subscriptions that may match an event.
+     * 
+     * @param sourceId
+     *            source id of the event's metacard
+     * @param localSourceId
+     *            id of the local catalog
+     * @param contentType
+     *            content type name of the event's metacard, or null to return subscriptions
+     *            regardless of their content types
+     * @param location
+     *            location of the event's metacard, or null to return subscriptions regardless of
+     *            their locations
+     * @return each candidate subscription once
+     */
+    public synchronized Collection<T> getCandidates(String sourceId, String localSourceId,
+            String contentType, Geometry location) {
+        Map<String, T> candidates = new HashMap<String, T>();
+
+        enterprise.addCandidates(contentType, candidates);
+        if (localSourceId != null && localSourceId.equals(sourceId)) {
+            local.addCandidates(contentType, candidates);
+        }
+        if (sourceId != null) {
+            Partition<T> partition = bySourceId.get(sourceId);
+            if (partition != null) {
+                partition.addCandidates(contentType, candidates);
+            }
+        }
+
+        if (location != null && !envelopes.isEmpty() && !candidates.isEmpty()) {
+            Set<Object> intersecting = new HashSet<Object>(getSpatialIndex().query(
+                    location.getEnvelopeInternal()));
+            Iterator<String> subscriptionIds = candidates.keySet().iterator();
+            while (subscriptionIds.hasNext()) {
+                String subscriptionId = subscriptionIds.next();
+                if (envelopes.containsKey(subscriptionId)
+                        && !intersecting.contains(subscriptionId)) {
+                    subscriptionIds.remove();
+                }
+            }
+        }
+
+        return candidates.values();
+    }
+
+    private STRtree getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new STRtree();
+            for (Map.Entry<String, Envelope> entry : envelopes.entrySet()) {
+                spatialIndex.insert(entry.getValue(), entry.getKey());
+            }
+            spatialIndex.build();
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * Finds the envelope an event's location must intersect to match a predicate. A distance
+     * predicate's envelope is expanded by its distance.
+     * 
+     * @return the envelope, which is a null envelope if the predicate cannot match any location,
+     *         or null if the predicate may match any location
+     */
+    static Envelope getEnvelope(Predicate predicate) {
+        if (predicate instanceof GeospatialPredicate) {
+            GeospatialPredicate geospatialPredicate = (GeospatialPredicate) predicate;
+            if (geospatialPredicate.getGeoCriteria() == null) {
+                return null;
+            }
+            Envelope envelope = new Envelope(geospatialPredicate.getGeoCriteria()
+                    .getEnvelopeInternal());
+            if (geospatialPredicate.getDistance() > 0) {
+                envelope.expandBy(geospatialPredicate.getDistance());
+            }
+            return envelope;
+        } else if (predicate instanceof AndPredicate) {
+            Envelope left = getEnvelope(((AndPredicate) predicate).getLeft());
+            Envelope right = getEnvelope(((AndPredicate) predicate).getRight());
+            if (left == null || right == null) {
+                return (left == null) ? right : left;
+            }
+            return left.intersection(right);
+        } else if (predicate instanceof OrPredicate) {
+            Envelope left = getEnvelope(((OrPredicate) predicate).getLeft());
+            Envelope right = getEnvelope(((OrPredicate) predicate).getRight());
+            if (left == null || right == null) {
+                return null;
+            }
+            Envelope either = new Envelope(left);
+            either.expandToInclude(right);
+            return either;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the content type names an event must have to match a predicate.
+     * 
+     * @return the names, or null if the predicate may match any content type
+     */
+    static Set<String> getContentTypes(Predicate predicate) {
+        if (predicate instanceof ContentTypePredicate) {
+            String type = ((ContentTypePredicate) predicate).getType();
+            if (type == null || PATTERN_CHARACTERS.matcher(type).find()) {
+                return null;
+            }
+            return Collections.singleton(type);
+        } else if (predicate instanceof AndPredicate) {
+            Set<String> left = getContentTypes(((AndPredicate) predicate).getLeft());
+            Set<String> right = getContentTypes(((AndPredicate) predicate).getRight());
+            if (left == null || right == null) {
+                return (left == null) ? right : left;
+            }
+            Set<String> both = new HashSet<String>(left);
+            both.retainAll(right);
+            return both;
+        } else if (predicate instanceof OrPredicate) {
+            Set<String> left = getContentTypes(((OrPredicate) predicate).getLeft());
+            Set<String> right = getContentTypes(((OrPredicate) predicate).getRight());
+            if (left == null || right == null) {
+                return null;
+            }
+            Set<String> either = new HashSet<String>(left);
+            either.addAll(right);
+            return either;
+        }
+        return null;
+    }
+
+    private static class Partition<T> {
+
+        private final Map<String, T> anyContentType = new HashMap<String, T>();
+
+        private final Map<String, Map<String, T>> byContentType = new HashMap<String, Map<String, T>>();
+
+        private void addCandidates(String contentType, Map<String, T> candidates) {
+            candidates.putAll(anyContentType);
+            if (contentType == null) {
+                for (Map<String, T> subscriptions : byContentType.values()) {
+                    candidates.putAll(subscriptions);
+                }
+            } else {
+                Map<String, T> subscriptions = byContentType.get(contentType);
+                if (subscriptions != null) {
+                    candidates.putAll(subscriptions);
+                }
+            }
+        }
+    }
+
+}
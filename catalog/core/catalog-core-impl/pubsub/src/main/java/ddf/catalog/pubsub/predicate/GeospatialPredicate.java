@@ -16,6 +16,7 @@
 package ddf.catalog.pubsub.predicate;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -23,6 +24,7 @@
 import org.osgi.service.event.Event;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.io.ParseException;
 
 import ddf.catalog.data.Metacard;
@@ -38,6 +40,12 @@ public class GeospatialPredicate implements Predicate {
 
     private double distance;
 
+    /**
+     * Components of {@link #geoCriteria}, prepared once since the same criteria is evaluated
+     * against every published event.
+     */
+    private List<PreparedGeometry> preparedCriteria;
+
     private static final Logger logger = Logger.getLogger(GeospatialPredicate.class);
 
     /**
@@ -55,6 +63,7 @@ public GeospatialPredicate(String wkt, String geoOperation, double distance) {
         try {
             WKTReader2 wktreader = new WKTReader2();
             this.geoCriteria = wktreader.read(wkt);
+            this.preparedCriteria = GeospatialEvaluator.prepare(geoCriteria);
         } catch (Exception e) {
             logger.error(e);
         }
@@ -65,6 +74,9 @@ public GeospatialPredicate(Geometry geo, String geoOperation, double distance) {
         this.distance = distance;
 
         this.geoCriteria = geo;
+        if (geo != null) {
+            this.preparedCriteria = GeospatialEvaluator.prepare(geo);
+        }
     }
 
     public boolean matches(Event properties) {
@@ -94,9 +106,21 @@ public boolean matches(Event properties) {
 
         GeospatialEvaluationCriteria gec;
         try {
-            gec = new GeospatialEvaluationCriteriaImpl(geoCriteria, geoOperation,
-                    entry.getLocation(), distance);
-            return GeospatialEvaluator.evaluate(gec);
+            // the dispatcher parses the location once for all subscriptions
+            Object location = properties.getProperty(PubSubConstants.HEADER_LOCATION_KEY);
+            if (location instanceof Geometry) {
+                gec = new GeospatialEvaluationCriteriaImpl(geoCriteria, geoOperation,
+                        (Geometry) location, distance);
+            } else {
+                gec = new GeospatialEvaluationCriteriaImpl(geoCriteria, geoOperation,
+                        entry.getLocation(), distance);
+            }
+            if (preparedCriteria == null) {
+                return GeospatialEvaluator.evaluate(gec);
+            }
+            synchronized (preparedCriteria) {
+                return GeospatialEvaluator.evaluate(gec, preparedCriteria);
+            }
         } catch (ParseException e) {
             logger.warn("Error parsing WKT string.  Unable to compare geos.  Returning false.");
             return false;
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.pubsub;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.geotools.geometry.jts.WKTReader2;
+import org.junit.Test;
+
+import com.vividsolutions.jts.io.ParseException;
+
+import ddf.catalog.pubsub.internal.SubscriptionFilterVisitor;
+import ddf.catalog.pubsub.internal.SubscriptionIndex;
+import ddf.catalog.pubsub.predicate.ContentTypePredicate;
+import ddf.catalog.pubsub.predicate.GeospatialPredicate;
+import ddf.catalog.pubsub.predicate.Predicate;
+import ddf.catalog.pubsub.predicate.TruePredicate;
+
+public class TestSubscriptionIndex {
+
+    private static final String LOCAL = "local";
+
+    @Test
+    public void testPartitionedBySource() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<String>();
+        index.add("enterprise", createSubscription(true), null, "enterprise");
+        index.add("local", createSubscription(false), null, "local");
+        index.add("remote", createSubscription(false, "remote"), null, "remote");
+
+        assertEquals(new HashSet<String>(Arrays.asList("enterprise", "local")),
+                new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "nitf")));
+        assertEquals(new HashSet<String>(Arrays.asList("enterprise", "remote")),
+                new HashSet<String>(index.getCandidates("remote", LOCAL, "nitf")));
+        assertEquals(Collections.singleton("enterprise"),
+                new HashSet<String>(index.getCandidates("other", LOCAL, "nitf")));
+    }
+
+    @Test
+    public void testPartitionedByContentType() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<String>();
+        index.add("nitf", createSubscription(true), new ContentTypePredicate("nitf", "2.0"),
+                "nitf");
+        index.add("nitfAndMore", createSubscription(true), SubscriptionFilterVisitor.and(
+                new TruePredicate(), new ContentTypePredicate("nitf", null)), "nitfAndMore");
+        index.add("nitfOrWord", createSubscription(true), SubscriptionFilterVisitor.or(
+                new ContentTypePredicate("nitf", null), new ContentTypePredicate("word", null)),
+                "nitfOrWord");
+        index.add("wildcard", createSubscription(true), new ContentTypePredicate("ni*", null),
+                "wildcard");
+
+        assertEquals(new HashSet<String>(Arrays.asList("nitf", "nitfAndMore", "nitfOrWord",
+                "wildcard")), new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "nitf")));
+        assertEquals(new HashSet<String>(Arrays.asList("nitfOrWord", "wildcard")),
+                new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "word")));
+        assertEquals(4, index.getCandidates(LOCAL, LOCAL, null).size());
+    }
+
+    @Test
+    public void testPartitionedByLocation() throws ParseException {
+        SubscriptionIndex<String> index = new SubscriptionIndex<String>();
+        index.add("within", createSubscription(true), new GeospatialPredicate(
+                "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))", "CONTAINS", 0.0), "within");
+        index.add("nearby", createSubscription(true), SubscriptionFilterVisitor.and(
+                new ContentTypePredicate("nitf", null), new GeospatialPredicate("POINT (20 20)",
+                        null, 1.0)), "nearby");
+        index.add("geoOrNitf", createSubscription(true), SubscriptionFilterVisitor.or(
+                new GeospatialPredicate("POINT (50 50)", null, 1.0), new ContentTypePredicate(
+                        "nitf", null)), "geoOrNitf");
+        index.add("anywhere", createSubscription(true), null, "anywhere");
+
+        WKTReader2 reader = new WKTReader2();
+        assertEquals(new HashSet<String>(Arrays.asList("within", "geoOrNitf", "anywhere")),
+                new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "nitf",
+                        reader.read("POINT (5 5)"))));
+        assertEquals(new HashSet<String>(Arrays.asList("nearby", "geoOrNitf", "anywhere")),
+                new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "nitf",
+                        reader.read("POINT (20.5 20)"))));
+        assertEquals(4, index.getCandidates(LOCAL, LOCAL, "nitf", null).size());
+
+        index.remove("within");
+        assertEquals(new HashSet<String>(Arrays.asList("geoOrNitf", "anywhere")),
+                new HashSet<String>(index.getCandidates(LOCAL, LOCAL, "nitf",
+                        reader.read("POINT (5 5)"))));
+    }
+
+    @Test
+    public void testRemove() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<String>();
+        Predicate predicate = new ContentTypePredicate("nitf", null);
+        index.add("id", createSubscription(false, "remote1", "remote2"), predicate, "id");
+
+        assertEquals(true, index.remove("id"));
+        assertEquals(false, index.remove("id"));
+        assertEquals(true, index.isEmpty());
+        assertEquals(0, index.getCandidates("remote2", LOCAL, "nitf").size());
+    }
+
+    private MockSubscription createSubscription(boolean enterprise, String... sourceIds) {
+        MockSubscription subscription = new MockSubscription(null, new MockDeliveryMethod());
+        subscription.setIsEnterprise(enterprise);
+        if (sourceIds.length > 0) {
+            subscription.setSourceIds(new HashSet<String>(Arrays.asList(sourceIds)));
+        }
+        return subscription;
+    }
+
+}
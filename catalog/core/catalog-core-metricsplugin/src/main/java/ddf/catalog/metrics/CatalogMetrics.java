@@ -14,6 +14,7 @@
  **/
 package ddf.catalog.metrics;
 
+import java.io.Serializable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +28,7 @@
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 
+import ddf.catalog.Constants;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.operation.CreateResponse;
@@ -96,6 +98,10 @@ public final class CatalogMetrics implements PreQueryPlugin, PostQueryPlugin, Po
 
     protected final Meter temporalQueries;
 
+    protected final Meter cacheHits;
+
+    protected final Meter cacheMisses;
+
     protected final Meter createdMetacards;
 
     protected final Meter updatedMetacards;
@@ -117,6 +123,8 @@ public CatalogMetrics(FilterAdapter filterAdapter) {
         xpathQueries = metrics.meter(MetricRegistry.name(QUERIES_SCOPE, "Xpath"));
         fuzzyQueries = metrics.meter(MetricRegistry.name(QUERIES_SCOPE, "Fuzzy"));
         temporalQueries = metrics.meter(MetricRegistry.name(QUERIES_SCOPE, "Temporal"));
+        cacheHits = metrics.meter(MetricRegistry.name(QUERIES_SCOPE, "CacheHits"));
+        cacheMisses = metrics.meter(MetricRegistry.name(QUERIES_SCOPE, "CacheMisses"));
 
         exceptions = metrics.meter(MetricRegistry.name(EXCEPTIONS_SCOPE));
         unsupportedQueryExceptions = metrics.meter(MetricRegistry.name(EXCEPTIONS_SCOPE,
@@ -140,6 +148,7 @@ public QueryResponse process(QueryResponse input) throws PluginExecutionExceptio
         StopProcessingException {
         resultCount.update(input.getHits());
         recordSourceQueryExceptions(input);
+        recordQueryCacheUsage(input);
 
         return input;
     }
@@ -233,6 +242,20 @@ private void recordSourceQueryExceptions(QueryResponse response) {
         return;
     }
 
+    private void recordQueryCacheUsage(QueryResponse response) {
+        Map<String, Serializable> properties = response.getProperties();
+        if (properties == null) {
+            return;
+        }
+
+        Serializable cacheHit = properties.get(Constants.QUERY_CACHE_HIT);
+        if (Boolean.TRUE.equals(cacheHit)) {
+            cacheHits.mark();
+        } else if (Boolean.FALSE.equals(cacheHit)) {
+            cacheMisses.mark();
+        }
+    }
+
     private boolean isFederated(QueryRequest queryRequest) {
         Set<String> sourceIds = queryRequest.getSourceIds();
 
@@ -36,6 +36,7 @@
 
 import com.codahale.metrics.MetricRegistry;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterAdapter;
@@ -96,6 +97,8 @@ public void tearDown() {
         underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.QUERIES_SCOPE, "Xpath"));
         underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.QUERIES_SCOPE, "Fuzzy"));
         underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.QUERIES_SCOPE, "Temporal"));
+        underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.QUERIES_SCOPE, "CacheHits"));
+        underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.QUERIES_SCOPE, "CacheMisses"));
 
         underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.EXCEPTIONS_SCOPE));
         underTest.metrics.remove(MetricRegistry.name(CatalogMetrics.EXCEPTIONS_SCOPE,
@@ -212,6 +215,23 @@ public void catalogResultCountMetric() throws Exception {
         assertThat(underTest.resultCount.getSnapshot().getMean(), is(50.0));
     }
 
+    @Test
+    public void catalogQueryCacheMetric() throws Exception {
+        QueryRequest query = new QueryRequestImpl(new QueryImpl(idFilter));
+        QueryResponse hit = new QueryResponseImpl(query, new ArrayList(), 0);
+        hit.getProperties().put(Constants.QUERY_CACHE_HIT, true);
+        QueryResponse miss = new QueryResponseImpl(query, new ArrayList(), 0);
+        miss.getProperties().put(Constants.QUERY_CACHE_HIT, false);
+
+        underTest.process(hit);
+        underTest.process(hit);
+        underTest.process(miss);
+        underTest.process(new QueryResponseImpl(query, new ArrayList(), 0));
+
+        assertThat(underTest.cacheHits.getCount(), is(2L));
+        assertThat(underTest.cacheMisses.getCount(), is(1L));
+    }
+
     @Test
     public void catalogExceptionMetric() throws Exception {
         QueryResponse response = new QueryResponseImpl(
@@ -68,6 +68,12 @@ public class OpenSearchEndpoint implements ConfigurationWatcher {
 
     private static final String UPDATE_QUERY_INTERVAL = "interval";
 
+    private static final String PROGRESSIVE_DEADLINE = "progressive";
+
+    private static final String CONTINUATION = "continuation";
+
+    private static final String CONTINUATION_HEADER = "X-Query-Continuation";
+
     private final CatalogFramework framework;
 
     private final FilterBuilder filterBuilder;
@@ -140,6 +146,10 @@ public OpenSearchEndpoint(CatalogFramework framework, FilterBuilder filterBuilde
     }
 
     /**
+     * The parameter {@code progressive} makes the query respond with the results that arrived
+     * within that many milliseconds. When results are still outstanding, the response carries a
+     * continuation handle in the {@code X-Query-Continuation} header; repeating the query with
+     * {@code continuation=<handle>} fetches them.
      * 
      * @param searchTerms
      *            Space delimited list of search terms.
@@ -444,13 +454,22 @@ private Response executeQuery(String format, OpenSearchQuery query, UriInfo ui,
                     queryRequest.getProperties().put(SecurityConstants.SECURITY_SUBJECT, subject);
                 }
 
+                addProgressiveProperties(queryRequest, queryParams);
+
                 LOGGER.debug("Sending query");
                 queryResponse = framework.query(queryRequest);
 
                 // pass in the format for the transform
                 BinaryContent content = framework.transform(queryResponse, queryFormat, arguments);
-                response = Response.ok(content.getInputStream(), content.getMimeTypeValue())
-                        .build();
+                Response.ResponseBuilder responseBuilder = Response.ok(content.getInputStream(),
+                        content.getMimeTypeValue());
+                Serializable continuation = queryResponse.getProperties() == null ? null
+                        : queryResponse.getProperties().get(Constants.QUERY_CONTINUATION);
+                if (continuation != null) {
+                    LOGGER.debug("Results still outstanding, returning a continuation.");
+                    responseBuilder.header(CONTINUATION_HEADER, continuation.toString());
+                }
+                response = responseBuilder.build();
             } else {
                 // No query was specified
                 QueryRequest queryRequest = new QueryRequestImpl(query, query.isEnterprise(),
@@ -494,6 +513,37 @@ private Response executeQuery(String format, OpenSearchQuery query, UriInfo ui,
 
     }
 
+    /**
+     * Adds the progressive deadline and continuation handle of the incoming parameters, if any, to
+     * the request.
+     * 
+     * @param queryRequest
+     *            - the request to send
+     * @param queryParams
+     *            - the incoming parameters
+     * @throws UnsupportedQueryException
+     *             if the progressive deadline is not a number
+     */
+    private void addProgressiveProperties(QueryRequest queryRequest,
+            MultivaluedMap<String, String> queryParams) throws UnsupportedQueryException {
+        String deadline = queryParams.getFirst(PROGRESSIVE_DEADLINE);
+        if (StringUtils.isNotBlank(deadline)) {
+            LOGGER.debug("Progressive deadline: " + deadline);
+            try {
+                queryRequest.getProperties().put(Constants.PROGRESSIVE_DEADLINE,
+                        Long.valueOf(deadline.trim()));
+            } catch (NumberFormatException e) {
+                throw new UnsupportedQueryException("Invalid progressive deadline: " + deadline, e);
+            }
+        }
+
+        String continuation = queryParams.getFirst(CONTINUATION);
+        if (StringUtils.isNotBlank(continuation)) {
+            LOGGER.debug("Continuing query.");
+            queryRequest.getProperties().put(Constants.QUERY_CONTINUATION, continuation.trim());
+        }
+    }
+
     /**
      * Creates a new query from the incoming parameters
      * 
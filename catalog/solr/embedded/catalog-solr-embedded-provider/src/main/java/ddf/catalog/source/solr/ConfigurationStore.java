@@ -35,6 +35,24 @@ public class ConfigurationStore {
 
     private boolean disableTextPath;
 
+    private boolean asyncIngest;
+
+    private int ingestQueueCapacity = 10000;
+
+    private int ingestBatchSize = 1000;
+
+    private int commitWithinMillis = 1000;
+
+    private int documentBuildThreads;
+
+    private int parallelBuildThreshold = 250;
+
+    private boolean useFilterQueries;
+
+    private boolean timePartitioned;
+
+    private int contentTypeRefreshSeconds = 300;
+
     private ConfigurationStore() {
     }
 
@@ -97,6 +115,138 @@ public void setForceAutoCommit(boolean forceAutoCommit) {
         this.forceAutoCommit = forceAutoCommit;
     }
 
+    /**
+     * 
+     * @return true, if created metacards are queued and added to the index in batches
+     */
+    public boolean isAsyncIngest() {
+        return asyncIngest;
+    }
+
+    /**
+     * 
+     * @param asyncIngest
+     *            When set to true, documents from concurrent create requests are coalesced into
+     *            batched adds that are made visible within {@link #getCommitWithinMillis()}.
+     */
+    public void setAsyncIngest(boolean asyncIngest) {
+        this.asyncIngest = asyncIngest;
+    }
+
+    /**
+     * 
+     * @return maximum number of documents waiting in the ingest queue
+     */
+    public int getIngestQueueCapacity() {
+        return ingestQueueCapacity;
+    }
+
+    public void setIngestQueueCapacity(int ingestQueueCapacity) {
+        this.ingestQueueCapacity = ingestQueueCapacity;
+    }
+
+    /**
+     * 
+     * @return maximum number of documents sent to the server in a single add
+     */
+    public int getIngestBatchSize() {
+        return ingestBatchSize;
+    }
+
+    public void setIngestBatchSize(int ingestBatchSize) {
+        this.ingestBatchSize = ingestBatchSize;
+    }
+
+    /**
+     * 
+     * @return milliseconds within which queued documents are made visible to searches
+     */
+    public int getCommitWithinMillis() {
+        return commitWithinMillis;
+    }
+
+    public void setCommitWithinMillis(int commitWithinMillis) {
+        this.commitWithinMillis = commitWithinMillis;
+    }
+
+    /**
+     * 
+     * @return number of threads converting metacards to Solr documents, or 0 to use one per
+     *         available processor
+     */
+    public int getDocumentBuildThreads() {
+        return documentBuildThreads;
+    }
+
+    public void setDocumentBuildThreads(int documentBuildThreads) {
+        this.documentBuildThreads = documentBuildThreads;
+    }
+
+    /**
+     * 
+     * @return smallest number of metacards in a create request that are converted to Solr
+     *         documents in parallel, or 0 to always convert them serially
+     */
+    public int getParallelBuildThreshold() {
+        return parallelBuildThreshold;
+    }
+
+    public void setParallelBuildThreshold(int parallelBuildThreshold) {
+        this.parallelBuildThreshold = parallelBuildThreshold;
+    }
+
+    /**
+     * 
+     * @return true, if spatial, temporal and content type constraints are sent to Solr as
+     *         separate filter queries
+     */
+    public boolean isUseFilterQueries() {
+        return useFilterQueries;
+    }
+
+    /**
+     * 
+     * @param useFilterQueries
+     *            When set to true, constraints that do not affect relevance are sent as filter
+     *            queries so that Solr can cache and reuse them across queries.
+     */
+    public void setUseFilterQueries(boolean useFilterQueries) {
+        this.useFilterQueries = useFilterQueries;
+    }
+
+    /**
+     * 
+     * @return true, if the embedded index is split into one Solr core per month of the effective
+     *         date
+     */
+    public boolean isTimePartitioned() {
+        return timePartitioned;
+    }
+
+    /**
+     * 
+     * @param timePartitioned
+     *            When set to true, metacards are indexed in one Solr core per month of their
+     *            effective date and queries are sent only to the cores overlapping their date
+     *            range. Read once, when the Solr server is created.
+     */
+    public void setTimePartitioned(boolean timePartitioned) {
+        this.timePartitioned = timePartitioned;
+    }
+
+    /**
+     * 
+     * @return seconds between reconciliations of the cached content types with Solr, or 0 if
+     *         content types are queried from Solr on every request
+     */
+    public int getContentTypeRefreshSeconds() {
+        return contentTypeRefreshSeconds;
+    }
+
+    public void setContentTypeRefreshSeconds(int contentTypeRefreshSeconds) {
+        this.contentTypeRefreshSeconds = contentTypeRefreshSeconds;
+    }
+
     public Object clone() throws CloneNotSupportedException {
         throw new CloneNotSupportedException();
     }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ddf.catalog.data.ContentType;
+import ddf.catalog.data.ContentTypeImpl;
+import ddf.catalog.data.Metacard;
+
+/**
+ * Number of metacards of each content type and version in the catalog. Counts are adjusted as the
+ * provider creates, updates and deletes metacards, and replaced with the counts from Solr whenever
+ * they are reconciled, which corrects any drift from changes made outside the provider.
+ * <p>
+ * Adjustments made before the first reconciliation are ignored, since there is nothing to adjust
+ * yet. Adjustments made while Solr is being counted are recorded and applied to the counts found,
+ * since the count may have been taken before the changes they reflect.
+ * 
+ */
+class ContentTypeCounts {
+
+    private final Map<ContentType, Long> counts = new HashMap<ContentType, Long>();
+
+    /**
+     * The adjustments made since each reconciliation in progress started counting Solr.
+     */
+    private final List<Map<ContentType, Long>> pendingAdjustments = new ArrayList<Map<ContentType, Long>>(
+            1);
+
+    private volatile Set<ContentType> contentTypes = Collections.emptySet();
+
+    private volatile boolean loaded;
+
+    /**
+     * @return true once counts have been reconciled with Solr
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the content types with at least one metacard, without copying or querying
+     */
+    Set<ContentType> getContentTypes() {
+        return contentTypes;
+    }
+
+    synchronized void add(Metacard metacard) {
+        adjust(metacard, 1);
+    }
+
+    synchronized void remove(Metacard metacard) {
+        adjust(metacard, -1);
+    }
+
+    /**
+     * Starts recording adjustments, to be called before counting the metacards in Solr.
+     * 
+     * @return the adjustments made from now on, to be passed to
+     *         {@link #reconcile(Map, Map)} or {@link #cancelReconciliation(Map)}
+     */
+    synchronized Map<ContentType, Long> startReconciliation() {
+        Map<ContentType, Long> adjustments = new HashMap<ContentType, Long>();
+        pendingAdjustments.add(adjustments);
+        return adjustments;
+    }
+
+    /**
+     * Stops recording adjustments for a reconciliation that could not count Solr.
+     */
+    synchronized void cancelReconciliation(Map<ContentType, Long> adjustments) {
+        stopRecording(adjustments);
+    }
+
+    /**
+     * Replaces all counts with the ones found in Solr, when no changes can have been made while
+     * Solr was being counted.
+     * 
+     * @param solrCounts
+     *            number of metacards of each content type
+     */
+    synchronized void reconcile(Map<ContentType, Long> solrCounts) {
+        reconcile(new HashMap<ContentType, Long>(), solrCounts);
+    }
+
+    /**
+     * Replaces all counts with the ones found in Solr, adjusted for the changes made while Solr
+     * was being counted.
+     * 
+     * @param adjustments
+     *            the adjustments returned by {@link #startReconciliation()}
+     * @param solrCounts
+     *            number of metacards of each content type
+     */
+    synchronized void reconcile(Map<ContentType, Long> adjustments,
+            Map<ContentType, Long> solrCounts) {
+        stopRecording(adjustments);
+
+        counts.clear();
+        for (Map.Entry<ContentType, Long> entry : solrCounts.entrySet()) {
+            if (entry.getValue() > 0) {
+                counts.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<ContentType, Long> entry : adjustments.entrySet()) {
+            Long count = counts.get(entry.getKey());
+            long newCount = ((count == null) ? 0 : count) + entry.getValue();
+            if (newCount > 0) {
+                counts.put(entry.getKey(), newCount);
+            } else {
+                counts.remove(entry.getKey());
+            }
+        }
+        updateContentTypes();
+        loaded = true;
+    }
+
+    private void adjust(Metacard metacard, long delta) {
+        if (metacard == null || metacard.getContentTypeName() == null) {
+            return;
+        }
+
+        ContentType contentType = new ContentTypeImpl(metacard.getContentTypeName(),
+                metacard.getContentTypeVersion());
+
+        for (Map<ContentType, Long> adjustments : pendingAdjustments) {
+            Long adjustment = adjustments.get(contentType);
+            adjustments.put(contentType, ((adjustment == null) ? 0 : adjustment) + delta);
+        }
+
+        if (!loaded) {
+            return;
+        }
+
+        Long count = counts.get(contentType);
+        long newCount = ((count == null) ? 0 : count) + delta;
+
+        if (newCount > 0) {
+            counts.put(contentType, newCount);
+            if (count == null) {
+                updateContentTypes();
+            }
+        } else if (count != null) {
+            counts.remove(contentType);
+            updateContentTypes();
+        }
+    }
+
+    private void stopRecording(Map<ContentType, Long> adjustments) {
+        // removed by identity, since the adjustments of two reconciliations may be equal
+        Iterator<Map<ContentType, Long>> pending = pendingAdjustments.iterator();
+        while (pending.hasNext()) {
+            if (pending.next() == adjustments) {
+                pending.remove();
+                return;
+            }
+        }
+    }
+
+    private void updateContentTypes() {
+        contentTypes = Collections.unmodifiableSet(new HashSet<ContentType>(counts.keySet()));
+    }
+
+}
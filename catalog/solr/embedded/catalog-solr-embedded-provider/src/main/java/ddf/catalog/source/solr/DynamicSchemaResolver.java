@@ -14,27 +14,22 @@
  **/
 package ddf.catalog.source.solr;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -56,7 +51,7 @@
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.MetacardTypeImpl;
 import ddf.catalog.source.IngestException;
-import ddf.catalog.source.solr.textpath.SimplePathIndexer;
+import ddf.catalog.source.solr.textpath.SimplePathTextIndexer;
 
 /**
  * This class tries to resolve all user given field names to their corresponding dynamic Solr index
@@ -79,18 +74,29 @@ public class DynamicSchemaResolver {
 
     private static final String SOLR_CLOUD_VERSION_FIELD = "_version_";
 
+    private static final String ATOMIC_SET = "set";
+
     private static final List<String> PRIVATE_SOLR_FIELDS = Arrays.asList(SOLR_CLOUD_VERSION_FIELD,
             SchemaFields.METACARD_TYPE_FIELD_NAME, SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
 
     private static final Logger LOGGER = Logger.getLogger(DynamicSchemaResolver.class);
 
-    protected Set<String> fieldsCache = new HashSet<String>();
+    /*
+     * The caches are read and filled by concurrent ingest and query threads, so they are backed by
+     * concurrent maps rather than guarded by the provider.
+     */
+    protected Set<String> fieldsCache = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     protected SchemaFields schemaFields;
 
-    protected Map<String, MetacardType> metacardTypesCache = new HashMap<String, MetacardType>();
+    protected ConcurrentMap<String, MetacardType> metacardTypesCache = new ConcurrentHashMap<String, MetacardType>();
+
+    protected ConcurrentMap<String, byte[]> metacardTypeNameToSerialCache = new ConcurrentHashMap<String, byte[]>();
 
-    protected Map<String, byte[]> metacardTypeNameToSerialCache = new HashMap<String, byte[]>();
+    protected ConcurrentMap<String, MetacardFieldTable> fieldTables = new ConcurrentHashMap<String, MetacardFieldTable>();
+
+    protected MetacardBinaryCodec codec = new MetacardBinaryCodec();
 
     protected static XMLInputFactory xmlInputFactory = null;
 
@@ -191,22 +197,25 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
                         // raw
                         solrInputDocument.addField(formatIndexName, attributeValue);
 
+                        SimplePathTextIndexer indexer = new SimplePathTextIndexer(xmlInputFactory);
+                        boolean indexTextPath = !ConfigurationStore.getInstance()
+                                .isDisableTextPath();
+                        indexer.index(attributeValue.toString(), indexTextPath);
+
                         // textpath
-                        if(!ConfigurationStore.getInstance().isDisableTextPath()) {
-                        	
-                        	LOGGER.debug("Text Path not disabled, proceeding with indexing tpt information.");
-                        	
-                        	SimplePathIndexer textPathIndexer = new SimplePathIndexer(xmlInputFactory);
+                        if (indexTextPath) {
+                            LOGGER.debug("Text Path not disabled, proceeding with indexing tpt information.");
+
                             String textPathIndexName = formatIndexName + getSpecialIndexSuffix(format);
                             solrInputDocument.addField(textPathIndexName,
-                                    textPathIndexer.indexTextPath(attributeValue.toString()));
+                                    indexer.getTextPathValues());
                         }
 
                         // text
                         String specialStringIndexName = ad.getName()
                                 + getFieldSuffix(AttributeFormat.STRING)
                                 + getSpecialIndexSuffix(AttributeFormat.STRING);
-                        String parsedText = parseTextFrom(attributeValue.toString());
+                        String parsedText = indexer.getText();
                         solrInputDocument.addField(specialStringIndexName, parsedText);
 
                         // text case sensitive
@@ -216,19 +225,16 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
                         String wkt = WktNormalizer.normalizeWkt((String) attributeValue);
                         solrInputDocument.addField(formatIndexName, wkt);
                     } else if (AttributeFormat.OBJECT.equals(format)) {
-                        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
-                        ObjectOutputStream out = null;
+                        byte[] objectBytes;
 
                         try {
-                            out = new ObjectOutputStream(byteArrayOS);
-                            out.writeObject(attributeValue);
-                            out.close();
+                            objectBytes = codec.encodeObject(attributeValue);
                         } catch (IOException e) {
                             LOGGER.warn(COULD_NOT_SERIALIZE_OBJECT_MESSAGE, e);
                             throw new MetacardCreationException(COULD_NOT_SERIALIZE_OBJECT_MESSAGE);
                         }
 
-                        solrInputDocument.addField(formatIndexName, byteArrayOS.toByteArray());
+                        solrInputDocument.addField(formatIndexName, objectBytes);
                     } else {
                         solrInputDocument.addField(formatIndexName, attributeValue);
                     }
@@ -245,17 +251,80 @@ public void addFields(Metacard metacard, SolrInputDocument solrInputDocument)
         if (metacardTypeBytes == null) {
             MetacardType coreMetacardType = new MetacardTypeImpl(schema.getName(),
                     schema.getAttributeDescriptors());
-            metacardTypesCache.put(schema.getName(), coreMetacardType);
-
-            metacardTypeBytes = serialize(coreMetacardType);
-            metacardTypeNameToSerialCache.put(schema.getName(), metacardTypeBytes);
+            metacardTypeBytes = codec.encodeMetacardType(coreMetacardType);
 
+            // fields are cached before the type is published so readers never see a partial cache
             addToFieldsCache(coreMetacardType.getAttributeDescriptors());
+            metacardTypesCache.putIfAbsent(schema.getName(), coreMetacardType);
+            metacardTypeNameToSerialCache.putIfAbsent(schema.getName(), metacardTypeBytes);
         }
 
         solrInputDocument.addField(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME, metacardTypeBytes);
     }
 
+    /**
+     * Builds an atomic update document that sets only the attributes whose values differ between
+     * the old and new version of a record. Solr rebuilds the rest of the document from its stored
+     * fields, and copy fields are derived again.
+     * 
+     * XML attributes are indexed into fields that are neither stored nor copied, which an atomic
+     * update would drop, so a record with XML values is always reindexed in full. Changed
+     * geometries and a changed {@link MetacardType} are reindexed in full as well.
+     * 
+     * @param newMetacard
+     *            new version of the record, with its id set
+     * @param oldMetacard
+     *            current version of the record
+     * @return the atomic update, or null if the record must be reindexed in full
+     * @throws MetacardCreationException
+     *             if a changed object value could not be serialized
+     */
+    public SolrInputDocument getPartialUpdate(Metacard newMetacard, Metacard oldMetacard)
+        throws MetacardCreationException {
+        MetacardType schema = newMetacard.getMetacardType();
+
+        if (!schema.getName().equals(oldMetacard.getMetacardType().getName())) {
+            return null;
+        }
+
+        SolrInputDocument solrInputDocument = new SolrInputDocument();
+        solrInputDocument.addField(Metacard.ID + SchemaFields.TEXT_SUFFIX, newMetacard.getId());
+
+        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
+            AttributeFormat format = ad.getType().getAttributeFormat();
+            Serializable newValue = getValue(newMetacard, ad.getName());
+            Serializable oldValue = getValue(oldMetacard, ad.getName());
+
+            if (AttributeFormat.XML.equals(format) && (newValue != null || oldValue != null)) {
+                return null;
+            }
+
+            if (isEqual(newValue, oldValue) || Metacard.ID.equals(ad.getName())) {
+                continue;
+            }
+
+            if (AttributeFormat.GEOMETRY.equals(format)) {
+                return null;
+            }
+
+            Object solrValue = newValue;
+            if (newValue != null && AttributeFormat.OBJECT.equals(format)) {
+                try {
+                    solrValue = codec.encodeObject(newValue);
+                } catch (IOException e) {
+                    LOGGER.warn(COULD_NOT_SERIALIZE_OBJECT_MESSAGE, e);
+                    throw new MetacardCreationException(COULD_NOT_SERIALIZE_OBJECT_MESSAGE);
+                }
+            }
+
+            // a null value removes the field
+            solrInputDocument.addField(ad.getName() + getFieldSuffix(format),
+                    Collections.singletonMap(ATOMIC_SET, solrValue));
+        }
+
+        return solrInputDocument;
+    }
+
     /**
      * Returns the best approximation as to what {@link AttributeFormat} this Solr Field is.
      * 
@@ -276,8 +345,20 @@ public AttributeFormat getType(String solrFieldName) {
     }
 
     public Serializable getDocValue(String solrFieldName, Object docValue) {
+        return decodeValue(getType(solrFieldName), docValue);
+    }
 
-        AttributeFormat format = getType(solrFieldName);
+    /**
+     * Converts a stored Solr value back into the value of an {@link Attribute} of the given
+     * format.
+     * 
+     * @param format
+     *            format of the attribute, or null if it could not be determined
+     * @param docValue
+     *            value returned by Solr
+     * @return the attribute value
+     */
+    public Serializable decodeValue(AttributeFormat format, Object docValue) {
 
         if (AttributeFormat.SHORT.equals(format)) {
             /*
@@ -288,20 +369,13 @@ public Serializable getDocValue(String solrFieldName, Object docValue) {
             return Short.parseShort(docValue.toString());
         } else if (AttributeFormat.OBJECT.equals(format)) {
 
-            ByteArrayInputStream bais = null;
-            ObjectInputStream in = null;
             try {
-                bais = new ByteArrayInputStream((byte[]) docValue);
-                in = new ObjectInputStream(bais);
-                return (Serializable) in.readObject();
+                return codec.decodeObject((byte[]) docValue);
             } catch (IOException e) {
                 LOGGER.warn(e);
             } catch (ClassNotFoundException e) {
                 LOGGER.warn("Could not create object to return.", e);
                 // TODO which exception to throw?
-            } finally {
-                IOUtils.closeQuietly(bais);
-                IOUtils.closeQuietly(in);
             }
 
             return null;
@@ -358,6 +432,29 @@ public List<String> getAnonymousField(String field) {
         return list;
     }
 
+    /**
+     * Lists the stored fields to return for a query that only needs some attributes of each
+     * result, along with the fields that identify the {@link MetacardType} of a result.
+     * 
+     * @param attributeNames
+     *            names of the attributes to return
+     * @return Solr field names covering every format the attributes may be stored with
+     */
+    public List<String> getProjectedFields(Set<String> attributeNames) {
+        List<String> fields = new ArrayList<String>();
+
+        fields.add(SchemaFields.METACARD_TYPE_FIELD_NAME);
+        fields.add(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
+
+        for (String attributeName : attributeNames) {
+            for (AttributeFormat format : AttributeFormat.values()) {
+                fields.add(attributeName + schemaFields.getFieldSuffix(format));
+            }
+        }
+
+        return fields;
+    }
+
     /**
      * Attempts to find the fieldName for the given propertyName value.
      * 
@@ -404,42 +501,38 @@ public String getFieldSuffix(AttributeFormat format) {
     public MetacardType getMetacardType(SolrDocument doc) throws MetacardCreationException {
         String mTypeFieldName = doc.getFieldValue(SchemaFields.METACARD_TYPE_FIELD_NAME).toString();
 
-        MetacardType cachedMetacardType = metacardTypesCache.get(mTypeFieldName);
-
-        if (cachedMetacardType != null) {
-            return cachedMetacardType;
-        }
-
         byte[] bytes = (byte[]) doc.getFieldValue(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME);
 
-        ByteArrayInputStream bais = null;
-        ObjectInputStream in = null;
-        try {
-
-            bais = new ByteArrayInputStream((byte[]) bytes);
-
-            in = new ObjectInputStream(bais);
-
-            cachedMetacardType = (MetacardType) in.readObject();
-
-        } catch (IOException e) {
+        // the fingerprint in the encoded bytes resolves through the codec's registry, so the
+        // definition is only decoded the first time a type is seen
+        MetacardType metacardType = codec.decodeMetacardType(mTypeFieldName, bytes);
 
-            LOGGER.warn(e);
-
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        } catch (ClassNotFoundException e) {
-            LOGGER.warn(e);
-
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        } finally {
-            IOUtils.closeQuietly(bais);
-            IOUtils.closeQuietly(in);
+        if (!metacardTypesCache.containsKey(mTypeFieldName)) {
+            addToFieldsCache(metacardType.getAttributeDescriptors());
+            metacardTypesCache.putIfAbsent(mTypeFieldName, metacardType);
         }
+        return metacardType;
+    }
 
-        metacardTypeNameToSerialCache.put(mTypeFieldName, bytes);
-        metacardTypesCache.put(mTypeFieldName, cachedMetacardType);
-        addToFieldsCache(cachedMetacardType.getAttributeDescriptors());
-        return cachedMetacardType;
+    /**
+     * Returns the table used to turn the fields of a {@link SolrDocument} of the given type back
+     * into attributes. Tables are built once per type name and shared by all queries.
+     * 
+     * @param metacardType
+     *            type of the documents being read
+     * @return field table for the type
+     */
+    public MetacardFieldTable getFieldTable(MetacardType metacardType) {
+        MetacardFieldTable table = fieldTables.get(metacardType.getName());
+
+        if (table == null) {
+            MetacardFieldTable newTable = new MetacardFieldTable(this, metacardType);
+            table = fieldTables.putIfAbsent(metacardType.getName(), newTable);
+            if (table == null) {
+                table = newTable;
+            }
+        }
+        return table;
     }
 
     public String getCaseSensitiveField(String mappedPropertyName) {
@@ -463,6 +556,18 @@ protected String getSpecialIndexSuffix(AttributeFormat format) {
         return "";
     }
 
+    private Serializable getValue(Metacard metacard, String attributeName) {
+        Attribute attribute = metacard.getAttribute(attributeName);
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    private boolean isEqual(Serializable first, Serializable second) {
+        if (first instanceof byte[] && second instanceof byte[]) {
+            return Arrays.equals((byte[]) first, (byte[]) second);
+        }
+        return first == null ? second == null : first.equals(second);
+    }
+
     private void addToFieldsCache(Set<AttributeDescriptor> descriptors) {
         for (AttributeDescriptor ad : descriptors) {
 
@@ -490,29 +595,6 @@ private void addToFieldsCache(Set<AttributeDescriptor> descriptors) {
         }
     }
 
-    private byte[] serialize(MetacardType anywhereMType) throws MetacardCreationException {
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        ObjectOutputStream out = null;
-
-        try {
-            out = new ObjectOutputStream(baos);
-            out.writeObject(anywhereMType);
-
-            byte[] bytes = baos.toByteArray();
-
-            baos.close();
-            out.close();
-
-            return bytes;
-        } catch (IOException e) {
-            LOGGER.warn(e);
-            throw new MetacardCreationException(COULD_NOT_READ_METACARD_TYPE_MESSAGE);
-        }
-
-    }
-
     private String findAnyMatchingNumericalField(String propertyName) {
 
         if (fieldsCache.contains(propertyName + SchemaFields.DOUBLE_SUFFIX)) {
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.io.ObjectStreamException;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardImpl;
+import ddf.catalog.data.MetacardType;
+
+/**
+ * A {@link Metacard} built from a projection of its stored fields. The projected attributes are
+ * held directly; the first request for any other attribute loads all of the remaining attributes
+ * in one call, so large attributes such as {@link Metacard#METADATA} are only read from the index
+ * when they are used. A record that cannot be loaded is not requested again.
+ * 
+ */
+public class LazyMetacard extends MetacardImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(LazyMetacard.class);
+
+    /**
+     * Loads the complete record of a lazy metacard.
+     */
+    public interface Loader {
+
+        /**
+         * @param id
+         *            id of the record
+         * @return the record with all of its attributes, or null if it could not be loaded
+         */
+        Metacard load(String id);
+    }
+
+    private final transient Loader loader;
+
+    private final Set<String> projectedAttributes;
+
+    private transient volatile Metacard remainder;
+
+    private transient volatile boolean loadFailed;
+
+    private transient boolean initialized;
+
+    /**
+     * @param type
+     *            type of the record
+     * @param projectedAttributes
+     *            names of the attributes that are set on this metacard when it is built; attributes
+     *            not set on it and not named here are loaded on demand
+     * @param loader
+     *            loads the complete record
+     */
+    public LazyMetacard(MetacardType type, Set<String> projectedAttributes, Loader loader) {
+        super(type);
+        this.projectedAttributes = Collections.unmodifiableSet(projectedAttributes);
+        this.loader = loader;
+    }
+
+    /**
+     * Ends the construction of the metacard. Attributes set from then on are changes to the
+     * complete record.
+     */
+    void initialized() {
+        initialized = true;
+    }
+
+    /**
+     * @return the names of the attributes that were fetched with the query
+     */
+    public Set<String> getProjectedAttributes() {
+        return projectedAttributes;
+    }
+
+    /**
+     * @return true, if the complete record has been loaded
+     */
+    public boolean isLoaded() {
+        return remainder != null;
+    }
+
+    @Override
+    public Attribute getAttribute(String name) {
+        Attribute attribute = super.getAttribute(name);
+
+        if (attribute != null || projectedAttributes.contains(name)) {
+            return attribute;
+        }
+
+        Metacard record = getRemainder();
+        return (record != null) ? record.getAttribute(name) : null;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        if (initialized && attribute != null && !projectedAttributes.contains(attribute.getName())) {
+            // keeps the change when the rest of the record is loaded later
+            Metacard record = getRemainder();
+            if (record != null) {
+                record.setAttribute(attribute);
+            }
+        }
+        super.setAttribute(attribute);
+    }
+
+    private Metacard getRemainder() {
+        Metacard record = remainder;
+
+        if (record == null && !loadFailed) {
+            synchronized (this) {
+                record = remainder;
+                if (record == null && !loadFailed) {
+                    record = loader.load(getId());
+                    if (record == null) {
+                        LOGGER.warn("Could not load the complete record of metacard " + getId());
+                        loadFailed = true;
+                        return null;
+                    }
+                    remainder = record;
+                }
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Serializes the complete record, since the loader cannot be serialized.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        MetacardImpl metacard = new MetacardImpl(getMetacardType());
+
+        for (AttributeDescriptor descriptor : getMetacardType().getAttributeDescriptors()) {
+            metacard.setAttribute(getAttribute(descriptor.getName()));
+        }
+        metacard.setSourceId(getSourceId());
+
+        return metacard;
+    }
+}
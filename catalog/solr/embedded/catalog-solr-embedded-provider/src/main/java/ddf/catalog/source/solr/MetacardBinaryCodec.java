@@ -0,0 +1,564 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeDescriptorImpl;
+import ddf.catalog.data.AttributeType;
+import ddf.catalog.data.AttributeType.AttributeFormat;
+import ddf.catalog.data.BasicTypes;
+import ddf.catalog.data.MetacardCreationException;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.MetacardTypeImpl;
+
+/**
+ * Compact, versioned binary encoding for the {@link MetacardType} and {@link AttributeFormat#OBJECT}
+ * values stored with every Solr document.
+ * 
+ * <p>
+ * An encoded {@link MetacardType} starts with a 64-bit fingerprint of its definition. Decoding
+ * resolves the fingerprint through a registry of known types, so the definition itself is only read
+ * the first time a type is seen. Common object values (strings, numbers, booleans, dates and byte
+ * arrays) are written directly; any other {@link Serializable} falls back to Java serialization.
+ * </p>
+ * 
+ * <p>
+ * Values written by earlier versions with plain Java serialization are still decoded.
+ * </p>
+ * 
+ */
+public class MetacardBinaryCodec {
+
+    private static final Logger LOGGER = Logger.getLogger(MetacardBinaryCodec.class);
+
+    private static final byte MAGIC = (byte) 0xDD;
+
+    private static final byte VERSION = 1;
+
+    private static final byte KIND_METACARD_TYPE = 1;
+
+    private static final byte KIND_OBJECT = 2;
+
+    private static final int HEADER_LENGTH = 3;
+
+    // first bytes of every Java serialization stream
+    private static final byte JAVA_STREAM_MAGIC_0 = (byte) 0xAC;
+
+    private static final byte JAVA_STREAM_MAGIC_1 = (byte) 0xED;
+
+    private static final byte TAG_SERIALIZED = 0;
+
+    private static final byte TAG_STRING = 1;
+
+    private static final byte TAG_INTEGER = 2;
+
+    private static final byte TAG_LONG = 3;
+
+    private static final byte TAG_SHORT = 4;
+
+    private static final byte TAG_FLOAT = 5;
+
+    private static final byte TAG_DOUBLE = 6;
+
+    private static final byte TAG_BOOLEAN = 7;
+
+    private static final byte TAG_DATE = 8;
+
+    private static final byte TAG_BYTES = 9;
+
+    private static final int FLAG_INDEXED = 1;
+
+    private static final int FLAG_STORED = 1 << 1;
+
+    private static final int FLAG_TOKENIZED = 1 << 2;
+
+    private static final int FLAG_MULTIVALUED = 1 << 3;
+
+    private static final int FLAG_CUSTOM_BINDING = 1 << 4;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Format codes are fixed here rather than taken from {@link Enum#ordinal()} so that reordering
+     * {@link AttributeFormat} cannot change the meaning of stored documents.
+     */
+    private static final AttributeFormat[] FORMAT_CODES = {AttributeFormat.STRING,
+        AttributeFormat.BOOLEAN, AttributeFormat.DATE, AttributeFormat.SHORT,
+        AttributeFormat.INTEGER, AttributeFormat.LONG, AttributeFormat.FLOAT,
+        AttributeFormat.DOUBLE, AttributeFormat.GEOMETRY, AttributeFormat.BINARY,
+        AttributeFormat.XML, AttributeFormat.OBJECT};
+
+    private static final Comparator<AttributeDescriptor> BY_NAME = new Comparator<AttributeDescriptor>() {
+        @Override
+        public int compare(AttributeDescriptor first, AttributeDescriptor second) {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    private final ConcurrentMap<Long, MetacardType> registry = new ConcurrentHashMap<Long, MetacardType>();
+
+    private final ConcurrentMap<String, LegacyType> legacyTypes = new ConcurrentHashMap<String, LegacyType>();
+
+    /**
+     * Encodes the given type and registers it under its fingerprint.
+     * 
+     * @param metacardType
+     *            type to encode
+     * @return encoded type
+     * @throws MetacardCreationException
+     *             if the type could not be encoded
+     */
+    public byte[] encodeMetacardType(MetacardType metacardType) throws MetacardCreationException {
+        try {
+            byte[] definition = writeDefinition(metacardType);
+            long fingerprint = fingerprint(definition);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_LENGTH + 8
+                    + definition.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeHeader(out, KIND_METACARD_TYPE);
+            out.writeLong(fingerprint);
+            out.write(definition);
+            out.flush();
+
+            registry.putIfAbsent(fingerprint, metacardType);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            LOGGER.warn(e);
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        }
+    }
+
+    /**
+     * Decodes a type written by {@link #encodeMetacardType(MetacardType)} or by Java
+     * serialization. Types already in the registry are returned without reading their definition.
+     * 
+     * @param bytes
+     *            encoded type
+     * @return the decoded type
+     * @throws MetacardCreationException
+     *             if the bytes could not be decoded
+     */
+    public MetacardType decodeMetacardType(byte[] bytes) throws MetacardCreationException {
+        return decodeMetacardType(null, bytes);
+    }
+
+    /**
+     * Decodes a type written by {@link #encodeMetacardType(MetacardType)} or by Java
+     * serialization. Serialized types are remembered under their name, so that documents carrying
+     * the same serialized type are resolved by comparing their bytes instead of hashing them.
+     * 
+     * @param typeName
+     *            name of the type stored with the bytes, may be {@code null}
+     * @param bytes
+     *            encoded type
+     * @return the decoded type
+     * @throws MetacardCreationException
+     *             if the bytes could not be decoded
+     */
+    public MetacardType decodeMetacardType(String typeName, byte[] bytes)
+        throws MetacardCreationException {
+        if (bytes == null) {
+            throw new MetacardCreationException(
+                    DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+        }
+
+        try {
+            if (isEncoded(bytes, KIND_METACARD_TYPE)) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes,
+                        HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+                long fingerprint = in.readLong();
+                MetacardType metacardType = registry.get(fingerprint);
+                if (metacardType == null) {
+                    metacardType = register(fingerprint, readDefinition(in));
+                }
+                return metacardType;
+            }
+
+            // legacy documents carry the serialized type, keyed here by a hash of the whole blob
+            LegacyType legacyType = typeName == null ? null : legacyTypes.get(typeName);
+            if (legacyType != null && Arrays.equals(legacyType.bytes, bytes)) {
+                return legacyType.metacardType;
+            }
+
+            long fingerprint = fingerprint(bytes);
+            MetacardType metacardType = registry.get(fingerprint);
+            if (metacardType == null) {
+                metacardType = register(fingerprint, (MetacardType) deserialize(bytes));
+            }
+            if (typeName != null) {
+                legacyTypes.put(typeName, new LegacyType(bytes.clone(), metacardType));
+            }
+            return metacardType;
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        } catch (ClassNotFoundException e) {
+            LOGGER.warn(e);
+        } catch (ClassCastException e) {
+            LOGGER.warn(e);
+        }
+        throw new MetacardCreationException(
+                DynamicSchemaResolver.COULD_NOT_READ_METACARD_TYPE_MESSAGE);
+    }
+
+    /**
+     * @param value
+     *            value of an {@link AttributeFormat#OBJECT} attribute
+     * @return encoded value
+     * @throws IOException
+     *             if the value could not be serialized
+     */
+    public byte[] encodeObject(Serializable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, KIND_OBJECT);
+
+        if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value != null && value.getClass() == Date.class) {
+            // subclasses such as java.sql.Timestamp carry more state and are serialized instead
+            out.writeByte(TAG_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            out.writeInt(array.length);
+            out.write(array);
+        } else {
+            out.writeByte(TAG_SERIALIZED);
+            out.flush();
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a value written by {@link #encodeObject(Serializable)} or by Java serialization.
+     * 
+     * @param bytes
+     *            encoded value
+     * @return the decoded value
+     * @throws IOException
+     *             if the bytes could not be read
+     * @throws ClassNotFoundException
+     *             if a serialized value's class is not available
+     */
+    public Serializable decodeObject(byte[] bytes) throws IOException, ClassNotFoundException {
+        if (!isEncoded(bytes, KIND_OBJECT)) {
+            return deserialize(bytes);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH,
+                bytes.length - HEADER_LENGTH));
+        byte tag = in.readByte();
+        switch (tag) {
+        case TAG_STRING:
+            return readString(in);
+        case TAG_INTEGER:
+            return in.readInt();
+        case TAG_LONG:
+            return in.readLong();
+        case TAG_SHORT:
+            return in.readShort();
+        case TAG_FLOAT:
+            return in.readFloat();
+        case TAG_DOUBLE:
+            return in.readDouble();
+        case TAG_BOOLEAN:
+            return in.readBoolean();
+        case TAG_DATE:
+            return new Date(in.readLong());
+        case TAG_BYTES:
+            byte[] array = new byte[in.readInt()];
+            in.readFully(array);
+            return array;
+        case TAG_SERIALIZED:
+            return deserialize(bytes, HEADER_LENGTH + 1);
+        default:
+            throw new IOException("Unknown object tag [" + tag + "].");
+        }
+    }
+
+    private MetacardType register(long fingerprint, MetacardType metacardType) {
+        MetacardType existing = registry.putIfAbsent(fingerprint, metacardType);
+        return existing == null ? metacardType : existing;
+    }
+
+    private boolean isEncoded(byte[] bytes, byte kind) throws IOException {
+        if (bytes.length >= 2 && bytes[0] == JAVA_STREAM_MAGIC_0 && bytes[1] == JAVA_STREAM_MAGIC_1) {
+            return false;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC) {
+            throw new IOException("Unrecognized encoding.");
+        }
+        if (bytes[1] > VERSION) {
+            throw new IOException("Unsupported encoding version [" + bytes[1] + "].");
+        }
+        if (bytes[2] != kind) {
+            throw new IOException("Unexpected encoded kind [" + bytes[2] + "].");
+        }
+        return true;
+    }
+
+    private void writeHeader(DataOutputStream out, byte kind) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+    }
+
+    /**
+     * Descriptors are written sorted by name so that equal types always produce the same
+     * definition, and therefore the same fingerprint.
+     */
+    private byte[] writeDefinition(MetacardType metacardType) throws IOException {
+        List<AttributeDescriptor> descriptors = new ArrayList<AttributeDescriptor>(
+                metacardType.getAttributeDescriptors());
+        Collections.sort(descriptors, BY_NAME);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, metacardType.getName());
+        out.writeInt(descriptors.size());
+
+        for (AttributeDescriptor descriptor : descriptors) {
+            AttributeType<?> type = descriptor.getType();
+            AttributeFormat format = type.getAttributeFormat();
+            boolean customBinding = !type.getBinding().equals(
+                    getBasicType(format).getBinding());
+
+            writeString(out, descriptor.getName());
+            out.writeByte(getFormatCode(format));
+            out.writeByte((descriptor.isIndexed() ? FLAG_INDEXED : 0)
+                    | (descriptor.isStored() ? FLAG_STORED : 0)
+                    | (descriptor.isTokenized() ? FLAG_TOKENIZED : 0)
+                    | (descriptor.isMultiValued() ? FLAG_MULTIVALUED : 0)
+                    | (customBinding ? FLAG_CUSTOM_BINDING : 0));
+            if (customBinding) {
+                writeString(out, type.getBinding().getName());
+            }
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private MetacardType readDefinition(DataInputStream in) throws IOException {
+        String name = readString(in);
+        int count = in.readInt();
+        Set<AttributeDescriptor> descriptors = new HashSet<AttributeDescriptor>();
+
+        for (int i = 0; i < count; i++) {
+            String attributeName = readString(in);
+            AttributeFormat format = getFormat(in.readByte());
+            int flags = in.readByte();
+            AttributeType<?> type = getBasicType(format);
+            if ((flags & FLAG_CUSTOM_BINDING) != 0) {
+                type = getBoundType(format, readString(in), type);
+            }
+
+            descriptors.add(new AttributeDescriptorImpl(attributeName,
+                    (flags & FLAG_INDEXED) != 0, (flags & FLAG_STORED) != 0,
+                    (flags & FLAG_TOKENIZED) != 0, (flags & FLAG_MULTIVALUED) != 0, type));
+        }
+
+        return new MetacardTypeImpl(name, descriptors);
+    }
+
+    private byte getFormatCode(AttributeFormat format) throws IOException {
+        for (byte code = 0; code < FORMAT_CODES.length; code++) {
+            if (FORMAT_CODES[code] == format) {
+                return code;
+            }
+        }
+        throw new IOException("Unsupported attribute format [" + format + "].");
+    }
+
+    private AttributeFormat getFormat(byte code) throws IOException {
+        if (code < 0 || code >= FORMAT_CODES.length) {
+            throw new IOException("Unknown attribute format code [" + code + "].");
+        }
+        return FORMAT_CODES[code];
+    }
+
+    private AttributeType<?> getBasicType(AttributeFormat format) {
+        switch (format) {
+        case STRING:
+            return BasicTypes.STRING_TYPE;
+        case BOOLEAN:
+            return BasicTypes.BOOLEAN_TYPE;
+        case DATE:
+            return BasicTypes.DATE_TYPE;
+        case SHORT:
+            return BasicTypes.SHORT_TYPE;
+        case INTEGER:
+            return BasicTypes.INTEGER_TYPE;
+        case LONG:
+            return BasicTypes.LONG_TYPE;
+        case FLOAT:
+            return BasicTypes.FLOAT_TYPE;
+        case DOUBLE:
+            return BasicTypes.DOUBLE_TYPE;
+        case GEOMETRY:
+            return BasicTypes.GEO_TYPE;
+        case BINARY:
+            return BasicTypes.BINARY_TYPE;
+        case XML:
+            return BasicTypes.XML_TYPE;
+        default:
+            return BasicTypes.OBJECT_TYPE;
+        }
+    }
+
+    /**
+     * Restores a type bound to a class other than the basic binding of its format. If the class
+     * cannot be loaded, the basic type is used, which is all the provider itself relies on.
+     */
+    private AttributeType<?> getBoundType(AttributeFormat format, String bindingName,
+            AttributeType<?> basicType) {
+        try {
+            return new BoundAttributeType(format, Class.forName(bindingName, false,
+                    MetacardBinaryCodec.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            LOGGER.debug("Could not load binding [" + bindingName + "], using [" + basicType
+                    .getBinding().getName() + "] instead.");
+            return basicType;
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes("UTF-8");
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, "UTF-8");
+    }
+
+    private Serializable deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        return deserialize(bytes, 0);
+    }
+
+    private Serializable deserialize(byte[] bytes, int offset) throws IOException,
+        ClassNotFoundException {
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, bytes.length
+                    - offset));
+            return (Serializable) in.readObject();
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static long fingerprint(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * A type decoded from Java serialization, along with the bytes it was read from.
+     */
+    private static class LegacyType {
+
+        private final byte[] bytes;
+
+        private final MetacardType metacardType;
+
+        LegacyType(byte[] bytes, MetacardType metacardType) {
+            this.bytes = bytes;
+            this.metacardType = metacardType;
+        }
+    }
+
+    private static class BoundAttributeType implements AttributeType<Serializable> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AttributeFormat format;
+
+        private final Class<?> binding;
+
+        BoundAttributeType(AttributeFormat format, Class<?> binding) {
+            this.format = format;
+            this.binding = binding;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Class<Serializable> getBinding() {
+            return (Class<Serializable>) binding;
+        }
+
+        @Override
+        public AttributeFormat getAttributeFormat() {
+            return format;
+        }
+    }
+}
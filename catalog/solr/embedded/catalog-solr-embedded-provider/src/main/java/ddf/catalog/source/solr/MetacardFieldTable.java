@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.solr.common.SolrDocument;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeType.AttributeFormat;
+import ddf.catalog.data.MetacardImpl;
+import ddf.catalog.data.MetacardType;
+
+/**
+ * Maps the stored Solr fields of one {@link MetacardType} to their attribute names and formats.
+ * The mappings for the type's descriptors are computed up front; any other stored field is resolved
+ * the first time it is seen and then kept, so reading a document costs a single lookup per field.
+ * 
+ * Tables are shared between query threads and are safe for concurrent use.
+ * 
+ */
+public class MetacardFieldTable {
+
+    private static final FieldMapping PRIVATE_FIELD = new FieldMapping(null, null);
+
+    private final DynamicSchemaResolver resolver;
+
+    private final ConcurrentMap<String, FieldMapping> mappings = new ConcurrentHashMap<String, FieldMapping>();
+
+    MetacardFieldTable(DynamicSchemaResolver resolver, MetacardType metacardType) {
+        this.resolver = resolver;
+
+        for (AttributeDescriptor descriptor : metacardType.getAttributeDescriptors()) {
+            AttributeFormat format = descriptor.getType().getAttributeFormat();
+            String solrFieldName = descriptor.getName() + resolver.getFieldSuffix(format);
+            mappings.put(solrFieldName, resolve(solrFieldName));
+        }
+        mappings.put(SchemaFields.METACARD_TYPE_FIELD_NAME, PRIVATE_FIELD);
+        mappings.put(SchemaFields.METACARD_TYPE_OBJECT_FIELD_NAME, PRIVATE_FIELD);
+    }
+
+    /**
+     * Sets an attribute on the metacard for every non-private stored field of the document.
+     * 
+     * @param doc
+     *            document returned by Solr
+     * @param metacard
+     *            metacard to populate
+     */
+    public void populate(SolrDocument doc, MetacardImpl metacard) {
+        for (String solrFieldName : doc.getFieldNames()) {
+            FieldMapping mapping = getMapping(solrFieldName);
+
+            if (mapping != PRIVATE_FIELD) {
+                Serializable value = resolver.decodeValue(mapping.format,
+                        doc.getFieldValue(solrFieldName));
+                metacard.setAttribute(mapping.attributeName, value);
+            }
+        }
+    }
+
+    private FieldMapping getMapping(String solrFieldName) {
+        FieldMapping mapping = mappings.get(solrFieldName);
+
+        if (mapping == null) {
+            // resolving is deterministic, so a concurrent duplicate is harmless
+            mapping = resolve(solrFieldName);
+            mappings.putIfAbsent(solrFieldName, mapping);
+        }
+        return mapping;
+    }
+
+    private FieldMapping resolve(String solrFieldName) {
+        if (resolver.isPrivateField(solrFieldName)) {
+            return PRIVATE_FIELD;
+        }
+        return new FieldMapping(resolver.resolveFieldName(solrFieldName),
+                resolver.getType(solrFieldName));
+    }
+
+    private static class FieldMapping {
+
+        private final String attributeName;
+
+        private final AttributeFormat format;
+
+        FieldMapping(String attributeName, AttributeFormat format) {
+            this.attributeName = attributeName;
+            this.format = format;
+        }
+    }
+}
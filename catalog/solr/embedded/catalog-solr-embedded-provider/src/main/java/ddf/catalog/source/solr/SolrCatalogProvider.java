@@ -17,6 +17,8 @@
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,6 +28,14 @@
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.log4j.Logger;
@@ -39,15 +49,18 @@
 import org.apache.solr.client.solrj.response.PivotField;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
 import com.spatial4j.core.distance.DistanceUtils;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeImpl;
 import ddf.catalog.data.AttributeType.AttributeFormat;
 import ddf.catalog.data.ContentType;
@@ -109,6 +122,14 @@ public class SolrCatalogProvider extends MaskableImpl implements CatalogProvider
 
     private static final String EXITED = "EXITED: ";
 
+    private static final int DEFAULT_STREAMING_FETCH_SIZE = 1000;
+
+    private static final String REALTIME_GET_HANDLER = "/get";
+
+    private static final String REALTIME_GET_ID_PARAM = "id";
+
+    private static final String REALTIME_GET_DOC_KEY = "doc";
+
     private FilterAdapter filterAdapter;
 
     private DynamicSchemaResolver resolver;
@@ -117,6 +138,20 @@ public class SolrCatalogProvider extends MaskableImpl implements CatalogProvider
 
     private SolrFilterDelegateFactory solrFilterDelegateFactory;
 
+    private SolrIngestQueue ingestQueue;
+
+    private ExecutorService streamExecutor;
+
+    private ExecutorService documentBuilder;
+
+    private ScheduledExecutorService contentTypeReconciler;
+
+    private volatile int contentTypeReconcilerSeconds;
+
+    private final ContentTypeCounts contentTypeCounts = new ContentTypeCounts();
+
+    private int documentBuilderThreads;
+
     private static Properties describableProperties = new Properties();
 
     static {
@@ -171,7 +206,96 @@ public SolrCatalogProvider(SolrServer server, FilterAdapter adapter,
     @Override
     public Set<ContentType> getContentTypes() {
 
-        Set<ContentType> finalSet = new HashSet<ContentType>();
+        int refreshSeconds = ConfigurationStore.getInstance().getContentTypeRefreshSeconds();
+
+        if (refreshSeconds <= 0) {
+            if (contentTypeReconcilerSeconds != 0) {
+                startContentTypeReconciler(0);
+            }
+            Map<ContentType, Long> counts = queryContentTypeCounts();
+            return (counts == null) ? new HashSet<ContentType>() : new HashSet<ContentType>(
+                    counts.keySet());
+        }
+
+        if (!contentTypeCounts.isLoaded()) {
+            reconcileContentTypes();
+        }
+        if (contentTypeReconcilerSeconds != refreshSeconds) {
+            startContentTypeReconciler(refreshSeconds);
+        }
+
+        return new HashSet<ContentType>(contentTypeCounts.getContentTypes());
+    }
+
+    /**
+     * Replaces the maintained content type counts with the counts currently in Solr.
+     */
+    private void reconcileContentTypes() {
+        Map<ContentType, Long> adjustments = contentTypeCounts.startReconciliation();
+        Map<ContentType, Long> counts = null;
+        try {
+            counts = queryContentTypeCounts();
+        } finally {
+            if (counts != null) {
+                contentTypeCounts.reconcile(adjustments, counts);
+            } else {
+                contentTypeCounts.cancelReconciliation(adjustments);
+            }
+        }
+    }
+
+    /**
+     * Reconciles the content type counts at the given interval, replacing a reconciler running at
+     * a different one.
+     * 
+     * @param refreshSeconds
+     *            seconds between reconciliations, or 0 to stop reconciling
+     */
+    private synchronized void startContentTypeReconciler(int refreshSeconds) {
+        if (contentTypeReconcilerSeconds == refreshSeconds) {
+            return;
+        }
+
+        if (contentTypeReconciler != null) {
+            contentTypeReconciler.shutdownNow();
+            contentTypeReconciler = null;
+        }
+        contentTypeReconcilerSeconds = refreshSeconds;
+
+        if (refreshSeconds <= 0) {
+            return;
+        }
+
+        contentTypeReconciler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SolrContentTypeReconciler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        contentTypeReconciler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reconcileContentTypes();
+                } catch (RuntimeException e) {
+                    // keep the schedule alive, the next run may succeed
+                    LOGGER.warn("Could not reconcile content types.", e);
+                }
+            }
+        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Counts the metacards of each content type and version with a facet query over the whole
+     * index.
+     * 
+     * @return the counts, or null if Solr could not be queried
+     */
+    private Map<ContentType, Long> queryContentTypeCounts() {
+
+        Map<ContentType, Long> counts = new HashMap<ContentType, Long>();
 
         String contentTypeField = resolver.getField(Metacard.CONTENT_TYPE, AttributeFormat.STRING,
                 true);
@@ -183,11 +307,13 @@ public Set<ContentType> getContentTypes() {
          * exist, then we can safely say that no content types are in this catalog provider
          */
         if (contentTypeField == null || contentTypeVersionField == null) {
-            return finalSet;
+            return counts;
         }
 
         SolrQuery query = new SolrQuery(contentTypeField + ":[* TO *]");
+        query.setRows(0);
         query.setFacet(true);
+        query.setFacetLimit(-1);
         query.addFacetField(contentTypeField);
         query.addFacetPivotField(contentTypeField + "," + contentTypeVersionField);
 
@@ -210,7 +336,7 @@ public Set<ContentType> getContentTypes() {
                             ContentTypeImpl contentType = new ContentTypeImpl(
                                     currContentType.getName(), null);
 
-                            finalSet.add(contentType);
+                            counts.put(contentType, currContentType.getCount());
                         }
                     }
                 } else {
@@ -219,17 +345,10 @@ public Set<ContentType> getContentTypes() {
                         String contentTypeName = pf.getValue().toString();
                         LOGGER.debug("contentTypeName:" + contentTypeName);
 
-                        if (CollectionUtils.isEmpty(pf.getPivot())) {
-                            // if there are no sub-pivots, that means that there are no content type
-                            // versions
-                            // associated with this content type name
-                            LOGGER.debug("Content type does not have associated contentTypeVersion: "
-                                    + contentTypeName);
-                            ContentTypeImpl contentType = new ContentTypeImpl(contentTypeName, null);
-
-                            finalSet.add(contentType);
+                        // metacards of this content type without a version
+                        long unversioned = pf.getCount();
 
-                        } else {
+                        if (CollectionUtils.isNotEmpty(pf.getPivot())) {
                             for (PivotField innerPf : pf.getPivot()) {
 
                                 LOGGER.debug("contentTypeVersion:" + innerPf.getValue()
@@ -238,18 +357,28 @@ public Set<ContentType> getContentTypes() {
                                 ContentTypeImpl contentType = new ContentTypeImpl(contentTypeName,
                                         innerPf.getValue().toString());
 
-                                finalSet.add(contentType);
+                                counts.put(contentType, (long) innerPf.getCount());
+                                unversioned -= innerPf.getCount();
                             }
                         }
+
+                        if (unversioned > 0) {
+                            LOGGER.debug("Content type has metacards without contentTypeVersion: "
+                                    + contentTypeName);
+                            ContentTypeImpl contentType = new ContentTypeImpl(contentTypeName, null);
+
+                            counts.put(contentType, unversioned);
+                        }
                     }
                 }
             }
 
         } catch (SolrServerException e) {
             LOGGER.info(e);
+            return null;
         }
 
-        return finalSet;
+        return counts;
     }
 
     @Override
@@ -325,7 +454,14 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
 
         solrFilterDelegate.setSortPolicy(request.getQuery().getSortBy());
 
-        SolrQuery query = filterAdapter.adapt(request.getQuery(), solrFilterDelegate);
+        SolrQuery adapted = filterAdapter.adapt(request.getQuery(), solrFilterDelegate);
+        Date[] effectiveRange = solrFilterDelegate.getEffectiveRange(adapted);
+        SolrQuery query = solrFilterDelegate.toFilterQueries(adapted);
+
+        if (server instanceof TimePartitionedSolrServer && effectiveRange != null) {
+            TimePartitionedSolrServer.setPartitionRange(query, effectiveRange[0],
+                    effectiveRange[1]);
+        }
 
         // Solr does not support outside parenthesis in certain queries and throws EOF exception.
         String queryPhrase = query.getQuery().trim();
@@ -335,6 +471,9 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
 
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Prepared Query: " + query.getQuery());
+            if (query.getFilterQueries() != null) {
+                LOGGER.debug("Filter Queries: " + Arrays.toString(query.getFilterQueries()));
+            }
         }
 
         if (request.getQuery().getPageSize() < 1) {
@@ -383,6 +522,20 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
 
         }
 
+        /* Projection */
+        Set<String> projection = getProjectedAttributes(request);
+
+        if (projection != null) {
+            List<String> fields = resolver.getProjectedFields(projection);
+
+            String requestedFields = query.getFields();
+            if (requestedFields != null && requestedFields.contains(RELEVANCE_SORT_FIELD)) {
+                fields.add(RELEVANCE_SORT_FIELD);
+            }
+
+            query.setFields(fields.toArray(new String[fields.size()]));
+        }
+
         /* Start Index */
         if (request.getQuery().getStartIndex() < 1) {
             throw new UnsupportedQueryException("Start index must be greater than 0");
@@ -391,12 +544,17 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         // solr is 0-based
         query.setStart(request.getQuery().getStartIndex() - 1);
 
+        if (isStreaming(request)) {
+            return streamResults(request, query, sortProperty, projection);
+        }
+
         try {
             QueryResponse solrResponse = server.query(query, METHOD.POST);
 
             totalHits = solrResponse.getResults().getNumFound();
 
             SolrDocumentList docs = solrResponse.getResults();
+            PageLoader pageLoader = (projection == null) ? null : new PageLoader();
 
             for (SolrDocument doc : docs) {
 
@@ -406,7 +564,7 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
                 }
                 ResultImpl tmpResult;
                 try {
-                    tmpResult = createResult(doc, sortProperty);
+                    tmpResult = createResult(doc, sortProperty, projection, pageLoader);
                     // TODO: register metacard type???
                 } catch (MetacardCreationException e) {
                     LOGGER.warn(e);
@@ -433,30 +591,155 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         return sourceResponseImpl;
     }
 
-    private Double degreesToMeters(double distance) {
-        return new Distance(
-                DistanceUtils.degrees2Dist(distance, DistanceUtils.EARTH_MEAN_RADIUS_KM),
-                LinearUnit.KILOMETER).getAs(LinearUnit.METER);
+    /**
+     * Starts a streaming query. The first page is fetched on the calling thread so that failures
+     * are reported to the caller; the rest are fetched and hydrated in the background as the
+     * consumer takes results from the returned response. A positive page size bounds the stream
+     * to that many results; otherwise every hit from the start index on is streamed.
+     */
+    private SourceResponse streamResults(QueryRequest request, SolrQuery query,
+            String sortProperty, Set<String> projection) throws UnsupportedQueryException {
+        int pageSize = request.getQuery().getPageSize();
+        int fetchSize = pageSize > 0 ? Math.min(pageSize, DEFAULT_STREAMING_FETCH_SIZE)
+                : DEFAULT_STREAMING_FETCH_SIZE;
+        query.setRows(fetchSize);
+
+        /*
+         * Without a requested sort, results are ordered by id and each page continues after the
+         * last id seen, which keeps every page as cheap as the first. Sorted streams page by
+         * offset.
+         */
+        String idField = null;
+        if (query.get(CommonParams.SORT) == null) {
+            idField = resolver.getField(Metacard.ID, AttributeFormat.STRING, true);
+            query.addSortField(idField, ORDER.asc);
+        }
+
+        QueryResponse firstPage;
+        try {
+            firstPage = server.query(query, METHOD.POST);
+        } catch (SolrServerException e) {
+            LOGGER.warn("Failure in Solr server query.", e);
+            throw new UnsupportedQueryException("Could not complete solr query.");
+        } catch (SolrException e) {
+            LOGGER.error("Could not complete solr query.", e);
+            throw new UnsupportedQueryException("Could not complete solr query.");
+        }
+
+        StreamingQueryResponse response = new StreamingQueryResponse(request, 2 * fetchSize);
+        response.setHits(firstPage.getResults().getNumFound());
+
+        getStreamExecutor().execute(
+                new ResultStreamer(query, sortProperty, projection, idField, firstPage, response,
+                        pageSize > 0 ? pageSize : Long.MAX_VALUE));
+
+        LOGGER.debug("EXITING: query");
+        return response;
     }
 
-    @Override
-    public CreateResponse create(CreateRequest request) throws IngestException {
+    /**
+     * @return the attributes requested with {@link Constants#PROJECTED_ATTRIBUTES}, including the
+     *         id, or null if the request does not project its results
+     */
+    private Set<String> getProjectedAttributes(QueryRequest request) {
+        Serializable value = request.getPropertyValue(Constants.PROJECTED_ATTRIBUTES);
+
+        Collection<?> names;
+        if (value instanceof Collection) {
+            names = (Collection<?>) value;
+        } else if (value instanceof Object[]) {
+            names = Arrays.asList((Object[]) value);
+        } else if (value != null) {
+            names = Arrays.asList(value.toString().split(","));
+        } else {
+            return null;
+        }
 
-        LOGGER.debug(ENTERED + " CREATE");
+        Set<String> projection = new HashSet<String>();
+        for (Object name : names) {
+            if (name != null && !name.toString().trim().isEmpty()) {
+                projection.add(name.toString().trim());
+            }
+        }
 
-        if (request == null) {
-            throw new IngestException(REQUEST_MUST_NOT_BE_NULL_MESSAGE);
+        if (projection.isEmpty()) {
+            return null;
         }
+        projection.add(Metacard.ID);
+        return projection;
+    }
 
-        List<Metacard> metacards = request.getMetacards();
+    private boolean isStreaming(QueryRequest request) {
+        Serializable streaming = request.getPropertyValue(Constants.STREAMING_QUERY);
+        return streaming != null && Boolean.valueOf(streaming.toString());
+    }
 
-        List<Metacard> output = new ArrayList<Metacard>();
+    /**
+     * Converts metacards to Solr documents, in parallel when there are at least
+     * {@link ConfigurationStore#getParallelBuildThreshold()} of them. Documents are returned in
+     * the order of the metacards and the failure reported is that of the first metacard that
+     * could not be converted, as when converting serially.
+     */
+    private List<SolrInputDocument> buildDocuments(List<Metacard> metacards)
+        throws IngestException {
 
-        if (metacards == null) {
-            return new CreateResponseImpl(request, null, output);
+        ConfigurationStore store = ConfigurationStore.getInstance();
+        int threshold = store.getParallelBuildThreshold();
+        int threads = getDocumentBuildThreads();
+
+        if (threshold <= 0 || metacards.size() < threshold || threads < 2) {
+            return buildDocumentsSerially(metacards);
         }
 
-        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+        ExecutorService executor = getDocumentBuilder(threads);
+        int chunkSize = (metacards.size() + threads - 1) / threads;
+
+        // the calling thread converts the first chunk itself
+        List<Future<List<SolrInputDocument>>> futures = new ArrayList<Future<List<SolrInputDocument>>>();
+        for (int from = chunkSize; from < metacards.size(); from += chunkSize) {
+            final List<Metacard> chunk = metacards.subList(from,
+                    Math.min(from + chunkSize, metacards.size()));
+            futures.add(executor.submit(new Callable<List<SolrInputDocument>>() {
+                @Override
+                public List<SolrInputDocument> call() throws IngestException {
+                    return buildDocumentsSerially(chunk);
+                }
+            }));
+        }
+
+        try {
+            List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(metacards.size());
+            docs.addAll(buildDocumentsSerially(metacards.subList(0, chunkSize)));
+
+            for (Future<List<SolrInputDocument>> future : futures) {
+                docs.addAll(future.get());
+            }
+            return docs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestException("Interrupted while building Solr documents.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IngestException) {
+                throw (IngestException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            LOGGER.warn(cause);
+            throw new IngestException("Solr documents could not be built.");
+        } finally {
+            for (Future<List<SolrInputDocument>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private List<SolrInputDocument> buildDocumentsSerially(List<Metacard> metacards)
+        throws IngestException {
+
+        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(metacards.size());
 
         for (Metacard metacard : metacards) {
 
@@ -488,16 +771,89 @@ public CreateResponse create(CreateRequest request) throws IngestException {
             if (!isSourceIdSet) {
                 metacard.setSourceId(getId());
             }
-            output.add(metacard);
+        }
+
+        return docs;
+    }
+
+    private int getDocumentBuildThreads() {
+        int threads = ConfigurationStore.getInstance().getDocumentBuildThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
 
+    private synchronized ExecutorService getDocumentBuilder(int threads) {
+        if (documentBuilder == null || documentBuilderThreads != threads) {
+            if (documentBuilder != null) {
+                // lets conversions already submitted finish
+                documentBuilder.shutdown();
+            }
+            documentBuilder = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SolrDocumentBuilder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            documentBuilderThreads = threads;
         }
+        return documentBuilder;
+    }
+
+    private synchronized ExecutorService getStreamExecutor() {
+        if (streamExecutor == null) {
+            streamExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SolrResultStreamer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return streamExecutor;
+    }
+
+    private Double degreesToMeters(double distance) {
+        return new Distance(
+                DistanceUtils.degrees2Dist(distance, DistanceUtils.EARTH_MEAN_RADIUS_KM),
+                LinearUnit.KILOMETER).getAs(LinearUnit.METER);
+    }
+
+    @Override
+    public CreateResponse create(CreateRequest request) throws IngestException {
+
+        LOGGER.debug(ENTERED + " CREATE");
+
+        if (request == null) {
+            throw new IngestException(REQUEST_MUST_NOT_BE_NULL_MESSAGE);
+        }
+
+        List<Metacard> metacards = request.getMetacards();
+
+        List<Metacard> output = new ArrayList<Metacard>();
+
+        if (metacards == null) {
+            return new CreateResponseImpl(request, null, output);
+        }
+
+        List<SolrInputDocument> docs = buildDocuments(metacards);
+
+        output.addAll(metacards);
 
         try {
-            if (!isForcedAutoCommit()) {
+            if (isAsyncIngest()) {
+                getIngestQueue().add(docs, isForcedAutoCommit());
+            } else if (!isForcedAutoCommit()) {
                 server.add(docs);
             } else {
                 softCommit(docs);
             }
+
+            // a create may replace a document with the same id in another month
+            if (server instanceof TimePartitionedSolrServer) {
+                ((TimePartitionedSolrServer) server).deleteRelocated(docs, isForcedAutoCommit());
+            }
         } catch (SolrServerException e) {
             LOGGER.warn(e);
             throw new IngestException("Server could not ingest metacard(s).");
@@ -508,6 +864,10 @@ public CreateResponse create(CreateRequest request) throws IngestException {
             LOGGER.warn(e);
         }
 
+        for (Metacard metacard : output) {
+            contentTypeCounts.add(metacard);
+        }
+
         CreateResponseImpl createResponseImpl = new CreateResponseImpl(request, null, output);
 
         return createResponseImpl;
@@ -551,32 +911,38 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
             identifiers.add(updateEntry.getKey().toString());
         }
 
-        /* 1a. Create the old Metacard Query */
-        String attributeQuery = getQuery(attributeName, identifiers);
+        List<SolrDocument> oldDocs = null;
 
-        SolrQuery query = new SolrQuery(attributeQuery);
+        if (Metacard.ID.equals(attributeName)) {
+            /* 1a. Records addressed by id are fetched with a realtime get */
+            oldDocs = realtimeGet(identifiers);
+        }
 
-        QueryResponse idResults = null;
+        if (oldDocs == null) {
+            /* 1b. Create the old Metacard Query */
+            String attributeQuery = getQuery(attributeName, identifiers);
 
-        /* 1b. Execute Query */
-        try {
+            SolrQuery query = new SolrQuery(attributeQuery);
 
-            idResults = server.query(query, METHOD.POST);
+            /* 1c. Execute Query */
+            try {
 
-        } catch (SolrServerException e) {
-            LOGGER.warn(e);
+                oldDocs = server.query(query, METHOD.POST).getResults();
+
+            } catch (SolrServerException e) {
+                LOGGER.warn(e);
+            }
         }
 
         // CHECK if we got any results back
-        if (idResults != null && idResults.getResults() != null
-                && idResults.getResults().size() != 0) {
+        if (oldDocs != null && oldDocs.size() != 0) {
 
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.info("Found " + idResults.getResults().size() + " current metacard(s).");
+                LOGGER.info("Found " + oldDocs.size() + " current metacard(s).");
             }
 
             // CHECK updates size assertion
-            if (idResults.getResults().size() > updates.size()) {
+            if (oldDocs.size() > updates.size()) {
                 throw new IngestException(
                         "Found more metacards than updated metacards provided. Please ensure your attribute values match unique records.");
             }
@@ -600,15 +966,15 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
          * matter. If we use a List and the metacards are out of order, we might not match the new
          * metacards properly with the old metacards.
          */
-        int initialHashMapCapacity = (int) (idResults.getResults().size() / HASHMAP_DEFAULT_LOAD_FACTOR) + 1;
+        int initialHashMapCapacity = (int) (oldDocs.size() / HASHMAP_DEFAULT_LOAD_FACTOR) + 1;
 
         // map of old metacards to be populated
         Map<Serializable, Metacard> idToMetacardMap = new HashMap<Serializable, Metacard>(
                 initialHashMapCapacity);
 
-        /* 1c. Populate list of old metacards */
+        /* 1d. Populate list of old metacards */
 
-        for (SolrDocument doc : idResults.getResults()) {
+        for (SolrDocument doc : oldDocs) {
             Metacard old = null;
             try {
                 old = createMetacard(doc);
@@ -645,11 +1011,17 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
 
                 prepareForUpdate(now, oldMetacard.getId(), newMetacard, oldMetacard);
 
-                /* 2b. Build Solr Document */
-                SolrInputDocument solrInputDocument = new SolrInputDocument();
+                /* 2b. Build Solr Document, changing only what differs when possible */
+                SolrInputDocument solrInputDocument;
 
                 try {
-                    resolver.addFields(newMetacard, solrInputDocument);
+                    // partitions are chosen by effective date, so they need complete documents
+                    solrInputDocument = (server instanceof TimePartitionedSolrServer) ? null
+                            : resolver.getPartialUpdate(newMetacard, oldMetacard);
+                    if (solrInputDocument == null) {
+                        solrInputDocument = new SolrInputDocument();
+                        resolver.addFields(newMetacard, solrInputDocument);
+                    }
                 } catch (MetacardCreationException e) {
                     throw new IngestException(e);
                 }
@@ -672,6 +1044,16 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
                 softCommit(docs);
             }
 
+            if (server instanceof TimePartitionedSolrServer) {
+                ((TimePartitionedSolrServer) server).deleteRelocated(oldDocs, docs,
+                        isForcedAutoCommit());
+            }
+
+            for (Update update : updateList) {
+                contentTypeCounts.remove(update.getOldMetacard());
+                contentTypeCounts.add(update.getNewMetacard());
+            }
+
         } catch (SolrServerException e) {
             LOGGER.warn(e);
             throw new IngestException("Provider is not able to process the request.");
@@ -709,22 +1091,13 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
             return new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
         }
 
-        /* 1. Query first for the records */
-
-        StringBuilder queryBuilder = new StringBuilder();
-
-        for (int i = 0; i < identifiers.size(); i++) {
-
-            if (i != 0) {
-                queryBuilder.append(" OR ");
-            }
-
-            queryBuilder.append(attributeName + SchemaFields.TEXT_SUFFIX + ":" + QUOTE
-                    + identifiers.get(i) + QUOTE);
-
+        if (isBulkDelete(deleteRequest)) {
+            return bulkDelete(deleteRequest, attributeName, identifiers);
         }
 
-        SolrQuery query = new SolrQuery(queryBuilder.toString());
+        /* 1. Query first for the records */
+
+        SolrQuery query = new SolrQuery(getDeleteQuery(attributeName, identifiers));
         query.setRows(identifiers.size());
 
         QueryResponse solrResponse = null;
@@ -781,12 +1154,152 @@ public DeleteResponse delete(DeleteRequest deleteRequest) throws IngestException
             throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
         }
 
-        new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
+        for (Metacard deletedMetacard : deletedMetacards) {
+            contentTypeCounts.remove(deletedMetacard);
+        }
+
+        LOGGER.debug(EXITED + " DELETE");
+        return new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
+    }
+
+    /**
+     * Deletes records without rebuilding them and without a hard commit. Only the ids of the
+     * matching records are fetched, and the deletion becomes visible within the configured
+     * commitWithin time, or right away with a soft commit when auto-commit is forced.
+     */
+    private DeleteResponse bulkDelete(DeleteRequest deleteRequest, String attributeName,
+            List<? extends Serializable> identifiers) throws IngestException {
+
+        String idField = Metacard.ID + SchemaFields.TEXT_SUFFIX;
+        String contentTypeField = resolver.getField(Metacard.CONTENT_TYPE, AttributeFormat.STRING,
+                true);
+        String contentTypeVersionField = resolver.getField(Metacard.CONTENT_TYPE_VERSION,
+                AttributeFormat.STRING, true);
+
+        SolrQuery query = new SolrQuery(getDeleteQuery(attributeName, identifiers));
+        query.setRows(identifiers.size());
+        query.setFields(idField);
+        // content types are fetched so that their counts can be kept without a facet query
+        if (contentTypeField != null) {
+            query.addField(contentTypeField);
+        }
+        if (contentTypeVersionField != null) {
+            query.addField(contentTypeVersionField);
+        }
+
+        List<String> ids = new ArrayList<String>();
+        List<Metacard> deletedMetacards = new ArrayList<Metacard>();
+
+        try {
+            for (SolrDocument doc : server.query(query, METHOD.POST).getResults()) {
+                String id = doc.getFieldValue(idField).toString();
+                ids.add(id);
+
+                MetacardImpl deletedMetacard = new MetacardImpl();
+                deletedMetacard.setId(id);
+                deletedMetacard.setSourceId(getId());
+                if (contentTypeField != null && doc.getFieldValue(contentTypeField) != null) {
+                    deletedMetacard.setContentTypeName(doc.getFieldValue(contentTypeField)
+                            .toString());
+                }
+                if (contentTypeVersionField != null
+                        && doc.getFieldValue(contentTypeVersionField) != null) {
+                    deletedMetacard.setContentTypeVersion(doc.getFieldValue(
+                            contentTypeVersionField).toString());
+                }
+                deletedMetacards.add(deletedMetacard);
+            }
+
+            if (!ids.isEmpty()) {
+                if (isForcedAutoCommit()) {
+                    boolean waitForFlush = true;
+                    boolean waitToMakeVisible = true;
+                    boolean softCommit = true;
+                    new org.apache.solr.client.solrj.request.UpdateRequest().deleteById(ids)
+                            .setAction(ACTION.COMMIT, waitForFlush, waitToMakeVisible, softCommit)
+                            .process(server);
+                } else {
+                    server.deleteById(ids, ConfigurationStore.getInstance()
+                            .getCommitWithinMillis());
+                }
+            }
+        } catch (SolrServerException e) {
+            LOGGER.error(e);
+            throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
+        } catch (SolrException e) {
+            LOGGER.error(e);
+            throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
+        } catch (IOException e) {
+            LOGGER.error(e);
+            throw new IngestException(COULD_NOT_COMPLETE_DELETE_REQUEST_MESSAGE);
+        }
+
+        for (Metacard deletedMetacard : deletedMetacards) {
+            contentTypeCounts.remove(deletedMetacard);
+        }
 
         LOGGER.debug(EXITED + " DELETE");
         return new DeleteResponseImpl(deleteRequest, null, deletedMetacards);
     }
 
+    private boolean isBulkDelete(DeleteRequest deleteRequest) {
+        Serializable bulk = deleteRequest.getPropertyValue(Constants.BULK_DELETE);
+        return bulk != null && Boolean.valueOf(bulk.toString());
+    }
+
+    private String getDeleteQuery(String attributeName, List<? extends Serializable> identifiers) {
+        StringBuilder queryBuilder = new StringBuilder();
+
+        for (int i = 0; i < identifiers.size(); i++) {
+
+            if (i != 0) {
+                queryBuilder.append(" OR ");
+            }
+
+            queryBuilder.append(attributeName + SchemaFields.TEXT_SUFFIX + ":" + QUOTE
+                    + identifiers.get(i) + QUOTE);
+
+        }
+
+        return queryBuilder.toString();
+    }
+
+    /**
+     * Fetches the current version of the given records through the realtime get handler, which
+     * sees updates that have not been committed yet and does not run a search.
+     * 
+     * @param ids
+     *            ids of the records
+     * @return the records that were found, or null if the realtime get handler is not available
+     */
+    private List<SolrDocument> realtimeGet(List<String> ids) {
+        SolrQuery query = new SolrQuery();
+        query.setRequestHandler(REALTIME_GET_HANDLER);
+        for (String id : ids) {
+            query.add(REALTIME_GET_ID_PARAM, id);
+        }
+
+        try {
+            QueryResponse response = server.query(query, METHOD.POST);
+
+            // a single id is answered with one document rather than a list
+            if (response.getResults() != null) {
+                return response.getResults();
+            }
+            List<SolrDocument> docs = new ArrayList<SolrDocument>();
+            Object doc = response.getResponse().get(REALTIME_GET_DOC_KEY);
+            if (doc instanceof SolrDocument) {
+                docs.add((SolrDocument) doc);
+            }
+            return docs;
+        } catch (SolrServerException e) {
+            LOGGER.warn("Realtime get failed, searching for records instead.", e);
+        } catch (SolrException e) {
+            LOGGER.warn("Realtime get failed, searching for records instead.", e);
+        }
+        return null;
+    }
+
     /**
      * @param docs
      * @return
@@ -851,10 +1364,11 @@ private String getQuery(String attributeName, List<String> ids) throws IngestExc
         return query;
     }
 
-    private ResultImpl createResult(SolrDocument doc, String sortProperty)
-        throws MetacardCreationException {
+    private ResultImpl createResult(SolrDocument doc, String sortProperty,
+            Set<String> projection, PageLoader pageLoader) throws MetacardCreationException {
 
-        ResultImpl result = new ResultImpl(createMetacard(doc));
+        ResultImpl result = new ResultImpl((projection == null) ? createMetacard(doc)
+                : createLazyMetacard(doc, projection, pageLoader));
 
         if (doc.get(RELEVANCE_SORT_FIELD) != null) {
 
@@ -897,19 +1411,73 @@ private MetacardImpl createMetacard(SolrDocument doc) throws MetacardCreationExc
 
         MetacardImpl metacard = new MetacardImpl(metacardType);
 
-        for (String solrFieldName : doc.getFieldNames()) {
-            if (!resolver.isPrivateField(solrFieldName)) {
-                Serializable value = resolver.getDocValue(solrFieldName,
-                        doc.getFieldValue(solrFieldName));
-                metacard.setAttribute(resolver.resolveFieldName(solrFieldName), value);
-            }
-        }
+        resolver.getFieldTable(metacardType).populate(doc, metacard);
+
+        metacard.setSourceId(getId());
+
+        return metacard;
+    }
+
+    /**
+     * Creates a {@link LazyMetacard} from a document holding only the projected fields. The rest
+     * of the record is loaded by the page loader when it is first needed.
+     */
+    private LazyMetacard createLazyMetacard(SolrDocument doc, Set<String> projection,
+            PageLoader pageLoader) throws MetacardCreationException {
+
+        MetacardType metacardType = resolver.getMetacardType(doc);
+
+        LazyMetacard metacard = new LazyMetacard(metacardType, projection, pageLoader);
+
+        resolver.getFieldTable(metacardType).populate(doc, metacard);
 
         metacard.setSourceId(getId());
+        metacard.initialized();
+
+        pageLoader.add(metacard.getId());
 
         return metacard;
     }
 
+    /**
+     * Loads the complete records with the given ids in a single request.
+     * 
+     * @return the records that were found, by id
+     */
+    private Map<String, Metacard> loadMetacards(List<String> ids) {
+        Map<String, Metacard> metacards = new HashMap<String, Metacard>();
+
+        List<SolrDocument> docs;
+        try {
+            docs = realtimeGet(ids);
+
+            if (docs == null) {
+                SolrQuery query = new SolrQuery(getQuery(Metacard.ID, ids));
+                query.setRows(ids.size());
+                docs = server.query(query, METHOD.POST).getResults();
+            }
+        } catch (IngestException e) {
+            LOGGER.warn("Could not query for metacards " + ids, e);
+            return metacards;
+        } catch (SolrServerException e) {
+            LOGGER.warn("Failure in Solr server query for metacards " + ids, e);
+            return metacards;
+        } catch (SolrException e) {
+            LOGGER.warn("Could not complete solr query for metacards " + ids, e);
+            return metacards;
+        }
+
+        for (SolrDocument doc : docs) {
+            try {
+                Metacard metacard = createMetacard(doc);
+                metacards.put(metacard.getId(), metacard);
+            } catch (MetacardCreationException e) {
+                LOGGER.warn("Could not create metacard from " + doc, e);
+            }
+        }
+        return metacards;
+    }
+
     private String generatePrimaryKey() {
         return UUID.randomUUID().toString().replaceAll("-", "");
     }
@@ -918,9 +1486,156 @@ public boolean isForcedAutoCommit() {
         return ConfigurationStore.getInstance().isForceAutoCommit();
     }
 
+    public boolean isAsyncIngest() {
+        return ConfigurationStore.getInstance().isAsyncIngest();
+    }
+
+    /**
+     * The ingest queue is created on first use so that its capacity is taken from the
+     * configuration in effect at that time. Batch size and commitWithin changes are picked up on
+     * every call.
+     */
+    private synchronized SolrIngestQueue getIngestQueue() {
+        ConfigurationStore store = ConfigurationStore.getInstance();
+        if (ingestQueue == null) {
+            ingestQueue = new SolrIngestQueue(server, store.getIngestQueueCapacity(),
+                    store.getIngestBatchSize(), store.getCommitWithinMillis());
+        } else {
+            ingestQueue.setBatchSize(store.getIngestBatchSize());
+            ingestQueue.setCommitWithinMillis(store.getCommitWithinMillis());
+        }
+        return ingestQueue;
+    }
+
     public void shutdown() {
+        synchronized (this) {
+            if (ingestQueue != null) {
+                LOGGER.info("Flushing solr ingest queue.");
+                ingestQueue.shutdown();
+            }
+            if (streamExecutor != null) {
+                streamExecutor.shutdownNow();
+            }
+            if (documentBuilder != null) {
+                documentBuilder.shutdown();
+            }
+            if (contentTypeReconciler != null) {
+                contentTypeReconciler.shutdownNow();
+            }
+        }
         LOGGER.info("Shutting down solr server.");
         server.shutdown();
     }
 
+    /**
+     * Loads the complete records of the {@link LazyMetacard}s of one page of results. The first
+     * record requested loads every record of the page that has not been loaded yet, so reading
+     * the page takes one request rather than one per record.
+     */
+    private class PageLoader implements LazyMetacard.Loader {
+
+        private final List<String> pending = new ArrayList<String>();
+
+        private final Map<String, Metacard> loaded = new HashMap<String, Metacard>();
+
+        synchronized void add(String id) {
+            pending.add(id);
+        }
+
+        @Override
+        public synchronized Metacard load(String id) {
+            if (pending.contains(id)) {
+                loaded.putAll(loadMetacards(pending));
+                pending.clear();
+            }
+            // each lazy metacard keeps its own record once it has been handed over
+            return loaded.remove(id);
+        }
+    }
+
+    /**
+     * Fetches the remaining pages of a streaming query and hands their results to the response.
+     */
+    private class ResultStreamer implements Runnable {
+
+        private final SolrQuery query;
+
+        private final String sortProperty;
+
+        private final Set<String> projection;
+
+        private final String idField;
+
+        private final StreamingQueryResponse response;
+
+        private QueryResponse page;
+
+        private String continuation;
+
+        private long remaining;
+
+        ResultStreamer(SolrQuery query, String sortProperty, Set<String> projection,
+                String idField, QueryResponse firstPage, StreamingQueryResponse response,
+                long limit) {
+            this.query = query;
+            this.sortProperty = sortProperty;
+            this.projection = projection;
+            this.idField = idField;
+            this.page = firstPage;
+            this.response = response;
+            this.remaining = limit;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    SolrDocumentList docs = page.getResults();
+                    List<Result> results = new ArrayList<Result>(docs.size());
+                    PageLoader pageLoader = (projection == null) ? null : new PageLoader();
+                    for (SolrDocument doc : docs) {
+                        results.add(createResult(doc, sortProperty, projection, pageLoader));
+                    }
+
+                    remaining -= docs.size();
+                    boolean last = docs.size() < query.getRows() || remaining <= 0;
+                    if (!response.offer(results, last) || last) {
+                        return;
+                    }
+
+                    advance(docs);
+                    if (remaining < query.getRows()) {
+                        query.setRows((int) remaining);
+                    }
+                    page = server.query(query, METHOD.POST);
+                }
+            } catch (MetacardCreationException e) {
+                LOGGER.warn("Could not create metacard(s), ending streaming query.", e);
+                response.fail(getId(), e);
+            } catch (SolrServerException e) {
+                LOGGER.warn("Failure in Solr server query, ending streaming query.", e);
+                response.fail(getId(), e);
+            } catch (SolrException e) {
+                LOGGER.error("Could not complete solr query, ending streaming query.", e);
+                response.fail(getId(), e);
+            }
+        }
+
+        private void advance(SolrDocumentList docs) {
+            if (idField == null) {
+                query.setStart(query.getStart() + docs.size());
+                return;
+            }
+
+            Object lastId = docs.get(docs.size() - 1).getFieldValue(idField);
+            if (continuation != null) {
+                query.removeFilterQuery(continuation);
+            }
+            continuation = idField + ":{" + ClientUtils.escapeQueryChars(lastId.toString())
+                    + " TO *]";
+            query.addFilterQuery(continuation);
+            query.setStart(0);
+        }
+    }
+
 }
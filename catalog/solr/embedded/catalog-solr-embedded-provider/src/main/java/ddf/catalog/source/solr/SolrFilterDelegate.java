@@ -16,16 +16,22 @@
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.ORDER;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.schema.DateField;
 import org.joda.time.DateTime;
 import org.opengis.filter.sort.SortBy;
@@ -114,6 +120,15 @@ public class SolrFilterDelegate extends FilterDelegate<SolrQuery> {
 
     private static final double DEFAULT_ERROR_IN_DEGREES = metersToDegrees(DEFAULT_ERROR_IN_METERS);
 
+    private static final String MATCH_ALL = "*:*";
+
+    /**
+     * Properties whose exact matches are used as filter queries.
+     */
+    private static final Set<String> FILTER_QUERY_PROPERTIES = Collections
+            .unmodifiableSet(new HashSet<String>(Arrays.asList(Metacard.CONTENT_TYPE,
+                    Metacard.CONTENT_TYPE_VERSION)));
+
     static {
         Map<String, String> tempMap = new HashMap<String, String>();
         tempMap.put(Metacard.ANY_TEXT, ANY_TEXT_FIELD);
@@ -125,25 +140,229 @@ public class SolrFilterDelegate extends FilterDelegate<SolrQuery> {
 
     private SortBy sortBy;
 
+    private boolean useFilterQueries;
+
+    /**
+     * Queries that do not affect scoring and can be sent as filter queries.
+     */
+    private final Set<SolrQuery> filters = Collections
+            .newSetFromMap(new IdentityHashMap<SolrQuery, Boolean>());
+
+    /**
+     * Bounds of {@link Metacard#EFFECTIVE} that queries can match, as {from, to} with null meaning
+     * unbounded. Queries without an entry may match any effective date.
+     */
+    private final Map<SolrQuery, Date[]> effectiveRanges = new IdentityHashMap<SolrQuery, Date[]>();
+
     public SolrFilterDelegate(DynamicSchemaResolver resolver) {
         this.resolver = resolver;
+        this.useFilterQueries = ConfigurationStore.getInstance().isUseFilterQueries();
     }
 
     @Override
     public SolrQuery and(List<SolrQuery> operands) {
-        return logicalOperator(operands, AND);
+        Date[] range = null;
+        if (operands != null) {
+            for (SolrQuery operand : operands) {
+                Date[] operandRange = effectiveRanges.get(operand);
+                if (operandRange != null) {
+                    range = (range == null) ? operandRange : new Date[] {
+                        later(range[0], operandRange[0]), earlier(range[1], operandRange[1])};
+                }
+            }
+        }
+        return setEffectiveRange(conjunction(operands), range);
+    }
+
+    private SolrQuery conjunction(List<SolrQuery> operands) {
+        if (!useFilterQueries || operands == null) {
+            return logicalOperator(operands, AND);
+        }
+
+        // Spatial, temporal and exact content type constraints go to separate filter queries so
+        // Solr can cache them independently of the scored terms.
+        List<String> filterQueries = new ArrayList<String>();
+        List<SolrQuery> scoredOperands = new ArrayList<SolrQuery>();
+
+        for (SolrQuery operand : operands) {
+            if (operand == null) {
+                throw new UnsupportedOperationException("Null operand found");
+            }
+            String[] operandFilterQueries = operand.getFilterQueries();
+            if (operandFilterQueries != null) {
+                filterQueries.addAll(Arrays.asList(operandFilterQueries));
+                operand.remove(CommonParams.FQ);
+            }
+
+            if (filters.contains(operand)) {
+                filterQueries.add(operand.getQuery().trim());
+            } else if (operandFilterQueries == null || !MATCH_ALL.equals(operand.getQuery())) {
+                scoredOperands.add(operand);
+            }
+        }
+
+        if (filterQueries.isEmpty()) {
+            return markFilter(logicalOperator(scoredOperands, AND), false);
+        }
+
+        SolrQuery query;
+        if (scoredOperands.isEmpty()) {
+            query = new SolrQuery(MATCH_ALL);
+        } else {
+            query = markFilter(logicalOperator(scoredOperands, AND), false);
+        }
+
+        for (String filterQuery : filterQueries) {
+            query.addFilterQuery(filterQuery);
+        }
+
+        return query;
     }
 
     @Override
     public SolrQuery or(List<SolrQuery> operands) {
-        return logicalOperator(operands, OR);
+        // a disjunction is only bounded if all of its operands are
+        Date[] range = null;
+        if (operands != null && !operands.isEmpty()) {
+            range = new Date[] {null, null};
+            for (int i = 0; i < operands.size() && range != null; i++) {
+                Date[] operandRange = effectiveRanges.get(operands.get(i));
+                if (operandRange == null) {
+                    range = null;
+                } else if (i == 0) {
+                    range = operandRange.clone();
+                } else {
+                    range = new Date[] {
+                        (range[0] == null || operandRange[0] == null) ? null : earlier(range[0],
+                                operandRange[0]),
+                        (range[1] == null || operandRange[1] == null) ? null : later(range[1],
+                                operandRange[1])};
+                }
+            }
+        }
+        return setEffectiveRange(disjunction(operands), range);
+    }
+
+    private SolrQuery disjunction(List<SolrQuery> operands) {
+        if (!useFilterQueries || operands == null) {
+            return logicalOperator(operands, OR);
+        }
+
+        boolean isFilter = true;
+        for (SolrQuery operand : operands) {
+            if (operand == null) {
+                throw new UnsupportedOperationException("Null operand found");
+            }
+            isFilter &= filters.contains(operand);
+            mergeFilterQueries(operand);
+        }
+
+        return markFilter(logicalOperator(operands, OR), isFilter);
     }
 
     @Override
     public SolrQuery not(SolrQuery operand) {
+        if (useFilterQueries) {
+            mergeFilterQueries(operand);
+        }
         return new SolrQuery(" NOT " + operand.getQuery());
     }
 
+    /**
+     * Moves the filter queries of a query that was nested in an AND back into its main query, for
+     * operations whose semantics differ from a conjunction.
+     */
+    private void mergeFilterQueries(SolrQuery query) {
+        String[] filterQueries = query.getFilterQueries();
+        if (filterQueries == null) {
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder(START_PAREN);
+        if (!MATCH_ALL.equals(query.getQuery())) {
+            builder.append(query.getQuery()).append(AND);
+        }
+        builder.append(StringUtils.join(filterQueries, AND)).append(END_PAREN);
+
+        query.remove(CommonParams.FQ);
+        query.setQuery(builder.toString());
+    }
+
+    /**
+     * Moves the query to a filter query if it does not need to be scored, so a query made of a
+     * single spatial or temporal constraint can also be cached.
+     * 
+     * @param query
+     *            query returned for the whole filter
+     * @return the query to send to Solr
+     */
+    public SolrQuery toFilterQueries(SolrQuery query) {
+        if (useFilterQueries && filters.contains(query)) {
+            SolrQuery filtered = new SolrQuery(MATCH_ALL);
+            filtered.addFilterQuery(query.getQuery().trim());
+            return filtered;
+        }
+        return query;
+    }
+
+    /**
+     * Gives the range of {@link Metacard#EFFECTIVE} dates that the query returned for a filter can
+     * match, so that a partitioned index can skip the partitions outside of it. Must be called
+     * before {@link #toFilterQueries(SolrQuery)}.
+     * 
+     * @param query
+     *            query returned for the whole filter
+     * @return {from, to}, either of which may be null when unbounded, or null if the query is not
+     *         limited to a range of effective dates
+     */
+    public Date[] getEffectiveRange(SolrQuery query) {
+        Date[] range = effectiveRanges.get(query);
+        if (range == null || (range[0] == null && range[1] == null)) {
+            return null;
+        }
+        return range.clone();
+    }
+
+    private SolrQuery setEffectiveRange(SolrQuery query, Date[] range) {
+        if (range != null) {
+            effectiveRanges.put(query, range);
+        }
+        return query;
+    }
+
+    private SolrQuery setEffectiveRange(SolrQuery query, String propertyName, Date from, Date to) {
+        if (Metacard.EFFECTIVE.equals(propertyName)) {
+            effectiveRanges.put(query, new Date[] {from, to});
+        }
+        return query;
+    }
+
+    private static Date earlier(Date first, Date second) {
+        if (first == null || second == null) {
+            return (first == null) ? second : first;
+        }
+        return first.before(second) ? first : second;
+    }
+
+    private static Date later(Date first, Date second) {
+        if (first == null || second == null) {
+            return (first == null) ? second : first;
+        }
+        return first.after(second) ? first : second;
+    }
+
+    private SolrQuery markFilter(SolrQuery query, boolean isFilter) {
+        if (!useFilterQueries) {
+            return query;
+        }
+        if (isFilter) {
+            filters.add(query);
+        } else {
+            filters.remove(query);
+        }
+        return query;
+    }
+
     @Override
     public SolrQuery propertyIsFuzzy(String propertyName, String searchPhrase) {
         String mappedPropertyName = getMappedPropertyName(propertyName, AttributeFormat.STRING,
@@ -171,8 +390,9 @@ public SolrQuery propertyIsEqualTo(String propertyName, String literal, boolean
 
         String mappedPropertyName = getMappedPropertyName(propertyName, AttributeFormat.STRING,
                 true);
-        return new SolrQuery(mappedPropertyName + ":" + QUOTE + escapeSpecialCharacters(literal)
-                + QUOTE);
+        return markFilter(new SolrQuery(mappedPropertyName + ":" + QUOTE
+                + escapeSpecialCharacters(literal) + QUOTE),
+                FILTER_QUERY_PROPERTIES.contains(propertyName));
     }
 
     @Override
@@ -183,7 +403,8 @@ public SolrQuery propertyIsEqualTo(String propertyName, Date exactDate) {
         query.setQuery(" " + mappedPropertyName + ":" + QUOTE + dateFormatter.toExternal(exactDate)
                 + QUOTE);
 
-        return query;
+        setEffectiveRange(query, propertyName, exactDate, exactDate);
+        return markFilter(query, true);
     }
 
     @Override
@@ -266,7 +487,8 @@ public SolrQuery during(String propertyName, Date startDate, Date endDate) {
         query.setQuery(" " + getMappedPropertyName(propertyName, AttributeFormat.DATE, false)
                 + ":[ " + formattedStartDate + TO + formattedEndDate + " ] ");
 
-        return query;
+        setEffectiveRange(query, propertyName, startDate, endDate);
+        return markFilter(query, true);
     }
 
     public SolrQuery before(String propertyName, Date date) {
@@ -276,9 +498,12 @@ public SolrQuery before(String propertyName, Date date) {
         query.setQuery(" " + getMappedPropertyName(propertyName, AttributeFormat.DATE, false)
                 + ":[ *" + TO + formattedEndDate + " ] ");
 
-        return query;
+        setEffectiveRange(query, propertyName, null, date);
+        return markFilter(query, true);
     }
 
+    // Not used as a filter query: the window moves with every request, so it would never be reused
+    // from the filter cache.
     @Override
     public SolrQuery relative(String propertyName, long duration) {
         DateTime now = new DateTime();
@@ -292,7 +517,7 @@ public SolrQuery relative(String propertyName, long duration) {
         query.setQuery(" " + getMappedPropertyName(propertyName, AttributeFormat.DATE, false)
                 + ":[ " + formattedStartDate + TO + formattedEndDate + " ] ");
 
-        return query;
+        return setEffectiveRange(query, propertyName, start, end);
     }
 
     @Override
@@ -459,7 +684,7 @@ private SolrQuery getSolrQueryWithSort(SortBy sortBy, String givenSpatialString)
             return new SolrQuery(spatialQueryWithDistance);
 
         } else {
-            return new SolrQuery(givenSpatialString);
+            return markFilter(new SolrQuery(givenSpatialString), true);
         }
     }
 
@@ -618,7 +843,7 @@ private SolrQuery operationOnIndexToQuery(String operation, String indexName, St
             String normalizedWkt = WktNormalizer.normalizeWkt(wkt);
             String geoQuery = indexName + ":\"" + operation + "(" + normalizedWkt + ")\"";
 
-            return new SolrQuery(geoQuery);
+            return markFilter(new SolrQuery(geoQuery), true);
         } else {
             throw new UnsupportedOperationException("Wkt should not be null or empty.");
         }
@@ -635,6 +860,10 @@ public void setSortPolicy(SortBy sortBy) {
         this.sortBy = sortBy;
     }
 
+    public void setUseFilterQueries(boolean useFilterQueries) {
+        this.useFilterQueries = useFilterQueries;
+    }
+
     public static SolrFilterDelegate newInstance(DynamicSchemaResolver resolver) {
         return new SolrFilterDelegate(resolver);
     }
@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest.ACTION;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+import ddf.catalog.source.IngestException;
+
+/**
+ * Coalesces the documents of many concurrent ingest requests into large Solr adds. Callers hand
+ * their documents to {@link #add(List, boolean)} and block until the batch containing them has been
+ * accepted by the server. Since the update log is enabled, an accepted add is durable; visibility to
+ * searchers follows within {@code commitWithin} milliseconds, or immediately when a soft commit was
+ * requested.
+ * 
+ * The number of queued documents is bounded. When the queue is full, callers wait up to the offer
+ * timeout for room before their request is rejected.
+ * 
+ */
+public class SolrIngestQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(SolrIngestQueue.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final String COULD_NOT_INGEST_MESSAGE = "Server could not ingest metacard(s).";
+
+    private static final String SHUT_DOWN_MESSAGE = "Ingest queue has been shut down.";
+
+    private final SolrServer server;
+
+    private final LinkedBlockingQueue<PendingAdd> pending = new LinkedBlockingQueue<PendingAdd>();
+
+    private final Semaphore capacity;
+
+    private final int queueCapacity;
+
+    private final Thread writer;
+
+    private volatile int batchSize;
+
+    private volatile int commitWithinMillis;
+
+    private volatile long offerTimeoutMillis;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param server
+     *            server the batches are sent to
+     * @param queueCapacity
+     *            maximum number of documents waiting to be sent
+     * @param batchSize
+     *            maximum number of documents sent in a single add
+     * @param commitWithinMillis
+     *            milliseconds within which added documents are made visible
+     */
+    public SolrIngestQueue(SolrServer server, int queueCapacity, int batchSize,
+            int commitWithinMillis) {
+        if (server == null) {
+            throw new IllegalArgumentException("SolrServer cannot be null.");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero.");
+        }
+
+        this.server = server;
+        this.queueCapacity = queueCapacity;
+        this.capacity = new Semaphore(queueCapacity, true);
+        setBatchSize(batchSize);
+        setCommitWithinMillis(commitWithinMillis);
+        this.offerTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, SolrIngestQueue.class.getSimpleName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the documents and waits until the batch containing them has been added to the server.
+     * 
+     * @param docs
+     *            documents to add
+     * @param softCommit
+     *            true if the documents must be visible when this method returns
+     * @throws IngestException
+     *             if the queue is full or shut down, or the server rejected the batch
+     */
+    public void add(List<SolrInputDocument> docs, boolean softCommit) throws IngestException {
+        if (docs == null || docs.isEmpty()) {
+            return;
+        }
+
+        // a request larger than the queue takes the whole queue rather than waiting forever
+        int permits = Math.min(docs.size(), queueCapacity);
+        PendingAdd add = new PendingAdd(docs, softCommit, permits);
+
+        try {
+            if (!capacity.tryAcquire(permits, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IngestException("Ingest queue is full, could not ingest metacard(s).");
+            }
+            synchronized (this) {
+                if (!running) {
+                    capacity.release(permits);
+                    throw new IngestException(SHUT_DOWN_MESSAGE);
+                }
+                pending.add(add);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestException("Interrupted while waiting for room in the ingest queue.");
+        }
+
+        try {
+            add.await();
+        } catch (InterruptedException e) {
+            if (pending.remove(add)) {
+                // not taken by the writer yet, so it is withdrawn and never ingested
+                capacity.release(permits);
+                Thread.currentThread().interrupt();
+                throw new IngestException(
+                        "Interrupted while waiting for metacard(s) to be ingested.");
+            }
+            // the batch holding the documents is being sent, the caller must learn its outcome
+            add.awaitUninterruptibly();
+            Thread.currentThread().interrupt();
+        }
+
+        if (add.failure != null) {
+            throw new IngestException(add.failure.getMessage(), add.failure);
+        }
+    }
+
+    /**
+     * Stops accepting documents, sends whatever is still queued, and waits for the writer to
+     * finish.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything the writer did not get to is failed so no caller is left waiting
+        abandonPending();
+    }
+
+    /**
+     * @return number of documents waiting to be sent
+     */
+    public int getQueuedDocumentCount() {
+        return queueCapacity - capacity.availablePermits();
+    }
+
+    /**
+     * @param batchSize
+     *            maximum number of documents sent in a single add. To be set via Spring/Blueprint
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param commitWithinMillis
+     *            milliseconds within which added documents are made visible. To be set via
+     *            Spring/Blueprint
+     */
+    public void setCommitWithinMillis(int commitWithinMillis) {
+        this.commitWithinMillis = commitWithinMillis;
+    }
+
+    /**
+     * @param offerTimeoutMillis
+     *            milliseconds a caller waits for room in a full queue. To be set via
+     *            Spring/Blueprint
+     */
+    public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    private void writeBatches() {
+        while (running || !pending.isEmpty()) {
+            PendingAdd first;
+            try {
+                first = pending.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandonPending();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            /*
+             * Requests that arrived while the previous batch was being sent are taken together, so
+             * the batch size grows with the ingest load without holding back a lone request.
+             */
+            List<PendingAdd> batch = new ArrayList<PendingAdd>();
+            batch.add(first);
+            int documentCount = first.docs.size();
+            while (documentCount < batchSize) {
+                PendingAdd next = pending.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                documentCount += next.docs.size();
+            }
+
+            IngestException failure = send(batch, documentCount);
+            if (failure != null && batch.size() > 1) {
+                // one bad document must not fail the unrelated requests it was batched with
+                LOGGER.debug("Batch of " + batch.size() + " request(s) failed, resending each.");
+                for (PendingAdd add : batch) {
+                    List<PendingAdd> single = Collections.singletonList(add);
+                    complete(single, send(single, add.docs.size()));
+                }
+            } else {
+                complete(batch, failure);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting documents and fails every queued request, so that no caller is left waiting
+     * for a writer that has stopped.
+     */
+    private void abandonPending() {
+        synchronized (this) {
+            running = false;
+        }
+        List<PendingAdd> abandoned = new ArrayList<PendingAdd>();
+        pending.drainTo(abandoned);
+        complete(abandoned, new IngestException(SHUT_DOWN_MESSAGE));
+    }
+
+    private IngestException send(List<PendingAdd> batch, int documentCount) {
+        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(documentCount);
+        boolean softCommit = false;
+        for (PendingAdd add : batch) {
+            docs.addAll(add.docs);
+            softCommit |= add.softCommit;
+        }
+
+        UpdateRequest request = new UpdateRequest();
+        request.add(docs);
+        if (softCommit) {
+            boolean waitForFlush = true;
+            boolean waitToMakeVisible = true;
+            request.setAction(ACTION.COMMIT, waitForFlush, waitToMakeVisible, softCommit);
+        } else {
+            request.setCommitWithin(commitWithinMillis);
+        }
+
+        try {
+            request.process(server);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Added " + documentCount + " document(s) from " + batch.size()
+                        + " request(s).");
+            }
+            return null;
+        } catch (SolrServerException e) {
+            LOGGER.warn(e);
+        } catch (SolrException e) {
+            LOGGER.warn(e);
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        } catch (RuntimeException e) {
+            LOGGER.warn(e);
+        }
+        return new IngestException(COULD_NOT_INGEST_MESSAGE);
+    }
+
+    private void complete(List<PendingAdd> batch, IngestException failure) {
+        for (PendingAdd add : batch) {
+            capacity.release(add.permits);
+            add.complete(failure);
+        }
+    }
+
+    private static class PendingAdd {
+
+        private final List<SolrInputDocument> docs;
+
+        private final boolean softCommit;
+
+        private final int permits;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile IngestException failure;
+
+        PendingAdd(List<SolrInputDocument> docs, boolean softCommit, int permits) {
+            this.docs = docs;
+            this.softCommit = softCommit;
+            this.permits = permits;
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+
+        /**
+         * Waits for completion, ignoring interrupts; callers restore the interrupt status.
+         */
+        void awaitUninterruptibly() {
+            while (true) {
+                try {
+                    done.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+        }
+
+        void complete(IngestException failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+}
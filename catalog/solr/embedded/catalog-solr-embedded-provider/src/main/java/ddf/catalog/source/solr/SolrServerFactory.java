@@ -22,6 +22,8 @@
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -38,6 +40,8 @@
 import org.apache.solr.schema.IndexSchema;
 import org.xml.sax.SAXException;
 
+import ddf.catalog.data.Metacard;
+
 /**
  * Factory that creates {@link SolrServer} instances. Currently will create a
  * {@link EmbeddedSolrServer} instance.
@@ -89,6 +93,29 @@ static SolrServer getHttpSolrServer() {
         return new HttpSolrServer(DEFAULT_HTTP_ADDRESS);
     }
 
+    /**
+     * Creates the Solr server the catalog provider writes to, either a single embedded core or,
+     * when {@link ConfigurationStore#isTimePartitioned()} is set, a
+     * {@link TimePartitionedSolrServer} with one embedded core per month.
+     * 
+     * @param solrConfigXml
+     *            the name of the solr configuration filename such as solrconfig.xml
+     * @param schemaXml
+     *            filename of the schema such as schema.xml
+     * @param givenConfigFileProxy
+     *            a ConfigurationFileProxy instance. If instance is <code>null</code>, a new
+     *            {@link ConfigurationFileProxy} is used instead.
+     * @return {@link SolrServer} instance
+     */
+    public static SolrServer getSolrServer(String solrConfigXml, String schemaXml,
+            ConfigurationFileProxy givenConfigFileProxy) {
+
+        if (ConfigurationStore.getInstance().isTimePartitioned()) {
+            return getTimePartitionedSolrServer(solrConfigXml, schemaXml, givenConfigFileProxy);
+        }
+        return getEmbeddedSolrServer(solrConfigXml, schemaXml, givenConfigFileProxy);
+    }
+
     /**
      * Provides an already instantiated {@link SolrServer} object. If an instance has not already
      * been instantiated, then the single instance will be instantiated with the provided
@@ -110,83 +137,162 @@ public static EmbeddedSolrServer getEmbeddedSolrServer(String solrConfigXml, Str
         LOGGER.info("Retrieving embedded solr with the following properties: [" + solrConfigXml
                 + "," + schemaXml + "," + givenConfigFileProxy + "]");
 
-        String solrConfigFileName = DEFAULT_SOLRCONFIG_XML;
+        ConfigurationFileProxy configProxy = getConfigProxy(givenConfigFileProxy);
+        EmbeddedCores cores = new EmbeddedCores(solrConfigXml, schemaXml, configProxy);
 
-        String schemaFileName = DEFAULT_SCHEMA_XML;
+        File dataDir = configProxy.getDataDirectory();
+        LOGGER.info("Using data directory [" + dataDir + "]");
+        cores.register("core1", dataDir);
 
-        if (isNotBlank(solrConfigXml)) {
-            solrConfigFileName = solrConfigXml;
+        return new EmbeddedSolrServer(cores.container, "core1");
+    }
+
+    /**
+     * Creates a {@link TimePartitionedSolrServer} whose partitions are embedded cores sharing one
+     * configuration and schema. Partition indexes are kept under the <code>partitions</code>
+     * directory of the data directory; the ones already there are opened at once.
+     * 
+     * @param solrConfigXml
+     *            the name of the solr configuration filename such as solrconfig.xml
+     * @param schemaXml
+     *            filename of the schema such as schema.xml
+     * @param givenConfigFileProxy
+     *            a ConfigurationFileProxy instance. If instance is <code>null</code>, a new
+     *            {@link ConfigurationFileProxy} is used instead.
+     * @return {@link TimePartitionedSolrServer} instance
+     */
+    public static TimePartitionedSolrServer getTimePartitionedSolrServer(String solrConfigXml,
+            String schemaXml, ConfigurationFileProxy givenConfigFileProxy) {
+
+        LOGGER.info("Retrieving time partitioned embedded solr with the following properties: ["
+                + solrConfigXml + "," + schemaXml + "," + givenConfigFileProxy + "]");
+
+        ConfigurationFileProxy configProxy = getConfigProxy(givenConfigFileProxy);
+        final EmbeddedCores cores = new EmbeddedCores(solrConfigXml, schemaXml, configProxy);
+
+        final File partitionsDir = new File(configProxy.getDataDirectory(), "partitions");
+        LOGGER.info("Using partition directory [" + partitionsDir + "]");
+
+        List<String> existingPartitions = new ArrayList<String>();
+        File[] partitionDirs = partitionsDir.listFiles();
+        if (partitionDirs != null) {
+            for (File partitionDir : partitionDirs) {
+                if (partitionDir.isDirectory()
+                        && TimePartitionedSolrServer.PARTITION_NAME_PATTERN.matcher(
+                                partitionDir.getName()).matches()) {
+                    existingPartitions.add(partitionDir.getName());
+                }
+            }
         }
 
-        if (isNotBlank(schemaXml)) {
-            schemaFileName = schemaXml;
+        return new TimePartitionedSolrServer(new TimePartitionedSolrServer.PartitionFactory() {
+            @Override
+            public SolrServer createPartition(String name) {
+                String coreName = "partition-" + name;
+                cores.register(coreName, new File(partitionsDir, name));
+                return new EmbeddedSolrServer(cores.container, coreName);
+            }
+        }, existingPartitions, Metacard.EFFECTIVE + SchemaFields.DATE_SUFFIX,
+                Metacard.ID + SchemaFields.TEXT_SUFFIX);
+    }
+
+    private static ConfigurationFileProxy getConfigProxy(
+            ConfigurationFileProxy givenConfigFileProxy) {
+        if (givenConfigFileProxy == null) {
+            return new ConfigurationFileProxy(null, ConfigurationStore.getInstance());
         }
+        return givenConfigFileProxy;
+    }
 
-        File solrConfigFile = null;
+    /**
+     * Loads the Solr configuration and schema once and registers embedded cores using them in a
+     * shared {@link CoreContainer}.
+     */
+    private static final class EmbeddedCores {
 
-        File solrConfigHome = null;
+        private final SolrConfig solrConfig;
 
-        ConfigurationFileProxy configProxy = givenConfigFileProxy;
+        private final IndexSchema indexSchema;
 
-        if (givenConfigFileProxy == null) {
-            configProxy = new ConfigurationFileProxy(null, ConfigurationStore.getInstance());
-        }
+        private final CoreContainer container;
 
-        File configurationDir = new File(ConfigurationFileProxy.DEFAULT_SOLR_CONFIG_PARENT_DIR,
-                ConfigurationFileProxy.SOLR_CONFIG_LOCATION_IN_BUNDLE);
-        configProxy.writeBundleFilesTo(configurationDir);
+        private EmbeddedCores(String solrConfigXml, String schemaXml,
+                ConfigurationFileProxy configProxy) {
 
-        try {
-            URL url = configProxy.getResource(solrConfigFileName);
+            String solrConfigFileName = DEFAULT_SOLRCONFIG_XML;
 
-            LOGGER.info("Solr config url: " + url);
+            String schemaFileName = DEFAULT_SCHEMA_XML;
 
-            solrConfigFile = new File(new URI(url.toString()).getPath());
+            if (isNotBlank(solrConfigXml)) {
+                solrConfigFileName = solrConfigXml;
+            }
 
-            solrConfigHome = new File(solrConfigFile.getParent());
-        } catch (URISyntaxException e1) {
-            LOGGER.warn(e1);
-        }
+            if (isNotBlank(schemaXml)) {
+                schemaFileName = schemaXml;
+            }
 
-        SolrConfig solrConfig = null;
-        IndexSchema indexSchema = null;
-        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
-        try {
-            Thread.currentThread().setContextClassLoader(SolrServerFactory.class.getClassLoader());
-
-            // NamedSPILoader uses the thread context classloader to lookup
-            // codecs, posting formats, and analyzers
-            solrConfig = new SolrConfig(solrConfigHome.getParent(), solrConfigFileName, null);
-            indexSchema = new IndexSchema(solrConfig, schemaFileName, null);
-        } catch (ParserConfigurationException e) {
-            LOGGER.warn(e);
-        } catch (IOException e) {
-            LOGGER.warn(e);
-        } catch (SAXException e) {
-            LOGGER.warn(e);
-        } finally {
-            Thread.currentThread().setContextClassLoader(tccl);
-        }
+            File solrConfigFile = null;
+
+            File solrConfigHome = null;
+
+            File configurationDir = new File(ConfigurationFileProxy.DEFAULT_SOLR_CONFIG_PARENT_DIR,
+                    ConfigurationFileProxy.SOLR_CONFIG_LOCATION_IN_BUNDLE);
+            configProxy.writeBundleFilesTo(configurationDir);
+
+            try {
+                URL url = configProxy.getResource(solrConfigFileName);
+
+                LOGGER.info("Solr config url: " + url);
+
+                solrConfigFile = new File(new URI(url.toString()).getPath());
 
-        // this is necessary as a workaround to an
-        // incompatibility introduced in between Solr 4.0 to 4.1
-        CoreContainer container = new CoreContainer() {
-            {
-                initShardHandler(null);
+                solrConfigHome = new File(solrConfigFile.getParent());
+            } catch (URISyntaxException e1) {
+                LOGGER.warn(e1);
             }
-        };
-        CoreDescriptor dcore = new CoreDescriptor(container, "", solrConfig.getResourceLoader()
-                .getInstanceDir());
-        dcore.setConfigName(solrConfig.getResourceName());
-        dcore.setSchemaName(indexSchema.getResourceName());
 
-        File dataDir = configProxy.getDataDirectory();
-        LOGGER.info("Using data directory [" + dataDir + "]");
-        SolrCore core = new SolrCore(null, dataDir.getAbsolutePath(), solrConfig, indexSchema,
-                dcore);
-        container.register("core1", core, false);
+            SolrConfig config = null;
+            IndexSchema schema = null;
+            ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(
+                        SolrServerFactory.class.getClassLoader());
+
+                // NamedSPILoader uses the thread context classloader to lookup
+                // codecs, posting formats, and analyzers
+                config = new SolrConfig(solrConfigHome.getParent(), solrConfigFileName, null);
+                schema = new IndexSchema(config, schemaFileName, null);
+            } catch (ParserConfigurationException e) {
+                LOGGER.warn(e);
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            } catch (SAXException e) {
+                LOGGER.warn(e);
+            } finally {
+                Thread.currentThread().setContextClassLoader(tccl);
+            }
+            this.solrConfig = config;
+            this.indexSchema = schema;
+
+            // this is necessary as a workaround to an
+            // incompatibility introduced in between Solr 4.0 to 4.1
+            this.container = new CoreContainer() {
+                {
+                    initShardHandler(null);
+                }
+            };
+        }
+
+        private synchronized void register(String coreName, File dataDir) {
+            CoreDescriptor dcore = new CoreDescriptor(container, coreName, solrConfig
+                    .getResourceLoader().getInstanceDir());
+            dcore.setConfigName(solrConfig.getResourceName());
+            dcore.setSchemaName(indexSchema.getResourceName());
 
-        return new EmbeddedSolrServer(container, "core1");
+            SolrCore core = new SolrCore(coreName, dataDir.getAbsolutePath(), solrConfig,
+                    indexSchema, dcore);
+            container.register(coreName, core, false);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Result;
+import ddf.catalog.operation.ProcessingDetailsImpl;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponseImpl;
+
+/**
+ * Response of a streaming query. Results are added page by page while the consumer takes them, and
+ * the producer waits whenever the consumer has fallen a buffer's worth of results behind, so memory
+ * use does not depend on the number of hits.
+ * 
+ */
+public class StreamingQueryResponse extends QueryResponseImpl {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingQueryResponse.class);
+
+    private static final long CONSUMER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Semaphore capacity;
+
+    /**
+     * @param request
+     *            the streaming request
+     * @param bufferSize
+     *            number of results that may wait for the consumer; must be at least the size of
+     *            the largest page offered
+     */
+    public StreamingQueryResponse(QueryRequest request, int bufferSize) {
+        super(request);
+        this.capacity = new Semaphore(bufferSize);
+        getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+    }
+
+    /**
+     * Adds a page of results, waiting for the consumer to make room for them.
+     * 
+     * @param results
+     *            the page
+     * @param last
+     *            true if no more results will follow
+     * @return false if the consumer stopped taking results, in which case the stream is closed
+     */
+    boolean offer(List<Result> results, boolean last) {
+        try {
+            if (!capacity.tryAcquire(results.size(), CONSUMER_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Streaming query results were not consumed within "
+                        + CONSUMER_TIMEOUT_MILLIS + " ms, closing the stream.");
+                closeResultQueue();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeResultQueue();
+            return false;
+        }
+
+        addResults(results, last);
+        return true;
+    }
+
+    /**
+     * Ends the stream after a failure, reporting it through the processing details.
+     * 
+     * @param sourceId
+     *            id of the source that failed
+     * @param exception
+     *            the failure
+     */
+    void fail(String sourceId, Exception exception) {
+        synchronized (details) {
+            details.add(new ProcessingDetailsImpl(sourceId, exception));
+        }
+        closeResultQueue();
+    }
+
+    @Override
+    public Result poll() {
+        return released(super.poll());
+    }
+
+    @Override
+    public Result poll(long timeout) {
+        return released(super.poll(timeout));
+    }
+
+    @Override
+    public Result take() {
+        return released(super.take());
+    }
+
+    @Override
+    public List<Result> take(long size) {
+        List<Result> results = super.take(size);
+        capacity.release(results.size());
+        return results;
+    }
+
+    private Result released(Result result) {
+        if (result != null && result != POISON_PILL_RESULT) {
+            capacity.release();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,814 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest.ACTION;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * A {@link SolrServer} that spreads the catalog over one partition per calendar month (UTC) of a
+ * date field, normally {@link ddf.catalog.data.Metacard#EFFECTIVE}. Documents without the date
+ * are kept in an undated partition.
+ * <p>
+ * Adds are routed to the partition of each document. Deletes, commits and realtime gets go to
+ * every partition. Searches go to the partitions overlapping the range given with
+ * {@link #setPartitionRange(ModifiableSolrParams, Date, Date)}, or to all partitions. They run in
+ * parallel and their results are merged on the requested sort, with facet counts summed.
+ * <p>
+ * Partial (atomic) updates cannot be routed, since they may not carry the date; callers send
+ * complete documents and call {@link #deleteRelocated(List, boolean)} or
+ * {@link #deleteRelocated(List, List, boolean)} when an add may have moved a document to another
+ * month.
+ * 
+ */
+public class TimePartitionedSolrServer extends SolrServer {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(TimePartitionedSolrServer.class);
+
+    /**
+     * Name of the partition holding documents without a date.
+     */
+    public static final String UNDATED_PARTITION = "undated";
+
+    /**
+     * Partition names are the year and month of their documents.
+     */
+    public static final Pattern PARTITION_NAME_PATTERN = Pattern.compile("\\d{6}|" + UNDATED_PARTITION);
+
+    static final String PARTITION_FROM_PARAM = "ddf.partition.from";
+
+    static final String PARTITION_TO_PARAM = "ddf.partition.to";
+
+    private static final String REALTIME_GET_PATH = "/get";
+
+    private static final String REALTIME_GET_ID_PARAM = "id";
+
+    private static final String LUKE_PATH = "/admin/luke";
+
+    private static final String PING_PATH = "/admin/ping";
+
+    private static final String RESPONSE_HEADER_KEY = "responseHeader";
+
+    private static final String RESPONSE_KEY = "response";
+
+    private static final String DOC_KEY = "doc";
+
+    private static final String FIELDS_KEY = "fields";
+
+    private static final String FACET_COUNTS_KEY = "facet_counts";
+
+    private static final String FACET_FIELDS_KEY = "facet_fields";
+
+    private static final String FACET_PIVOT_KEY = "facet_pivot";
+
+    private static final String PIVOT_FIELD_KEY = "field";
+
+    private static final String PIVOT_VALUE_KEY = "value";
+
+    private static final String PIVOT_COUNT_KEY = "count";
+
+    private static final String PIVOT_KEY = "pivot";
+
+    private static final String SCORE_FIELD = "score";
+
+    private static final Pattern FIELD_LIST_SEPARATOR = Pattern.compile("[,\\s]+");
+
+    private static final int DEFAULT_ROWS = 10;
+
+    /**
+     * Creates the Solr server of a partition, opening its index if it already exists.
+     */
+    public interface PartitionFactory {
+
+        SolrServer createPartition(String name);
+    }
+
+    private final PartitionFactory partitionFactory;
+
+    private final String dateField;
+
+    private final String idField;
+
+    private final NavigableMap<String, SolrServer> partitions = new ConcurrentSkipListMap<String, SolrServer>(
+            Collections.reverseOrder());
+
+    private final ExecutorService executor;
+
+    /**
+     * @param partitionFactory
+     *            creates the server of each partition
+     * @param existingPartitions
+     *            names of the partitions already on disk
+     * @param dateField
+     *            Solr field holding the date documents are partitioned on
+     * @param idField
+     *            Solr field holding the unique key
+     */
+    public TimePartitionedSolrServer(PartitionFactory partitionFactory,
+            Collection<String> existingPartitions, String dateField, String idField) {
+        this.partitionFactory = partitionFactory;
+        this.dateField = dateField;
+        this.idField = idField;
+
+        getPartition(UNDATED_PARTITION);
+        for (String name : existingPartitions) {
+            getPartition(name);
+        }
+
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SolrPartitionQuery");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Limits a search to the partitions that may hold documents dated within the given range.
+     * 
+     * @param params
+     *            parameters of the search
+     * @param from
+     *            start of the range, or null if unbounded
+     * @param to
+     *            end of the range, or null if unbounded
+     */
+    public static void setPartitionRange(ModifiableSolrParams params, Date from, Date to) {
+        if (from != null) {
+            params.set(PARTITION_FROM_PARAM, getPartitionName(from));
+        }
+        if (to != null) {
+            params.set(PARTITION_TO_PARAM, getPartitionName(to));
+        }
+    }
+
+    /**
+     * @return the names of the current partitions, newest first
+     */
+    public List<String> getPartitionNames() {
+        return new ArrayList<String>(partitions.keySet());
+    }
+
+    static String getPartitionName(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMM");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    private String getPartitionName(Object dateValue) {
+        if (dateValue instanceof Collection && !((Collection<?>) dateValue).isEmpty()) {
+            dateValue = ((Collection<?>) dateValue).iterator().next();
+        }
+        if (dateValue instanceof Date) {
+            return getPartitionName((Date) dateValue);
+        }
+        if (dateValue instanceof Calendar) {
+            return getPartitionName(((Calendar) dateValue).getTime());
+        }
+        return UNDATED_PARTITION;
+    }
+
+    private synchronized SolrServer getPartition(String name) {
+        SolrServer partition = partitions.get(name);
+        if (partition == null) {
+            LOGGER.info("Opening Solr partition [" + name + "]");
+            partition = partitionFactory.createPartition(name);
+            partitions.put(name, partition);
+        }
+        return partition;
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+        if (request instanceof UpdateRequest) {
+            return update((UpdateRequest) request);
+        }
+
+        String path = request.getPath();
+        if (REALTIME_GET_PATH.equals(path)) {
+            return realtimeGet(request);
+        } else if (LUKE_PATH.equals(path)) {
+            return luke(request);
+        } else if (PING_PATH.equals(path)) {
+            return getPartition(UNDATED_PARTITION).request(request);
+        }
+        return search(request);
+    }
+
+    /**
+     * Deletes the previous copies of updated documents whose date moved them to another
+     * partition. Call once the updated documents have been added.
+     * 
+     * @param oldDocs
+     *            stored documents before the update
+     * @param newDocs
+     *            documents that were added
+     * @param softCommit
+     *            whether the deletes are made visible at once
+     */
+    public void deleteRelocated(List<SolrDocument> oldDocs, List<SolrInputDocument> newDocs,
+            boolean softCommit) throws SolrServerException, IOException {
+
+        Map<Object, String> newPartitions = getNewPartitions(newDocs);
+
+        Map<String, List<String>> relocated = new HashMap<String, List<String>>();
+        for (SolrDocument doc : oldDocs) {
+            addRelocated(relocated, getPartitionName(doc.getFieldValue(dateField)),
+                    doc.getFieldValue(idField), newPartitions);
+        }
+
+        deleteRelocated(relocated, softCommit);
+    }
+
+    /**
+     * Deletes the copies of added documents that other partitions already held, as when a create
+     * replaces a document with the same id but another date. The copies are found with a realtime
+     * get of every partition.
+     * 
+     * @param newDocs
+     *            documents that were added
+     * @param softCommit
+     *            whether the deletes are made visible at once
+     */
+    public void deleteRelocated(List<SolrInputDocument> newDocs, boolean softCommit)
+        throws SolrServerException, IOException {
+
+        Map<Object, String> newPartitions = getNewPartitions(newDocs);
+        if (newPartitions.isEmpty()) {
+            return;
+        }
+
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        for (Object id : newPartitions.keySet()) {
+            params.add(REALTIME_GET_ID_PARAM, id.toString());
+        }
+        params.set(CommonParams.FL, idField);
+
+        List<String> names = getPartitionNames();
+        List<NamedList<Object>> responses = fanOut(names, params, SolrRequest.METHOD.GET,
+                REALTIME_GET_PATH);
+
+        Map<String, List<String>> relocated = new HashMap<String, List<String>>();
+        for (int i = 0; i < names.size(); i++) {
+            List<SolrDocument> found = new ArrayList<SolrDocument>();
+            Object docs = responses.get(i).get(RESPONSE_KEY);
+            if (docs instanceof SolrDocumentList) {
+                found.addAll((SolrDocumentList) docs);
+            }
+            Object doc = responses.get(i).get(DOC_KEY);
+            if (doc instanceof SolrDocument) {
+                found.add((SolrDocument) doc);
+            }
+
+            for (SolrDocument existing : found) {
+                addRelocated(relocated, names.get(i), existing.getFieldValue(idField),
+                        newPartitions);
+            }
+        }
+
+        deleteRelocated(relocated, softCommit);
+    }
+
+    private Map<Object, String> getNewPartitions(List<SolrInputDocument> newDocs) {
+        Map<Object, String> newPartitions = new HashMap<Object, String>();
+        for (SolrInputDocument doc : newDocs) {
+            newPartitions.put(doc.getFieldValue(idField),
+                    getPartitionName(doc.getFieldValue(dateField)));
+        }
+        return newPartitions;
+    }
+
+    private void addRelocated(Map<String, List<String>> relocated, String oldPartition,
+            Object id, Map<Object, String> newPartitions) {
+        String newPartition = newPartitions.get(id);
+
+        if (newPartition != null && !newPartition.equals(oldPartition)) {
+            List<String> ids = relocated.get(oldPartition);
+            if (ids == null) {
+                ids = new ArrayList<String>();
+                relocated.put(oldPartition, ids);
+            }
+            ids.add(id.toString());
+        }
+    }
+
+    private void deleteRelocated(Map<String, List<String>> relocated, boolean softCommit)
+        throws SolrServerException, IOException {
+
+        for (Entry<String, List<String>> entry : relocated.entrySet()) {
+            UpdateRequest request = new UpdateRequest();
+            request.deleteById(entry.getValue());
+            if (softCommit) {
+                request.setAction(ACTION.COMMIT, true, true, true);
+            }
+            getPartition(entry.getKey()).request(request);
+        }
+    }
+
+    private NamedList<Object> update(UpdateRequest request) throws SolrServerException,
+        IOException {
+
+        Map<String, List<SolrInputDocument>> docsByPartition = new LinkedHashMap<String, List<SolrInputDocument>>();
+        if (request.getDocuments() != null) {
+            for (SolrInputDocument doc : request.getDocuments()) {
+                String name = getPartitionName(doc.getFieldValue(dateField));
+                List<SolrInputDocument> docs = docsByPartition.get(name);
+                if (docs == null) {
+                    docs = new ArrayList<SolrInputDocument>();
+                    docsByPartition.put(name, docs);
+                }
+                docs.add(doc);
+            }
+        }
+
+        ModifiableSolrParams params = request.getParams();
+        boolean toAllPartitions = request.getDeleteById() != null
+                || request.getDeleteQuery() != null || docsByPartition.isEmpty()
+                || (params != null && (params.getBool(UpdateParams.COMMIT, false)
+                        || params.getBool(UpdateParams.OPTIMIZE, false) || params.getBool(
+                        UpdateParams.ROLLBACK, false)));
+
+        List<String> names = new ArrayList<String>(docsByPartition.keySet());
+        if (toAllPartitions) {
+            for (String name : docsByPartition.keySet()) {
+                getPartition(name);
+            }
+            names = getPartitionNames();
+        }
+
+        NamedList<Object> response = null;
+        for (String name : names) {
+            UpdateRequest partitionRequest = new UpdateRequest();
+            if (params != null) {
+                partitionRequest.setParams(new ModifiableSolrParams(params));
+            }
+            partitionRequest.setCommitWithin(request.getCommitWithin());
+
+            List<SolrInputDocument> docs = docsByPartition.get(name);
+            if (docs != null) {
+                partitionRequest.add(docs);
+            }
+            if (request.getDeleteById() != null) {
+                partitionRequest.deleteById(request.getDeleteById());
+            }
+            if (request.getDeleteQuery() != null) {
+                for (String deleteQuery : request.getDeleteQuery()) {
+                    partitionRequest.deleteByQuery(deleteQuery);
+                }
+            }
+
+            response = getPartition(name).request(partitionRequest);
+        }
+        return response;
+    }
+
+    private NamedList<Object> realtimeGet(SolrRequest request) throws SolrServerException,
+        IOException {
+
+        SolrDocumentList docs = new SolrDocumentList();
+        NamedList<Object> response = null;
+
+        for (NamedList<Object> partitionResponse : fanOut(getPartitionNames(),
+                request.getParams(), request.getMethod(), request.getPath())) {
+            if (response == null) {
+                response = newResponse(partitionResponse);
+            }
+
+            Object found = partitionResponse.get(RESPONSE_KEY);
+            if (found instanceof SolrDocumentList) {
+                docs.addAll((SolrDocumentList) found);
+            }
+            Object doc = partitionResponse.get(DOC_KEY);
+            if (doc instanceof SolrDocument) {
+                docs.add((SolrDocument) doc);
+            }
+        }
+
+        docs.setNumFound(docs.size());
+        response.add(RESPONSE_KEY, docs);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private NamedList<Object> luke(SolrRequest request) throws SolrServerException, IOException {
+        NamedList<Object> response = null;
+        NamedList<Object> fields = null;
+
+        for (NamedList<Object> partitionResponse : fanOut(getPartitionNames(),
+                request.getParams(), request.getMethod(), request.getPath())) {
+            NamedList<Object> partitionFields = (NamedList<Object>) partitionResponse
+                    .get(FIELDS_KEY);
+
+            if (response == null) {
+                response = partitionResponse;
+                fields = partitionFields;
+            } else if (partitionFields != null) {
+                for (Entry<String, Object> field : partitionFields) {
+                    if (fields.get(field.getKey()) == null) {
+                        fields.add(field.getKey(), field.getValue());
+                    }
+                }
+            }
+        }
+        return response;
+    }
+
+    private NamedList<Object> search(SolrRequest request) throws SolrServerException,
+        IOException {
+
+        ModifiableSolrParams params = new ModifiableSolrParams(request.getParams());
+        String from = params.get(PARTITION_FROM_PARAM);
+        String to = params.get(PARTITION_TO_PARAM);
+        params.remove(PARTITION_FROM_PARAM);
+        params.remove(PARTITION_TO_PARAM);
+
+        List<String> names = new ArrayList<String>();
+        if (from == null && to == null) {
+            names.addAll(partitions.keySet());
+        } else {
+            // undated documents cannot match a date range
+            for (String name : partitions.keySet()) {
+                if (!UNDATED_PARTITION.equals(name) && (from == null || name.compareTo(from) >= 0)
+                        && (to == null || name.compareTo(to) <= 0)) {
+                    names.add(name);
+                }
+            }
+            if (names.isEmpty()) {
+                names.add(UNDATED_PARTITION);
+            }
+        }
+
+        if (names.size() == 1) {
+            QueryRequest partitionRequest = new QueryRequest(params, request.getMethod());
+            partitionRequest.setPath(request.getPath());
+            return getPartition(names.get(0)).request(partitionRequest);
+        }
+
+        int start = params.getInt(CommonParams.START, 0);
+        int rows = params.getInt(CommonParams.ROWS, DEFAULT_ROWS);
+
+        // every partition returns enough results to fill the requested window of the merge
+        ModifiableSolrParams partitionParams = new ModifiableSolrParams(params);
+        partitionParams.set(CommonParams.START, 0);
+        partitionParams.set(CommonParams.ROWS, (int) Math.min((long) start + rows,
+                Integer.MAX_VALUE));
+        List<String> addedFields = addSortFields(partitionParams, params.get(CommonParams.SORT));
+
+        List<NamedList<Object>> responses = fanOut(names, partitionParams, request.getMethod(),
+                request.getPath());
+
+        SolrDocumentList merged = new SolrDocumentList();
+        Float maxScore = null;
+        long numFound = 0;
+        NamedList<Object> facetCounts = null;
+
+        for (NamedList<Object> partitionResponse : responses) {
+            SolrDocumentList docs = (SolrDocumentList) partitionResponse.get(RESPONSE_KEY);
+            if (docs != null) {
+                merged.addAll(docs);
+                numFound += docs.getNumFound();
+                if (docs.getMaxScore() != null
+                        && (maxScore == null || docs.getMaxScore() > maxScore)) {
+                    maxScore = docs.getMaxScore();
+                }
+            }
+            facetCounts = mergeFacetCounts(facetCounts, partitionResponse.get(FACET_COUNTS_KEY));
+        }
+
+        // partitions are already ordered newest first, so a stable sort keeps that order for ties
+        Comparator<SolrDocument> comparator = getComparator(params.get(CommonParams.SORT));
+        if (comparator != null) {
+            Collections.sort(merged, comparator);
+        }
+
+        SolrDocumentList page = new SolrDocumentList();
+        for (int i = start; i < merged.size() && i - start < rows; i++) {
+            SolrDocument doc = merged.get(i);
+            for (String field : addedFields) {
+                doc.removeFields(field);
+            }
+            page.add(doc);
+        }
+        page.setStart(start);
+        page.setNumFound(numFound);
+        page.setMaxScore(maxScore);
+
+        NamedList<Object> response = newResponse(responses.get(0));
+        response.add(RESPONSE_KEY, page);
+        if (facetCounts != null) {
+            response.add(FACET_COUNTS_KEY, facetCounts);
+        }
+        return response;
+    }
+
+    private NamedList<Object> newResponse(NamedList<Object> partitionResponse) {
+        NamedList<Object> response = new NamedList<Object>();
+        Object header = partitionResponse.get(RESPONSE_HEADER_KEY);
+        if (header != null) {
+            response.add(RESPONSE_HEADER_KEY, header);
+        }
+        return response;
+    }
+
+    private List<NamedList<Object>> fanOut(List<String> names, SolrParams params,
+            final SolrRequest.METHOD method, final String path) throws SolrServerException,
+        IOException {
+
+        final SolrParams partitionParams = params;
+        List<Future<NamedList<Object>>> futures = new ArrayList<Future<NamedList<Object>>>();
+
+        for (String name : names) {
+            final SolrServer partition = getPartition(name);
+            futures.add(executor.submit(new Callable<NamedList<Object>>() {
+                @Override
+                public NamedList<Object> call() throws SolrServerException, IOException {
+                    QueryRequest partitionRequest = new QueryRequest(partitionParams, method);
+                    partitionRequest.setPath(path);
+                    return partition.request(partitionRequest);
+                }
+            }));
+        }
+
+        List<NamedList<Object>> responses = new ArrayList<NamedList<Object>>(names.size());
+        try {
+            for (Future<NamedList<Object>> future : futures) {
+                responses.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while querying partitions.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SolrServerException) {
+                throw (SolrServerException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SolrServerException(cause);
+        } finally {
+            for (Future<NamedList<Object>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Adds the fields the results are merged on to a field list that does not return them, such as
+     * that of a projected query.
+     * 
+     * @return the fields that were added, to be removed from the merged results
+     */
+    private List<String> addSortFields(ModifiableSolrParams params, String sort) {
+        List<String> added = new ArrayList<String>();
+        String[] fieldLists = params.getParams(CommonParams.FL);
+        if (sort == null || fieldLists == null) {
+            return added;
+        }
+
+        List<String> returned = new ArrayList<String>();
+        for (String fieldList : fieldLists) {
+            for (String field : FIELD_LIST_SEPARATOR.split(fieldList.trim())) {
+                if (!field.isEmpty()) {
+                    returned.add(field);
+                }
+            }
+        }
+
+        for (String field : getSortFields(sort)) {
+            // all stored fields are returned for a wildcard, but the score only when listed
+            boolean isReturned = returned.contains(field)
+                    || (returned.contains("*") && !SCORE_FIELD.equals(field));
+            // function sorts cannot be returned as fields
+            if (!isReturned && !field.contains("(") && !added.contains(field)) {
+                added.add(field);
+            }
+        }
+
+        for (String field : added) {
+            params.add(CommonParams.FL, field);
+        }
+        return added;
+    }
+
+    private List<String> getSortFields(String sort) {
+        List<String> fields = new ArrayList<String>();
+        for (String clause : sort.split(",")) {
+            fields.add(clause.trim().split("\\s+")[0]);
+        }
+        return fields;
+    }
+
+    /**
+     * @return a comparator for the given Solr sort, or null when results are not sorted
+     */
+    private Comparator<SolrDocument> getComparator(String sort) {
+        if (sort == null || sort.trim().isEmpty()) {
+            return null;
+        }
+
+        final List<String> fields = getSortFields(sort);
+        final List<Boolean> ascending = new ArrayList<Boolean>();
+        for (String clause : sort.split(",")) {
+            String[] parts = clause.trim().split("\\s+");
+            ascending.add(parts.length < 2 || !"desc".equalsIgnoreCase(parts[1]));
+        }
+
+        return new Comparator<SolrDocument>() {
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            public int compare(SolrDocument first, SolrDocument second) {
+                for (int i = 0; i < fields.size(); i++) {
+                    Object a = first.getFieldValue(fields.get(i));
+                    Object b = second.getFieldValue(fields.get(i));
+
+                    // missing values sort last in either direction, as in Solr
+                    int result;
+                    if (a == null || b == null) {
+                        result = (a == null) ? ((b == null) ? 0 : 1) : -1;
+                    } else if (a instanceof Comparable) {
+                        result = ((Comparable) a).compareTo(b);
+                        if (!ascending.get(i)) {
+                            result = -result;
+                        }
+                    } else {
+                        result = 0;
+                    }
+
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private NamedList<Object> mergeFacetCounts(NamedList<Object> merged, Object partitionCounts) {
+        if (!(partitionCounts instanceof NamedList)) {
+            return merged;
+        }
+        NamedList<Object> counts = (NamedList<Object>) partitionCounts;
+        if (merged == null) {
+            return counts;
+        }
+
+        NamedList<Object> mergedFields = (NamedList<Object>) merged.get(FACET_FIELDS_KEY);
+        NamedList<Object> fields = (NamedList<Object>) counts.get(FACET_FIELDS_KEY);
+        if (mergedFields != null && fields != null) {
+            for (Entry<String, Object> field : fields) {
+                NamedList<Object> mergedValues = (NamedList<Object>) mergedFields.get(field
+                        .getKey());
+                if (mergedValues == null) {
+                    mergedFields.add(field.getKey(), field.getValue());
+                } else {
+                    mergedFields.remove(field.getKey());
+                    mergedFields.add(field.getKey(), sumFieldCounts(mergedValues,
+                            (NamedList<Object>) field.getValue()));
+                }
+            }
+        }
+
+        NamedList<Object> mergedPivots = (NamedList<Object>) merged.get(FACET_PIVOT_KEY);
+        NamedList<Object> pivots = (NamedList<Object>) counts.get(FACET_PIVOT_KEY);
+        if (mergedPivots != null && pivots != null) {
+            for (Entry<String, Object> pivot : pivots) {
+                List<NamedList<Object>> mergedValues = (List<NamedList<Object>>) mergedPivots
+                        .get(pivot.getKey());
+                if (mergedValues == null) {
+                    mergedPivots.add(pivot.getKey(), pivot.getValue());
+                } else {
+                    sumPivotCounts(mergedValues, (List<NamedList<Object>>) pivot.getValue());
+                }
+            }
+        }
+
+        return merged;
+    }
+
+    private NamedList<Object> sumFieldCounts(NamedList<Object> first, NamedList<Object> second) {
+        final Map<String, Long> totals = new LinkedHashMap<String, Long>();
+        for (NamedList<Object> values : Arrays.asList(first, second)) {
+            for (Entry<String, Object> value : values) {
+                Long total = totals.get(value.getKey());
+                long count = ((Number) value.getValue()).longValue();
+                totals.put(value.getKey(), (total == null) ? count : total + count);
+            }
+        }
+
+        List<String> keys = new ArrayList<String>(totals.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return totals.get(b).compareTo(totals.get(a));
+            }
+        });
+
+        NamedList<Object> sum = new SimpleOrderedMap<Object>();
+        for (String key : keys) {
+            sum.add(key, totals.get(key).intValue());
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sumPivotCounts(List<NamedList<Object>> merged, List<NamedList<Object>> pivots) {
+        for (NamedList<Object> pivot : pivots) {
+            NamedList<Object> match = null;
+            for (NamedList<Object> candidate : merged) {
+                Object value = candidate.get(PIVOT_VALUE_KEY);
+                if (value == null ? pivot.get(PIVOT_VALUE_KEY) == null : value.equals(pivot
+                        .get(PIVOT_VALUE_KEY))) {
+                    match = candidate;
+                    break;
+                }
+            }
+
+            if (match == null) {
+                merged.add(pivot);
+                continue;
+            }
+
+            int count = ((Number) match.get(PIVOT_COUNT_KEY)).intValue()
+                    + ((Number) pivot.get(PIVOT_COUNT_KEY)).intValue();
+            match.setVal(match.indexOf(PIVOT_COUNT_KEY, 0), count);
+
+            List<NamedList<Object>> children = (List<NamedList<Object>>) pivot.get(PIVOT_KEY);
+            if (children != null) {
+                List<NamedList<Object>> mergedChildren = (List<NamedList<Object>>) match
+                        .get(PIVOT_KEY);
+                if (mergedChildren == null) {
+                    match.add(PIVOT_KEY, children);
+                } else {
+                    sumPivotCounts(mergedChildren, children);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+        for (SolrServer partition : partitions.values()) {
+            partition.shutdown();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr.textpath;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Produces the simple text path index strings and the plain text of an XML document in a single
+ * StAX pass. The text path values are the same as those of {@link SimplePathIndexer} and the text
+ * is element, CDATA and attribute text separated by one space character.
+ * <p>
+ * Instances reuse their internal buffers between documents and are therefore not thread-safe.
+ * 
+ */
+public class SimplePathTextIndexer {
+
+    private static final Logger LOGGER = Logger.getLogger(SimplePathTextIndexer.class);
+
+    private static final int INITIAL_DEPTH = 32;
+
+    private final XMLInputFactory xmlInputFactory;
+
+    private final StringBuilder path = new StringBuilder();
+
+    private final StringBuilder leafText = new StringBuilder();
+
+    private final StringBuilder text = new StringBuilder();
+
+    private int[] pathLengths = new int[INITIAL_DEPTH];
+
+    private int depth;
+
+    private List<String> textPathValues;
+
+    public SimplePathTextIndexer(XMLInputFactory xmlInputFactory) {
+        this.xmlInputFactory = xmlInputFactory;
+    }
+
+    /**
+     * Parses the given XML once, collecting its text and, if requested, its text path values.
+     * Results are available from {@link #getText()} and {@link #getTextPathValues()} until the
+     * next call.
+     * 
+     * @param xmlData
+     *            XML as a {@code String}
+     * @param indexTextPath
+     *            whether text path values should be collected
+     */
+    public void index(String xmlData, boolean indexTextPath) {
+        path.setLength(0);
+        leafText.setLength(0);
+        text.setLength(0);
+        depth = 0;
+        textPathValues = new ArrayList<String>();
+
+        boolean observedStartElement = false;
+        XMLStreamReader xmlStreamReader = null;
+
+        try {
+            xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(xmlData));
+
+            while (xmlStreamReader.hasNext()) {
+                int event = xmlStreamReader.next();
+
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (indexTextPath) {
+                        pushElement(xmlStreamReader.getPrefix(), xmlStreamReader.getLocalName());
+                        leafText.setLength(0);
+                        observedStartElement = true;
+                    }
+                    for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++) {
+                        appendText(xmlStreamReader.getAttributeValue(i));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    char[] characters = xmlStreamReader.getTextCharacters();
+                    int start = xmlStreamReader.getTextStart();
+                    int end = start + xmlStreamReader.getTextLength();
+
+                    appendText(characters, start, end);
+
+                    // the text path has only ever indexed element text, not CDATA
+                    if (indexTextPath && event == XMLStreamConstants.CHARACTERS) {
+                        appendTrimmed(leafText, characters, start, end);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (indexTextPath) {
+                        if (observedStartElement) {
+                            textPathValues.add(new StringBuilder(path.length() + 1
+                                    + leafText.length()).append(path)
+                                    .append(SimplePathIndexer.LEAF_TEXT_DELIMITER)
+                                    .append(leafText).toString());
+                            leafText.setLength(0);
+                            observedStartElement = false;
+                        }
+                        popElement();
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            LOGGER.warn(
+                    "Failure occurred in parsing the XML data. No data has been stored or indexed.",
+                    e);
+        } finally {
+            // closing hands the parser's buffers back for the next document on this thread
+            if (xmlStreamReader != null) {
+                try {
+                    xmlStreamReader.close();
+                } catch (XMLStreamException e) {
+                    LOGGER.debug("Could not close XML stream reader.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the text path values of the last indexed document
+     */
+    public List<String> getTextPathValues() {
+        return textPathValues;
+    }
+
+    /**
+     * @return the element, CDATA and attribute text of the last indexed document
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    private void pushElement(String prefix, String localName) {
+        if (depth == pathLengths.length) {
+            pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+        }
+        pathLengths[depth++] = path.length();
+
+        path.append(SimplePathIndexer.SELECTOR);
+        if (prefix != null && prefix.length() > 0) {
+            path.append(prefix).append(':');
+        }
+        path.append(localName);
+    }
+
+    private void popElement() {
+        if (depth > 0) {
+            path.setLength(pathLengths[--depth]);
+        }
+    }
+
+    /**
+     * Appends the trimmed characters preceded by a space, unless they are blank.
+     */
+    private void appendText(char[] characters, int start, int end) {
+        int from = trimStart(characters, start, end);
+        int to = trimEnd(characters, from, end);
+
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(characters[i])) {
+                text.append(' ').append(characters, from, to - from);
+                return;
+            }
+        }
+    }
+
+    private void appendText(String value) {
+        if (value == null) {
+            return;
+        }
+
+        int from = 0;
+        int to = value.length();
+        while (from < to && value.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && value.charAt(to - 1) <= ' ') {
+            to--;
+        }
+
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(value.charAt(i))) {
+                text.append(' ').append(value, from, to);
+                return;
+            }
+        }
+    }
+
+    private static void appendTrimmed(StringBuilder builder, char[] characters, int start, int end) {
+        int from = trimStart(characters, start, end);
+        builder.append(characters, from, trimEnd(characters, from, end) - from);
+    }
+
+    // same boundaries as String.trim()
+    private static int trimStart(char[] characters, int start, int end) {
+        while (start < end && characters[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(char[] characters, int start, int end) {
+        while (end > start && characters[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+}
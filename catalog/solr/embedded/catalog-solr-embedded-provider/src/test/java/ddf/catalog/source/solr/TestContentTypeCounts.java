@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ddf.catalog.data.ContentType;
+import ddf.catalog.data.ContentTypeImpl;
+import ddf.catalog.data.MetacardImpl;
+
+public class TestContentTypeCounts {
+
+    private static final ContentType NITF_20 = new ContentTypeImpl("nitf", "2.0");
+
+    private static final ContentType NITF_21 = new ContentTypeImpl("nitf", "2.1");
+
+    @Test
+    public void testIgnoredBeforeReconcile() {
+        ContentTypeCounts counts = new ContentTypeCounts();
+
+        counts.add(createMetacard(NITF_20));
+
+        assertThat(counts.isLoaded(), is(false));
+        assertThat(counts.getContentTypes().size(), is(0));
+    }
+
+    @Test
+    public void testAdjustedAfterReconcile() {
+        ContentTypeCounts counts = new ContentTypeCounts();
+        counts.reconcile(Collections.singletonMap(NITF_20, 2L));
+
+        counts.add(createMetacard(NITF_21));
+        counts.remove(createMetacard(NITF_20));
+
+        assertEquals(new HashSet<ContentType>(Arrays.asList(NITF_20, NITF_21)),
+                counts.getContentTypes());
+
+        counts.remove(createMetacard(NITF_20));
+
+        assertEquals(Collections.singleton(NITF_21), counts.getContentTypes());
+    }
+
+    @Test
+    public void testReconcileReplacesCounts() {
+        ContentTypeCounts counts = new ContentTypeCounts();
+        counts.reconcile(Collections.singletonMap(NITF_20, 1L));
+        counts.add(createMetacard(NITF_21));
+
+        Map<ContentType, Long> solrCounts = Collections.singletonMap(NITF_21, 5L);
+        counts.reconcile(solrCounts);
+
+        assertEquals(Collections.singleton(NITF_21), counts.getContentTypes());
+    }
+
+    @Test
+    public void testChangesWhileCountingAreKept() {
+        ContentTypeCounts counts = new ContentTypeCounts();
+        counts.reconcile(Collections.singletonMap(NITF_20, 1L));
+
+        Map<ContentType, Long> adjustments = counts.startReconciliation();
+        counts.add(createMetacard(NITF_21));
+        counts.remove(createMetacard(NITF_20));
+        // counted before the changes above were visible
+        counts.reconcile(adjustments, Collections.singletonMap(NITF_20, 1L));
+
+        assertEquals(Collections.singleton(NITF_21), counts.getContentTypes());
+    }
+
+    private MetacardImpl createMetacard(ContentType contentType) {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setContentTypeName(contentType.getName());
+        metacard.setContentTypeVersion(contentType.getVersion());
+        return metacard;
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeDescriptorImpl;
+import ddf.catalog.data.BasicTypes;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.MetacardTypeImpl;
+
+/**
+ * Tests the round trip and legacy decoding of the {@link MetacardBinaryCodec}.
+ * 
+ */
+public class TestMetacardBinaryCodec {
+
+    @Test
+    public void testMetacardTypeRoundTrip() throws Exception {
+        MetacardType metacardType = givenMetacardType();
+
+        byte[] bytes = new MetacardBinaryCodec().encodeMetacardType(metacardType);
+        MetacardType decoded = new MetacardBinaryCodec().decodeMetacardType(bytes);
+
+        assertThat(decoded.getName(), is(metacardType.getName()));
+        assertThat(decoded.getAttributeDescriptors().size(),
+                is(metacardType.getAttributeDescriptors().size()));
+        for (AttributeDescriptor descriptor : metacardType.getAttributeDescriptors()) {
+            AttributeDescriptor decodedDescriptor = decoded.getAttributeDescriptor(descriptor
+                    .getName());
+            assertThat(decodedDescriptor.getType().getAttributeFormat(), is(descriptor.getType()
+                    .getAttributeFormat()));
+            assertThat(decodedDescriptor.getType().getBinding(),
+                    is((Object) descriptor.getType().getBinding()));
+            assertThat(decodedDescriptor.isIndexed(), is(descriptor.isIndexed()));
+            assertThat(decodedDescriptor.isStored(), is(descriptor.isStored()));
+            assertThat(decodedDescriptor.isTokenized(), is(descriptor.isTokenized()));
+            assertThat(decodedDescriptor.isMultiValued(), is(descriptor.isMultiValued()));
+        }
+    }
+
+    /**
+     * Tests that a known fingerprint is resolved through the registry and that the encoding is
+     * smaller than Java serialization.
+     */
+    @Test
+    public void testRegisteredMetacardTypeIsReused() throws Exception {
+        MetacardType metacardType = givenMetacardType();
+        MetacardBinaryCodec codec = new MetacardBinaryCodec();
+
+        byte[] bytes = codec.encodeMetacardType(metacardType);
+
+        assertThat(codec.decodeMetacardType(bytes), sameInstance(metacardType));
+        assertThat(bytes.length, lessThan(serialize(metacardType).length));
+    }
+
+    @Test
+    public void testLegacyMetacardTypeIsDecoded() throws Exception {
+        MetacardType metacardType = givenMetacardType();
+        MetacardBinaryCodec codec = new MetacardBinaryCodec();
+        byte[] legacy = serialize(metacardType);
+
+        MetacardType decoded = codec.decodeMetacardType(legacy);
+
+        assertThat(decoded.getName(), is(metacardType.getName()));
+        assertThat(codec.decodeMetacardType(legacy), sameInstance(decoded));
+    }
+
+    /**
+     * Tests that a serialized type remembered under its name is reused for identical bytes, and
+     * that different bytes under the same name are decoded again.
+     */
+    @Test
+    public void testLegacyMetacardTypeIsRememberedByName() throws Exception {
+        MetacardType metacardType = givenMetacardType();
+        MetacardBinaryCodec codec = new MetacardBinaryCodec();
+
+        MetacardType decoded = codec.decodeMetacardType(metacardType.getName(),
+                serialize(metacardType));
+
+        assertThat(codec.decodeMetacardType(metacardType.getName(), serialize(metacardType)),
+                sameInstance(decoded));
+
+        Set<AttributeDescriptor> descriptors = new HashSet<AttributeDescriptor>(
+                metacardType.getAttributeDescriptors());
+        descriptors.add(new AttributeDescriptorImpl("added", true, true, false, false,
+                BasicTypes.STRING_TYPE));
+        MetacardType changed = codec.decodeMetacardType(metacardType.getName(),
+                serialize(new MetacardTypeImpl(metacardType.getName(), descriptors)));
+
+        assertThat(changed.getAttributeDescriptor("added"), notNullValue());
+    }
+
+    @Test
+    public void testObjectRoundTrip() throws Exception {
+        MetacardBinaryCodec codec = new MetacardBinaryCodec();
+        Serializable[] values = {"text", 42, 42L, (short) 7, 1.5f, 2.5d, Boolean.TRUE,
+            new Date(1000L), new ArrayList<String>(Arrays.asList("a", "b"))};
+
+        for (Serializable value : values) {
+            assertThat(codec.decodeObject(codec.encodeObject(value)), is(value));
+        }
+
+        byte[] array = {1, 2, 3};
+        assertArrayEquals(array, (byte[]) codec.decodeObject(codec.encodeObject(array)));
+    }
+
+    @Test
+    public void testLegacyObjectIsDecoded() throws Exception {
+        Serializable decoded = new MetacardBinaryCodec().decodeObject(serialize(new Date(1000L)));
+
+        assertThat(decoded, instanceOf(Date.class));
+        assertThat(decoded, is((Serializable) new Date(1000L)));
+    }
+
+    private MetacardType givenMetacardType() {
+        Set<AttributeDescriptor> descriptors = new HashSet<AttributeDescriptor>(
+                BasicTypes.BASIC_METACARD.getAttributeDescriptors());
+        descriptors.add(new AttributeDescriptorImpl("count", true, true, false, true,
+                BasicTypes.INTEGER_TYPE));
+        descriptors.add(new AttributeDescriptorImpl("blob", false, true, false, false,
+                BasicTypes.OBJECT_TYPE));
+        return new MetacardTypeImpl("codec-test", descriptors);
+    }
+
+    private byte[] serialize(Serializable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeDescriptorImpl;
+import ddf.catalog.data.BasicTypes;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardImpl;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.MetacardTypeImpl;
+
+/**
+ * Tests that a {@link MetacardFieldTable} reads documents the same way the resolver does field by
+ * field.
+ * 
+ */
+public class TestMetacardFieldTable {
+
+    @Test
+    public void testPopulate() {
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver();
+        MetacardType metacardType = givenMetacardType();
+
+        SolrDocument doc = new SolrDocument();
+        doc.setField(Metacard.TITLE + SchemaFields.TEXT_SUFFIX, "title");
+        doc.setField("priority" + SchemaFields.SHORT_SUFFIX, 3);
+        doc.setField("unlisted" + SchemaFields.LONG_SUFFIX, 5L);
+        doc.setField(SchemaFields.METACARD_TYPE_FIELD_NAME, metacardType.getName());
+        doc.setField("_version_", 1L);
+
+        MetacardImpl metacard = new MetacardImpl(metacardType);
+        resolver.getFieldTable(metacardType).populate(doc, metacard);
+
+        assertThat(metacard.getTitle(), is("title"));
+        assertThat(metacard.getAttribute("priority").getValue(), is((Serializable) (short) 3));
+        assertThat(metacard.getAttribute("unlisted").getValue(), is((Serializable) 5L));
+        assertThat(metacard.getAttribute(SchemaFields.METACARD_TYPE_FIELD_NAME), nullValue());
+        assertThat(metacard.getAttribute("_version_"), nullValue());
+        // nor under the name left once the field's suffix is stripped
+        assertThat(metacard.getAttribute("_version"), nullValue());
+    }
+
+    @Test
+    public void testTableIsSharedPerType() {
+        DynamicSchemaResolver resolver = new DynamicSchemaResolver();
+        MetacardType metacardType = givenMetacardType();
+
+        assertThat(resolver.getFieldTable(metacardType),
+                sameInstance(resolver.getFieldTable(metacardType)));
+    }
+
+    private MetacardType givenMetacardType() {
+        Set<AttributeDescriptor> descriptors = new HashSet<AttributeDescriptor>(
+                BasicTypes.BASIC_METACARD.getAttributeDescriptors());
+        descriptors.add(new AttributeDescriptorImpl("priority", true, true, false, false,
+                BasicTypes.SHORT_TYPE));
+        return new MetacardTypeImpl("field-table-test", descriptors);
+    }
+}
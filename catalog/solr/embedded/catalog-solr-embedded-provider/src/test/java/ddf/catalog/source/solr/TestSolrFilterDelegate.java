@@ -15,11 +15,16 @@
 package ddf.catalog.source.solr;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.stub;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
 import org.apache.solr.client.solrj.SolrQuery;
 import org.junit.Test;
 
@@ -32,6 +37,8 @@ public class TestSolrFilterDelegate {
 
     private SolrFilterDelegate toTest = new SolrFilterDelegate(mockResolver);
 
+    private static final String POLYGON = "POLYGON ((1 1, 2 1, 2 2, 1 2, 1 1))";
+
     @Test(expected = UnsupportedOperationException.class)
     public void intersectsWithNullWkt() {
         // given null WKT and a valid property name
@@ -145,4 +152,105 @@ public void testPropertyIsLike_AnyText_CaseSensitive() {
         assertThat(isLikeQuery.getQuery(), is(expectedQuery));
     }
 
+
+    @Test
+    public void testAndSplitsFilterQueries() {
+        stub(mockResolver.getField("location", AttributeFormat.GEOMETRY, false)).toReturn(
+                "location_geo_index");
+        stub(mockResolver.getField(Metacard.CONTENT_TYPE, AttributeFormat.STRING, true))
+                .toReturn("metadata-content-type_txt");
+        toTest.setUseFilterQueries(true);
+
+        SolrQuery query = toTest.and(new ArrayList<SolrQuery>(Arrays.asList(
+                toTest.intersects("location", POLYGON),
+                toTest.propertyIsLike(Metacard.ANY_TEXT, "mySearchPhrase", false),
+                toTest.propertyIsEqualTo(Metacard.CONTENT_TYPE, "myType", true))));
+
+        assertThat(query.getQuery(), is(" ( any_text:\"mySearchPhrase\" ) "));
+        assertThat(Arrays.asList(query.getFilterQueries()), is(Arrays.asList(
+                "location_geohash_index:\"Intersects(" + POLYGON + ")\"",
+                "metadata-content-type_txt:\"myType\"")));
+    }
+
+    @Test
+    public void testOrMergesFilterQueries() {
+        stub(mockResolver.getField("created", AttributeFormat.DATE, false)).toReturn(
+                "created_tdt");
+        toTest.setUseFilterQueries(true);
+
+        SolrQuery nested = toTest.and(new ArrayList<SolrQuery>(Arrays.asList(
+                toTest.propertyIsLike(Metacard.ANY_TEXT, "first", false),
+                toTest.before("created", new Date()))));
+        String filterQuery = nested.getFilterQueries()[0];
+
+        SolrQuery query = toTest.or(new ArrayList<SolrQuery>(Arrays.asList(nested,
+                toTest.propertyIsLike(Metacard.ANY_TEXT, "second", false))));
+
+        assertThat(query.getFilterQueries(), is(nullValue()));
+        assertThat(query.getQuery(), is(" (  (  ( any_text:\"first\" )  AND " + filterQuery
+                + " )  OR any_text:\"second\" ) "));
+        assertThat(toTest.toFilterQueries(query), is(query));
+    }
+
+    @Test
+    public void testSingleFilterMovedToFilterQuery() {
+        stub(mockResolver.getField("location", AttributeFormat.GEOMETRY, false)).toReturn(
+                "location_geo_index");
+        toTest.setUseFilterQueries(true);
+
+        SolrQuery query = toTest.toFilterQueries(toTest.intersects("location", POLYGON));
+
+        assertThat(query.getQuery(), is("*:*"));
+        assertThat(Arrays.asList(query.getFilterQueries()),
+                is(Arrays.asList("location_geohash_index:\"Intersects(" + POLYGON + ")\"")));
+    }
+
+    @Test
+    public void testFilterQueriesDisabled() {
+        stub(mockResolver.getField("location", AttributeFormat.GEOMETRY, false)).toReturn(
+                "location_geo_index");
+        toTest.setUseFilterQueries(false);
+
+        SolrQuery query = toTest.toFilterQueries(toTest.and(new ArrayList<SolrQuery>(Arrays
+                .asList(toTest.intersects("location", POLYGON),
+                        toTest.propertyIsLike(Metacard.ANY_TEXT, "mySearchPhrase", false)))));
+
+        assertThat(query.getFilterQueries(), is(nullValue()));
+        assertThat(query.getQuery(), is(" ( location_geohash_index:\"Intersects(" + POLYGON
+                + ")\" AND any_text:\"mySearchPhrase\" ) "));
+    }
+
+    @Test
+    public void testEffectiveRangeOfConjunction() {
+        Date start = new Date(1000L);
+        Date middle = new Date(2000L);
+        Date end = new Date(3000L);
+
+        SolrQuery query = toTest.and(new ArrayList<SolrQuery>(Arrays.asList(
+                toTest.during(Metacard.EFFECTIVE, start, end),
+                toTest.before(Metacard.EFFECTIVE, middle),
+                toTest.propertyIsLike(Metacard.ANY_TEXT, "mySearchPhrase", false))));
+
+        assertThat(Arrays.asList(toTest.getEffectiveRange(query)),
+                is(Arrays.asList(start, middle)));
+    }
+
+    @Test
+    public void testEffectiveRangeOfDisjunction() {
+        Date start = new Date(1000L);
+        Date end = new Date(3000L);
+
+        SolrQuery bounded = toTest.or(new ArrayList<SolrQuery>(Arrays.asList(
+                toTest.during(Metacard.EFFECTIVE, start, new Date(2000L)),
+                toTest.propertyIsEqualTo(Metacard.EFFECTIVE, end))));
+        SolrQuery unbounded = toTest.or(new ArrayList<SolrQuery>(Arrays.asList(
+                toTest.during(Metacard.EFFECTIVE, start, end),
+                toTest.during(Metacard.MODIFIED, start, end))));
+
+        assertThat(Arrays.asList(toTest.getEffectiveRange(bounded)),
+                is(Arrays.asList(start, end)));
+        assertThat(toTest.getEffectiveRange(unbounded), is(nullValue()));
+        assertThat(toTest.getEffectiveRange(toTest.not(bounded)), is(nullValue()));
+    }
+
 }
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import ddf.catalog.source.IngestException;
+
+/**
+ * Tests the batching and back-pressure of the {@link SolrIngestQueue} against a mocked server.
+ * 
+ */
+public class TestSolrIngestQueue {
+
+    private static final String BAD_FIELD = "bad_txt";
+
+    private SolrIngestQueue queue;
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Tests that requests arriving while a batch is in flight are sent together in the next add.
+     */
+    @Test
+    public void testConcurrentAddsAreCoalesced() throws Exception {
+        final CountDownLatch firstBatchSent = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger documents = new AtomicInteger();
+
+        SolrServer server = givenServer(new Answer<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> answer(InvocationOnMock invocation) throws Throwable {
+                UpdateRequest request = (UpdateRequest) invocation.getArguments()[0];
+                documents.addAndGet(request.getDocuments().size());
+                if (batches.incrementAndGet() == 1) {
+                    firstBatchSent.countDown();
+                    releaseFirstBatch.await(10, TimeUnit.SECONDS);
+                }
+                return new NamedList<Object>();
+            }
+        });
+        queue = new SolrIngestQueue(server, 100, 100, 1000);
+
+        int callers = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            results.add(executor.submit(add(2)));
+            assertTrue(firstBatchSent.await(10, TimeUnit.SECONDS));
+
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(add(2)));
+            }
+            waitForQueuedDocuments(2 * callers);
+            releaseFirstBatch.countDown();
+
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(documents.get(), is(2 * callers));
+        assertThat(batches.get(), lessThan(callers));
+    }
+
+    /**
+     * Tests that a rejected batch is reported to every caller in it.
+     */
+    @Test(expected = IngestException.class)
+    public void testServerFailureIsReported() throws Exception {
+        SolrServer server = givenServer(new Answer<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> answer(InvocationOnMock invocation) throws Throwable {
+                throw new SolrServerException("rejected");
+            }
+        });
+        queue = new SolrIngestQueue(server, 10, 10, 1000);
+
+        queue.add(documents(1), false);
+    }
+
+    /**
+     * Tests that a document rejected by the server only fails the request it belongs to, not the
+     * requests it was batched with.
+     */
+    @Test
+    public void testBadDocumentOnlyFailsItsOwnRequest() throws Exception {
+        final CountDownLatch firstBatchSent = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        final AtomicInteger batches = new AtomicInteger();
+
+        SolrServer server = givenServer(new Answer<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> answer(InvocationOnMock invocation) throws Throwable {
+                UpdateRequest request = (UpdateRequest) invocation.getArguments()[0];
+                if (batches.incrementAndGet() == 1) {
+                    firstBatchSent.countDown();
+                    releaseFirstBatch.await(10, TimeUnit.SECONDS);
+                }
+                for (SolrInputDocument doc : request.getDocuments()) {
+                    if (doc.containsKey(BAD_FIELD)) {
+                        throw new SolrServerException("rejected");
+                    }
+                }
+                return new NamedList<Object>();
+            }
+        });
+        queue = new SolrIngestQueue(server, 100, 100, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> first = executor.submit(add(1));
+            assertTrue(firstBatchSent.await(10, TimeUnit.SECONDS));
+
+            Future<?> good = executor.submit(add(2));
+            Future<?> bad = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    SolrInputDocument doc = new SolrInputDocument();
+                    doc.addField(BAD_FIELD, "bad");
+                    try {
+                        queue.add(Collections.singletonList(doc), false);
+                    } catch (IngestException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            waitForQueuedDocuments(4);
+            releaseFirstBatch.countDown();
+
+            first.get(10, TimeUnit.SECONDS);
+            good.get(10, TimeUnit.SECONDS);
+            try {
+                bad.get(10, TimeUnit.SECONDS);
+                fail("Expected the request with the bad document to fail.");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getCause() instanceof IngestException, is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a caller is turned away when the queue stays full past the offer timeout.
+     */
+    @Test
+    public void testFullQueueRejectsRequest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        SolrServer server = givenServer(new Answer<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> answer(InvocationOnMock invocation) throws Throwable {
+                release.await(10, TimeUnit.SECONDS);
+                return new NamedList<Object>();
+            }
+        });
+        queue = new SolrIngestQueue(server, 2, 10, 1000);
+        queue.setOfferTimeoutMillis(50);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(add(2));
+            waitForQueuedDocuments(2);
+
+            try {
+                queue.add(documents(1), false);
+                fail("Expected the full queue to reject the request.");
+            } catch (IngestException e) {
+                // expected
+            }
+
+            release.countDown();
+            first.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a caller interrupted while its request is still queued withdraws the request and
+     * gives back its room in the queue.
+     */
+    @Test
+    public void testInterruptedCallerWithdrawsQueuedRequest() throws Exception {
+        final CountDownLatch firstBatchSent = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        final AtomicInteger documents = new AtomicInteger();
+
+        SolrServer server = givenServer(new Answer<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> answer(InvocationOnMock invocation) throws Throwable {
+                UpdateRequest request = (UpdateRequest) invocation.getArguments()[0];
+                documents.addAndGet(request.getDocuments().size());
+                firstBatchSent.countDown();
+                releaseFirstBatch.await(10, TimeUnit.SECONDS);
+                return new NamedList<Object>();
+            }
+        });
+        queue = new SolrIngestQueue(server, 100, 100, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(add(1));
+            assertTrue(firstBatchSent.await(10, TimeUnit.SECONDS));
+
+            Future<?> interrupted = executor.submit(add(2));
+            waitForQueuedDocuments(3);
+            interrupted.cancel(true);
+            waitForQueuedDocuments(1);
+
+            releaseFirstBatch.countDown();
+            first.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(documents.get(), is(1));
+    }
+
+    private Runnable add(final int count) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.add(documents(count), false);
+                } catch (IngestException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private void waitForQueuedDocuments(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (queue.getQueuedDocumentCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(queue.getQueuedDocumentCount(), is(count));
+    }
+
+    private List<SolrInputDocument> documents(int count) {
+        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+        for (int i = 0; i < count; i++) {
+            SolrInputDocument doc = new SolrInputDocument();
+            doc.addField("id_txt", Integer.toString(i));
+            docs.add(doc);
+        }
+        return Collections.unmodifiableList(docs);
+    }
+
+    private SolrServer givenServer(Answer<NamedList<Object>> answer) throws Exception {
+        SolrServer server = mock(SolrServer.class);
+        when(server.request(any(SolrRequest.class))).thenAnswer(answer);
+        return server;
+    }
+}
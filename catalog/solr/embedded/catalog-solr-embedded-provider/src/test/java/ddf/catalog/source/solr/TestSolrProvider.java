@@ -40,6 +40,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -70,6 +71,7 @@
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.AttributeDescriptorImpl;
 import ddf.catalog.data.BasicTypes;
@@ -88,6 +90,7 @@
 import ddf.catalog.operation.QueryImpl;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryRequestImpl;
+import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.operation.Update;
 import ddf.catalog.operation.UpdateRequest;
@@ -392,6 +395,85 @@ public void testCreateOperationWithSourceId() throws IngestException, Unsupporte
 
     }
 
+    /**
+     * Tests that documents built in parallel are all ingested and returned in request order.
+     * 
+     * @throws IngestException
+     * @throws UnsupportedQueryException
+     */
+    @Test
+    public void testParallelCreate() throws IngestException, UnsupportedQueryException {
+
+        deleteAllIn(provider);
+
+        ConfigurationStore store = ConfigurationStore.getInstance();
+        int threshold = store.getParallelBuildThreshold();
+        int threads = store.getDocumentBuildThreads();
+
+        List<Metacard> list = new ArrayList<Metacard>();
+        for (int i = 0; i < 10; i++) {
+            list.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+
+        try {
+            store.setParallelBuildThreshold(2);
+            store.setDocumentBuildThreads(3);
+
+            /** CREATE **/
+            CreateResponse createResponse = create(list);
+
+            assertEquals(list, createResponse.getCreatedMetacards());
+
+            Set<String> ids = new HashSet<String>();
+            for (Metacard metacard : createResponse.getCreatedMetacards()) {
+                assertNotNull(metacard.getId());
+                ids.add(metacard.getId());
+            }
+            assertEquals(10, ids.size());
+        } finally {
+            store.setParallelBuildThreshold(threshold);
+            store.setDocumentBuildThreads(threads);
+        }
+
+        queryAndVerifyCount(10, filterBuilder.attribute(Metacard.ANY_TEXT).is().like()
+                .text(FLAGSTAFF_QUERY_PHRASE));
+    }
+
+    /**
+     * Tests that a record without XML metadata keeps its unchanged attributes searchable when only
+     * some of its attributes are updated.
+     * 
+     * @throws IngestException
+     * @throws UnsupportedQueryException
+     */
+    @Test
+    public void testUpdateChangedAttributesOnly() throws IngestException,
+        UnsupportedQueryException {
+
+        deleteAllIn(provider);
+
+        MockMetacard metacard = new MockMetacard(Library.getFlagstaffRecord());
+        metacard.setMetadata(null);
+
+        CreateResponse createResponse = create(metacard);
+
+        String id = createResponse.getCreatedMetacards().get(0).getId();
+
+        metacard.setTitle("Renamed Record");
+
+        UpdateResponse response = update(id, metacard);
+
+        assertEquals(1, response.getUpdatedMetacards().size());
+        assertEquals("Renamed Record", response.getUpdatedMetacards().get(0).getNewMetacard()
+                .getTitle());
+
+        queryAndVerifyCount(1, filterBuilder.attribute(Metacard.TITLE).is().like()
+                .text("Renamed"));
+        queryAndVerifyCount(1, filterBuilder.attribute(Metacard.CONTENT_TYPE).is().equalTo()
+                .text(MockMetacard.DEFAULT_TYPE));
+        queryAndVerifyCount(1, filterBuilder.attribute(Metacard.ID).is().equalTo().text(id));
+    }
+
     /**
      * Tests what happens when the whole request is null.
      * 
@@ -3167,6 +3249,246 @@ public void testStartIndexWithSorting() throws Exception {
         }
     }
 
+    /**
+     * Tests that a streaming query without a page size returns every hit exactly once.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingQuery() throws Exception {
+
+        deleteAllIn(provider);
+
+        List<Metacard> list = new ArrayList<Metacard>();
+        for (int i = 0; i < 9; i++) {
+            list.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+
+        /** CREATE **/
+        create(list);
+
+        /** STREAMING QUERY **/
+        QueryImpl query = new CommonQueryBuilder().queryByProperty(Metacard.TITLE,
+                FLAGSTAFF_QUERY_PHRASE);
+        query.setPageSize(0);
+
+        QueryRequestImpl request = new QueryRequestImpl(query);
+        request.getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+
+        SourceResponse sourceResponse = provider.query(request);
+
+        assertThat(sourceResponse, instanceOf(QueryResponse.class));
+        assertEquals(9L, sourceResponse.getHits());
+
+        QueryResponse stream = (QueryResponse) sourceResponse;
+        Set<String> ids = new HashSet<String>();
+        int count = 0;
+        while (stream.hasMoreResults()) {
+            for (Result result : stream.take(3)) {
+                ids.add(result.getMetacard().getId());
+                count++;
+            }
+        }
+
+        assertEquals(9, count);
+        assertEquals(9, ids.size());
+        assertTrue(stream.getProcessingDetails().isEmpty());
+    }
+
+    /**
+     * Tests that a streaming query with a page size stops after that many results from the start
+     * index.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingQueryIsBoundedByPageSize() throws Exception {
+
+        deleteAllIn(provider);
+
+        List<Metacard> list = new ArrayList<Metacard>();
+        for (int i = 0; i < 9; i++) {
+            list.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+
+        /** CREATE **/
+        create(list);
+
+        /** STREAMING QUERY **/
+        QueryImpl query = new CommonQueryBuilder().queryByProperty(Metacard.TITLE,
+                FLAGSTAFF_QUERY_PHRASE);
+        query.setStartIndex(3);
+        query.setPageSize(4);
+
+        QueryRequestImpl request = new QueryRequestImpl(query);
+        request.getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+
+        QueryResponse stream = (QueryResponse) provider.query(request);
+        assertEquals(9L, stream.getHits());
+
+        Set<String> ids = new HashSet<String>();
+        int count = 0;
+        while (stream.hasMoreResults()) {
+            for (Result result : stream.take(3)) {
+                ids.add(result.getMetacard().getId());
+                count++;
+            }
+        }
+
+        assertEquals(4, count);
+        assertEquals(4, ids.size());
+        assertTrue(stream.getProcessingDetails().isEmpty());
+    }
+
+    /**
+     * Tests that records streamed from a query can be removed in batches with bulk deletes while
+     * the stream is still being read.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingBulkDelete() throws Exception {
+
+        deleteAllIn(provider);
+
+        List<Metacard> list = new ArrayList<Metacard>();
+        for (int i = 0; i < 9; i++) {
+            list.add(new MockMetacard(Library.getFlagstaffRecord()));
+        }
+
+        /** CREATE **/
+        create(list);
+
+        /** STREAMING QUERY **/
+        QueryImpl query = new CommonQueryBuilder().queryByProperty(Metacard.TITLE,
+                FLAGSTAFF_QUERY_PHRASE);
+        query.setPageSize(0);
+
+        QueryRequestImpl request = new QueryRequestImpl(query);
+        request.getProperties().put(Constants.STREAMING_QUERY, Boolean.TRUE);
+
+        QueryResponse stream = (QueryResponse) provider.query(request);
+
+        /** BULK DELETE **/
+        int deleted = 0;
+        while (stream.hasMoreResults()) {
+            List<String> ids = new ArrayList<String>();
+            for (Result result : stream.take(4)) {
+                ids.add(result.getMetacard().getId());
+            }
+            if (ids.isEmpty()) {
+                continue;
+            }
+
+            DeleteRequestImpl deleteRequest = new DeleteRequestImpl(ids.toArray(new String[ids
+                    .size()]));
+            deleteRequest.getProperties().put(Constants.BULK_DELETE, Boolean.TRUE);
+
+            DeleteResponse deleteResponse = provider.delete(deleteRequest);
+            assertEquals(ids.size(), deleteResponse.getDeletedMetacards().size());
+            for (Metacard metacard : deleteResponse.getDeletedMetacards()) {
+                assertTrue(ids.contains(metacard.getId()));
+            }
+            deleted += ids.size();
+        }
+
+        assertEquals(9, deleted);
+        assertTrue(stream.getProcessingDetails().isEmpty());
+
+        /** VERIFY **/
+        SourceResponse sourceResponse = provider.query(new QueryRequestImpl(
+                new CommonQueryBuilder().queryByProperty(Metacard.TITLE, FLAGSTAFF_QUERY_PHRASE)));
+        assertEquals(0, sourceResponse.getResults().size());
+    }
+
+    /**
+     * Tests that a projected query returns only the requested attributes up front and loads the
+     * rest of the record when it is read.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testProjectedQuery() throws Exception {
+
+        deleteAllIn(provider);
+
+        MockMetacard metacard = new MockMetacard(Library.getFlagstaffRecord());
+
+        /** CREATE **/
+        String id = create(metacard).getCreatedMetacards().get(0).getId();
+
+        /** PROJECTED QUERY **/
+        QueryImpl query = new CommonQueryBuilder().queryByProperty(Metacard.TITLE,
+                FLAGSTAFF_QUERY_PHRASE);
+
+        QueryRequestImpl request = new QueryRequestImpl(query);
+        request.getProperties().put(Constants.PROJECTED_ATTRIBUTES,
+                Metacard.TITLE + "," + Metacard.EFFECTIVE);
+
+        SourceResponse sourceResponse = provider.query(request);
+
+        assertEquals(1, sourceResponse.getResults().size());
+
+        Metacard result = sourceResponse.getResults().get(0).getMetacard();
+        assertThat(result, instanceOf(LazyMetacard.class));
+
+        LazyMetacard lazyMetacard = (LazyMetacard) result;
+        assertThat(lazyMetacard.getId(), is(id));
+        assertThat(lazyMetacard.getTitle(), is(MockMetacard.DEFAULT_TITLE));
+        assertThat(lazyMetacard.getEffectiveDate(), is(metacard.getEffectiveDate()));
+        assertFalse(lazyMetacard.isLoaded());
+
+        assertThat(lazyMetacard.getMetadata(), containsString("Flagstaff Chamber of Commerce"));
+        assertTrue(lazyMetacard.isLoaded());
+        assertThat(lazyMetacard.getLocation(), is(metacard.getLocation()));
+    }
+
+    /**
+     * Tests that the records of a page of projected results, which are loaded together, are each
+     * completed with their own attributes.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testProjectedQueryLoadsEachRecord() throws Exception {
+
+        deleteAllIn(provider);
+
+        List<Metacard> list = new ArrayList<Metacard>();
+        for (int i = 0; i < 3; i++) {
+            MockMetacard metacard = new MockMetacard(Library.getFlagstaffRecord());
+            metacard.setResourceURI(new URI("http://example.com/resource/" + i));
+            list.add(metacard);
+        }
+
+        /** CREATE **/
+        List<Metacard> created = create(list).getCreatedMetacards();
+        Map<String, URI> resourceUris = new HashMap<String, URI>();
+        for (Metacard metacard : created) {
+            resourceUris.put(metacard.getId(), metacard.getResourceURI());
+        }
+
+        /** PROJECTED QUERY **/
+        QueryImpl query = new CommonQueryBuilder().queryByProperty(Metacard.TITLE,
+                FLAGSTAFF_QUERY_PHRASE);
+
+        QueryRequestImpl request = new QueryRequestImpl(query);
+        request.getProperties().put(Constants.PROJECTED_ATTRIBUTES, Metacard.TITLE);
+
+        SourceResponse sourceResponse = provider.query(request);
+
+        assertEquals(3, sourceResponse.getResults().size());
+
+        for (Result result : sourceResponse.getResults()) {
+            LazyMetacard lazyMetacard = (LazyMetacard) result.getMetacard();
+            assertFalse(lazyMetacard.isLoaded());
+            assertThat(lazyMetacard.getResourceURI(), is(resourceUris.get(lazyMetacard.getId())));
+            assertTrue(lazyMetacard.isLoaded());
+            assertThat(lazyMetacard.getMetadata(),
+                    containsString("Flagstaff Chamber of Commerce"));
+        }
+    }
+
     /**
      * Tests the offset aka start index (startIndex) functionality.
      * 
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestTimePartitionedSolrServer {
+
+    private static final String DATE_FIELD = "effective_tdt";
+
+    private static final String ID_FIELD = "id_txt";
+
+    private static final String TITLE_FIELD = "title_txt";
+
+    private Map<String, SolrServer> partitions = new HashMap<String, SolrServer>();
+
+    private TimePartitionedSolrServer server;
+
+    @Before
+    public void setUp() {
+        server = new TimePartitionedSolrServer(new TimePartitionedSolrServer.PartitionFactory() {
+            @Override
+            public SolrServer createPartition(String name) {
+                SolrServer partition = mock(SolrServer.class);
+                partitions.put(name, partition);
+                return partition;
+            }
+        }, Arrays.asList("201301", "201302"), DATE_FIELD, ID_FIELD);
+    }
+
+    @Test
+    public void testAddRoutedByMonth() throws Exception {
+        SolrInputDocument january = createInputDocument("1", date(2013, Calendar.JANUARY, 15));
+        SolrInputDocument march = createInputDocument("2", date(2013, Calendar.MARCH, 1));
+        SolrInputDocument undated = createInputDocument("3", null);
+
+        server.add(Arrays.asList(january, march, undated));
+
+        assertThat(server.getPartitionNames(),
+                is(Arrays.asList("undated", "201303", "201302", "201301")));
+        assertThat(getAddedDocuments("201301"), is(Collections.singletonList(january)));
+        assertThat(getAddedDocuments("201303"), is(Collections.singletonList(march)));
+        assertThat(getAddedDocuments(TimePartitionedSolrServer.UNDATED_PARTITION),
+                is(Collections.singletonList(undated)));
+        verify(partitions.get("201302"), never()).request(any(SolrRequest.class));
+    }
+
+    @Test
+    public void testSearchMergesSortedResults() throws Exception {
+        when(partitions.get("201301").request(any(SolrRequest.class))).thenReturn(
+                createResponse(3L, "1", "4"));
+        when(partitions.get("201302").request(any(SolrRequest.class))).thenReturn(
+                createResponse(2L, "2", "3"));
+
+        SolrQuery query = new SolrQuery("*:*");
+        query.setSortField(ID_FIELD, SolrQuery.ORDER.asc);
+        query.setStart(1);
+        query.setRows(2);
+        TimePartitionedSolrServer.setPartitionRange(query, date(2013, Calendar.JANUARY, 1),
+                date(2013, Calendar.FEBRUARY, 28));
+
+        SolrDocumentList results = server.query(query).getResults();
+
+        assertThat(results.getNumFound(), is(5L));
+        assertThat(results.size(), is(2));
+        assertThat((String) results.get(0).getFieldValue(ID_FIELD), is("2"));
+        assertThat((String) results.get(1).getFieldValue(ID_FIELD), is("3"));
+        verify(partitions.get(TimePartitionedSolrServer.UNDATED_PARTITION), never()).request(
+                any(SolrRequest.class));
+    }
+
+    @Test
+    public void testProjectedSearchMergesOnSortField() throws Exception {
+        NamedList<Object> january = createResponse(2L, "1", "4");
+        NamedList<Object> february = createResponse(2L, "2", "3");
+        for (NamedList<Object> response : Arrays.asList(january, february)) {
+            for (SolrDocument doc : (SolrDocumentList) response.get("response")) {
+                doc.setField(TITLE_FIELD, "title " + doc.getFieldValue(ID_FIELD));
+            }
+        }
+        when(partitions.get("201301").request(any(SolrRequest.class))).thenReturn(january);
+        when(partitions.get("201302").request(any(SolrRequest.class))).thenReturn(february);
+
+        SolrQuery query = new SolrQuery("*:*");
+        query.setFields(TITLE_FIELD);
+        query.setSortField(ID_FIELD, SolrQuery.ORDER.asc);
+        TimePartitionedSolrServer.setPartitionRange(query, date(2013, Calendar.JANUARY, 1),
+                date(2013, Calendar.FEBRUARY, 28));
+
+        SolrDocumentList results = server.query(query).getResults();
+
+        ArgumentCaptor<SolrRequest> captor = ArgumentCaptor.forClass(SolrRequest.class);
+        verify(partitions.get("201301")).request(captor.capture());
+        assertThat(captor.getValue().getParams().getParams("fl"), is(new String[] {TITLE_FIELD,
+            ID_FIELD}));
+        assertThat(results.size(), is(4));
+        assertThat((String) results.get(0).getFieldValue(TITLE_FIELD), is("title 1"));
+        assertThat((String) results.get(1).getFieldValue(TITLE_FIELD), is("title 2"));
+        assertThat(results.get(0).getFieldValue(ID_FIELD), is(nullValue()));
+    }
+
+    @Test
+    public void testCreateDeletesCopyInOtherMonth() throws Exception {
+        when(partitions.get(TimePartitionedSolrServer.UNDATED_PARTITION).request(
+                any(SolrRequest.class))).thenReturn(createResponse(0L));
+        when(partitions.get("201301").request(any(SolrRequest.class))).thenReturn(
+                createResponse(1L, "1"));
+        when(partitions.get("201302").request(any(SolrRequest.class))).thenReturn(
+                createResponse(0L));
+
+        server.deleteRelocated(
+                Collections.singletonList(createInputDocument("1",
+                        date(2013, Calendar.FEBRUARY, 1))), false);
+
+        ArgumentCaptor<SolrRequest> captor = ArgumentCaptor.forClass(SolrRequest.class);
+        verify(partitions.get("201301"), times(2)).request(captor.capture());
+        assertThat(((UpdateRequest) captor.getAllValues().get(1)).getDeleteById(),
+                is(Collections.singletonList("1")));
+        verify(partitions.get("201302"), times(1)).request(any(SolrRequest.class));
+    }
+
+    private List<SolrInputDocument> getAddedDocuments(String partition) throws Exception {
+        ArgumentCaptor<SolrRequest> captor = ArgumentCaptor.forClass(SolrRequest.class);
+        verify(partitions.get(partition)).request(captor.capture());
+        return ((UpdateRequest) captor.getValue()).getDocuments();
+    }
+
+    private NamedList<Object> createResponse(long numFound, String... ids) {
+        SolrDocumentList docs = new SolrDocumentList();
+        for (String id : ids) {
+            SolrDocument doc = new SolrDocument();
+            doc.setField(ID_FIELD, id);
+            docs.add(doc);
+        }
+        docs.setNumFound(numFound);
+
+        NamedList<Object> response = new NamedList<Object>();
+        response.add("response", docs);
+        return response;
+    }
+
+    private SolrInputDocument createInputDocument(String id, Date effective) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(ID_FIELD, id);
+        if (effective != null) {
+            doc.addField(DATE_FIELD, effective);
+        }
+        return doc;
+    }
+
+    private Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTime();
+    }
+
+}
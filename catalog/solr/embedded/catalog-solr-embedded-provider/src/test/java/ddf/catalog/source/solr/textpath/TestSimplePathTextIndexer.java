@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.source.solr.textpath;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.codehaus.stax2.XMLInputFactory2;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ddf.catalog.source.solr.Library;
+
+public class TestSimplePathTextIndexer {
+
+    private static XMLInputFactory xmlInputFactory = null;
+
+    @BeforeClass
+    public static void setup() {
+        xmlInputFactory = XMLInputFactory2.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    @Test
+    public void testSameTextPathAsSimplePathIndexer() {
+        SimplePathTextIndexer indexer = new SimplePathTextIndexer(xmlInputFactory);
+
+        indexer.index(Library.getIndexingRecord(), true);
+
+        assertThat(indexer.getTextPathValues(), is(new SimplePathIndexer(xmlInputFactory)
+                .indexTextPath(Library.getIndexingRecord())));
+    }
+
+    @Test
+    public void testTextAndTextPath() {
+        String xml = "<ns:a xmlns:ns=\"urn:test\" code=\" x1 \"><b>  one </b><c><d/>"
+                + "<![CDATA[ two ]]></c><e attr=\"   \">three</e></ns:a>";
+
+        SimplePathTextIndexer indexer = new SimplePathTextIndexer(xmlInputFactory);
+
+        indexer.index(xml, true);
+
+        assertThat(indexer.getText(), is(" x1 one two three"));
+        assertThat(indexer.getTextPathValues(),
+                is(Arrays.asList("/ns:a/b|one", "/ns:a/c/d|", "/ns:a/e|three")));
+    }
+
+    @Test
+    public void testReuseBetweenDocuments() {
+        SimplePathTextIndexer indexer = new SimplePathTextIndexer(xmlInputFactory);
+
+        indexer.index("<a><b>first</b></a>", true);
+        indexer.index("<z>second</z>", false);
+
+        assertThat(indexer.getText(), is(" second"));
+        assertThat(indexer.getTextPathValues().size(), is(0));
+    }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.solr.external;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SolrServer} for a Solr leader and its read replicas. Updates and realtime gets are sent to
+ * the leader; all other requests are load balanced across the replicas in turn, failing over to
+ * the next replica when one cannot be reached. Without replicas, every request goes to the leader.
+ * <p>
+ * All servers share one pooled {@link HttpClient} and exchange requests and responses in the
+ * javabin format.
+ * 
+ */
+public class ReplicatedSolrServer extends SolrServer {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicatedSolrServer.class);
+
+    private static final String REALTIME_GET_PATH = "/get";
+
+    private final transient HttpClient httpClient;
+
+    private final SolrServer leader;
+
+    private final List<SolrServer> replicas;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * @param leaderUrl
+     *            URL of the Solr server that handles writes
+     * @param replicaUrls
+     *            URLs of the Solr servers that handle queries, may be empty
+     * @param config
+     *            connection pool settings
+     * @throws MalformedURLException
+     *             if the leader or a replica URL is not valid
+     */
+    public ReplicatedSolrServer(String leaderUrl, List<String> replicaUrls,
+            ConnectionConfig config) throws MalformedURLException {
+
+        httpClient = createHttpClient(config);
+        leader = createServer(leaderUrl, httpClient);
+
+        List<SolrServer> replicaServers = new ArrayList<SolrServer>();
+        if (replicaUrls != null && !replicaUrls.isEmpty()) {
+            LOGGER.info("Balancing queries across Solr replicas {}", replicaUrls);
+            for (String replicaUrl : replicaUrls) {
+                replicaServers.add(createServer(replicaUrl, httpClient));
+            }
+        }
+        replicas = Collections.unmodifiableList(replicaServers);
+    }
+
+    /**
+     * Creates a server over already connected leader and replica servers.
+     * 
+     * @param leader
+     *            the server that handles writes
+     * @param replicas
+     *            the servers that handle queries, may be empty
+     */
+    ReplicatedSolrServer(SolrServer leader, List<SolrServer> replicas) {
+        this.httpClient = null;
+        this.leader = leader;
+        this.replicas = Collections.unmodifiableList(new ArrayList<SolrServer>(replicas));
+    }
+
+    private static HttpSolrServer createServer(String url, HttpClient httpClient)
+        throws MalformedURLException {
+        // fails on an invalid URL now rather than on the first request
+        new URL(url);
+
+        HttpSolrServer server = new HttpSolrServer(url, httpClient, new BinaryResponseParser());
+        server.setRequestWriter(new BinaryRequestWriter());
+        return server;
+    }
+
+    private static HttpClient createHttpClient(ConnectionConfig config) {
+        ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager();
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+
+        DefaultHttpClient client = new DefaultHttpClient(connectionManager);
+        HttpConnectionParams.setConnectionTimeout(client.getParams(),
+                config.getConnectionTimeout());
+        HttpConnectionParams.setSoTimeout(client.getParams(), config.getSocketTimeout());
+
+        final long keepAlive = config.getKeepAlive();
+        if (keepAlive > 0) {
+            // use the server's keep-alive header when it sends one, otherwise the configured limit
+            client.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+                private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+
+                @Override
+                public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                    long duration = serverStrategy.getKeepAliveDuration(response, context);
+                    return (duration > 0) ? Math.min(duration, keepAlive) : keepAlive;
+                }
+            });
+        }
+
+        return client;
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+        if (replicas.isEmpty() || request instanceof AbstractUpdateRequest
+                || REALTIME_GET_PATH.equals(request.getPath())) {
+            return leader.request(request);
+        }
+
+        // each request starts at the next replica, so requests are spread evenly
+        int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicas.size();
+        SolrServerException failure = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            SolrServer replica = replicas.get((start + i) % replicas.size());
+            try {
+                return replica.request(request);
+            } catch (SolrServerException e) {
+                if (!isConnectionFailure(e)) {
+                    throw e;
+                }
+                LOGGER.debug("Solr replica could not be reached, trying the next one.", e);
+                failure = e;
+            } catch (IOException e) {
+                LOGGER.debug("Solr replica could not be reached, trying the next one.", e);
+                failure = new SolrServerException(e);
+            }
+        }
+        throw new SolrServerException("No Solr replica could be reached.", failure);
+    }
+
+    /**
+     * @return true if a request failed because the server could not be reached, rather than being
+     *         rejected by it
+     */
+    private boolean isConnectionFailure(SolrServerException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void shutdown() {
+        for (SolrServer replica : replicas) {
+            replica.shutdown();
+        }
+        leader.shutdown();
+        if (httpClient != null) {
+            httpClient.getConnectionManager().shutdown();
+        }
+    }
+
+    /**
+     * Settings of the HTTP connection pool shared by the leader and replicas.
+     */
+    public static class ConnectionConfig {
+
+        private int maxConnections = 128;
+
+        private int maxConnectionsPerHost = 32;
+
+        private int connectionTimeout;
+
+        private int socketTimeout;
+
+        private long keepAlive = 60000;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerHost() {
+            return maxConnectionsPerHost;
+        }
+
+        public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+        }
+
+        /**
+         * @return milliseconds to wait for a connection to be established, 0 for no limit
+         */
+        public int getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(int connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        /**
+         * @return milliseconds to wait for data from an open connection, 0 for no limit
+         */
+        public int getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        /**
+         * @return longest time in milliseconds an idle connection is kept open for reuse, 0 to
+         *         follow the server
+         */
+        public long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+    }
+}
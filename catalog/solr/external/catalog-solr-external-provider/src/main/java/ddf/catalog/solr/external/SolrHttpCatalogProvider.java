@@ -15,12 +15,14 @@
 package ddf.catalog.solr.external;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.solr.client.solrj.SolrServer;
-import org.apache.solr.client.solrj.impl.HttpSolrServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,13 +64,19 @@ public class SolrHttpCatalogProvider extends MaskableImpl implements CatalogProv
 
     private String url;
 
+    private List<String> replicaUrls = new ArrayList<String>();
+
+    private ReplicatedSolrServer.ConnectionConfig connectionConfig = new ReplicatedSolrServer.ConnectionConfig();
+
+    private volatile boolean connectionChanged;
+
     private CatalogProvider provider = new UnconfiguredCatalogProvider();
 
     private SolrServer server;
 
     private FilterAdapter filterAdapter;
 
-    private boolean firstUse;
+    private volatile boolean firstUse;
 
     private SolrFilterDelegateFactory solrFilterDelegateFactory;
 
@@ -196,11 +204,9 @@ public UpdateResponse update(UpdateRequest updateRequest) throws IngestException
     /**
      * Shutdown the connection to the Solr Server and releases resources.
      */
-    public void shutdown() {
+    public synchronized void shutdown() {
         LOGGER.info("Releasing connection to solr server.");
-        if (server != null) {
-            server.shutdown();
-        }
+        releaseServer();
     }
 
     /**
@@ -218,6 +224,67 @@ public String getUrl() {
         return url;
     }
 
+    /**
+     * Sets the Solr servers that queries are balanced across. Writes still go to the server at
+     * {@link #getUrl()}.
+     * 
+     * @param replicaUrls
+     *            comma separated URLs, or blank to send queries to the {@link #getUrl()} server
+     */
+    public void setReplicaUrls(String replicaUrls) {
+        List<String> urls = new ArrayList<String>();
+        if (replicaUrls != null) {
+            for (String replicaUrl : replicaUrls.split(",")) {
+                if (StringUtils.isNotBlank(replicaUrl)) {
+                    urls.add(replicaUrl.trim());
+                }
+            }
+        }
+        if (!urls.equals(this.replicaUrls)) {
+            this.replicaUrls = urls;
+            connectionChanged = true;
+        }
+    }
+
+    public String getReplicaUrls() {
+        return StringUtils.join(replicaUrls, ",");
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections != connectionConfig.getMaxConnections()) {
+            connectionConfig.setMaxConnections(maxConnections);
+            connectionChanged = true;
+        }
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost != connectionConfig.getMaxConnectionsPerHost()) {
+            connectionConfig.setMaxConnectionsPerHost(maxConnectionsPerHost);
+            connectionChanged = true;
+        }
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        if (connectionTimeout != connectionConfig.getConnectionTimeout()) {
+            connectionConfig.setConnectionTimeout(connectionTimeout);
+            connectionChanged = true;
+        }
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        if (socketTimeout != connectionConfig.getSocketTimeout()) {
+            connectionConfig.setSocketTimeout(socketTimeout);
+            connectionChanged = true;
+        }
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        if (keepAlive != connectionConfig.getKeepAlive()) {
+            connectionConfig.setKeepAlive(keepAlive);
+            connectionChanged = true;
+        }
+    }
+
     /**
      * Updates the configuration of the Solr Server if necessary
      * 
@@ -234,16 +301,7 @@ public void updateServer(String urlValue) {
 
                 this.url = urlValue.trim();
 
-                if (server != null) {
-
-                    LOGGER.info("Shutting down the connection manager to the Solr Server and releasing allocated resources.");
-                    server.shutdown();
-                    LOGGER.info("Shutdown complete.");
-                }
-
-                server = new HttpSolrServer(url);
-
-                firstUse = true;
+                connectServer();
 
             }
 
@@ -254,26 +312,82 @@ public void updateServer(String urlValue) {
 
     }
 
+    /**
+     * Replaces the connection to the Solr Server with one using the current url, replicas and
+     * connection settings.
+     */
+    private synchronized void connectServer() {
+        if (server != null) {
+
+            LOGGER.info("Shutting down the connection manager to the Solr Server and releasing allocated resources.");
+            releaseServer();
+            LOGGER.info("Shutdown complete.");
+        }
+
+        try {
+            server = new ReplicatedSolrServer(url, replicaUrls, connectionConfig);
+        } catch (MalformedURLException e) {
+            LOGGER.warn("Invalid Solr replica url in {}", replicaUrls, e);
+            server = null;
+        }
+
+        connectionChanged = false;
+        firstUse = true;
+    }
+
+    /**
+     * Reconnects if the connection settings changed since the last connection. The flag is checked
+     * again under the lock so that concurrent requests reconnect only once.
+     */
+    private synchronized void reconnectIfChanged() {
+        if (connectionChanged && url != null) {
+            connectServer();
+        }
+    }
+
+    /**
+     * Shuts down the provider built on the current connection, which releases its background
+     * threads and the connection, or the connection alone if no provider was built on it.
+     */
+    private void releaseServer() {
+        if (provider instanceof SolrCatalogProvider) {
+            ((SolrCatalogProvider) provider).shutdown();
+        } else if (server != null) {
+            server.shutdown();
+        }
+        provider = new UnconfiguredCatalogProvider();
+    }
+
     private CatalogProvider getProvider() {
+        if (connectionChanged) {
+            reconnectIfChanged();
+        }
         if (firstUse) {
-            if (isServerUp(this.server)) {
-                if (resolver == null) {
-                    provider = new SolrCatalogProvider(server, filterAdapter,
-                            solrFilterDelegateFactory);
-                } else {
-                    provider = new SolrCatalogProvider(server, filterAdapter,
-                            solrFilterDelegateFactory, resolver);
-                }
-                provider.maskId(getId());
-                this.firstUse = false;
-                return provider;
-            }
-            return new UnconfiguredCatalogProvider();
+            return createProvider();
         }
         return provider;
 
     }
 
+    private synchronized CatalogProvider createProvider() {
+        if (!firstUse) {
+            return provider;
+        }
+        if (isServerUp(this.server)) {
+            if (resolver == null) {
+                provider = new SolrCatalogProvider(server, filterAdapter,
+                        solrFilterDelegateFactory);
+            } else {
+                provider = new SolrCatalogProvider(server, filterAdapter,
+                        solrFilterDelegateFactory, resolver);
+            }
+            provider.maskId(getId());
+            this.firstUse = false;
+            return provider;
+        }
+        return new UnconfiguredCatalogProvider();
+    }
+
     private boolean isServerUp(SolrServer solrServer) {
 
         if (solrServer == null) {
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ * 
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ * 
+ **/
+package ddf.catalog.solr.external;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.ConnectException;
+import java.util.Arrays;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the routing of requests by {@link ReplicatedSolrServer} to mocked leader and replicas.
+ * 
+ */
+public class TestReplicatedSolrServer {
+
+    private SolrServer leader;
+
+    private SolrServer firstReplica;
+
+    private SolrServer secondReplica;
+
+    private ReplicatedSolrServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        leader = givenServer();
+        firstReplica = givenServer();
+        secondReplica = givenServer();
+        server = new ReplicatedSolrServer(leader, Arrays.asList(firstReplica, secondReplica));
+    }
+
+    @Test
+    public void testUpdatesGoToLeader() throws Exception {
+        UpdateRequest update = new UpdateRequest();
+        update.deleteById("1");
+
+        server.request(update);
+
+        verify(leader).request(update);
+        verify(firstReplica, never()).request(any(SolrRequest.class));
+        verify(secondReplica, never()).request(any(SolrRequest.class));
+    }
+
+    @Test
+    public void testRealtimeGetsGoToLeader() throws Exception {
+        QueryRequest get = new QueryRequest(new ModifiableSolrParams());
+        get.setPath("/get");
+
+        server.request(get);
+
+        verify(leader).request(get);
+        verify(firstReplica, never()).request(any(SolrRequest.class));
+        verify(secondReplica, never()).request(any(SolrRequest.class));
+    }
+
+    @Test
+    public void testQueriesAreBalancedAcrossReplicas() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            server.query(new SolrQuery("*:*"));
+        }
+
+        verify(firstReplica, times(2)).request(any(SolrRequest.class));
+        verify(secondReplica, times(2)).request(any(SolrRequest.class));
+        verify(leader, never()).request(any(SolrRequest.class));
+    }
+
+    @Test
+    public void testQueriesFailOverWhenReplicaIsDown() throws Exception {
+        when(firstReplica.request(any(SolrRequest.class))).thenThrow(
+                new SolrServerException("down", new ConnectException()));
+
+        for (int i = 0; i < 2; i++) {
+            server.query(new SolrQuery("*:*"));
+        }
+
+        verify(secondReplica, times(2)).request(any(SolrRequest.class));
+        verify(leader, never()).request(any(SolrRequest.class));
+    }
+
+    @Test(expected = SolrServerException.class)
+    public void testRejectedQueryIsNotRetried() throws Exception {
+        SolrServerException rejected = new SolrServerException("rejected");
+        when(firstReplica.request(any(SolrRequest.class))).thenThrow(rejected);
+        when(secondReplica.request(any(SolrRequest.class))).thenThrow(rejected);
+
+        try {
+            server.query(new SolrQuery("*:*"));
+        } finally {
+            verify(firstReplica, times(1)).request(any(SolrRequest.class));
+            verify(secondReplica, never()).request(any(SolrRequest.class));
+        }
+    }
+
+    @Test
+    public void testQueriesGoToLeaderWithoutReplicas() throws Exception {
+        server = new ReplicatedSolrServer(leader, Arrays.<SolrServer> asList());
+        QueryRequest query = new QueryRequest(new ModifiableSolrParams());
+
+        server.request(query);
+
+        verify(leader).request(query);
+    }
+
+    private SolrServer givenServer() throws Exception {
+        SolrServer solrServer = mock(SolrServer.class);
+        when(solrServer.request(any(SolrRequest.class))).thenReturn(new NamedList<Object>());
+        return solrServer;
+    }
+}
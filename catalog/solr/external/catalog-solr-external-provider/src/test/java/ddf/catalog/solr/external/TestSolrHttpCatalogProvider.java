@@ -43,6 +43,7 @@
 import ddf.catalog.source.IngestException;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.source.solr.ConfigurationStore;
+import ddf.catalog.source.solr.DynamicSchemaResolver;
 
 /**
  * Unit tests for {@link SolrHttpCatalogProvider}
@@ -194,6 +195,19 @@ public void testUpdateConfigurationUrlPropertyNull() throws IngestException,
 
     }
 
+    @Test()
+    public void testReplicaUrls() {
+        SolrHttpCatalogProvider provider = new SolrHttpCatalogProvider(null, null, null);
+
+        provider.setReplicaUrls(" http://host1:8181/solr, ,http://host2:8181/solr ");
+
+        assertThat(provider.getReplicaUrls(), is("http://host1:8181/solr,http://host2:8181/solr"));
+
+        provider.setReplicaUrls(null);
+
+        assertThat(provider.getReplicaUrls(), is(""));
+    }
+
     /**
      * Tests if the ConfigurationStore is set properly
      * 
@@ -249,6 +263,29 @@ public void testShutdown() throws SolrServerException, IOException {
         verify(givenServer, times(1)).shutdown();
     }
 
+    /**
+     * Tests that shutting down releases the Solr Catalog Provider built on the connection along
+     * with the connection itself.
+     * 
+     * @throws SolrServerException
+     * @throws IOException
+     */
+    @Test
+    public void testShutdownReleasesProvider() throws SolrServerException, IOException {
+        // given
+        SolrServer givenServer = givenSolrServer(true);
+        SolrHttpCatalogProvider provider = new SolrHttpCatalogProvider(null, givenServer, null,
+                mock(DynamicSchemaResolver.class));
+        assertThat(provider.isAvailable(), is(true));
+
+        // when
+        provider.shutdown();
+
+        // then
+        verify(givenServer, times(1)).shutdown();
+        assertThat(provider.isAvailable(), is(false));
+    }
+
     /**
      * @return
      * @throws IOException